@@ -15,7 +15,9 @@ package io.fabric8.apmagent;
 
 import io.fabric8.apmagent.metrics.ApmAgentContext;
 import io.fabric8.apmagent.metrics.ThreadMetrics;
+import io.fabric8.apmagent.strategy.profile.ProfileStrategy;
 import io.fabric8.apmagent.strategy.sampling.SamplingStrategy;
+import io.fabric8.apmagent.strategy.trace.AdaptiveInstrumentation;
 import io.fabric8.apmagent.strategy.trace.TraceStrategy;
 import io.fabric8.apmagent.utils.PropertyUtils;
 import org.jolokia.jvmagent.JvmAgent;
@@ -82,6 +84,18 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    public static void enterMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.enterMethod(methodId, false);
+        }
+    }
+
+    public static void exitMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.exitMethod(methodId, false);
+        }
+    }
+
     public static void enterMethod(String methodName) {
         if (INSTANCE.started.get()) {
             INSTANCE.apmAgentContext.enterMethod(Thread.currentThread(), methodName, false);
@@ -108,6 +122,43 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    public List<String> getCollapsedStacks() {
+        if (isInitialized()) {
+            return apmAgentContext.getStackTraceTree().getCollapsedStacks();
+        }
+        return Collections.EMPTY_LIST;
+    }
+
+    public long getProfileSampleCount() {
+        return apmAgentContext.getStackTraceTree().getSampleCount();
+    }
+
+    public void resetCollapsedStacks() {
+        apmAgentContext.getStackTraceTree().clear();
+    }
+
+    public List<String> getAdaptivelyRemovedMethods() {
+        AdaptiveInstrumentation adaptiveInstrumentation = getAdaptiveInstrumentation();
+        if (adaptiveInstrumentation != null) {
+            return adaptiveInstrumentation.getRemovedMethods();
+        }
+        return Collections.EMPTY_LIST;
+    }
+
+    public void reinstrumentMethod(String fullMethodName) {
+        AdaptiveInstrumentation adaptiveInstrumentation = getAdaptiveInstrumentation();
+        if (adaptiveInstrumentation != null) {
+            adaptiveInstrumentation.reinstrument(fullMethodName);
+        }
+    }
+
+    public void reinstrumentAllMethods() {
+        AdaptiveInstrumentation adaptiveInstrumentation = getAdaptiveInstrumentation();
+        if (adaptiveInstrumentation != null) {
+            adaptiveInstrumentation.reinstrumentAll();
+        }
+    }
+
     public List<ThreadMetrics> getThreadMetrics() {
         if (isInitialized()) {
             return apmAgentContext.getThreadMetrics();
@@ -141,6 +192,10 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
                     this.strategy = new TraceStrategy(apmAgentContext, instrumentation);
                     LOG.info("Using Trace strategy");
                     break;
+                case PROFILE:
+                    this.strategy = new ProfileStrategy(apmAgentContext);
+                    LOG.info("Using Profile strategy");
+                    break;
                 default:
                     this.strategy = new SamplingStrategy(apmAgentContext);
                     LOG.info("Using Sampling strategy");
@@ -201,6 +256,14 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    private AdaptiveInstrumentation getAdaptiveInstrumentation() {
+        Strategy s = this.strategy;
+        if (s instanceof TraceStrategy) {
+            return ((TraceStrategy) s).getAdaptiveInstrumentation();
+        }
+        return null;
+    }
+
     // The following is the implementation for resetting the instrumentation.
 
     public void shutDown() {
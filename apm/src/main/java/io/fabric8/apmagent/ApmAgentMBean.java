@@ -32,4 +32,31 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return the stacks sampled by the profile strategy, in the collapsed
+     * "frame1;frame2;frame3 count" format used to render flame graphs
+     */
+    List<String> getCollapsedStacks();
+
+    long getProfileSampleCount();
+
+    void resetCollapsedStacks();
+
+    /**
+     * @return List of <className>@<methodName> the adaptive instrumentation removed the probes from
+     */
+    List<String> getAdaptivelyRemovedMethods();
+
+    /**
+     * Puts the probes back into a method the adaptive instrumentation removed them from, they are not removed again
+     *
+     * @param fullMethodName <className>@<methodName>
+     */
+    void reinstrumentMethod(String fullMethodName);
+
+    /**
+     * Puts the probes back into all the methods the adaptive instrumentation removed them from, they are not removed again
+     */
+    void reinstrumentAllMethods();
 }
@@ -29,7 +29,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class ApmConfiguration implements ApmConfigurationMBean {
     public enum STRATEGY {
         TRACE,
-        SAMPLE,;
+        SAMPLE,
+        PROFILE,;
 
         static STRATEGY getStrategy(String name) {
             for (STRATEGY v : values()) {
@@ -56,6 +57,16 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
     private int samplingInterval = 1;
+    private int profileInterval = 20;
+    private int profileDepth = 128;
+    private String profileThreadFilter = "";
+    private boolean profileRunnableOnly = true;
+    private boolean adaptive = false;
+    private int adaptiveInterval = 30;
+    private double adaptiveMinMeanTime = 0.001;
+    private double adaptiveMaxCallRate = 0;
+    private double adaptiveCpuBudget = 5;
+    private int adaptiveProbeCost = 100;
     private List<FilterItem> whiteFilterList = new ArrayList<>();
     private List<FilterItem> blackFilterList = new ArrayList<>();
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
@@ -250,6 +261,108 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    @Override
+    public int getProfileInterval() {
+        return profileInterval;
+    }
+
+    @Override
+    public void setProfileInterval(int profileInterval) {
+        this.profileInterval = profileInterval;
+    }
+
+    @Override
+    public int getProfileDepth() {
+        return profileDepth;
+    }
+
+    @Override
+    public void setProfileDepth(int profileDepth) {
+        this.profileDepth = profileDepth;
+    }
+
+    @Override
+    public String getProfileThreadFilter() {
+        return profileThreadFilter;
+    }
+
+    @Override
+    public void setProfileThreadFilter(String profileThreadFilter) {
+        this.profileThreadFilter = profileThreadFilter;
+        fireConfigurationChanged();
+    }
+
+    @Override
+    public boolean isProfileRunnableOnly() {
+        return profileRunnableOnly;
+    }
+
+    @Override
+    public void setProfileRunnableOnly(boolean profileRunnableOnly) {
+        this.profileRunnableOnly = profileRunnableOnly;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    @Override
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        fireConfigurationChanged();
+    }
+
+    @Override
+    public int getAdaptiveInterval() {
+        return adaptiveInterval;
+    }
+
+    @Override
+    public void setAdaptiveInterval(int adaptiveInterval) {
+        this.adaptiveInterval = adaptiveInterval;
+    }
+
+    @Override
+    public double getAdaptiveMinMeanTime() {
+        return adaptiveMinMeanTime;
+    }
+
+    @Override
+    public void setAdaptiveMinMeanTime(double adaptiveMinMeanTime) {
+        this.adaptiveMinMeanTime = adaptiveMinMeanTime;
+    }
+
+    @Override
+    public double getAdaptiveMaxCallRate() {
+        return adaptiveMaxCallRate;
+    }
+
+    @Override
+    public void setAdaptiveMaxCallRate(double adaptiveMaxCallRate) {
+        this.adaptiveMaxCallRate = adaptiveMaxCallRate;
+    }
+
+    @Override
+    public double getAdaptiveCpuBudget() {
+        return adaptiveCpuBudget;
+    }
+
+    @Override
+    public void setAdaptiveCpuBudget(double adaptiveCpuBudget) {
+        this.adaptiveCpuBudget = adaptiveCpuBudget;
+    }
+
+    @Override
+    public int getAdaptiveProbeCost() {
+        return adaptiveProbeCost;
+    }
+
+    @Override
+    public void setAdaptiveProbeCost(int adaptiveProbeCost) {
+        this.adaptiveProbeCost = adaptiveProbeCost;
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
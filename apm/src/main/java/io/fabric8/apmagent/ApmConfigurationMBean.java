@@ -45,6 +45,68 @@ public interface ApmConfigurationMBean {
 
     void setMethodMetricDepth(int methodMetricDepth);
 
+    int getProfileInterval();
+
+    void setProfileInterval(int profileInterval);
+
+    /**
+     * The number of frames sampled per stack, the innermost ones are kept and deeper stacks are rooted at a
+     * [truncated] frame in the collapsed stacks
+     */
+    int getProfileDepth();
+
+    void setProfileDepth(int profileDepth);
+
+    /**
+     * @return a regular expression the thread names have to match to be profiled - or empty for all threads
+     */
+    String getProfileThreadFilter();
+
+    void setProfileThreadFilter(String profileThreadFilter);
+
+    boolean isProfileRunnableOnly();
+
+    void setProfileRunnableOnly(boolean profileRunnableOnly);
+
+    boolean isAdaptive();
+
+    void setAdaptive(boolean adaptive);
+
+    /**
+     * @return how often, in seconds, the adaptive instrumentation looks for probes to remove
+     */
+    int getAdaptiveInterval();
+
+    void setAdaptiveInterval(int adaptiveInterval);
+
+    /**
+     * @return methods with a mean time (in milliseconds) below this have their probes removed
+     */
+    double getAdaptiveMinMeanTime();
+
+    void setAdaptiveMinMeanTime(double adaptiveMinMeanTime);
+
+    /**
+     * @return methods called more often than this (per second) have their probes removed - 0 for no limit
+     */
+    double getAdaptiveMaxCallRate();
+
+    void setAdaptiveMaxCallRate(double adaptiveMaxCallRate);
+
+    /**
+     * @return the percentage of the total CPU the probes may use - 0 for no limit
+     */
+    double getAdaptiveCpuBudget();
+
+    void setAdaptiveCpuBudget(double adaptiveCpuBudget);
+
+    /**
+     * @return the estimated cost, in nanoseconds, of the probes around a single method call
+     */
+    int getAdaptiveProbeCost();
+
+    void setAdaptiveProbeCost(int adaptiveProbeCost);
+
     String getStrategy();
 
     void setStrategy(String strategy);
@@ -30,6 +30,7 @@ import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -48,7 +49,12 @@ public class ApmAgentContext {
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
-    private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    private volatile ThreadLocal<ThreadMetrics> threadMetricsLocal = new ThreadLocal<>();
+    //method ids are allocated at instrumentation time and are never reused
+    private final ConcurrentMap<String, Integer> methodIds = new ConcurrentHashMap<>();
+    private volatile String[] methodNames = new String[64];
+    private int nextMethodId;
+    private volatile MethodMetrics[] methodMetricsSlots = new MethodMetrics[64];
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -57,6 +63,7 @@ public class ApmAgentContext {
     private ObjectName configurationObjectName;
     private final ApmConfiguration configuration;
     private final MonitoredMethodMetrics monitoredMethodMetrics;
+    private final StackTraceTree stackTraceTree = new StackTraceTree();
     private AtomicBoolean doHouseKeeping = new AtomicBoolean();
     private Thread backgroundThread;
     private boolean monitorByDefault = true;
@@ -68,42 +75,82 @@ public class ApmAgentContext {
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
     }
 
-    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+    public void enterMethod(int methodId, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            ThreadLocal<ThreadMetrics> local = threadMetricsLocal;
+            ThreadMetrics threadMetrics = local.get();
             if (threadMetrics == null) {
-                threadMetrics = new ThreadMetrics(this, currentThread);
-                threadMetricsMap.put(currentThread, threadMetrics);
+                threadMetrics = getOrCreateThreadMetrics(Thread.currentThread());
+                local.set(threadMetrics);
             }
-            threadMetrics.enter(fullMethodName, alwaysActive);
+            enterMethod(threadMetrics, methodId, alwaysActive);
+        }
+    }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
-                methodMetrics.setActive(isMonitorByDefault());
-                methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
-            }
+    public void exitMethod(int methodId, boolean alwaysActive) {
+        if (isInitialized()) {
+            exitMethod(threadMetricsLocal.get(), methodId, alwaysActive);
         }
+    }
 
+    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+        if (isInitialized()) {
+            enterMethod(getOrCreateThreadMetrics(currentThread), getMethodId(fullMethodName), alwaysActive);
+        }
     }
 
     public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            exitMethod(threadMetricsMap.get(currentThread), getMethodId(methodName), alwaysActive);
+        }
+    }
 
-            long elapsed = -1;
-            if (threadMetrics != null) {
-                elapsed = threadMetrics.exit(methodName, alwaysActive);
-            }
+    private void enterMethod(ThreadMetrics threadMetrics, int methodId, boolean alwaysActive) {
+        threadMetrics.enter(methodId, alwaysActive);
 
-            if (elapsed >= 0) {
-                MethodMetrics methodMetrics = methodMetricsMap.get(methodName);
-                if (methodMetrics != null) {
-                    methodMetrics.update(elapsed);
+        MethodMetrics[] slots = methodMetricsSlots;
+        if (methodId >= slots.length || slots[methodId] == null) {
+            createMethodMetrics(methodId);
+        }
+    }
+
+    private void exitMethod(ThreadMetrics threadMetrics, int methodId, boolean alwaysActive) {
+        if (threadMetrics != null) {
+            //the elapsed time is recorded per thread - and merged into the MethodMetrics on house keeping
+            threadMetrics.exit(methodId, alwaysActive);
+        }
+        doHouseKeeping();
+    }
+
+    /**
+     * Returns the id for a fully qualified method name, allocating a new one if this
+     * is the first time the method has been seen. This is done once per method at
+     * instrumentation time, so the id can be baked into the transformed byte code.
+     */
+    public int getMethodId(String fullMethodName) {
+        Integer result = methodIds.get(fullMethodName);
+        if (result == null) {
+            synchronized (methodIds) {
+                result = methodIds.get(fullMethodName);
+                if (result == null) {
+                    int id = nextMethodId++;
+                    String[] names = methodNames;
+                    if (id >= names.length) {
+                        names = Arrays.copyOf(names, names.length * 2);
+                    }
+                    names[id] = fullMethodName;
+                    methodNames = names;
+                    result = id;
+                    methodIds.put(fullMethodName, result);
                 }
             }
-            doHouseKeeping();
         }
+        return result;
+    }
+
+    public String getMethodName(int methodId) {
+        String[] names = methodNames;
+        return methodId >= 0 && methodId < names.length ? names[methodId] : null;
     }
 
     public void initialize() {
@@ -146,6 +193,17 @@ public class ApmAgentContext {
         if (doHouseKeeping.compareAndSet(true, false)) {
             try {
                 List<ThreadMetrics> threadMetricsList = getThreadMetrics();
+                //merge the per thread recorders before removing dead threads - so we don't lose their last values
+                for (ThreadMetrics tm : threadMetricsList) {
+                    for (ThreadContextMethodMetrics threadContextMethodMetrics : tm.getMethodMetrics()) {
+                        threadContextMethodMetrics.merge(getMethodMetrics(threadContextMethodMetrics.getMethodId()));
+                    }
+                }
+                for (MethodMetrics methodMetrics : methodMetricsSlots) {
+                    if (methodMetrics != null) {
+                        methodMetrics.updateSnapshot();
+                    }
+                }
                 for (ThreadMetrics tm : threadMetricsList) {
                     if (tm.isDead()) {
                         tm.destroy();
@@ -168,8 +226,11 @@ public class ApmAgentContext {
                 unregisterMBean(objectName);
             }
             objectNameMap.clear();
-            methodMetricsMap.clear();
+            synchronized (methodIds) {
+                methodMetricsSlots = new MethodMetrics[methodMetricsSlots.length];
+            }
             threadMetricsMap.clear();
+            threadMetricsLocal = new ThreadLocal<>();
         }
     }
 
@@ -235,7 +296,17 @@ public class ApmAgentContext {
     }
 
     public List<? extends MethodMetrics> getMethodMetrics() {
-        return MethodMetrics.sortedMetrics(methodMetricsMap.values());
+        List<MethodMetrics> result = new ArrayList<>();
+        for (MethodMetrics methodMetrics : methodMetricsSlots) {
+            if (methodMetrics != null) {
+                result.add(methodMetrics);
+            }
+        }
+        return MethodMetrics.sortedMetrics(result);
+    }
+
+    public StackTraceTree getStackTraceTree() {
+        return stackTraceTree;
     }
 
     public boolean isInitialized() {
@@ -256,11 +327,12 @@ public class ApmAgentContext {
 
     public void setActive(String fullMethodName, boolean flag) {
         if (isInitialized()) {
+            int methodId = getMethodId(fullMethodName);
             for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
-                threadMetrics.setActive(fullMethodName, flag);
+                threadMetrics.setActive(methodId, flag);
             }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
+            MethodMetrics methodMetrics = getMethodMetrics(methodId);
             if (methodMetrics != null) {
                 methodMetrics.setActive(flag);
             }
@@ -319,6 +391,11 @@ public class ApmAgentContext {
         }
     }
 
+    public void resetMethod(ClassInfo classInfo, MethodDescription methodDescription) {
+        remove(methodDescription);
+        classInfo.removeTransformedMethod(methodDescription.getMethodSignature());
+    }
+
     public void resetAll(ClassInfo classInfo) {
         Collection<MethodDescription> list = classInfo.getTransformedMethodDescriptions();
         for (MethodDescription methodDescription : list) {
@@ -339,10 +416,50 @@ public class ApmAgentContext {
     }
 
     private void remove(MethodDescription methodDescription) {
-        MethodMetrics methodMetrics = this.methodMetricsMap.remove(methodDescription.getFullMethodName());
-        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
-            threadMetrics.remove(methodDescription.getFullMethodName());
+        Integer methodId = methodIds.get(methodDescription.getFullMethodName());
+        if (methodId != null) {
+            synchronized (methodIds) {
+                MethodMetrics[] slots = methodMetricsSlots;
+                if (methodId < slots.length) {
+                    slots[methodId] = null;
+                }
+            }
+            for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+                threadMetrics.remove(methodId);
+            }
+        }
+    }
+
+    private MethodMetrics getMethodMetrics(int methodId) {
+        MethodMetrics[] slots = methodMetricsSlots;
+        return methodId >= 0 && methodId < slots.length ? slots[methodId] : null;
+    }
+
+    private void createMethodMetrics(int methodId) {
+        synchronized (methodIds) {
+            MethodMetrics[] slots = methodMetricsSlots;
+            if (methodId >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(slots.length * 2, methodId + 1));
+            }
+            if (slots[methodId] == null) {
+                MethodMetrics methodMetrics = new MethodMetrics(getMethodName(methodId));
+                methodMetrics.setActive(isMonitorByDefault());
+                slots[methodId] = methodMetrics;
+            }
+            methodMetricsSlots = slots;
+        }
+    }
+
+    private ThreadMetrics getOrCreateThreadMetrics(Thread thread) {
+        ThreadMetrics threadMetrics = threadMetricsMap.get(thread);
+        if (threadMetrics == null) {
+            threadMetrics = new ThreadMetrics(this, thread);
+            ThreadMetrics existing = threadMetricsMap.putIfAbsent(thread, threadMetrics);
+            if (existing != null) {
+                threadMetrics = existing;
+            }
         }
+        return threadMetrics;
     }
 
     protected ObjectInstance registerMBean(ObjectName objectName, Object object) throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.metrics;
+
+/**
+ * A log-linear histogram (in the style of HdrHistogram) with fixed memory and a
+ * relative precision of better than 2% across the whole range of recorded values.
+ * <p/>
+ * Values below {@link #SUB_BUCKET_COUNT} get a bucket of their own, after that every
+ * power of two range is split into {@link #SUB_BUCKET_HALF} linear buckets. Values larger than
+ * {@link #MAX_VALUE} (about 18 minutes in nanoseconds) are recorded as {@link #MAX_VALUE}.
+ * <p/>
+ * This is the mutable, cumulative form kept once per method, the per-thread
+ * {@link HistogramRecorder}s are merged into it during house keeping - it is not thread safe.
+ */
+class Histogram {
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    static final long MAX_VALUE = (1L << 40) - 1;
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) ((value >> shift) - SUB_BUCKET_HALF);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return subBucket << shift;
+    }
+
+    static long medianValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        return lowestValue(index) + ((1L << shift) >> 1);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    void add(int index, long delta) {
+        counts[index] += delta;
+    }
+
+    void add(long addedCount, long addedSum, long recordedMin, long recordedMax) {
+        count += addedCount;
+        sum += addedSum;
+        min = Math.min(min, recordedMin);
+        max = Math.max(max, recordedMax);
+    }
+
+    HistogramSnapshot snapshot() {
+        return new HistogramSnapshot(counts.clone(), count, sum, count > 0 ? min : 0, max);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.metrics;
+
+/**
+ * Records values into a {@link Histogram} bucket layout without any locking.
+ * <p/>
+ * The buckets are kept in pages of {@link #PAGE_SIZE} counts that are only allocated once a value
+ * falls into them - a method normally only ever hits a handful of pages, so a recorder is a few hundred
+ * bytes rather than a full bucket array per (thread, method).
+ * <p/>
+ * A recorder must only be written to by a single thread (the thread being measured). The
+ * values are folded into a shared {@link Histogram} by {@link #mergeInto(Histogram)} during house keeping,
+ * which must only be called from one thread at a time.
+ */
+class HistogramRecorder {
+    static final int PAGE_SHIFT = 5;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_COUNT = (Histogram.BUCKET_COUNT + PAGE_SIZE - 1) >> PAGE_SHIFT;
+
+    //written by the recording thread only, published by the volatile write of count
+    private final int[][] pages = new int[PAGE_COUNT][];
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private volatile long count;
+
+    //only touched by house keeping
+    private int[][] merged;
+    private long mergedCount;
+    private long mergedSum;
+
+    void record(long value) {
+        if (value >= 0) {
+            int index = Histogram.bucketIndex(value);
+            int[] page = pages[index >> PAGE_SHIFT];
+            if (page == null) {
+                page = new int[PAGE_SIZE];
+                pages[index >> PAGE_SHIFT] = page;
+            }
+            page[index & (PAGE_SIZE - 1)]++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            count = count + 1;
+        }
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getSum() {
+        return count > 0 ? sum : 0;
+    }
+
+    /**
+     * Adds everything recorded since the last merge to the histogram (if there is one).
+     * <p/>
+     * The recorder counts are cumulative and the recorder remembers what it has already handed out,
+     * so a concurrent write is either picked up now or on the next merge.
+     *
+     * @return the number of new values
+     */
+    long mergeInto(Histogram histogram) {
+        //read the volatile count first, so everything written before it is visible
+        long recorded = count;
+        if (recorded == mergedCount) {
+            return 0;
+        }
+        if (merged == null) {
+            merged = new int[PAGE_COUNT][];
+        }
+        long added = 0;
+        for (int p = 0; p < PAGE_COUNT; p++) {
+            int[] page = pages[p];
+            if (page == null) {
+                continue;
+            }
+            int[] seen = merged[p];
+            if (seen == null) {
+                seen = new int[PAGE_SIZE];
+                merged[p] = seen;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                //the counts are ints that can wrap - but never by more than 2^31 between merges
+                int delta = page[i] - seen[i];
+                if (delta != 0) {
+                    seen[i] += delta;
+                    added += delta;
+                    if (histogram != null) {
+                        histogram.add((p << PAGE_SHIFT) + i, delta);
+                    }
+                }
+            }
+        }
+        long recordedSum = sum;
+        if (added > 0 && histogram != null) {
+            histogram.add(added, recordedSum - mergedSum, min, max);
+        }
+        mergedCount = recorded;
+        mergedSum = recordedSum;
+        return added;
+    }
+
+    /**
+     * A snapshot of everything recorded so far - only built on demand, it is not kept around.
+     */
+    HistogramSnapshot snapshot() {
+        long recorded = count;
+        if (recorded == 0) {
+            return HistogramSnapshot.EMPTY;
+        }
+        long[] counts = new long[Histogram.BUCKET_COUNT];
+        long total = 0;
+        for (int p = 0; p < PAGE_COUNT; p++) {
+            int[] page = pages[p];
+            if (page != null) {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    int index = (p << PAGE_SHIFT) + i;
+                    if (index < counts.length) {
+                        counts[index] = page[i] & 0xFFFFFFFFL;
+                        total += counts[index];
+                    }
+                }
+            }
+        }
+        return new HistogramSnapshot(counts, total, sum, min, max);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.metrics;
+
+/**
+ * An immutable view of a {@link Histogram}, built once per house keeping interval
+ * and shared by all the getters of a {@link MethodMetrics}. The per-thread metrics build
+ * one from their {@link HistogramRecorder} when asked, rather than keeping a copy.
+ */
+public final class HistogramSnapshot {
+    static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[Histogram.BUCKET_COUNT], 0, 0, 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long min, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    public double getStdDev() {
+        if (count <= 1) {
+            return 0;
+        }
+        final double mean = getMean();
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                double diff = Histogram.medianValue(i) - mean;
+                total += diff * diff * counts[i];
+            }
+        }
+        return Math.sqrt(total / (count - 1));
+    }
+
+    /**
+     * @param quantile - between 0 and 1
+     * @return the value at the given quantile
+     */
+    public long getValue(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        rank = Math.max(1, Math.min(count, rank));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, Histogram.medianValue(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param maxValues - the maximum number of values to return
+     * @return values evenly spread over the distribution of the recorded values
+     */
+    public long[] getValues(int maxValues) {
+        int size = (int) Math.min(count, maxValues);
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = getValue((i + 0.5) / size);
+        }
+        return result;
+    }
+}
@@ -13,7 +13,7 @@
 
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
+import com.codahale.metrics.Meter;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -23,7 +23,10 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    static final int MAX_VALUES = 1028;
+    private final Meter meter;
+    private final Histogram histogram;
+    private volatile HistogramSnapshot snapshot = HistogramSnapshot.EMPTY;
     private final String name;
     private final double rateFactor;
     private final double durationFactor;
@@ -36,8 +39,13 @@ public class MethodMetrics {
      * @param name - the fully qualified method name
      */
     public MethodMetrics(String name) {
+        this(name, new Histogram());
+    }
+
+    MethodMetrics(String name, Histogram histogram) {
         this.name = name;
-        this.timer = new Timer();
+        this.meter = new Meter();
+        this.histogram = histogram;
 
         this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
@@ -56,63 +64,63 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return meter.getCount();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        return meter.getMeanRate() * rateFactor;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        return meter.getOneMinuteRate() * rateFactor;
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        return meter.getFiveMinuteRate() * rateFactor;
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        return meter.getFifteenMinuteRate() * rateFactor;
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return getSnapshot().getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return getSnapshot().getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return getSnapshot().getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return getSnapshot().getValue(0.5) * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.75) * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.95) * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.98) * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.99) * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return getSnapshot().getValue(0.999) * durationFactor;
     }
 
     /**
@@ -121,7 +129,7 @@ public class MethodMetrics {
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return getSum() * durationFactor;
     }
 
     public int getPercentage() {
@@ -133,12 +141,31 @@ public class MethodMetrics {
     }
 
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return getSnapshot().getValues(MAX_VALUES);
+    }
+
+    public HistogramSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    long getSum() {
+        return snapshot.getSum();
     }
 
-    public void update(long elapsed) {
-        if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+    Histogram getHistogram() {
+        return histogram;
+    }
+
+    void mark(long count) {
+        meter.mark(count);
+    }
+
+    /**
+     * Publishes a new immutable snapshot if anything has been merged since the last one.
+     */
+    void updateSnapshot() {
+        if (histogram != null && histogram.getCount() != snapshot.getCount()) {
+            snapshot = histogram.snapshot();
         }
     }
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Folds sampled stack traces into a prefix tree, so the same call path is only stored once
+ * and every node just keeps a count of the samples that ended there. The tree can be rendered
+ * in the collapsed stack format ("frame1;frame2;frame3 count") used by flame graph tools.
+ */
+public class StackTraceTree {
+    public static final int DEFAULT_MAX_NODES = 65536;
+    public static final String TRUNCATED = "[truncated]";
+    private final Node root = new Node(null, null);
+    private final int maxNodes;
+    private int nodeCount;
+    private long sampleCount;
+
+    public StackTraceTree() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    public StackTraceTree(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Adds a sampled stack, with the top of the stack at index 0 - as returned by {@link Thread#getStackTrace()}.
+     * Once the tree is full, new call paths are counted against their deepest known frame.
+     */
+    public synchronized void addSample(StackTraceElement[] stackTrace) {
+        addSample(root, stackTrace);
+    }
+
+    /**
+     * Adds a sampled stack whose outermost frames are missing. It is rooted at a synthetic {@value #TRUNCATED} frame,
+     * so it does not get merged with the call paths that really start at its bottom frame.
+     */
+    public synchronized void addTruncatedSample(StackTraceElement[] stackTrace) {
+        if (stackTrace == null || stackTrace.length == 0) {
+            return;
+        }
+        Node truncated = root.getChild("", TRUNCATED);
+        if (truncated == null) {
+            if (nodeCount >= maxNodes) {
+                addSample(root, stackTrace);
+                return;
+            }
+            truncated = root.addChild("", TRUNCATED);
+            nodeCount++;
+        }
+        addSample(truncated, stackTrace);
+    }
+
+    private void addSample(Node start, StackTraceElement[] stackTrace) {
+        if (stackTrace == null || stackTrace.length == 0) {
+            return;
+        }
+        Node node = start;
+        for (int i = stackTrace.length - 1; i >= 0; i--) {
+            StackTraceElement element = stackTrace[i];
+            Node child = node.getChild(element.getClassName(), element.getMethodName());
+            if (child == null) {
+                if (nodeCount >= maxNodes) {
+                    break;
+                }
+                child = node.addChild(element.getClassName(), element.getMethodName());
+                nodeCount++;
+            }
+            node = child;
+        }
+        node.count++;
+        sampleCount++;
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    public synchronized int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the collapsed stacks, one line per distinct call path
+     */
+    public synchronized List<String> getCollapsedStacks() {
+        List<String> result = new ArrayList<>();
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < root.childCount; i++) {
+            collapse(root.children[i], path, result);
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        root.children = Node.NO_CHILDREN;
+        root.childCount = 0;
+        root.count = 0;
+        nodeCount = 0;
+        sampleCount = 0;
+    }
+
+    private void collapse(Node node, StringBuilder path, List<String> result) {
+        int length = path.length();
+        if (length > 0) {
+            path.append(';');
+        }
+        if (!node.className.isEmpty()) {
+            path.append(node.className).append('.');
+        }
+        path.append(node.methodName);
+        if (node.count > 0) {
+            result.add(path.toString() + " " + node.count);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            collapse(node.children[i], path, result);
+        }
+        path.setLength(length);
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private final String className;
+        private final String methodName;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        private long count;
+
+        Node(String className, String methodName) {
+            this.className = className;
+            this.methodName = methodName;
+        }
+
+        Node getChild(String className, String methodName) {
+            //most frames only ever have a handful of callees - so a linear scan beats hashing
+            for (int i = 0; i < childCount; i++) {
+                Node child = children[i];
+                if (child.methodName.equals(methodName) && child.className.equals(className)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String className, String methodName) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+            }
+            Node child = new Node(className, methodName);
+            children[childCount++] = child;
+            return child;
+        }
+    }
+}
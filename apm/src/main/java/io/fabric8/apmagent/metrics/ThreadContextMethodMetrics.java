@@ -13,19 +13,20 @@
 
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ThreadContextMethodMetrics extends MethodMetrics {
     private final Thread thread;
     private final AtomicReference<ThreadContextMethodMetricsStack> stackRef;
-    private Timer.Context timerContext;
+    private final int methodId;
+    private final HistogramRecorder recorder = new HistogramRecorder();
 
-    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
-        super(name);
+    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, int methodId, String name) {
+        //the values are merged into the shared histogram of the method, this only keeps the recorder
+        super(name, null);
         this.thread = thread;
         this.stackRef = stackRef;
+        this.methodId = methodId;
     }
 
     public String getThreadName() {
@@ -36,32 +37,57 @@ public class ThreadContextMethodMetrics extends MethodMetrics {
         return thread.getId();
     }
 
+    public int getMethodId() {
+        return methodId;
+    }
+
     public void onEnter() {
-        timerContext = timer.time();
-        stackRef.get().push(this);
+        stackRef.get().push(this, System.nanoTime());
     }
 
     public long onExit() {
+        final long now = System.nanoTime();
         long result = -1;
-        ThreadContextMethodMetrics last = stackRef.get().pop();
-        if (last == this) {
-            result = timerContext.stop();
-        } else {
-            //the exit could have jumped a few methods if its
-            //caused by an exception
-            while (last != null && last != this) {
-                result = last.timerContext.stop();
-                last = stackRef.get().pop();
-            }
+        ThreadContextMethodMetricsStack stack = stackRef.get();
+        //the exit could have jumped a few methods if its
+        //caused by an exception
+        while (!stack.isEmpty()) {
+            long elapsed = now - stack.peekStartTime();
+            ThreadContextMethodMetrics last = stack.pop();
+            last.recorder.record(elapsed);
             if (last == this) {
-                result = timerContext.stop();
+                result = elapsed;
+                break;
             }
         }
         return result;
     }
 
+    @Override
+    public HistogramSnapshot getSnapshot() {
+        return recorder.snapshot();
+    }
+
+    @Override
+    long getSum() {
+        return recorder.getSum();
+    }
+
+    /**
+     * Folds the values recorded since the last merge into the aggregate metrics for
+     * the same method, if there is one. Only called during house keeping.
+     */
+    void merge(MethodMetrics aggregate) {
+        long added = recorder.mergeInto(aggregate != null ? aggregate.getHistogram() : null);
+        if (added > 0) {
+            mark(added);
+            if (aggregate != null) {
+                aggregate.mark(added);
+            }
+        }
+    }
+
     public String toString() {
         return "ThreadContextMethodMetrics:" + getName();
     }
 }
-
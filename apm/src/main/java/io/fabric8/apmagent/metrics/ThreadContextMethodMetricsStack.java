@@ -16,16 +16,19 @@ package io.fabric8.apmagent.metrics;
 class ThreadContextMethodMetricsStack {
 
     private ThreadContextMethodMetrics[] stack;
+    private long[] startTimes;
     private int pointer;
 
     ThreadContextMethodMetricsStack() {
         stack = new ThreadContextMethodMetrics[2];
+        startTimes = new long[2];
     }
 
-    ThreadContextMethodMetrics push(ThreadContextMethodMetrics value) {
+    ThreadContextMethodMetrics push(ThreadContextMethodMetrics value, long startTime) {
         if (pointer + 1 >= stack.length) {
             resizeStack(stack.length * 2);
         }
+        startTimes[pointer] = startTime;
         stack[pointer++] = value;
         return value;
     }
@@ -36,10 +39,21 @@ class ThreadContextMethodMetricsStack {
         return result;
     }
 
+    long peekStartTime() {
+        return startTimes[pointer - 1];
+    }
+
+    boolean isEmpty() {
+        return pointer == 0;
+    }
+
     private void resizeStack(int newCapacity) {
         ThreadContextMethodMetrics[] newStack = new ThreadContextMethodMetrics[newCapacity];
         System.arraycopy(stack, 0, newStack, 0, Math.min(pointer, newCapacity));
         stack = newStack;
+        long[] newStartTimes = new long[newCapacity];
+        System.arraycopy(startTimes, 0, newStartTimes, 0, Math.min(pointer, newCapacity));
+        startTimes = newStartTimes;
     }
 
     public String toString() {
@@ -18,9 +18,9 @@ import io.fabric8.apmagent.ApmConfiguration;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ThreadMetrics {
@@ -29,7 +29,8 @@ public class ThreadMetrics {
     private final ThreadInfo threadInfo;
     private final Thread thread;
     private final ThreadMXBean threadMXBean;
-    private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
+    // indexed by method id - only ever grown by the thread being measured
+    private volatile ThreadContextMethodMetrics[] methods = new ThreadContextMethodMetrics[16];
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
 
     public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
@@ -71,21 +72,21 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.setMonitorSize(monitorSize);
     }
 
-    public void enter(String methodName, boolean alwaysActive) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+    public void enter(int methodId, boolean alwaysActive) {
+        ThreadContextMethodMetrics[] slots = methods;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < slots.length ? slots[methodId] : null;
         if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
-            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
-            methods.putIfAbsent(methodName, threadContextMethodMetrics);
+            threadContextMethodMetrics = createMethodMetrics(methodId);
         }
         if (alwaysActive || threadContextMethodMetrics.isActive()) {
             threadContextMethodMetrics.onEnter();
         }
     }
 
-    public long exit(String methodName, boolean alwaysActive) {
+    public long exit(int methodId, boolean alwaysActive) {
         long result = -1;
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        ThreadContextMethodMetrics[] slots = methods;
+        ThreadContextMethodMetrics threadContextMethodMetrics = methodId < slots.length ? slots[methodId] : null;
         if (threadContextMethodMetrics != null) {
             if (alwaysActive || threadContextMethodMetrics.isActive()) {
                 result = threadContextMethodMetrics.onExit();
@@ -106,25 +107,57 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.destroy();
     }
 
-    public ThreadContextMethodMetrics remove(String fullMethodName) {
-        ThreadContextMethodMetrics result = methods.remove(fullMethodName);
+    public ThreadContextMethodMetrics remove(int methodId) {
+        ThreadContextMethodMetrics result = null;
+        ThreadContextMethodMetrics[] slots = methods;
+        if (methodId >= 0 && methodId < slots.length) {
+            result = slots[methodId];
+            slots[methodId] = null;
+        }
         return result;
     }
 
     public void calculateMethodMetrics() {
-        List<ThreadContextMethodMetrics> list = (List<ThreadContextMethodMetrics>) MethodMetrics.sortedMetrics(this.methods.values());
+        List<ThreadContextMethodMetrics> list = (List<ThreadContextMethodMetrics>) MethodMetrics.sortedMetrics(getMethodMetrics());
         monitoredThreadMethodMetrics.calculateMethodMetrics(list);
     }
 
-    public void setActive(String methodName, boolean flag) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+    public void setActive(int methodId, boolean flag) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = getMethodMetrics(methodId);
         if (threadContextMethodMetrics != null) {
             threadContextMethodMetrics.setActive(flag);
         }
     }
 
-    public boolean isActive(String methodName) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+    public boolean isActive(int methodId) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = getMethodMetrics(methodId);
         return threadContextMethodMetrics != null ? threadContextMethodMetrics.isActive() : false;
     }
+
+    List<ThreadContextMethodMetrics> getMethodMetrics() {
+        List<ThreadContextMethodMetrics> result = new ArrayList<>();
+        for (ThreadContextMethodMetrics threadContextMethodMetrics : methods) {
+            if (threadContextMethodMetrics != null) {
+                result.add(threadContextMethodMetrics);
+            }
+        }
+        return result;
+    }
+
+    private ThreadContextMethodMetrics getMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] slots = methods;
+        return methodId >= 0 && methodId < slots.length ? slots[methodId] : null;
+    }
+
+    private ThreadContextMethodMetrics createMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodId, apmAgentContext.getMethodName(methodId));
+        threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
+        ThreadContextMethodMetrics[] slots = methods;
+        if (methodId >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, methodId + 1));
+        }
+        slots[methodId] = threadContextMethodMetrics;
+        methods = slots;
+        return threadContextMethodMetrics;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.strategy.profile;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.Strategy;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.StackTraceTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Samples the full stacks of all (matching) threads with one batched {@link ThreadMXBean} call
+ * per tick, and folds them into the {@link StackTraceTree} of the {@link ApmAgentContext}, so
+ * whole call paths can be rendered as a flame graph. No byte code is instrumented.
+ */
+public class ProfileStrategy implements Strategy, Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(ProfileStrategy.class);
+    private ApmAgentContext context;
+    private ApmConfiguration configuration;
+    private AtomicBoolean initialized = new AtomicBoolean();
+    private AtomicBoolean started = new AtomicBoolean();
+    private Thread samplingThread;
+    private volatile Pattern threadFilter;
+
+    public ProfileStrategy(ApmAgentContext context) {
+        this.context = context;
+        this.configuration = context.getConfiguration();
+    }
+
+    @Override
+    public void initialize() throws Exception {
+        if (initialized.compareAndSet(false, true)) {
+            samplingThread = new Thread(this, "ProfileStrategy");
+            samplingThread.setDaemon(true);
+            threadFilter = compileThreadFilter();
+            configuration.addChangeListener(this);
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (started.compareAndSet(false, true)) {
+            initialize();
+            samplingThread.start();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (started.compareAndSet(true, false)) {
+
+        }
+    }
+
+    @Override
+    public void shutDown() throws Exception {
+        if (initialized.compareAndSet(true, false)) {
+            stop();
+            configuration.removeChangeListener(this);
+            samplingThread = null;
+        }
+    }
+
+    @Override
+    public void configurationChanged() {
+        threadFilter = compileThreadFilter();
+    }
+
+    @Override
+    public void run() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long selfId = Thread.currentThread().getId();
+        while (started.get()) {
+            try {
+                sample(threadMXBean, selfId);
+                Thread.sleep(configuration.getProfileInterval());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                LOG.error("Failed to sample threads", e);
+            }
+        }
+    }
+
+    private void sample(ThreadMXBean threadMXBean, long selfId) {
+        StackTraceTree stackTraceTree = context.getStackTraceTree();
+        Pattern filter = this.threadFilter;
+        boolean runnableOnly = configuration.isProfileRunnableOnly();
+        int depth = configuration.getProfileDepth();
+        //one more frame than the depth tells whether the stack was cut off
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), depth + 1);
+        for (ThreadInfo threadInfo : threadInfos) {
+            //threads can die between getting the ids and getting their info
+            if (threadInfo == null || threadInfo.getThreadId() == selfId) {
+                continue;
+            }
+            if (runnableOnly && threadInfo.getThreadState() != Thread.State.RUNNABLE) {
+                continue;
+            }
+            if (filter != null && !filter.matcher(threadInfo.getThreadName()).matches()) {
+                continue;
+            }
+            StackTraceElement[] stackTrace = threadInfo.getStackTrace();
+            if (stackTrace.length > depth) {
+                stackTraceTree.addTruncatedSample(Arrays.copyOf(stackTrace, depth));
+            } else {
+                stackTraceTree.addSample(stackTrace);
+            }
+        }
+    }
+
+    private Pattern compileThreadFilter() {
+        String filter = configuration.getProfileThreadFilter();
+        if (filter == null || filter.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Pattern.compile(filter.trim());
+        } catch (Exception e) {
+            LOG.error("Invalid profile thread filter " + filter, e);
+            return null;
+        }
+    }
+}
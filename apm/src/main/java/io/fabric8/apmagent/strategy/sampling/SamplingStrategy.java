@@ -101,22 +101,30 @@ public class SamplingStrategy implements Strategy, Runnable {
     }
 
     private void cleanup() {
-        List<ThreadInfo> removeList = null;
+        if (currentMethods.isEmpty()) {
+            return;
+        }
+        List<Long> removeList = null;
         ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long[] ids = new long[currentMethods.size()];
+        int i = 0;
         for (Long id : currentMethods.keySet()) {
-            ThreadInfo threadInfo = threadMXBean.getThreadInfo(id);
-            if (threadInfo != null) {
-                if (threadInfo.getThreadState() == Thread.State.TERMINATED) {
-                    if (removeList == null) {
-                        removeList = new ArrayList<>();
-                    }
-                    removeList.add(threadInfo);
+            ids[i++] = id;
+        }
+        //one batched call - and we don't need any of the stack
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(ids, 0);
+        for (i = 0; i < ids.length; i++) {
+            ThreadInfo threadInfo = threadInfos[i];
+            if (threadInfo == null || threadInfo.getThreadState() == Thread.State.TERMINATED) {
+                if (removeList == null) {
+                    removeList = new ArrayList<>();
                 }
+                removeList.add(ids[i]);
             }
         }
         if (removeList != null) {
-            for (ThreadInfo threadInfo : removeList) {
-                currentMethods.remove(threadInfo.getThreadId());
+            for (Long id : removeList) {
+                currentMethods.remove(id);
             }
         }
     }
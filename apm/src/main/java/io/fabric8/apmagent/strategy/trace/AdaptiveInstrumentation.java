@@ -0,0 +1,183 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package io.fabric8.apmagent.strategy.trace;
+
+import io.fabric8.apmagent.ApmConfiguration;
+import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.MethodMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically looks at the collected {@link MethodMetrics} and removes the probes from methods
+ * that are too cheap (mean time below a threshold) or called too often to be worth measuring,
+ * until the estimated cost of the remaining probes fits in the configured CPU budget.
+ * <p/>
+ * Removed methods can be instrumented again from JMX - they are then never removed again.
+ */
+public class AdaptiveInstrumentation implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveInstrumentation.class);
+    //don't judge a method on too few calls
+    private static final long MIN_COUNT = 100;
+    private final TraceStrategy traceStrategy;
+    private final ApmAgentContext context;
+    private final ApmConfiguration configuration;
+    private final Set<String> removedMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> pinnedMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicBoolean started = new AtomicBoolean();
+    private Thread adaptiveThread;
+
+    public AdaptiveInstrumentation(TraceStrategy traceStrategy) {
+        this.traceStrategy = traceStrategy;
+        this.context = traceStrategy.getContext();
+        this.configuration = context.getConfiguration();
+    }
+
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            adaptiveThread = new Thread(this, "AdaptiveInstrumentation");
+            adaptiveThread.setDaemon(true);
+            adaptiveThread.start();
+        }
+    }
+
+    public void stop() {
+        if (started.compareAndSet(true, false)) {
+            Thread t = adaptiveThread;
+            adaptiveThread = null;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (started.get()) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(configuration.getAdaptiveInterval()));
+                evaluate();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                LOG.error("Failed to evaluate adaptive instrumentation", e);
+            }
+        }
+    }
+
+    public boolean isRemoved(String fullMethodName) {
+        return removedMethods.contains(fullMethodName);
+    }
+
+    public List<String> getRemovedMethods() {
+        List<String> result = new ArrayList<>(removedMethods);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Puts the probes back into a method that was removed, and stops it from being removed again
+     */
+    public void reinstrument(String fullMethodName) {
+        pinnedMethods.add(fullMethodName);
+        if (removedMethods.remove(fullMethodName)) {
+            traceStrategy.retransform(getClassName(fullMethodName));
+        }
+    }
+
+    /**
+     * Puts the probes back into all the removed methods, and stops them from being removed again
+     */
+    public void reinstrumentAll() {
+        Set<String> classNames = new HashSet<>();
+        for (String fullMethodName : getRemovedMethods()) {
+            pinnedMethods.add(fullMethodName);
+            removedMethods.remove(fullMethodName);
+            classNames.add(getClassName(fullMethodName));
+        }
+        for (String className : classNames) {
+            traceStrategy.retransform(className);
+        }
+    }
+
+    void evaluate() {
+        final double minMeanTime = configuration.getAdaptiveMinMeanTime();
+        final double maxCallRate = configuration.getAdaptiveMaxCallRate();
+        Set<String> classNames = new HashSet<>();
+        List<MethodMetrics> candidates = new ArrayList<>();
+        double totalCallRate = 0;
+
+        for (MethodMetrics methodMetrics : context.getMethodMetrics()) {
+            String name = methodMetrics.getName();
+            double callRate = methodMetrics.getOneMinuteRate();
+            if (pinnedMethods.contains(name)) {
+                totalCallRate += callRate;
+            } else if (methodMetrics.getCount() >= MIN_COUNT
+                           && (methodMetrics.getMean() < minMeanTime || (maxCallRate > 0 && callRate > maxCallRate))) {
+                remove(name, classNames);
+            } else {
+                totalCallRate += callRate;
+                candidates.add(methodMetrics);
+            }
+        }
+
+        //if the remaining probes still cost too much - remove the most frequently called ones first
+        final double cpuBudget = configuration.getAdaptiveCpuBudget();
+        if (cpuBudget > 0) {
+            double capacity = Runtime.getRuntime().availableProcessors() * (double) TimeUnit.SECONDS.toNanos(1);
+            final double probeCost = configuration.getAdaptiveProbeCost();
+            Collections.sort(candidates, new Comparator<MethodMetrics>() {
+                @Override
+                public int compare(MethodMetrics methodMetrics1, MethodMetrics methodMetrics2) {
+                    return Double.compare(methodMetrics2.getOneMinuteRate(), methodMetrics1.getOneMinuteRate());
+                }
+            });
+            for (MethodMetrics methodMetrics : candidates) {
+                if ((totalCallRate * probeCost * 100) / capacity <= cpuBudget) {
+                    break;
+                }
+                totalCallRate -= methodMetrics.getOneMinuteRate();
+                remove(methodMetrics.getName(), classNames);
+            }
+        }
+
+        for (String className : classNames) {
+            traceStrategy.retransform(className);
+        }
+    }
+
+    private void remove(String fullMethodName, Set<String> classNames) {
+        if (removedMethods.add(fullMethodName)) {
+            LOG.debug("Removing probes from " + fullMethodName);
+            classNames.add(getClassName(fullMethodName));
+        }
+    }
+
+    private static String getClassName(String fullMethodName) {
+        int index = fullMethodName.indexOf('@');
+        return index > 0 ? fullMethodName.substring(0, index) : fullMethodName;
+    }
+}
@@ -53,10 +53,14 @@ public class ApmClassVisitor extends ClassVisitor {
             String methodDescription = getDescription(desc);
             classInfo.addMethod(name, methodDescription);
 
-            if (canProfileMethod(name, desc) && traceStrategy.isAudit(classInfo.getClassName(), name)) {
+            String fullMethodName = classInfo.getClassName() + "@" + name + methodDescription;
+
+            if (canProfileMethod(name, desc) && traceStrategy.isAudit(classInfo.getClassName(), name)
+                    && !traceStrategy.isAdaptivelyRemoved(fullMethodName)) {
                 MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
 
-                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, classInfo.getClassName(), name + methodDescription);
+                int methodId = traceStrategy.getContext().getMethodId(fullMethodName);
+                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, methodId);
                 classInfo.addTransformedMethod(name, methodDescription);
                 return methodVisitor;
             }
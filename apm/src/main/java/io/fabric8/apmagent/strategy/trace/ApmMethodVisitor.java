@@ -18,27 +18,27 @@ import org.objectweb.asm.MethodVisitor;
 import static org.objectweb.asm.Opcodes.*;
 
 public class ApmMethodVisitor extends MethodVisitor {
-    private final String fullMethodName;
+    private final int methodId;
 
-    public ApmMethodVisitor(MethodVisitor mv, String className, String methodName) {
+    public ApmMethodVisitor(MethodVisitor mv, int methodId) {
         super(ASM5, mv);
-        this.fullMethodName = className + "@" + methodName;
+        this.methodId = methodId;
     }
 
     @Override
     public void visitCode() {
         super.visitCode();
-        super.visitLdcInsn(fullMethodName);
+        super.visitLdcInsn(methodId);
         super.visitMethodInsn(INVOKESTATIC, "io/fabric8/apmagent/ApmAgent",
-                                 "enterMethod", "(Ljava/lang/String;)V", false);
+                                 "enterMethod", "(I)V", false);
     }
 
     @Override
     public void visitInsn(int opcode) {
         if ((opcode >= IRETURN && opcode <= RETURN) || opcode == ATHROW) {
-            super.visitLdcInsn(fullMethodName);
+            super.visitLdcInsn(methodId);
             super.visitMethodInsn(INVOKESTATIC, "io/fabric8/apmagent/ApmAgent",
-                                     "exitMethod", "(Ljava/lang/String;)V", false);
+                                     "exitMethod", "(I)V", false);
         }
         super.visitInsn(opcode);
     }
@@ -14,6 +14,7 @@ package io.fabric8.apmagent.strategy.trace;
 
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.ClassInfo;
+import io.fabric8.apmagent.MethodDescription;
 import io.fabric8.apmagent.Strategy;
 import io.fabric8.apmagent.metrics.ApmAgentContext;
 import org.objectweb.asm.ClassReader;
@@ -45,11 +46,13 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     private AtomicBoolean started = new AtomicBoolean();
     private AtomicBoolean cleanUp = new AtomicBoolean();
     private Thread transformThread;
+    private final AdaptiveInstrumentation adaptiveInstrumentation;
 
     public TraceStrategy(ApmAgentContext context, Instrumentation instrumentation) {
         this.context = context;
         this.configuration = context.getConfiguration();
         this.instrumentation = instrumentation;
+        this.adaptiveInstrumentation = new AdaptiveInstrumentation(this);
     }
 
     @Override
@@ -64,13 +67,16 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         if (started.compareAndSet(false, true)) {
             initialize();
             instrumentApplication();
+            if (configuration.isAdaptive()) {
+                adaptiveInstrumentation.start();
+            }
         }
     }
 
     @Override
     public void stop() {
         if (started.compareAndSet(true, false)) {
-
+            adaptiveInstrumentation.stop();
         }
     }
 
@@ -103,6 +109,29 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         return configuration.isAudit(className, methodName);
     }
 
+    public boolean isAdaptivelyRemoved(String fullMethodName) {
+        return adaptiveInstrumentation.isRemoved(fullMethodName);
+    }
+
+    public AdaptiveInstrumentation getAdaptiveInstrumentation() {
+        return adaptiveInstrumentation;
+    }
+
+    /**
+     * Re-applies the instrumentation for an already loaded class
+     */
+    public void retransform(String className) {
+        ClassInfo classInfo = context.getClassInfo(className);
+        Class<?> originalClass = classInfo.getOriginalClass();
+        if (originalClass != null && !cleanUp.get()) {
+            try {
+                instrumentation.retransformClasses(new Class[]{originalClass});
+            } catch (Throwable e) {
+                LOG.error("Could not transform " + className, e);
+            }
+        }
+    }
+
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
         byte[] buffer = null;
@@ -127,6 +156,12 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
                 ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo);
                 cr.accept(visitor, ClassReader.SKIP_FRAMES);
                 buffer = cw.toByteArray();
+                //drop the metrics of any methods the probes were adaptively removed from
+                for (MethodDescription methodDescription : classInfo.getTransformedMethodDescriptions()) {
+                    if (isAdaptivelyRemoved(methodDescription.getFullMethodName())) {
+                        context.resetMethod(classInfo, methodDescription);
+                    }
+                }
                 if (!verifyClass(className, buffer)) {
                     classInfo.setCanTransform(false);
                     buffer = null;
@@ -145,6 +180,11 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     @Override
     public void configurationChanged() {
         if (started.get()) {
+            if (configuration.isAdaptive()) {
+                adaptiveInstrumentation.start();
+            } else {
+                adaptiveInstrumentation.stop();
+            }
             if (configuration.isFilterChanged()) {
                 List<ClassInfo> deltas = context.buildDeltaList();
                 if (deltas != null && !deltas.isEmpty()) {
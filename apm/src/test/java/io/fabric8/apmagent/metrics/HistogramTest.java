@@ -0,0 +1,118 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package io.fabric8.apmagent.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void testSmallValuesHaveTheirOwnBucket() {
+        for (int i = 0; i < Histogram.SUB_BUCKET_COUNT; i++) {
+            assertEquals(i, Histogram.bucketIndex(i));
+            assertEquals(i, Histogram.lowestValue(i));
+            assertEquals(i, Histogram.medianValue(i));
+        }
+        assertEquals(0, Histogram.bucketIndex(-1));
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        long previousLowest = -1;
+        for (int index = 0; index < Histogram.BUCKET_COUNT; index++) {
+            long lowest = Histogram.lowestValue(index);
+            assertTrue("buckets must be increasing at " + index, lowest > previousLowest);
+            assertEquals(index, Histogram.bucketIndex(lowest));
+            if (index > 0) {
+                assertEquals(index - 1, Histogram.bucketIndex(lowest - 1));
+            }
+            long median = Histogram.medianValue(index);
+            assertEquals(index, Histogram.bucketIndex(median));
+            previousLowest = lowest;
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Histogram.MAX_VALUE));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRelativePrecision() {
+        for (long value = 1; value < Histogram.MAX_VALUE; value = value * 3 + 7) {
+            long median = Histogram.medianValue(Histogram.bucketIndex(value));
+            assertTrue("value " + value + " was " + median, Math.abs(median - value) <= value * 0.02);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        HistogramRecorder recorder = new HistogramRecorder();
+        for (long value = 1; value <= 10000; value++) {
+            recorder.record(value * 1000);
+        }
+        Histogram histogram = new Histogram();
+        assertEquals(10000, recorder.mergeInto(histogram));
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMin());
+        assertEquals(10000000, snapshot.getMax());
+        assertEquals(5000500, snapshot.getMean(), 0.001);
+        assertEquals(5000000, snapshot.getValue(0.5), 5000000 * 0.02);
+        assertEquals(9900000, snapshot.getValue(0.99), 9900000 * 0.02);
+        assertEquals(9990000, snapshot.getValue(0.999), 9990000 * 0.02);
+        assertEquals(1000, snapshot.getValue(0.0));
+        assertEquals(10000000, snapshot.getValue(1.0));
+        assertEquals(2886751, snapshot.getStdDev(), 2886751 * 0.02);
+    }
+
+    @Test
+    public void testMergeOnlyAddsNewValues() {
+        HistogramRecorder first = new HistogramRecorder();
+        HistogramRecorder second = new HistogramRecorder();
+        Histogram histogram = new Histogram();
+
+        first.record(100);
+        first.record(200);
+        second.record(300);
+        assertEquals(2, first.mergeInto(histogram));
+        assertEquals(1, second.mergeInto(histogram));
+        assertEquals(0, first.mergeInto(histogram));
+
+        first.record(400);
+        assertEquals(1, first.mergeInto(histogram));
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.getCount());
+        assertEquals(1000, snapshot.getSum());
+        assertEquals(100, snapshot.getMin());
+        assertEquals(400, snapshot.getMax(), 400 * 0.02);
+    }
+
+    @Test
+    public void testRecorderSnapshot() {
+        HistogramRecorder recorder = new HistogramRecorder();
+        assertEquals(0, recorder.snapshot().getCount());
+        recorder.record(-1);
+        recorder.record(10);
+        recorder.record(Long.MAX_VALUE);
+
+        HistogramSnapshot snapshot = recorder.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(10, snapshot.getMin());
+        assertEquals(10, snapshot.getValue(0.5));
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+    }
+}
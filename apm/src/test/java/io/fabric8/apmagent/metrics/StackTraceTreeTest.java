@@ -0,0 +1,57 @@
+/*
+ * Copyright 2005-2014 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package io.fabric8.apmagent.metrics;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StackTraceTreeTest {
+
+    @Test
+    public void testCollapsedStacks() {
+        StackTraceTree tree = new StackTraceTree();
+        tree.addSample(stack("Main.main", "Service.run", "Dao.query"));
+        tree.addSample(stack("Main.main", "Service.run", "Dao.query"));
+        tree.addSample(stack("Main.main", "Service.run"));
+
+        assertEquals(Arrays.asList("Main.main;Service.run 1", "Main.main;Service.run;Dao.query 2"), tree.getCollapsedStacks());
+        assertEquals(3, tree.getSampleCount());
+        assertEquals(3, tree.getNodeCount());
+    }
+
+    @Test
+    public void testTruncatedStacksAreNotMerged() {
+        StackTraceTree tree = new StackTraceTree();
+        tree.addSample(stack("Service.run", "Dao.query"));
+        tree.addTruncatedSample(stack("Service.run", "Dao.query"));
+
+        assertEquals(Arrays.asList("Service.run;Dao.query 1", StackTraceTree.TRUNCATED + ";Service.run;Dao.query 1"), tree.getCollapsedStacks());
+    }
+
+    /**
+     * A stack given from the outermost frame to the innermost one.
+     */
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] stackTrace = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            String frame = frames[i];
+            int dot = frame.lastIndexOf('.');
+            stackTrace[frames.length - 1 - i] = new StackTraceElement(frame.substring(0, dot), frame.substring(dot + 1), null, -1);
+        }
+        return stackTrace;
+    }
+}
@@ -46,6 +46,7 @@ import java.util.regex.Pattern;
 
 import aQute.bnd.osgi.Macro;
 import aQute.bnd.osgi.Processor;
+import io.fabric8.agent.download.DownloadFuture;
 import io.fabric8.agent.download.DownloadManager;
 import io.fabric8.agent.mvn.DictionaryPropertyResolver;
 import io.fabric8.agent.mvn.MavenConfigurationImpl;
@@ -149,10 +150,12 @@ public class DeploymentAgent implements ManagedService {
     private final Properties extensionChecksums;
 
     private final Properties managedLibs;
+    private final FileChecksums fileChecksums = new FileChecksums();
     private final Properties managedEndorsedLibs;
     private final Properties managedExtensionLibs;
     private final Properties managedSysProps;
     private final Properties managedConfigProps;
+    private final ResourceIndex resourceIndex;
     private volatile String provisioningStatus;
     private volatile Throwable provisioningError;
     private volatile Collection<Resource> provisionList;
@@ -169,6 +172,7 @@ public class DeploymentAgent implements ManagedService {
         this.managedLibs  = new Properties(bundleContext.getDataFile("libs.properties"));
         this.managedEndorsedLibs  = new Properties(bundleContext.getDataFile("endorsed.properties"));
         this.managedExtensionLibs  = new Properties(bundleContext.getDataFile("extension.properties"));
+        this.resourceIndex = new ResourceIndex(bundleContext.getDataFile("resource-index"));
         this.downloadExecutor = createDownloadExecutor();
 
         MavenConfigurationImpl config = new MavenConfigurationImpl(new PropertiesPropertyResolver(System.getProperties()), "org.ops4j.pax.url.mvn");
@@ -285,7 +289,7 @@ public class DeploymentAgent implements ManagedService {
         for (String lib : dir.list()) {
             File f = new File(path, lib);
             if (f.exists() && f.isFile()) {
-                props.put(lib, Long.toString(ChecksumUtils.checksum(new FileInputStream(f))));
+                props.put(lib, Long.toString(fileChecksums.getChecksum(f)));
             }
         }
        props.save();
@@ -422,6 +426,13 @@ public class DeploymentAgent implements ManagedService {
         Set<String> configPropsToRemove = new HashSet<String>(managedConfigProps.keySet());
         Properties configProps = new Properties(new File(KARAF_BASE + File.separator + "etc" + File.separator + "config.properties"));
         Properties systemProps = new Properties(new File(KARAF_BASE + File.separator + "etc" + File.separator + "system.properties"));
+        // start all library downloads at once, they are processed in order below
+        Map<String, DownloadFuture> libDownloads = new HashMap<String, DownloadFuture>();
+        for (String key : properties.keySet()) {
+            if (key.startsWith("lib.") || key.startsWith("endorsed.") || key.startsWith("extension.")) {
+                libDownloads.put(key, manager.download(properties.get(key)));
+            }
+        }
         for (String key : properties.keySet()) {
             if (key.equals("framework")) {
                 String url = properties.get(key);
@@ -445,10 +456,9 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("lib.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = libDownloads.get(key).await().getFile();
                 String libName = libFile.getName();
-                Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
+                long checksum = fileChecksums.getChecksum(libFile);
                 managedLibs.put(libName, "true");
                 libsToRemove.remove(libName);
                 if (!Long.toString(checksum).equals(libChecksums.getProperty(libName))) {
@@ -456,10 +466,9 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("endorsed.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = libDownloads.get(key).await().getFile();
                 String libName = libFile.getName();
-                Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
+                long checksum = fileChecksums.getChecksum(libFile);
                 managedEndorsedLibs.put(libName, "true");
                 endorsedLibsToRemove.remove(libName);
                 if (!Long.toString(checksum).equals(endorsedChecksums.getProperty(libName))) {
@@ -467,10 +476,9 @@ public class DeploymentAgent implements ManagedService {
                     restart = true;
                 }
             } else if (key.startsWith("extension.")) {
-                String value = properties.get(key);
-                File libFile = manager.download(value).await().getFile();
+                File libFile = libDownloads.get(key).await().getFile();
                 String libName = libFile.getName();
-                Long checksum = ChecksumUtils.checksum(new FileInputStream(libFile));
+                long checksum = fileChecksums.getChecksum(libFile);
                 managedExtensionLibs.put(libName, "true");
                 extensionLibsToRemove.remove(libName);
                 if (!Long.toString(checksum).equals(extensionChecksums.getProperty(libName))) {
@@ -556,6 +564,7 @@ public class DeploymentAgent implements ManagedService {
                 repositories.values(),
                 urlHandlersTimeout
         );
+        builder.setResourceIndex(resourceIndex);
         updateStatus("downloading", null);
         Map<String, Resource> downloadedResources = builder.download(
                 getPrefixedProperties(properties, "feature."),
@@ -17,6 +17,9 @@ package io.fabric8.agent;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -115,6 +118,8 @@ public class DeploymentBuilder {
 
     Map<String, Map<VersionRange, Map<String, String>>> metadata;
 
+    ResourceIndex index;
+
     public DeploymentBuilder(DownloadManager manager,
                              FabResolverFactory fabResolverFactory,
                              Collection<Repository> repositories,
@@ -134,6 +139,13 @@ public class DeploymentBuilder {
         return providers;
     }
 
+    /**
+     * Sets the index used to avoid reading manifests, parsing headers and resolving again when nothing changed.
+     */
+    public void setResourceIndex(ResourceIndex index) {
+        this.index = index;
+    }
+
     public Map<String, Resource> download(Set<String> features,
                          Set<String> bundles,
                          Set<String> fabs,
@@ -168,6 +180,9 @@ public class DeploymentBuilder {
         }
         // Wait for all resources to be created
         downloader.await();
+        if (index != null) {
+            index.save();
+        }
         // Do override replacement
         for (String override : overrides) {
             Resource over = resources.get(extractUrl(override));
@@ -238,6 +253,17 @@ public class DeploymentBuilder {
                 new AggregateRepository(repos),
                 resolveOptionalImports);
 
+        // external repositories may change at any time, so only resolutions against the local resources are cached
+        String resolutionKey = null;
+        if (index != null && resourceRepos.isEmpty()) {
+            resolutionKey = getResolutionKey(resolveOptionalImports);
+            Collection<Resource> deploy = getCachedResolution(resolutionKey);
+            if (deploy != null) {
+                LOGGER.debug("Using cached resolution {}", resolutionKey);
+                return deploy;
+            }
+        }
+
         Map<Resource, List<Wire>> wiring = resolver.resolve(context);
         Map<String, Resource> deploy = new TreeMap<String, Resource>();
         for (Resource res : wiring.keySet()) {
@@ -246,9 +272,77 @@ public class DeploymentBuilder {
                 deploy.put(uri, res);
             }
         }
+        if (resolutionKey != null) {
+            index.putResolution(resolutionKey, new ArrayList<String>(deploy.keySet()));
+        }
+        return deploy.values();
+    }
+
+    private Collection<Resource> getCachedResolution(String key) {
+        List<String> uris = index.getResolution(key);
+        if (uris == null) {
+            return null;
+        }
+        Map<String, Resource> resourcesByUri = new HashMap<String, Resource>();
+        for (Resource res : resources.values()) {
+            String uri = getUri(res);
+            if (uri != null) {
+                resourcesByUri.put(uri, res);
+            }
+        }
+        Map<String, Resource> deploy = new TreeMap<String, Resource>();
+        for (String uri : uris) {
+            Resource res = resourcesByUri.get(uri);
+            if (res == null) {
+                return null;
+            }
+            deploy.put(uri, res);
+        }
         return deploy.values();
     }
 
+    /**
+     * Computes a digest of everything the resolver looks at: the requirements and the capabilities and
+     * requirements of all available resources, including the system bundle.
+     */
+    private String getResolutionKey(boolean resolveOptionalImports) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, "resolveOptionalImports=" + resolveOptionalImports);
+        update(digest, requirements);
+        for (Map.Entry<String, Resource> entry : new TreeMap<String, Resource>(resources).entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest digest, Resource resource) {
+        for (Capability cap : resource.getCapabilities(null)) {
+            update(digest, "c;" + cap.getNamespace() + ";" + new TreeMap<String, Object>(cap.getAttributes()) + ";" + new TreeMap<String, String>(cap.getDirectives()));
+        }
+        for (Requirement req : resource.getRequirements(null)) {
+            update(digest, "r;" + req.getNamespace() + ";" + new TreeMap<String, Object>(req.getAttributes()) + ";" + new TreeMap<String, String>(req.getDirectives()));
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(value.getBytes("UTF-8"));
+            digest.update((byte) '\n');
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public void requireFeature(String feature, ResourceImpl resource) throws IOException {
         // Find name and version range
         String[] split = feature.split("/");
@@ -462,28 +556,33 @@ public class DeploymentBuilder {
         Resource resource = resources.get(location);
         if (resource == null) {
             Attributes attributes = getAttributes(location, file);
-            resource = manageResource(location, attributes, new StreamProvider.File(file));
+            // plain bundles are never modified once built, so they can be shared across deployments
+            resource = manageResource(location, attributes, new StreamProvider.File(file), index != null);
         }
         return resource;
     }
 
     private Resource manageResource(String location, Attributes attributes, StreamProvider provider) throws Exception {
+        return manageResource(location, attributes, provider, false);
+    }
+
+    private Resource manageResource(String location, Attributes attributes, StreamProvider provider, boolean shared) throws Exception {
         Resource resource = resources.get(location);
         if (resource == null) {
-            resource = createResource(location, attributes);
+            resource = createResource(location, attributes, shared);
             resources.put(location, resource);
             providers.put(location, provider);
         }
         return resource;
     }
 
-    private Resource createResource(String uri, Attributes attributes) throws Exception {
+    private Resource createResource(String uri, Attributes attributes, boolean shared) throws Exception {
         Map<String, String> headers = new HashMap<String, String>();
         for (Map.Entry attr : attributes.entrySet()) {
             headers.put(attr.getKey().toString(), attr.getValue().toString());
         }
         try {
-            return ResourceBuilder.build(uri, headers);
+            return shared ? index.getResource(uri, headers) : ResourceBuilder.build(uri, headers);
         } catch (BundleException e) {
             throw new Exception("Unable to create resource for bundle " + uri, e);
         }
@@ -491,13 +590,21 @@ public class DeploymentBuilder {
 
     protected Attributes getAttributes(String uri, File file) throws Exception {
         Manifest man = null;
-        try {
-            man = Manifests.getManifest(file);
-        } catch (Exception e) {
-            if (file == null) {
-                throw new IOException("Error - file must not be null. Source: \"" + uri + "\"", e);
-            } else {
-                throw new IOException("Error opening file \"" + file.getCanonicalPath() + "\". Source: \"" + uri + "\", size: " + file.length(), e);
+        if (index != null && file != null) {
+            man = index.getManifest(file);
+        }
+        if (man == null) {
+            try {
+                man = Manifests.getManifest(file);
+            } catch (Exception e) {
+                if (file == null) {
+                    throw new IOException("Error - file must not be null. Source: \"" + uri + "\"", e);
+                } else {
+                    throw new IOException("Error opening file \"" + file.getCanonicalPath() + "\". Source: \"" + uri + "\", size: " + file.length(), e);
+                }
+            }
+            if (index != null && man != null) {
+                index.putManifest(file, man);
             }
         }
         if (man == null) {
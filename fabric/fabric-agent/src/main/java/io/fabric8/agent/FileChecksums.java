@@ -0,0 +1,110 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.fabric8.common.util.ChecksumUtils;
+import io.fabric8.common.util.Closeables;
+
+/**
+ * A cache of file checksums, a file is only read again once its size or modification time changed.
+ */
+final class FileChecksums {
+
+    private final ConcurrentMap<String, FileChecksum> checksums = new ConcurrentHashMap<String, FileChecksum>();
+
+    /**
+     * Get the checksum of the given file.
+     */
+    long getChecksum(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        FileChecksum cached = checksums.get(path);
+        if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.checksum;
+        }
+        InputStream is = new FileInputStream(file);
+        try {
+            long checksum = ChecksumUtils.checksum(is);
+            checksums.put(path, new FileChecksum(length, lastModified, checksum));
+            return checksum;
+        } finally {
+            Closeables.closeQuitely(is);
+        }
+    }
+
+    /**
+     * Adds the checksums stored by {@link #store(Map)}, the entries that cannot be parsed are ignored.
+     */
+    void load(Map<String, String> stored) {
+        for (Map.Entry<String, String> entry : stored.entrySet()) {
+            FileChecksum checksum = FileChecksum.parse(entry.getValue());
+            if (checksum != null) {
+                checksums.put(entry.getKey(), checksum);
+            }
+        }
+    }
+
+    /**
+     * Stores the checksums of the files which still exist, the others are dropped.
+     */
+    void store(Map<String, String> stored) {
+        for (Map.Entry<String, FileChecksum> entry : checksums.entrySet()) {
+            if (new File(entry.getKey()).isFile()) {
+                stored.put(entry.getKey(), entry.getValue().toString());
+            } else {
+                checksums.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static final class FileChecksum {
+        private final long length;
+        private final long lastModified;
+        private final long checksum;
+
+        private FileChecksum(long length, long lastModified, long checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        static FileChecksum parse(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new FileChecksum(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return length + "," + lastModified + "," + checksum;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Manifest;
+
+import io.fabric8.agent.resolver.ResourceBuilder;
+import io.fabric8.common.util.Closeables;
+import org.apache.felix.utils.properties.Properties;
+import org.osgi.framework.BundleException;
+import org.osgi.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An on-disk index of the metadata of the resources known to the agent.
+ *
+ * <ul>
+ *     <li>The manifest of each artifact is stored under the checksum of the artifact, so a jar is only opened
+ *     the first time its content is seen. Manifests are loaded from the index when they are asked for.</li>
+ *     <li>Resources parsed from the manifest headers are kept in memory for as long as the headers do not change.</li>
+ *     <li>Resolutions are stored under a key that identifies all the inputs of the resolver.</li>
+ * </ul>
+ */
+public class ResourceIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourceIndex.class);
+
+    private static final String CHECKSUMS = "checksums.properties";
+    private static final String MANIFESTS = "manifests";
+    private static final String RESOLUTIONS = "resolutions";
+    private static final int MAX_RESOURCES = 2048;
+    private static final int MAX_RESOLUTIONS = 16;
+
+    private final File manifests;
+    private final File resolutions;
+    private final Properties checksums;
+    private final FileChecksums fileChecksums = new FileChecksums();
+    private final Map<String, ParsedResource> parsedResources = new LinkedHashMap<String, ParsedResource>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedResource> eldest) {
+            return size() > MAX_RESOURCES;
+        }
+    };
+
+    public ResourceIndex(File dir) throws IOException {
+        this.manifests = new File(dir, MANIFESTS);
+        this.resolutions = new File(dir, RESOLUTIONS);
+        if (!manifests.isDirectory() && !manifests.mkdirs()) {
+            throw new IOException("Failed to create resource index directory at:" + manifests.getAbsolutePath());
+        }
+        resolutions.mkdirs();
+        this.checksums = new Properties(new File(dir, CHECKSUMS));
+        fileChecksums.load(checksums);
+    }
+
+    /**
+     * Get the manifest of the given artifact from the index.
+     *
+     * @return the manifest or null if the content of the file has not been indexed yet
+     */
+    public Manifest getManifest(File file) throws IOException {
+        File indexed = getManifestFile(file);
+        if (!indexed.isFile()) {
+            return null;
+        }
+        InputStream is = new FileInputStream(indexed);
+        try {
+            return new Manifest(is);
+        } catch (IOException e) {
+            LOGGER.debug("Discarding unreadable index entry {}", indexed, e);
+            indexed.delete();
+            return null;
+        } finally {
+            Closeables.closeQuitely(is);
+        }
+    }
+
+    /**
+     * Adds the manifest of the given artifact to the index.
+     */
+    public void putManifest(File file, Manifest manifest) throws IOException {
+        File indexed = getManifestFile(file);
+        // concurrent writers of the same manifest each get their own file, the last rename wins
+        File tmp = File.createTempFile(indexed.getName(), ".tmp", manifests);
+        OutputStream os = new FileOutputStream(tmp);
+        try {
+            manifest.write(os);
+            os.close();
+        } catch (IOException e) {
+            Closeables.closeQuitely(os);
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(indexed)) {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Get the resource for the given headers, it is only parsed again when the headers changed.
+     */
+    public Resource getResource(String uri, Map<String, String> headers) throws BundleException {
+        synchronized (parsedResources) {
+            ParsedResource parsed = parsedResources.get(uri);
+            if (parsed != null && parsed.headers.equals(headers)) {
+                return parsed.resource;
+            }
+        }
+        Resource resource = ResourceBuilder.build(uri, headers);
+        synchronized (parsedResources) {
+            parsedResources.put(uri, new ParsedResource(new HashMap<String, String>(headers), resource));
+        }
+        return resource;
+    }
+
+    /**
+     * Get the uris of the resources of a previous resolution.
+     *
+     * @return the uris or null if there is no resolution with the given key
+     */
+    public List<String> getResolution(String key) {
+        File file = new File(resolutions, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        List<String> uris = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0) {
+                    uris.add(line);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read resolution {}", key, e);
+            return null;
+        } finally {
+            Closeables.closeQuitely(reader);
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return uris;
+    }
+
+    public void putResolution(String key, List<String> uris) {
+        File file = new File(resolutions, key);
+        File tmp = null;
+        Writer writer = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", resolutions);
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            for (String uri : uris) {
+                writer.write(uri);
+                writer.write('\n');
+            }
+            writer.close();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write resolution {}", key, e);
+            Closeables.closeQuitely(writer);
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        // only keep the most recently used resolutions
+        File[] files = resolutions.listFiles();
+        if (files != null && files.length > MAX_RESOLUTIONS) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    long m1 = f1.lastModified();
+                    long m2 = f2.lastModified();
+                    return m1 < m2 ? -1 : m1 > m2 ? 1 : 0;
+                }
+            });
+            for (int i = 0; i < files.length - MAX_RESOLUTIONS; i++) {
+                files[i].delete();
+            }
+        }
+    }
+
+    /**
+     * Saves the checksums of the indexed files.
+     */
+    public synchronized void save() throws IOException {
+        checksums.clear();
+        fileChecksums.store(checksums);
+        checksums.save();
+    }
+
+    private File getManifestFile(File file) throws IOException {
+        return new File(manifests, Long.toHexString(fileChecksums.getChecksum(file)) + "-" + Long.toHexString(file.length()) + ".mf");
+    }
+
+    private static final class ParsedResource {
+        private final Map<String, String> headers;
+        private final Resource resource;
+
+        private ParsedResource(Map<String, String> headers, Resource resource) {
+            this.headers = headers;
+            this.resource = resource;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.download;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A store of downloaded artifacts keyed by the SHA-1 of their content.
+ *
+ * Artifacts with the same content, e.g. the same jar released under several versions or mirrored by several
+ * repositories, are only downloaded once. The store holds hard links to the files in the agent's maven
+ * repository where possible, so it does not take extra space.
+ */
+final class ContentStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentStore.class);
+
+    private static final Pattern SHA1_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
+    private final File root;
+
+    ContentStore(File root) {
+        this.root = root;
+    }
+
+    /**
+     * Puts the content with the given SHA-1 at the target location.
+     *
+     * @return false if the store does not hold the content
+     */
+    boolean restore(String sha1, File target) throws IOException {
+        File blob = getBlob(sha1);
+        if (!blob.isFile()) {
+            return false;
+        }
+        if (!sha1.equals(sha1(blob))) {
+            // the linked file has been modified in place
+            LOGGER.debug("Discarding modified content {}", sha1);
+            blob.delete();
+            return false;
+        }
+        File parent = target.getParentFile();
+        parent.mkdirs();
+        File tmp = File.createTempFile("fabric-agent-", null, parent);
+        tmp.delete();
+        link(blob, tmp);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.debug("Restored {} from content {}", target, sha1);
+        return true;
+    }
+
+    /**
+     * Adds the file to the store under the given SHA-1 of its content.
+     */
+    void add(String sha1, File file) {
+        File blob = getBlob(sha1);
+        if (blob.isFile()) {
+            return;
+        }
+        try {
+            blob.getParentFile().mkdirs();
+            link(file, blob);
+        } catch (FileAlreadyExistsException e) {
+            // added concurrently
+        } catch (IOException e) {
+            LOGGER.debug("Unable to add {} to the content store", file, e);
+        }
+    }
+
+    private File getBlob(String sha1) {
+        return new File(new File(root, sha1.substring(0, 2)), sha1.substring(2));
+    }
+
+    private static void link(File existing, File link) throws IOException {
+        try {
+            Files.createLink(link.toPath(), existing.toPath());
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException e) {
+            // no hard links on this platform
+            Files.copy(existing.toPath(), link.toPath());
+        } catch (IOException e) {
+            // no hard links across file stores
+            Files.copy(existing.toPath(), link.toPath());
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a maven <code>.sha1</code> file, which holds the checksum optionally followed by the file name.
+     *
+     * @return the checksum or null if the content is not a valid checksum
+     */
+    static String readSha1(InputStream is) throws IOException {
+        try {
+            String line = new BufferedReader(new InputStreamReader(is, "US-ASCII")).readLine();
+            if (line == null) {
+                return null;
+            }
+            line = line.trim();
+            int space = line.indexOf(' ');
+            String sha1 = (space > 0 ? line.substring(0, space) : line).toLowerCase();
+            return SHA1_PATTERN.matcher(sha1).matches() ? sha1 : null;
+        } finally {
+            is.close();
+        }
+    }
+
+    static String sha1(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, len);
+            }
+        } finally {
+            is.close();
+        }
+        return toHex(digest.digest());
+    }
+}
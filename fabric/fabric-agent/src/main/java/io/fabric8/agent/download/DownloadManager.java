@@ -18,6 +18,8 @@ package io.fabric8.agent.download;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 
 import io.fabric8.agent.mvn.MavenConfiguration;
@@ -40,9 +42,15 @@ public class DownloadManager {
     private final MavenConfiguration configuration;
     private final MavenRepositoryURL cache;
     private final MavenRepositoryURL system;
+    private final ContentStore store;
     private boolean downloadFilesFromProfile = true;
     private File tmpPath;
 
+    /**
+     * Downloads in progress, requests for the same url share the same download.
+     */
+    private final ConcurrentMap<String, DownloadFuture> downloads = new ConcurrentHashMap<String, DownloadFuture>();
+
     public DownloadManager(MavenConfiguration configuration) throws MalformedURLException {
         this(configuration, null);
     }
@@ -54,6 +62,7 @@ public class DownloadManager {
         String karafData = System.getProperty("karaf.data", karafRoot + "/data");
         this.cache = new MavenRepositoryURL("file:" + karafData + File.separator + "maven" + File.separator + "agent" + "@snapshots");
         this.system = new MavenRepositoryURL("file:" + karafRoot + File.separator + "system" + "@snapshots");
+        this.store = new ContentStore(new File(karafData + File.separator + "maven" + File.separator + "agent-sha1"));
         this.tmpPath = new File(karafData, "tmp");
     }
 
@@ -74,6 +83,23 @@ public class DownloadManager {
     }
 
     public DownloadFuture download(final String url) throws MalformedURLException {
+        synchronized (downloads) {
+            DownloadFuture future = downloads.get(url);
+            if (future == null) {
+                future = doDownload(url);
+                downloads.put(url, future);
+                future.addListener(new FutureListener<DownloadFuture>() {
+                    @Override
+                    public void operationComplete(DownloadFuture future) {
+                        downloads.remove(url, future);
+                    }
+                });
+            }
+            return future;
+        }
+    }
+
+    private DownloadFuture doDownload(final String url) throws MalformedURLException {
         String mvnUrl = stripUrl(url);
 
         if (mvnUrl.startsWith("mvn:")) {
@@ -85,7 +111,7 @@ public class DownloadManager {
 //                mvnUrl = removeInlinedMavenRepositoryUrl(mvnUrl);
 //            }
 
-            MavenDownloadTask task = new MavenDownloadTask(mvnUrl, cache, system, inlined, configuration, executor);
+            MavenDownloadTask task = new MavenDownloadTask(mvnUrl, cache, system, inlined, configuration, executor, store);
             executor.submit(task);
             if (!mvnUrl.equals(url)) {
                 final DummyDownloadTask download = new DummyDownloadTask(url, executor);
@@ -22,13 +22,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 import javax.xml.parsers.ParserConfigurationException;
 
 import io.fabric8.agent.mvn.DownloadableArtifact;
@@ -60,17 +65,30 @@ public class MavenDownloadTask extends AbstractDownloadTask implements Runnable
      */
     private static final String Ix4 = "    ";
 
+    private static final String CONNECTIONS_PER_REPOSITORY = "io.fabric8.agent.download.connectionsPerRepository";
+    private static final int DEFAULT_CONNECTIONS_PER_REPOSITORY = 4;
+    /**
+     * Limits the concurrent downloads from each remote repository.
+     */
+    private static final ConcurrentMap<String, Semaphore> REPOSITORY_CONNECTIONS = new ConcurrentHashMap<String, Semaphore>();
+
     private final MavenRepositoryURL cache;
     private final MavenRepositoryURL system;
     private final MavenRepositoryURL inlined;
     private final MavenConfiguration configuration;
+    private final ContentStore store;
 
     public MavenDownloadTask(String url, MavenRepositoryURL cache, MavenRepositoryURL system, MavenRepositoryURL inlined, MavenConfiguration configuration, ExecutorService executor) {
+        this(url, cache, system, inlined, configuration, executor, null);
+    }
+
+    MavenDownloadTask(String url, MavenRepositoryURL cache, MavenRepositoryURL system, MavenRepositoryURL inlined, MavenConfiguration configuration, ExecutorService executor, ContentStore store) {
         super(url, executor);
         this.cache = cache;
         this.system = system;
         this.inlined = inlined;
         this.configuration = configuration;
+        this.store = store;
     }
 
     protected File download() throws Exception {
@@ -95,21 +113,34 @@ public class MavenDownloadTask extends AbstractDownloadTask implements Runnable
         }
         for (DownloadableArtifact artifact : downloadables) {
             LOG.trace("Downloading [" + artifact + "]");
+            Semaphore connections = getRepositoryConnections(artifact.getArtifactURL());
+            if (connections != null) {
+                connections.acquire();
+            }
             try {
                 configuration.enableProxy(artifact.getArtifactURL());
                 String repository = cache.getFile().getAbsolutePath();
                 if (!repository.endsWith(File.separator)) {
                     repository = repository + File.separator;
                 }
-                InputStream is = artifact.getInputStream();
                 File file = new File(repository + parser.getArtifactPath());
+                String sha1 = null;
+                if (store != null && connections != null) {
+                    // the content may already be known under other coordinates
+                    sha1 = readSha1(artifact);
+                    if (sha1 != null && store.restore(sha1, file)) {
+                        return file;
+                    }
+                }
+                InputStream is = artifact.getInputStream();
                 file.getParentFile().mkdirs();
                 if (!file.getParentFile().isDirectory()) {
                     throw new IOException("Unable to create directory " + file.getParentFile().toString());
                 }
                 File tmp = File.createTempFile("fabric-agent-", null, file.getParentFile());
                 OutputStream os = new FileOutputStream(tmp);
-                copy(is, os);
+                MessageDigest digest = ContentStore.newDigest();
+                copy(new DigestInputStream(is, digest), os);
                 is.close();
                 os.close();
                 if (file.exists() && !file.delete()) {
@@ -118,17 +149,56 @@ public class MavenDownloadTask extends AbstractDownloadTask implements Runnable
                 if (!tmp.renameTo(file)) {
                     throw new IOException("Unable to rename file " + tmp.toString() + " to " + file.toString());
                 }
+                if (store != null) {
+                    String actualSha1 = ContentStore.toHex(digest.digest());
+                    if (sha1 != null && !sha1.equals(actualSha1)) {
+                        LOG.warn("Checksum mismatch for [" + artifact + "]: expected " + sha1 + " but was " + actualSha1);
+                    }
+                    store.add(actualSha1, file);
+                }
                 return file;
             } catch (IOException ignore) {
                 // go on with next repository
                 LOG.debug(Ix2 + "Could not download [" + artifact + "]");
                 LOG.trace(Ix2 + "Reason [" + ignore.getClass().getName() + ": " + ignore.getMessage() + "]");
+            } finally {
+                if (connections != null) {
+                    connections.release();
+                }
             }
         }
         // no artifact found
         throw new IOException("URL [" + url + "] could not be resolved.");
     }
 
+    private static String readSha1(DownloadableArtifact artifact) {
+        try {
+            return ContentStore.readSha1(artifact.getSha1InputStream());
+        } catch (IOException e) {
+            LOG.trace(Ix2 + "No checksum for [" + artifact + "]");
+            return null;
+        }
+    }
+
+    /**
+     * The connections to the repository of a remote url, null for local urls.
+     */
+    private static Semaphore getRepositoryConnections(URL url) {
+        if ("file".equals(url.getProtocol())) {
+            return null;
+        }
+        String repository = url.getProtocol() + "://" + url.getAuthority();
+        Semaphore connections = REPOSITORY_CONNECTIONS.get(repository);
+        if (connections == null) {
+            int permits = Integer.getInteger(CONNECTIONS_PER_REPOSITORY, DEFAULT_CONNECTIONS_PER_REPOSITORY);
+            Semaphore existing = REPOSITORY_CONNECTIONS.putIfAbsent(repository, connections = new Semaphore(permits));
+            if (existing != null) {
+                connections = existing;
+            }
+        }
+        return connections;
+    }
+
     /**
      * Searches all available repositories for possible artifacts to download. The returned set of downloadable
      * artifacts (never null, but maybe empty) will be sorted descending by version of the artifact and by positon of
@@ -96,6 +96,18 @@ public class DownloadableArtifact {
         return URLUtils.prepareInputStream(m_artifactURL, !m_checkCertificate);
     }
 
+    /**
+     * Return the input stream to the SHA-1 checksum of the artifact.
+     *
+     * @return prepared input stream
+     * @throws IOException re-thrown
+     * @see URLUtils#prepareInputStream(java.net.URL, boolean)
+     */
+    public InputStream getSha1InputStream()
+            throws IOException {
+        return URLUtils.prepareInputStream(new URL(m_artifactURL.toExternalForm() + ".sha1"), !m_checkCertificate);
+    }
+
     /**
      * Getter.
      *
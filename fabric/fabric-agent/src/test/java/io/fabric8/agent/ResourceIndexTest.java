@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import io.fabric8.common.util.Files;
+import org.osgi.resource.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResourceIndexTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        String basedir = System.getProperty("basedir", ".");
+        dir = new File(basedir + File.separator + "target" + File.separator + "resource-index-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.recursiveDelete(dir);
+    }
+
+    @Test
+    public void testManifestIsIndexedByContent() throws Exception {
+        File jar = createBundle(new File(dir, "a.jar"), "bundle.a");
+        File copy = new File(dir, "b.jar");
+        java.nio.file.Files.copy(jar.toPath(), copy.toPath());
+
+        ResourceIndex index = new ResourceIndex(new File(dir, "index"));
+        assertNull(index.getManifest(jar));
+        DeploymentBuilder builder = new DeploymentBuilder(null, null, null, 0l);
+        builder.setResourceIndex(index);
+        assertEquals("bundle.a", builder.getAttributes("mvn:a/a/1.0", jar).getValue("Bundle-SymbolicName"));
+        index.save();
+
+        // the same content under another path and after a restart
+        index = new ResourceIndex(new File(dir, "index"));
+        assertEquals("bundle.a", index.getManifest(copy).getMainAttributes().getValue("Bundle-SymbolicName"));
+    }
+
+    @Test
+    public void testResourceIsParsedOnce() throws Exception {
+        ResourceIndex index = new ResourceIndex(new File(dir, "index"));
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Bundle-ManifestVersion", "2");
+        headers.put("Bundle-SymbolicName", "bundle.a");
+        headers.put("Bundle-Version", "1.0");
+        Resource resource = index.getResource("mvn:a/a/1.0", headers);
+        assertSame(resource, index.getResource("mvn:a/a/1.0", new HashMap<String, String>(headers)));
+        headers.put("Bundle-Version", "1.1");
+        assertNotSame(resource, index.getResource("mvn:a/a/1.0", headers));
+    }
+
+    @Test
+    public void testResolution() throws Exception {
+        ResourceIndex index = new ResourceIndex(new File(dir, "index"));
+        assertNull(index.getResolution("key"));
+        index.putResolution("key", Arrays.asList("mvn:a/a/1.0", "mvn:b/b/1.0"));
+        assertEquals(Arrays.asList("mvn:a/a/1.0", "mvn:b/b/1.0"), new ResourceIndex(new File(dir, "index")).getResolution("key"));
+    }
+
+    private static File createBundle(File file, String symbolicName) throws Exception {
+        file.getParentFile().mkdirs();
+        Manifest m = new Manifest();
+        m.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        m.getMainAttributes().putValue("Bundle-SymbolicName", symbolicName);
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(file), m);
+        jar.finish();
+        jar.close();
+        return file;
+    }
+}
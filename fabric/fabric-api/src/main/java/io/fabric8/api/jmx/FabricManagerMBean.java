@@ -96,6 +96,11 @@ public interface FabricManagerMBean {
 
     List<Map<String, Object>> containers(List<String> fields, List<String> profileFields);
 
+    /**
+     * Returns the given fields of all containers as a JSON array
+     */
+    String containersAsJson(List<String> fields);
+
     String containerMetadataType(String id);
 
     String containerCreateOptionsType(String id);
@@ -112,6 +117,8 @@ public interface FabricManagerMBean {
 
     List<Map<String, Object>> containersForProfile(String versionId, String profileId, List<String> fields);
 
+    String containersForProfileAsJson(String versionId, String profileId, List<String> fields);
+
     void setContainerProperty(String containerId, String property, Object value);
 
     /**
@@ -124,6 +131,8 @@ public interface FabricManagerMBean {
 
     List<Map<String, Object>> containersForVersion(String versionId, List<String> fields);
 
+    String containersForVersionAsJson(String versionId, List<String> fields);
+
 /*
     ContainerTemplate getContainerTemplate(String containerId, String jmxUser, String jmxPassword);
 */
@@ -20,10 +20,14 @@ import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
+import org.apache.camel.api.management.ManagedAttribute;
+import org.apache.camel.api.management.ManagedOperation;
+import org.apache.camel.api.management.ManagedResource;
 import org.apache.camel.impl.DefaultEndpoint;
 import org.apache.camel.impl.DefaultProducer;
 import org.apache.camel.impl.ProducerCache;
 import org.apache.camel.processor.loadbalancer.LoadBalancer;
+import org.apache.camel.util.ServiceHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import io.fabric8.groups.GroupListener;
@@ -33,13 +37,18 @@ import io.fabric8.zookeeper.utils.ZooKeeperUtils;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Creates an endpoint which uses FABRIC to map a logical name to physical endpoint names
+ *
+ * The processors of the members are replaced as a whole on group changes, so sending an exchange never waits
+ * for a group event. Each member sends through a producer of its own when the producer can be shared.
+ * With <code>healthAware=true</code> the exchanges are balanced by a {@link HealthAwareLoadBalancer}, whose
+ * statistics can be dumped over JMX.
  */
+@ManagedResource(description = "Managed FabricLocatorEndpoint")
 public class FabricLocatorEndpoint extends DefaultEndpoint implements GroupListener<CamelNodeState> {
     private static final transient Log LOG = LogFactory.getLog(FabricLocatorEndpoint.class);
 
@@ -48,7 +57,8 @@ public class FabricLocatorEndpoint extends DefaultEndpoint implements GroupListe
 
     private LoadBalancerFactory loadBalancerFactory;
     private LoadBalancer loadBalancer;
-    private final Map<String, Processor> processors = new HashMap<String, Processor>();
+    private boolean healthAware;
+    private volatile Map<String, Processor> processors = Collections.emptyMap();
 
 
     public FabricLocatorEndpoint(String uri, FabricComponent component, String singletonId) {
@@ -68,34 +78,32 @@ public class FabricLocatorEndpoint extends DefaultEndpoint implements GroupListe
         } else {
             members = group.members();
         }
-        //Find what has been removed.
-        Set<String> removed = new LinkedHashSet<String>();
-
-        for (Map.Entry<String, Processor> entry : processors.entrySet()) {
-            String key = entry.getKey();
-            if (!members.containsKey(key)) {
-                removed.add(key);
-            }
-        }
+        Map<String, Processor> current = processors;
+        Map<String, Processor> updated = new HashMap<String, Processor>();
 
-        //Add existing processors
+        //Add new processors and keep the existing ones.
         for (Map.Entry<String, CamelNodeState> entry : members.entrySet()) {
-            try {
-                String key = entry.getKey();
-                if (!processors.containsKey(key)) {
-                    Processor p = getProcessor(entry.getValue().consumer);
-                    processors.put(key, p);
+            String key = entry.getKey();
+            Processor p = current.get(key);
+            if (p == null) {
+                try {
+                    p = getProcessor(entry.getValue().consumer);
                     loadBalancer.addProcessor(p);
+                } catch (URISyntaxException e) {
+                    LOG.warn("Unable to add endpoint " + entry.getValue().consumer, e);
+                    continue;
                 }
-            } catch (URISyntaxException e) {
-                LOG.warn("Unable to add endpoint " + entry.getValue().consumer, e);
             }
+            updated.put(key, p);
         }
+        processors = updated;
 
-        //Update the list by removing old and adding new.
-        for (String key : removed) {
-            Processor p = processors.remove(key);
-            loadBalancer.removeProcessor(p);
+        //Remove the processors of the members that are gone.
+        for (Map.Entry<String, Processor> entry : current.entrySet()) {
+            if (!updated.containsKey(entry.getKey())) {
+                loadBalancer.removeProcessor(entry.getValue());
+                stopProcessor(entry.getValue());
+            }
         }
     }
 
@@ -130,29 +138,29 @@ public class FabricLocatorEndpoint extends DefaultEndpoint implements GroupListe
     public void stop() throws Exception {
         super.stop();
         group.close();
+        synchronized (this) {
+            for (Processor p : processors.values()) {
+                loadBalancer.removeProcessor(p);
+                stopProcessor(p);
+            }
+            processors = Collections.emptyMap();
+        }
     }
 
     public Processor getProcessor(String uri) throws URISyntaxException {
         uri = ZooKeeperUtils.getSubstitutedData(component.getCurator(), uri);
         LOG.info("Creating endpoint for " + uri);
-        final Endpoint endpoint = getCamelContext().getEndpoint(uri);
-        return new Processor() {
-
-            public void process(Exchange exchange) throws Exception {
-                ProducerCache producerCache = component.getProducerCache();
-                Producer producer = producerCache.acquireProducer(endpoint);
-                try {
-                    producer.process(exchange);
-                } finally {
-                    producerCache.releaseProducer(endpoint, producer);
-                }
-            }
+        return new MemberProcessor(getCamelContext().getEndpoint(uri));
+    }
 
-            @Override
-            public String toString() {
-                return "Producer for " + endpoint;
+    private void stopProcessor(Processor p) {
+        try {
+            if (p instanceof MemberProcessor) {
+                ((MemberProcessor) p).close();
             }
-        };
+        } catch (Exception e) {
+            LOG.debug("Unable to stop " + p, e);
+        }
     }
 
     // Properties
@@ -174,7 +182,104 @@ public class FabricLocatorEndpoint extends DefaultEndpoint implements GroupListe
         this.loadBalancerFactory = loadBalancerFactory;
     }
 
+    @ManagedAttribute(description = "Whether the exchanges are balanced by the latency and failures of the members")
+    public boolean isHealthAware() {
+        return healthAware;
+    }
+
+    /**
+     * Balances the exchanges by the latency and failures of the members instead of the configured factory.
+     */
+    public void setHealthAware(boolean healthAware) {
+        this.healthAware = healthAware;
+    }
+
+    /**
+     * The routing statistics of the members or an empty list if the load balancer does not keep any.
+     */
+    public List<HealthAwareLoadBalancer.MemberStats> getMemberStats() {
+        if (loadBalancer instanceof HealthAwareLoadBalancer) {
+            return ((HealthAwareLoadBalancer) loadBalancer).getMemberStats();
+        }
+        return Collections.emptyList();
+    }
+
+    @ManagedOperation(description = "Dumps the routing statistics of the members, one member per line")
+    public String dumpMemberStats() {
+        StringBuilder sb = new StringBuilder();
+        for (HealthAwareLoadBalancer.MemberStats stats : getMemberStats()) {
+            sb.append(stats).append('\n');
+        }
+        return sb.toString();
+    }
+
     public LoadBalancer createLoadBalancer() {
+        if (healthAware) {
+            return new HealthAwareLoadBalancerFactory().createLoadBalancer();
+        }
         return getLoadBalancerFactory().createLoadBalancer();
     }
+
+    /**
+     * Sends the exchanges of a member through a producer that is pinned to the member if it can be shared,
+     * otherwise through the producer cache of the component.
+     */
+    private class MemberProcessor implements Processor {
+
+        private final Endpoint endpoint;
+        private volatile Producer producer;
+        private volatile boolean shared = true;
+        private boolean closed;
+
+        MemberProcessor(Endpoint endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public void process(Exchange exchange) throws Exception {
+            Producer p = shared ? getProducer() : null;
+            if (p != null) {
+                p.process(exchange);
+                return;
+            }
+            ProducerCache producerCache = component.getProducerCache();
+            Producer cached = producerCache.acquireProducer(endpoint);
+            try {
+                cached.process(exchange);
+            } finally {
+                producerCache.releaseProducer(endpoint, cached);
+            }
+        }
+
+        private Producer getProducer() throws Exception {
+            Producer p = producer;
+            if (p == null) {
+                synchronized (this) {
+                    p = producer;
+                    if (p == null && !closed) {
+                        p = endpoint.createProducer();
+                        if (!p.isSingleton()) {
+                            // not safe to share, use the producer cache instead
+                            shared = false;
+                            return null;
+                        }
+                        ServiceHelper.startService(p);
+                        producer = p;
+                    }
+                }
+            }
+            return p;
+        }
+
+        synchronized void close() throws Exception {
+            closed = true;
+            Producer p = producer;
+            producer = null;
+            ServiceHelper.stopService(p);
+        }
+
+        @Override
+        public String toString() {
+            return "Producer for " + endpoint;
+        }
+    }
 }
@@ -0,0 +1,420 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.camel;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A load balancer that keeps track of the health of its members.
+ *
+ * Members are picked by comparing two random candidates and taking the one with the lower average latency,
+ * weighted by the exchanges it already has in flight. The latency is an exponentially weighted moving average,
+ * in which a failed exchange counts as <code>slowRatio</code> times the mean latency of the other members.
+ * New members start with the mean latency of the existing ones. Of two candidates a half open one, or one that
+ * has not been used for <code>openDuration</code> milliseconds, is preferred, so that a member which was avoided
+ * gets a chance to show it recovered.
+ * <ul>
+ *     <li>A member that fails <code>failureThreshold</code> times in a row is ejected for <code>openDuration</code>
+ *     milliseconds. After that a single exchange is let through, which either closes the circuit again or ejects
+ *     the member for another period.</li>
+ *     <li>A member whose average latency is more than <code>slowRatio</code> times the one of the fastest member
+ *     is skipped for as long as there are faster members. It is tried again once it has not been used for
+ *     <code>openDuration</code> milliseconds.</li>
+ * </ul>
+ * If all members are ejected the exchange is still sent to one of them rather than failed here.
+ *
+ * The members are kept in a copy-on-write array, selecting a member never takes a lock.
+ */
+public class HealthAwareLoadBalancer implements LoadBalancer {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION = 10000L;
+    public static final double DEFAULT_SLOW_RATIO = 5.0;
+    public static final double DEFAULT_DECAY = 0.2;
+
+    private final Random random = new Random();
+    private final Object lock = new Object();
+    private volatile Member[] members = new Member[0];
+
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long openDuration = DEFAULT_OPEN_DURATION;
+    private double slowRatio = DEFAULT_SLOW_RATIO;
+    private double decay = DEFAULT_DECAY;
+
+    @Override
+    public void addProcessor(Processor processor) {
+        synchronized (lock) {
+            Member[] current = members;
+            Member[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = new Member(processor, getMeanLatency(current, null));
+            members = updated;
+        }
+    }
+
+    @Override
+    public void removeProcessor(Processor processor) {
+        synchronized (lock) {
+            Member[] current = members;
+            List<Member> updated = new ArrayList<Member>(current.length);
+            for (Member member : current) {
+                if (member.processor != processor) {
+                    updated.add(member);
+                }
+            }
+            members = updated.toArray(new Member[updated.size()]);
+        }
+    }
+
+    @Override
+    public List<Processor> getProcessors() {
+        Member[] current = members;
+        List<Processor> answer = new ArrayList<Processor>(current.length);
+        for (Member member : current) {
+            answer.add(member.processor);
+        }
+        return Collections.unmodifiableList(answer);
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Member member = select();
+        member.process(exchange);
+    }
+
+    @Override
+    public boolean process(Exchange exchange, AsyncCallback callback) {
+        try {
+            process(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+        }
+        callback.done(true);
+        return true;
+    }
+
+    /**
+     * The statistics of all members.
+     */
+    public List<MemberStats> getMemberStats() {
+        long now = System.currentTimeMillis();
+        Member[] current = members;
+        List<MemberStats> answer = new ArrayList<MemberStats>(current.length);
+        for (Member member : current) {
+            answer.add(member.getStats(now));
+        }
+        return answer;
+    }
+
+    Member select() {
+        Member[] current = members;
+        if (current.length == 0) {
+            throw new IllegalStateException("No processors found.");
+        } else if (current.length == 1) {
+            return current[0];
+        }
+        long now = System.currentTimeMillis();
+        double fastest = Double.MAX_VALUE;
+        int available = 0;
+        for (Member member : current) {
+            if (member.isAvailable(now)) {
+                available++;
+                double latency = member.getLatency();
+                if (latency > 0) {
+                    fastest = Math.min(fastest, latency);
+                }
+            }
+        }
+        if (available == 0) {
+            // all members are ejected, let the exchange fail on one of them rather than here
+            return current[random.nextInt(current.length)];
+        }
+        double slowest = fastest * slowRatio;
+        Member first = null;
+        Member second = null;
+        int offset = random.nextInt(current.length);
+        for (int i = 0; i < current.length && second == null; i++) {
+            Member member = current[(offset + i) % current.length];
+            if (member.isAvailable(now) && (member.getLatency() <= slowest || member.isStale(now))) {
+                if (first == null) {
+                    first = member;
+                } else {
+                    second = member;
+                }
+            }
+        }
+        if (first == null) {
+            // the latencies changed since the scan above
+            return current[offset];
+        }
+        Member selected;
+        int probe = second != null ? first.getProbePriority(now) - second.getProbePriority(now) : 0;
+        if (second == null) {
+            selected = first;
+        } else if (probe != 0) {
+            selected = probe > 0 ? first : second;
+        } else {
+            selected = first.getScore() <= second.getScore() ? first : second;
+        }
+        Member other = selected == first ? second : first;
+        if (!selected.tryAcquire(now) && other != null && other.tryAcquire(now)) {
+            // somebody else is already probing the selected member
+            return other;
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the current time the latencies are measured with, overridden in tests
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * The mean latency of the other members that have one, 0 if there are none.
+     */
+    private static double getMeanLatency(Member[] current, Member excluded) {
+        double sum = 0;
+        int count = 0;
+        for (Member member : current) {
+            double latency = member.getLatency();
+            if (member != excluded && latency > 0) {
+                sum += latency;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public double getSlowRatio() {
+        return slowRatio;
+    }
+
+    public void setSlowRatio(double slowRatio) {
+        this.slowRatio = slowRatio;
+    }
+
+    public double getDecay() {
+        return decay;
+    }
+
+    public void setDecay(double decay) {
+        this.decay = decay;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthAwareLoadBalancer" + getMemberStats();
+    }
+
+    final class Member {
+
+        private final Processor processor;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong latency;
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private volatile long openUntil;
+        private volatile long lastUsed;
+
+        private Member(Processor processor, double latency) {
+            this.processor = processor;
+            this.latency = new AtomicLong(Double.doubleToLongBits(latency));
+        }
+
+        Processor getProcessor() {
+            return processor;
+        }
+
+        /**
+         * True if the circuit is closed, or if it is half open and nobody is probing the member yet.
+         */
+        boolean isAvailable(long now) {
+            long until = openUntil;
+            return until == 0 || (until <= now && !probing.get());
+        }
+
+        /**
+         * Claims the probe of a half open member, closed members can always be used.
+         */
+        boolean tryAcquire(long now) {
+            long until = openUntil;
+            return until == 0 || (until <= now && probing.compareAndSet(false, true));
+        }
+
+        /**
+         * True if the member has not been used for a while, so that slow or failing members get a chance to show
+         * they recovered.
+         */
+        boolean isStale(long now) {
+            return now - lastUsed >= openDuration;
+        }
+
+        /**
+         * How much the member should be preferred to show it recovered: a half open member is probed first, then
+         * a stale one. Only called for available members.
+         */
+        int getProbePriority(long now) {
+            return openUntil != 0 ? 2 : isStale(now) ? 1 : 0;
+        }
+
+        double getLatency() {
+            return Double.longBitsToDouble(latency.get());
+        }
+
+        double getScore() {
+            return getLatency() * (inFlight.get() + 1);
+        }
+
+        void process(Exchange exchange) throws Exception {
+            inFlight.incrementAndGet();
+            requests.incrementAndGet();
+            lastUsed = System.currentTimeMillis();
+            long start = nanoTime();
+            boolean failed = true;
+            try {
+                processor.process(exchange);
+                failed = exchange.getException() != null;
+            } finally {
+                inFlight.decrementAndGet();
+                completed(nanoTime() - start, failed);
+            }
+        }
+
+        private void completed(long nanos, boolean failed) {
+            if (failed) {
+                failures.incrementAndGet();
+                if (consecutiveFailures.incrementAndGet() >= failureThreshold || openUntil != 0) {
+                    openUntil = System.currentTimeMillis() + openDuration;
+                }
+                // a member that fails fast must not look faster than the healthy ones
+                updateLatency(Math.max(nanos, getMeanLatency(members, this)) * slowRatio);
+            } else {
+                consecutiveFailures.set(0);
+                openUntil = 0;
+                updateLatency(nanos);
+            }
+            probing.set(false);
+        }
+
+        private void updateLatency(double nanos) {
+            while (true) {
+                long bits = latency.get();
+                double current = Double.longBitsToDouble(bits);
+                double updated = current == 0.0 ? nanos : current + decay * (nanos - current);
+                if (latency.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                    return;
+                }
+            }
+        }
+
+        MemberStats getStats(long now) {
+            String state = openUntil == 0 ? "closed" : openUntil > now ? "open" : "half-open";
+            return new MemberStats(processor.toString(), state, requests.get(), failures.get(), inFlight.get(), getLatency() / 1000);
+        }
+    }
+
+    /**
+     * A snapshot of the routing statistics of a member.
+     */
+    public static final class MemberStats {
+
+        private final String name;
+        private final String state;
+        private final long requests;
+        private final long failures;
+        private final int inFlight;
+        private final double latency;
+
+        MemberStats(String name, String state, long requests, long failures, int inFlight, double latency) {
+            this.name = name;
+            this.state = state;
+            this.requests = requests;
+            this.failures = failures;
+            this.inFlight = inFlight;
+            this.latency = latency;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The state of the circuit breaker, one of <code>closed</code>, <code>open</code> or <code>half-open</code>.
+         */
+        public String getState() {
+            return state;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * The average latency in microseconds, failed exchanges count as slow ones.
+         */
+        public double getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[state=" + state + ",requests=" + requests + ",failures=" + failures
+                    + ",inFlight=" + inFlight + ",latency=" + Math.round(latency) + "us]";
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.camel;
+
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
+
+/**
+ * Creates {@link HealthAwareLoadBalancer}s, to be used as the load balancer factory of the {@link FabricComponent}.
+ */
+public class HealthAwareLoadBalancerFactory implements LoadBalancerFactory {
+
+    private int failureThreshold = HealthAwareLoadBalancer.DEFAULT_FAILURE_THRESHOLD;
+    private long openDuration = HealthAwareLoadBalancer.DEFAULT_OPEN_DURATION;
+    private double slowRatio = HealthAwareLoadBalancer.DEFAULT_SLOW_RATIO;
+    private double decay = HealthAwareLoadBalancer.DEFAULT_DECAY;
+
+    public LoadBalancer createLoadBalancer() {
+        HealthAwareLoadBalancer loadBalancer = new HealthAwareLoadBalancer();
+        loadBalancer.setFailureThreshold(failureThreshold);
+        loadBalancer.setOpenDuration(openDuration);
+        loadBalancer.setSlowRatio(slowRatio);
+        loadBalancer.setDecay(decay);
+        return loadBalancer;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public double getSlowRatio() {
+        return slowRatio;
+    }
+
+    public void setSlowRatio(double slowRatio) {
+        this.slowRatio = slowRatio;
+    }
+
+    public double getDecay() {
+        return decay;
+    }
+
+    public void setDecay(double decay) {
+        this.decay = decay;
+    }
+}
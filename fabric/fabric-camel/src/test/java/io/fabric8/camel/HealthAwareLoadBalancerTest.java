@@ -0,0 +1,190 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HealthAwareLoadBalancerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private CamelContext camelContext;
+    private HealthAwareLoadBalancer loadBalancer;
+
+    @Before
+    public void setUp() throws Exception {
+        camelContext = new DefaultCamelContext();
+        // the processors advance the clock by their latency, so the latencies do not depend on the machine
+        loadBalancer = new HealthAwareLoadBalancer() {
+            @Override
+            long nanoTime() {
+                return clock.get();
+            }
+        };
+        loadBalancer.setFailureThreshold(3);
+        loadBalancer.setOpenDuration(60000L);
+    }
+
+    @Test
+    public void testNoProcessors() throws Exception {
+        try {
+            loadBalancer.process(new DefaultExchange(camelContext));
+            fail("Expected an exception");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailingMemberIsAvoided() throws Exception {
+        CountingProcessor healthy = new CountingProcessor(false, 1);
+        CountingProcessor failing = new CountingProcessor(true, 1);
+        loadBalancer.addProcessor(healthy);
+        loadBalancer.addProcessor(failing);
+
+        for (int i = 0; i < 100; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        // failures count as slow exchanges, so the failing member loses against the healthy one long before it is ejected
+        assertTrue("Failing member got " + failing.count.get() + " exchanges", failing.count.get() <= 2);
+        assertEquals(100, healthy.count.get() + failing.count.get());
+        HealthAwareLoadBalancer.MemberStats stats = loadBalancer.getMemberStats().get(1);
+        assertEquals("closed", stats.getState());
+        assertEquals(failing.count.get(), stats.getFailures());
+        assertTrue(stats.getLatency() > loadBalancer.getMemberStats().get(0).getLatency());
+    }
+
+    @Test
+    public void testFailingMemberIsEjected() throws Exception {
+        CountingProcessor first = new CountingProcessor(true, 1);
+        CountingProcessor second = new CountingProcessor(true, 1);
+        loadBalancer.addProcessor(first);
+        loadBalancer.addProcessor(second);
+
+        // each member fails three times in a row before it is ejected, the other one gets the exchanges meanwhile
+        for (int i = 0; i < 6; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertEquals(3, first.count.get());
+        assertEquals(3, second.count.get());
+        for (HealthAwareLoadBalancer.MemberStats stats : loadBalancer.getMemberStats()) {
+            assertEquals("open", stats.getState());
+            assertEquals(3, stats.getFailures());
+        }
+    }
+
+    @Test
+    public void testNewMemberStartsWithTheMeanLatency() throws Exception {
+        loadBalancer.addProcessor(new CountingProcessor(false, 1));
+        loadBalancer.addProcessor(new CountingProcessor(false, 2));
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        List<HealthAwareLoadBalancer.MemberStats> stats = loadBalancer.getMemberStats();
+        assertTrue(stats.get(0).getLatency() > 0);
+        assertTrue(stats.get(1).getLatency() > 0);
+
+        loadBalancer.addProcessor(new CountingProcessor(false, 0));
+        double mean = (stats.get(0).getLatency() + stats.get(1).getLatency()) / 2;
+        assertEquals(mean, loadBalancer.getMemberStats().get(2).getLatency(), mean * 0.001);
+    }
+
+    @Test
+    public void testHalfOpenMemberIsProbed() throws Exception {
+        loadBalancer.setFailureThreshold(1);
+        loadBalancer.setOpenDuration(100L);
+        CountingProcessor healthy = new CountingProcessor(false, 1);
+        CountingProcessor recovered = new CountingProcessor(true, 1);
+        loadBalancer.addProcessor(healthy);
+        loadBalancer.addProcessor(recovered);
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertEquals(1, recovered.count.get());
+        assertEquals("open", loadBalancer.getMemberStats().get(1).getState());
+
+        recovered.fail = false;
+        Thread.sleep(150);
+        assertEquals("half-open", loadBalancer.getMemberStats().get(1).getState());
+        loadBalancer.process(new DefaultExchange(camelContext));
+        assertEquals("the half open member should be probed", 2, recovered.count.get());
+        assertEquals("closed", loadBalancer.getMemberStats().get(1).getState());
+    }
+
+    @Test
+    public void testSlowMemberIsSkipped() throws Exception {
+        CountingProcessor fast = new CountingProcessor(false, 1);
+        CountingProcessor slow = new CountingProcessor(false, 20);
+        loadBalancer.addProcessor(fast);
+        loadBalancer.addProcessor(slow);
+
+        for (int i = 0; i < 100; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertTrue("Slow member got " + slow.count.get() + " exchanges", slow.count.get() <= 2);
+    }
+
+    @Test
+    public void testAllMembersEjected() throws Exception {
+        CountingProcessor p1 = new CountingProcessor(true, 1);
+        CountingProcessor p2 = new CountingProcessor(true, 1);
+        loadBalancer.addProcessor(p1);
+        loadBalancer.addProcessor(p2);
+
+        for (int i = 0; i < 20; i++) {
+            loadBalancer.process(new DefaultExchange(camelContext));
+        }
+        assertEquals(20, p1.count.get() + p2.count.get());
+
+        loadBalancer.removeProcessor(p1);
+        assertEquals(1, loadBalancer.getProcessors().size());
+        assertEquals(p2, loadBalancer.getProcessors().get(0));
+    }
+
+    private class CountingProcessor implements Processor {
+        private final AtomicInteger count = new AtomicInteger();
+        private final long latency;
+        private volatile boolean fail;
+
+        CountingProcessor(boolean fail, long latencyMillis) {
+            this.fail = fail;
+            this.latency = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        }
+
+        @Override
+        public void process(Exchange exchange) throws Exception {
+            count.incrementAndGet();
+            clock.addAndGet(latency);
+            if (fail) {
+                exchange.setException(new Exception("Failed"));
+            }
+        }
+    }
+}
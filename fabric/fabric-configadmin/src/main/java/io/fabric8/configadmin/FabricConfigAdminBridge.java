@@ -19,7 +19,6 @@ import io.fabric8.api.Constants;
 import io.fabric8.api.Container;
 import io.fabric8.api.FabricService;
 import io.fabric8.api.Profile;
-import io.fabric8.api.Profiles;
 import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.ValidatingReference;
@@ -28,14 +27,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -61,6 +66,10 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
     public static final String FABRIC_CONFIG_MERGE = "fabric.config.merge";
     public static final String LAST_MODIFIED = "lastModified";
 
+    private static final String VERSIONS_PID = "io.fabric8.version";
+    private static final String VERSION_PLACEHOLDER_PREFIX = "${version:";
+    private static final Pattern PROFILE_PLACEHOLDER_PATTERN = Pattern.compile("\\$\\{profile:([^ /}]+)/");
+
     private static final Logger LOGGER = LoggerFactory.getLogger(FabricConfigAdminBridge.class);
 
     @Reference(referenceInterface = ConfigurationAdmin.class)
@@ -71,6 +80,7 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
     private final ValidatingReference<URLStreamHandlerService> urlHandler = new ValidatingReference<URLStreamHandlerService>();
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("fabric-configadmin"));
+    private final Map<String, AppliedConfiguration> appliedConfigurations = new HashMap<String, AppliedConfiguration>();
 
     @Activate
     void activate() {
@@ -120,11 +130,33 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
         
         Container currentContainer = fabricService.get().getCurrentContainer();
         Profile overlayProfile = currentContainer.getOverlayProfile();
-        Profile effectiveProfile = Profiles.getEffectiveProfile(fabricService.get(), overlayProfile);
-        
-        Map<String, Map<String, String>> configurations = effectiveProfile.getConfigurations();
+        Map<String, Map<String, String>> configurations = overlayProfile.getConfigurations();
+
+        // one query for all fabric managed configurations instead of a filter query per pid
         List<Configuration> zkConfigs = asList(configAdmin.get().listConfigurations("(" + FABRIC_ZOOKEEPER_PID + "=*)"));
-        
+        Map<String, Configuration> configIndex = new HashMap<String, Configuration>();
+        for (Configuration config : zkConfigs) {
+            Dictionary<String, Object> props = config.getProperties();
+            Object zkPid = props != null ? props.get(FABRIC_ZOOKEEPER_PID) : null;
+            if (zkPid != null && !configIndex.containsKey(zkPid.toString())) {
+                configIndex.put(zkPid.toString(), config);
+            }
+        }
+
+        // only pids that changed or that may resolve to something else need to be substituted
+        Set<String> dirtyPids = new HashSet<String>();
+        for (Map.Entry<String, Map<String, String>> entry : configurations.entrySet()) {
+            String pid = entry.getKey();
+            AppliedConfiguration applied = appliedConfigurations.get(pid);
+            if (applied == null || !configIndex.containsKey(pid) || applied.templated || !applied.source.equals(entry.getValue())) {
+                dirtyPids.add(pid);
+            }
+        }
+        Map<String, Map<String, String>> substituted = Collections.emptyMap();
+        if (!dirtyPids.isEmpty()) {
+            substituted = fabricService.get().substituteConfigurations(getSubstitutionScope(configurations, dirtyPids));
+        }
+
         // FABRIC-803: the agent may use the configuration provided by features definition if not managed
         //   by fabric.  However, in order for this to work, we need to make sure managed configurations
         //   are all registered before the agent kicks in.  Hence, the agent configuration is updated
@@ -133,18 +165,13 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
         // Process all configurations but agent
         for (String pid : configurations.keySet()) {
             if (!pid.equals(Constants.AGENT_PID)) {
-                Hashtable<String, Object> c = new Hashtable<String, Object>();
-                c.putAll(configurations.get(pid));
-                updateConfig(zkConfigs, pid, c);
+                updateConfig(configIndex, zkConfigs, pid, configurations.get(pid), dirtyPids.contains(pid) ? substituted.get(pid) : null);
             }
         }
         // Process agent configuration last
         for (String pid : configurations.keySet()) {
             if (pid.equals(Constants.AGENT_PID)) {
-                Hashtable<String, Object> c = new Hashtable<String, Object>();
-                c.putAll(configurations.get(pid));
-                c.put(Profile.HASH, String.valueOf(effectiveProfile.getProfileHash()));
-                updateConfig(zkConfigs, pid, c);
+                updateConfig(configIndex, zkConfigs, pid, configurations.get(pid), dirtyPids.contains(pid) ? substituted.get(pid) : null);
             }
         }
         for (Configuration config : zkConfigs) {
@@ -152,13 +179,69 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
             fabricService.get().getPortService().unregisterPort(fabricService.get().getCurrentContainer(), config.getPid());
             config.delete();
         }
+        appliedConfigurations.keySet().retainAll(configurations.keySet());
     }
 
-    private void updateConfig(List<Configuration> configs, String pid, Hashtable<String, Object> c) throws Exception {
+    /**
+     * The dirty configurations plus the ones their <code>profile:</code> and <code>version:</code> placeholders read from,
+     * including the ones read by the placeholders of those configurations.
+     */
+    private Map<String, Map<String, String>> getSubstitutionScope(Map<String, Map<String, String>> configurations, Set<String> dirtyPids) {
+        Map<String, Map<String, String>> scope = new HashMap<String, Map<String, String>>();
+        LinkedList<String> pending = new LinkedList<String>(dirtyPids);
+        while (!pending.isEmpty()) {
+            String pid = pending.removeFirst();
+            if (scope.containsKey(pid)) {
+                continue;
+            }
+            Map<String, String> config = configurations.get(pid);
+            scope.put(pid, config);
+            for (String value : config.values()) {
+                if (value.contains(VERSION_PLACEHOLDER_PREFIX) && configurations.containsKey(VERSIONS_PID)) {
+                    pending.add(VERSIONS_PID);
+                }
+                Matcher matcher = PROFILE_PLACEHOLDER_PATTERN.matcher(value);
+                while (matcher.find()) {
+                    String targetPid = matcher.group(1);
+                    if (configurations.containsKey(targetPid)) {
+                        pending.add(targetPid);
+                    }
+                }
+            }
+        }
+        return scope;
+    }
+
+    private void updateConfig(Map<String, Configuration> configIndex, List<Configuration> configs, String pid, Map<String, String> source, Map<String, String> substituted) throws Exception {
+        Configuration indexed = configIndex.get(pid);
+        if (substituted == null && indexed != null) {
+            configs.remove(indexed);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Ignoring configuration {} (source unchanged)", indexed.getPid());
+            }
+            return;
+        }
+        Hashtable<String, Object> c = new Hashtable<String, Object>();
+        c.putAll(substituted);
+        if (pid.equals(Constants.AGENT_PID)) {
+            // the effective profile is built without a hash, see Profiles.getEffectiveProfile()
+            c.put(Profile.HASH, "null");
+        }
+        AppliedConfiguration applied = appliedConfigurations.get(pid);
+        if (indexed != null && applied != null && applied.content.equals(c)) {
+            configs.remove(indexed);
+            appliedConfigurations.put(pid, new AppliedConfiguration(source, applied.content));
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Ignoring configuration {} (no changes)", indexed.getPid());
+            }
+            return;
+        }
+
         String p[] = parsePid(pid);
         //Get the configuration by fabric zookeeper pid, pid and factory pid.
-        Configuration config = getConfiguration(configAdmin.get(), pid, p[0], p[1]);
+        Configuration config = indexed != null ? indexed : createConfiguration(configAdmin.get(), p[0], p[1]);
         configs.remove(config);
+        appliedConfigurations.put(pid, new AppliedConfiguration(source, new Hashtable<String, Object>(c)));
         Dictionary<String, Object> props = config.getProperties();
         Hashtable<String, Object> old = props != null ? new Hashtable<String, Object>() : null;
         if (old != null) {
@@ -221,19 +304,11 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
         }
     }
 
-    private Configuration getConfiguration(ConfigurationAdmin configAdmin, String zooKeeperPid, String pid, String factoryPid) throws Exception {
-        String filter = "(" + FABRIC_ZOOKEEPER_PID + "=" + zooKeeperPid + ")";
-        Configuration[] oldConfiguration = configAdmin.listConfigurations(filter);
-        if (oldConfiguration != null && oldConfiguration.length > 0) {
-            return oldConfiguration[0];
+    private Configuration createConfiguration(ConfigurationAdmin configAdmin, String pid, String factoryPid) throws Exception {
+        if (factoryPid != null) {
+            return configAdmin.createFactoryConfiguration(pid, null);
         } else {
-            Configuration newConfiguration;
-            if (factoryPid != null) {
-                newConfiguration = configAdmin.createFactoryConfiguration(pid, null);
-            } else {
-                newConfiguration = configAdmin.getConfiguration(pid, null);
-            }
-            return newConfiguration;
+            return configAdmin.getConfiguration(pid, null);
         }
     }
 
@@ -261,6 +336,28 @@ public final class FabricConfigAdminBridge extends AbstractComponent implements
         this.urlHandler.unbind(urlHandler);
     }
 
+    /**
+     * The profile source of a pid and the content that was last written to config admin for it.
+     */
+    private static final class AppliedConfiguration {
+        private final Map<String, String> source;
+        private final Hashtable<String, Object> content;
+        private final boolean templated;
+
+        AppliedConfiguration(Map<String, String> source, Hashtable<String, Object> content) {
+            this.source = source;
+            this.content = content;
+            boolean placeholders = false;
+            for (String value : source.values()) {
+                if (value != null && value.contains("${")) {
+                    placeholders = true;
+                    break;
+                }
+            }
+            this.templated = placeholders;
+        }
+    }
+
     private static class NamedThreadFactory implements ThreadFactory {
         private static final AtomicInteger poolNumber = new AtomicInteger(1);
         private final ThreadGroup group;
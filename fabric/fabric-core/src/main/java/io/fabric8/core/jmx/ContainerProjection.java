@@ -0,0 +1,311 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.core.jmx;
+
+import io.fabric8.api.Container;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.FabricException;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileService;
+import io.fabric8.api.Profiles;
+import io.fabric8.api.Version;
+import io.fabric8.api.ZkDefs;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.PropertyUtils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A compiled projection of container fields.
+ *
+ * The accessors for a field list are resolved once and shared by all queries using the same fields. Values
+ * that are expensive to compute per container, like versions and children, are computed once per {@link Query}.
+ * The results are the same as {@link BeanUtils#convertContainerToMap(FabricService, Container, List)}.
+ */
+public final class ContainerProjection {
+
+    private static final int MAX_CACHED_PROJECTIONS = 64;
+    private static final ConcurrentMap<List<String>, ContainerProjection> PROJECTIONS = new ConcurrentHashMap<List<String>, ContainerProjection>();
+
+    private final Map<String, FieldAccessor> accessors;
+
+    private ContainerProjection(List<String> fields) {
+        Map<String, FieldAccessor> map = new TreeMap<String, FieldAccessor>();
+        for (String field : fields) {
+            map.put(field, createAccessor(field));
+        }
+        this.accessors = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Get the compiled projection for the given fields.
+     */
+    public static ContainerProjection forFields(List<String> fields) {
+        List<String> key = Collections.unmodifiableList(new ArrayList<String>(fields));
+        ContainerProjection projection = PROJECTIONS.get(key);
+        if (projection == null) {
+            if (PROJECTIONS.size() >= MAX_CACHED_PROJECTIONS) {
+                PROJECTIONS.clear();
+            }
+            projection = new ContainerProjection(key);
+            PROJECTIONS.putIfAbsent(key, projection);
+        }
+        return projection;
+    }
+
+    public Map<String, Object> toMap(Query query, Container container) {
+        Map<String, Object> answer = new TreeMap<String, Object>();
+        for (Map.Entry<String, FieldAccessor> entry : accessors.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().getValue(query, container));
+        }
+        return answer;
+    }
+
+    public List<Map<String, Object>> toMaps(Query query, List<Container> containers) {
+        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>(containers.size());
+        for (Container container : containers) {
+            answer.add(toMap(query, container));
+        }
+        return answer;
+    }
+
+    /**
+     * Writes the containers as a JSON array, one container at a time.
+     */
+    public void writeJson(JsonGenerator generator, Query query, List<Container> containers) throws IOException {
+        generator.writeStartArray();
+        for (Container container : containers) {
+            generator.writeStartObject();
+            for (Map.Entry<String, FieldAccessor> entry : accessors.entrySet()) {
+                generator.writeObjectField(entry.getKey(), entry.getValue().getValue(query, container));
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private static FieldAccessor createAccessor(final String field) {
+        if (field.equalsIgnoreCase("profiles") || field.equalsIgnoreCase("profileIds")) {
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    return query.getProfileIds(container);
+                }
+            };
+        } else if (field.equalsIgnoreCase("childrenIds") || field.equalsIgnoreCase("children")) {
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    return query.getChildrenIds(container);
+                }
+            };
+        } else if (field.equalsIgnoreCase("parent") || field.equalsIgnoreCase("parentId")) {
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    Container parent = container.getParent();
+                    return parent != null ? parent.getId() : null;
+                }
+            };
+        } else if (field.equalsIgnoreCase("version") || field.equalsIgnoreCase("versionId")) {
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    Version version = query.getVersion(container.getVersionId());
+                    return version != null ? version.getId() : null;
+                }
+            };
+        } else if (field.equalsIgnoreCase("overlayProfile")) {
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    FabricService fabricService = query.fabricService;
+                    Profile effectiveProfile = Profiles.getEffectiveProfile(fabricService, container.getOverlayProfile());
+                    return BeanUtils.convertProfileToMap(fabricService, effectiveProfile, BeanUtils.getFields(Profile.class));
+                }
+            };
+        } else if (isSimpleProperty(field)) {
+            return new PropertyAccessor(field);
+        } else {
+            // nested, indexed or mapped properties such as "parent.id" or "profiles[0]" are left to beanutils
+            return new FieldAccessor() {
+                @Override
+                Object getValue(Query query, Container container) {
+                    try {
+                        return PropertyUtils.getProperty(container, field);
+                    } catch (Exception e) {
+                        throw new FabricException("Failed to initialize DTO", e);
+                    }
+                }
+            };
+        }
+    }
+
+    private static boolean isSimpleProperty(String field) {
+        return field.indexOf('.') < 0 && field.indexOf('[') < 0 && field.indexOf('(') < 0;
+    }
+
+    /**
+     * The state shared by all containers of a single query.
+     */
+    public static final class Query {
+
+        private final FabricService fabricService;
+        private final ProfileService profileService;
+        private final DataStore dataStore;
+        private final Container[] containers;
+        private final Map<String, Version> versions = new HashMap<String, Version>();
+        private Map<String, List<String>> childrenIds;
+
+        public Query(FabricService fabricService) {
+            this.fabricService = fabricService;
+            this.profileService = fabricService.adapt(ProfileService.class);
+            this.dataStore = fabricService.adapt(DataStore.class);
+            this.containers = fabricService.getContainers();
+        }
+
+        /**
+         * All containers known to this query.
+         */
+        public List<Container> getContainers() {
+            List<Container> answer = new ArrayList<Container>(containers.length);
+            Collections.addAll(answer, containers);
+            return answer;
+        }
+
+        public List<Container> getContainersForVersion(String versionId) {
+            List<Container> answer = new ArrayList<Container>();
+            for (Container container : containers) {
+                if (versionId.equals(container.getVersionId())) {
+                    answer.add(container);
+                }
+            }
+            return answer;
+        }
+
+        public List<Container> getContainersForProfile(String versionId, String profileId) {
+            List<Container> answer = new ArrayList<Container>();
+            for (Container container : getContainersForVersion(versionId)) {
+                if (getProfileIds(container).contains(profileId)) {
+                    answer.add(container);
+                }
+            }
+            return answer;
+        }
+
+        Version getVersion(String versionId) {
+            if (versionId == null) {
+                return null;
+            }
+            Version version = versions.get(versionId);
+            if (version == null && !versions.containsKey(versionId)) {
+                version = profileService.getVersion(versionId);
+                versions.put(versionId, version);
+            }
+            return version;
+        }
+
+        /**
+         * The ids of {@link Container#getProfiles()} without loading the profiles themselves.
+         */
+        List<String> getProfileIds(Container container) {
+            Version version = getVersion(container.getVersionId());
+            List<String> answer = new ArrayList<String>();
+            for (String profileId : dataStore.getContainerProfiles(container.getId())) {
+                answer.add(version.getRequiredProfile(profileId).getId());
+            }
+            if (answer.isEmpty()) {
+                answer.add(version.getRequiredProfile(ZkDefs.DEFAULT_PROFILE).getId());
+            }
+            return answer;
+        }
+
+        List<String> getChildrenIds(Container container) {
+            if (childrenIds == null) {
+                childrenIds = new HashMap<String, List<String>>();
+                for (Container child : containers) {
+                    Container parent = child.getParent();
+                    if (parent != null) {
+                        List<String> ids = childrenIds.get(parent.getId());
+                        if (ids == null) {
+                            ids = new ArrayList<String>();
+                            childrenIds.put(parent.getId(), ids);
+                        }
+                        ids.add(child.getId());
+                    }
+                }
+            }
+            List<String> ids = childrenIds.get(container.getId());
+            return ids != null ? new ArrayList<String>(ids) : new ArrayList<String>();
+        }
+    }
+
+    private static abstract class FieldAccessor {
+        abstract Object getValue(Query query, Container container);
+    }
+
+    /**
+     * Reads a simple bean property through its getter, which is looked up once per container class.
+     */
+    private static final class PropertyAccessor extends FieldAccessor {
+
+        private final String field;
+        private final ConcurrentMap<Class<?>, Method> readMethods = new ConcurrentHashMap<Class<?>, Method>();
+
+        PropertyAccessor(String field) {
+            this.field = field;
+        }
+
+        @Override
+        Object getValue(Query query, Container container) {
+            try {
+                return getReadMethod(container.getClass()).invoke(container);
+            } catch (Exception e) {
+                throw new FabricException("Failed to initialize DTO", e);
+            }
+        }
+
+        private Method getReadMethod(Class<?> clazz) throws NoSuchMethodException {
+            Method method = readMethods.get(clazz);
+            if (method == null) {
+                for (PropertyDescriptor desc : PropertyUtils.getPropertyDescriptors(clazz)) {
+                    if (desc.getName().equals(field) && desc.getReadMethod() != null) {
+                        method = desc.getReadMethod();
+                        break;
+                    }
+                }
+                if (method == null) {
+                    throw new NoSuchMethodException("Unknown property '" + field + "' on class '" + clazz + "'");
+                }
+                readMethods.putIfAbsent(clazz, method);
+            }
+            return method;
+        }
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.StandardMBean;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -416,18 +418,23 @@ public final class FabricManager implements FabricManagerMBean {
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields) {
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
-            answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-        }
-        return answer;
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        return ContainerProjection.forFields(fields).toMaps(query, query.getContainers());
+    }
+
+    @Override
+    public String containersAsJson(List<String> fields) {
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        return containersAsJson(ContainerProjection.forFields(fields), query, query.getContainers());
     }
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields, List<String> profileFields) {
         List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
-            Map<String, Object> map = BeanUtils.convertContainerToMap(fabricService, c, fields);
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        ContainerProjection projection = ContainerProjection.forFields(fields);
+        for (Container c : query.getContainers()) {
+            Map<String, Object> map = projection.toMap(query, c);
             List<Map<String, Object>> profiles = new ArrayList<Map<String, Object>>();
             for (Profile p : c.getProfiles()) {
                 profiles.add(BeanUtils.convertProfileToMap(fabricService, p, profileFields));
@@ -628,17 +635,20 @@ public final class FabricManager implements FabricManagerMBean {
     public List<Map<String, Object>> containersForProfile(String versionId, String profileId, List<String> fields) {
         Version version = profileService.getVersion(versionId);
         Profile profile = version != null ? version.getRequiredProfile(profileId) : null;
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        if (profile != null) {
-            for (Container c : fabricService.getContainers()) {
-                for (Profile p : c.getProfiles()) {
-                    if (p.equals(profile)) {
-                        answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-                    }
-                }
-            }
+        if (profile == null) {
+            return new ArrayList<Map<String, Object>>();
         }
-        return answer;
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        return ContainerProjection.forFields(fields).toMaps(query, query.getContainersForProfile(versionId, profileId));
+    }
+
+    @Override
+    public String containersForProfileAsJson(String versionId, String profileId, List<String> fields) {
+        Version version = profileService.getVersion(versionId);
+        Profile profile = version != null ? version.getRequiredProfile(profileId) : null;
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        List<Container> containers = profile != null ? query.getContainersForProfile(versionId, profileId) : new ArrayList<Container>();
+        return containersAsJson(ContainerProjection.forFields(fields), query, containers);
     }
 
     @Override
@@ -656,15 +666,34 @@ public final class FabricManager implements FabricManagerMBean {
     @Override
     public List<Map<String, Object>> containersForVersion(String versionId, List<String> fields) {
         Version version = profileService.getVersion(versionId);
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        if (version != null) {
-            for (Container c : fabricService.getContainers()) {
-                if (c.getVersion().equals(version)) {
-                    answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-                }
+        if (version == null) {
+            return new ArrayList<Map<String, Object>>();
+        }
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        return ContainerProjection.forFields(fields).toMaps(query, query.getContainersForVersion(versionId));
+    }
+
+    @Override
+    public String containersForVersionAsJson(String versionId, List<String> fields) {
+        Version version = profileService.getVersion(versionId);
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        List<Container> containers = version != null ? query.getContainersForVersion(versionId) : new ArrayList<Container>();
+        return containersAsJson(ContainerProjection.forFields(fields), query, containers);
+    }
+
+    private String containersAsJson(ContainerProjection projection, ContainerProjection.Query query, List<Container> containers) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator generator = getObjectMapper().getFactory().createGenerator(writer);
+            try {
+                projection.writeJson(generator, query, containers);
+            } finally {
+                generator.close();
             }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing data as json", e);
         }
-        return answer;
+        return writer.toString();
     }
 
     @Override
@@ -0,0 +1,306 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import io.fabric8.api.FabricException;
+import io.fabric8.api.OptionsProvider;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileBuilders;
+import io.fabric8.utils.DataStoreUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded concurrent cache of overlay profiles.
+ * <p/>
+ * An overlay is keyed by the profile identity and hash together with the identities and hashes of all its
+ * ancestors, so an overlay is only reused as long as no profile in its hierarchy has changed. Overlays are
+ * built bottom-up: the merged configuration of the first parent is the starting point of the child, which
+ * then only needs to supplement the profiles its first parent does not inherit from already.
+ * <p/>
+ * Profiles without a hash (such as profiles which are being edited) are never cached.
+ */
+public final class ProfileOverlayCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Cache<String, Overlay> cache;
+    private final ProfileBuilders profileBuilders;
+
+    public ProfileOverlayCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public ProfileOverlayCache(int maximumSize) {
+        this(maximumSize, null);
+    }
+
+    /**
+     * @param profileBuilders the builders to create the overlay profiles with or null to look them up as a service
+     */
+    ProfileOverlayCache(int maximumSize, ProfileBuilders profileBuilders) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.profileBuilders = profileBuilders;
+    }
+
+    /**
+     * Returns the overlay of the given profile for the given environment
+     */
+    public Profile getOverlayProfile(Profile profile, String environment) {
+        return getOverlay(profile, environment).profile;
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return "ProfileOverlayCache[size=" + cache.size() + ",hits=" + stats.hitCount() + ",misses=" + stats.missCount() + "]";
+    }
+
+    private Overlay getOverlay(Profile profile, String environment) {
+        String key = getCacheKey(profile, environment);
+        Overlay overlay = key != null ? cache.getIfPresent(key) : null;
+        if (overlay == null) {
+            overlay = createOverlay(profile, environment);
+            if (key != null) {
+                cache.put(key, overlay);
+            }
+        }
+        return overlay;
+    }
+
+    private Overlay createOverlay(Profile self, String environment) {
+        try {
+            List<Profile> inherited = getInheritedProfiles(self);
+
+            // the inherited profiles of the first parent come first so lets start from its overlay
+            Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
+            int start = 0;
+            List<Profile> parents = self.getParents();
+            if (!parents.isEmpty()) {
+                Overlay parentOverlay = getOverlay(parents.get(0), environment);
+                aggregate.putAll(parentOverlay.aggregate);
+                start = parentOverlay.inheritedCount;
+            }
+            for (Profile profile : inherited.subList(start, inherited.size())) {
+                supplement(profile, aggregate, environment);
+            }
+
+            Map<String, byte[]> fileConfigurations = new HashMap<String, byte[]>();
+            Map<String, Map<String, String>> configurations = new HashMap<String, Map<String, String>>();
+            for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
+                SupplementControl ctrl = entry.getValue();
+                if (ctrl.props != null) {
+                    fileConfigurations.put(entry.getKey(), DataStoreUtils.toBytes(ctrl.props));
+                    configurations.put(DataStoreUtils.stripSuffix(entry.getKey(), ".properties"), DataStoreUtils.toMap(ctrl.props));
+                } else {
+                    fileConfigurations.put(entry.getKey(), ctrl.data);
+                }
+            }
+
+            ProfileBuilder builder = profileBuilders != null ? profileBuilders.profileBuilder(self.getVersion(), self.getId()) : ProfileBuilder.Factory.create(self.getVersion(), self.getId());
+            builder.addOptions(new OverlayOptionsProvider(self, fileConfigurations, configurations));
+            return new Overlay(builder.getProfile(), Collections.unmodifiableMap(aggregate), inherited.size());
+        } catch (Exception e) {
+            throw FabricException.launderThrowable(e);
+        }
+    }
+
+    /**
+     * Returns the key of the profile and its ancestors or null if any of them has no hash
+     */
+    private static String getCacheKey(Profile profile, String environment) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(environment).append('|');
+        return appendCacheKey(sb, profile) ? sb.toString() : null;
+    }
+
+    private static boolean appendCacheKey(StringBuilder sb, Profile profile) {
+        String hash = profile.getProfileHash();
+        if (hash == null || hash.isEmpty() || profile.isOverlay()) {
+            return false;
+        }
+        sb.append(profile.getVersion()).append('/').append(profile.getId()).append('@').append(hash);
+        List<Profile> parents = profile.getParents();
+        if (!parents.isEmpty()) {
+            sb.append('(');
+            for (Profile parent : parents) {
+                if (!appendCacheKey(sb, parent)) {
+                    return false;
+                }
+                sb.append(',');
+            }
+            sb.append(')');
+        }
+        return true;
+    }
+
+    private static List<Profile> getInheritedProfiles(Profile self) {
+        List<Profile> profiles = new ArrayList<>();
+        fillParentProfiles(self, profiles);
+        return profiles;
+    }
+
+    private static void fillParentProfiles(Profile profile, List<Profile> profiles) {
+        if (!profiles.contains(profile)) {
+            for (Profile p : profile.getParents()) {
+                fillParentProfiles(p, profiles);
+            }
+            profiles.add(profile);
+        }
+    }
+
+    private static void supplement(Profile profile, Map<String, SupplementControl> aggregate, String environment) throws Exception {
+
+        Map<String, byte[]> configs = profile.getFileConfigurations();
+        for (String key : configs.keySet()) {
+            // Ignore environment specific configs
+            if (key.contains("#")) {
+                continue;
+            }
+            byte[] value = configs.get(key);
+            if (environment != null && configs.containsKey(key + "#" + environment)) {
+                value = configs.get(key + "#" + environment);
+            }
+            // we can use fine grained inheritance based updating if it's
+            // a properties file.
+            String fileName = key;
+            if (fileName.endsWith(".properties")) {
+                SupplementControl ctrl = aggregate.get(fileName);
+                if (ctrl != null) {
+                    // we can update the file; copying it first if it belongs to the parent overlay
+                    if (ctrl.shared) {
+                        ctrl = ctrl.copy();
+                        aggregate.put(fileName, ctrl);
+                    }
+                    Properties childMap = DataStoreUtils.toProperties(value);
+                    if (childMap.remove(Profile.DELETED) != null) {
+                        ctrl.props.clear();
+                    }
+
+                    // Update the entries...
+                    for (Map.Entry<Object, Object> p : childMap.entrySet()) {
+                        if (Profile.DELETED.equals(p.getValue())) {
+                            ctrl.props.remove(p.getKey());
+                        } else {
+                            ctrl.props.put(p.getKey(), p.getValue());
+                        }
+                    }
+
+                } else {
+                    // new file..
+                    ctrl = new SupplementControl();
+                    ctrl.props = DataStoreUtils.toProperties(value);
+                    aggregate.put(fileName, ctrl);
+                }
+            } else {
+                // not a properties file? we can only overwrite.
+                SupplementControl ctrl = new SupplementControl();
+                ctrl.data = value;
+                aggregate.put(fileName, ctrl);
+            }
+        }
+    }
+
+    private static class SupplementControl {
+        byte[] data;
+        Properties props;
+        // set once the overlay is complete as the child overlays must copy the control before updating it
+        boolean shared;
+
+        SupplementControl copy() {
+            SupplementControl answer = new SupplementControl();
+            answer.data = data;
+            if (props != null) {
+                answer.props = new Properties();
+                answer.props.putAll(props);
+            }
+            return answer;
+        }
+    }
+
+    private static class Overlay {
+        private final Profile profile;
+        private final Map<String, SupplementControl> aggregate;
+        private final int inheritedCount;
+
+        Overlay(Profile profile, Map<String, SupplementControl> aggregate, int inheritedCount) {
+            this.profile = profile;
+            this.aggregate = aggregate;
+            this.inheritedCount = inheritedCount;
+            for (SupplementControl ctrl : aggregate.values()) {
+                ctrl.shared = true;
+            }
+        }
+    }
+
+    static class OverlayOptionsProvider implements OptionsProvider<ProfileBuilder> {
+
+        private final Profile self;
+        private final Map<String, byte[]> fileConfigurations;
+        private final Map<String, Map<String, String>> configurations;
+
+        OverlayOptionsProvider(Profile self, Map<String, byte[]> fileConfigurations, Map<String, Map<String, String>> configurations) {
+            this.self = self;
+            this.fileConfigurations = fileConfigurations;
+            this.configurations = configurations;
+        }
+
+        @Override
+        public ProfileBuilder addOptions(ProfileBuilder builder) {
+            builder.setAttributes(self.getAttributes());
+            builder.setFileConfigurations(fileConfigurations);
+            builder.setConfigurations(configurations);
+            builder.setLastModified(getLastModified());
+            builder.setOverlay(true);
+            return builder;
+        }
+
+        private String getLastModified() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(self.getProfileHash());
+            for (Profile parent : self.getParents()) {
+                sb.append("-").append(parent.getProfileHash());
+            }
+            return sb.toString();
+        }
+    }
+}
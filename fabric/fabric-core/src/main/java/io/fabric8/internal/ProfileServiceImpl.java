@@ -19,9 +19,7 @@ import io.fabric8.api.Container;
 import io.fabric8.api.FabricException;
 import io.fabric8.api.FabricRequirements;
 import io.fabric8.api.FabricService;
-import io.fabric8.api.OptionsProvider;
 import io.fabric8.api.Profile;
-import io.fabric8.api.ProfileBuilder;
 import io.fabric8.api.ProfileRegistry;
 import io.fabric8.api.ProfileService;
 import io.fabric8.api.Profiles;
@@ -29,15 +27,12 @@ import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.Version;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.ValidatingReference;
-import io.fabric8.utils.DataStoreUtils;
 import io.fabric8.utils.SystemProperties;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -60,12 +55,15 @@ public final class ProfileServiceImpl extends AbstractComponent implements Profi
     private final ValidatingReference<RuntimeProperties> runtimeProperties = new ValidatingReference<>();
     
     static class OverlayAudit {
-        Map<String, Profile> overlayProfiles = new HashMap<String, Profile>();
+        Map<String, Profile> overlayProfiles = new ConcurrentHashMap<String, Profile>();
     }
+
+    private final ProfileOverlayCache overlayCache = new ProfileOverlayCache();
+    private OverlayAudit overlayAudit;
     
     @Activate
     void activate() throws Exception {
-        getOverlayAudit();
+        overlayAudit = getOverlayAudit();
         activateComponent();
     }
 
@@ -83,6 +81,8 @@ public final class ProfileServiceImpl extends AbstractComponent implements Profi
     @Deactivate
     void deactivate() {
         deactivateComponent();
+        LOGGER.debug("Discarding {}", overlayCache);
+        overlayCache.invalidateAll();
     }
     
     @Override
@@ -170,29 +170,26 @@ public final class ProfileServiceImpl extends AbstractComponent implements Profi
     public Profile getOverlayProfile(Profile profile) {
         assertValid();
         Profile overlayProfile;
-        synchronized (this) {
-            if (profile.isOverlay()) {
-                LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
-                overlayProfile = profile;
-            } else {
-                String profileId = profile.getId();
-                String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
-                ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
-                builder.addOptions(new OverlayOptionsProvider(profile, environment));
-                overlayProfile = builder.getProfile();
-                
-                // Log the overlay profile difference
-                if (LOGGER.isInfoEnabled()) {
-                    OverlayAudit audit = getOverlayAudit();
+        if (profile.isOverlay()) {
+            LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
+            overlayProfile = profile;
+        } else {
+            String profileId = profile.getId();
+            String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
+            overlayProfile = overlayCache.getOverlayProfile(profile, environment);
+
+            // Log the overlay profile difference
+            if (LOGGER.isInfoEnabled()) {
+                OverlayAudit audit = overlayAudit;
+                if (audit.overlayProfiles.get(profileId) != overlayProfile) {
                     synchronized (audit) {
                         Profile lastOverlay = audit.overlayProfiles.get(profileId);
                         if (lastOverlay == null) {
                             LOGGER.info("Overlay" + Profiles.getProfileInfo(overlayProfile, true));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
                         } else if (!lastOverlay.equals(overlayProfile)) {
                             LOGGER.info("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
                         }
+                        audit.overlayProfiles.put(profileId, overlayProfile);
                     }
                 }
             }
@@ -200,6 +197,13 @@ public final class ProfileServiceImpl extends AbstractComponent implements Profi
         return overlayProfile;
     }
 
+    /**
+     * Returns the cache of overlay profiles; which has the hit and miss statistics
+     */
+    public ProfileOverlayCache getOverlayCache() {
+        return overlayCache;
+    }
+
     @Override
     public void deleteProfile(FabricService fabricService, String versionId, String profileId, boolean force) {
         assertValid();
@@ -238,145 +242,6 @@ public final class ProfileServiceImpl extends AbstractComponent implements Profi
         }
     }
 
-    static class OverlayOptionsProvider implements OptionsProvider<ProfileBuilder> {
-
-        private final Profile self;
-        private final String environment;
-
-        private static class SupplementControl {
-            byte[] data;
-            Properties props;
-        }
-        
-        OverlayOptionsProvider(Profile self, String environment) {
-            this.self = self;
-            this.environment = environment;
-        }
-
-        @Override
-        public ProfileBuilder addOptions(ProfileBuilder builder) {
-            builder.setAttributes(self.getAttributes());
-            builder.setFileConfigurations(getFileConfigurations());
-            builder.setConfigurations(getConfigurations());
-            builder.setLastModified(getLastModified());
-            builder.setOverlay(true);
-            return builder;
-        }
-
-        private Map<String, byte[]> getFileConfigurations() {
-            try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
-                Map<String, byte[]> rc = new HashMap<String, byte[]>();
-                for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
-                    SupplementControl ctrl = entry.getValue();
-                    if (ctrl.props != null) {
-                        ctrl.data = DataStoreUtils.toBytes(ctrl.props);
-                    }
-                    rc.put(entry.getKey(), ctrl.data);
-                }
-                return rc;
-            } catch (Exception e) {
-                throw FabricException.launderThrowable(e);
-            }
-        }
-        
-        private Map<String, Map<String, String>> getConfigurations() {
-            try {
-                Map<String, SupplementControl> aggregate = new HashMap<String, SupplementControl>();
-                for (Profile profile : getInheritedProfiles()) {
-                    supplement(profile, aggregate);
-                }
-
-                Map<String, Map<String, String>> rc = new HashMap<String, Map<String, String>>();
-                for (Map.Entry<String, SupplementControl> entry : aggregate.entrySet()) {
-                    SupplementControl ctrl = entry.getValue();
-                    if (ctrl.props != null) {
-                        rc.put(DataStoreUtils.stripSuffix(entry.getKey(), ".properties"), DataStoreUtils.toMap(ctrl.props));
-                    }
-                }
-                return rc;
-            } catch (Exception e) {
-                throw FabricException.launderThrowable(e);
-            }
-        }
-        
-        private List<Profile> getInheritedProfiles() {
-            List<Profile> profiles = new ArrayList<>();
-            fillParentProfiles(self, profiles);
-            return profiles;
-        }
-
-        private void fillParentProfiles(Profile profile, List<Profile> profiles) {
-            if (!profiles.contains(profile)) {
-                for (Profile p : profile.getParents()) {
-                    fillParentProfiles(p, profiles);
-                }
-                profiles.add(profile);
-            }
-        }
-
-        private void supplement(Profile profile, Map<String, SupplementControl> aggregate) throws Exception {
-
-            Map<String, byte[]> configs = profile.getFileConfigurations();
-            for (String key : configs.keySet()) {
-                // Ignore environment specific configs
-                if (key.contains("#")) {
-                    continue;
-                }
-                byte[] value = configs.get(key);
-                if (environment != null && configs.containsKey(key + "#" + environment)) {
-                    value = configs.get(key + "#" + environment);
-                }
-                // we can use fine grained inheritance based updating if it's
-                // a properties file.
-                String fileName = key;
-                if (fileName.endsWith(".properties")) {
-                    SupplementControl ctrl = aggregate.get(fileName);
-                    if (ctrl != null) {
-                        // we can update the file..
-                        Properties childMap = DataStoreUtils.toProperties(value);
-                        if (childMap.remove(Profile.DELETED) != null) {
-                            ctrl.props.clear();
-                        }
-
-                        // Update the entries...
-                        for (Map.Entry<Object, Object> p : childMap.entrySet()) {
-                            if (Profile.DELETED.equals(p.getValue())) {
-                                ctrl.props.remove(p.getKey());
-                            } else {
-                                ctrl.props.put(p.getKey(), p.getValue());
-                            }
-                        }
-
-                    } else {
-                        // new file..
-                        ctrl = new SupplementControl();
-                        ctrl.props = DataStoreUtils.toProperties(value);
-                        aggregate.put(fileName, ctrl);
-                    }
-                } else {
-                    // not a properties file? we can only overwrite.
-                    SupplementControl ctrl = new SupplementControl();
-                    ctrl.data = value;
-                    aggregate.put(fileName, ctrl);
-                }
-            }
-        }
-
-        private String getLastModified() {
-            StringBuilder sb = new StringBuilder();
-            sb.append(self.getProfileHash());
-            for (Profile parent : self.getParents()) {
-                sb.append("-").append(parent.getProfileHash());
-            }
-            return sb.toString();
-        }
-    }
-
     void bindProfileRegistry(ProfileRegistry service) {
         this.profileRegistry.bind(service);
     }
@@ -22,6 +22,7 @@ import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.common.util.ChecksumUtils;
 import io.fabric8.common.util.Closeables;
 
+import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
 import java.security.InvalidParameterException;
@@ -36,6 +37,9 @@ import org.apache.felix.scr.annotations.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 @ThreadSafe
 @Component(name = "io.fabric8.placholder.resolver.checksum", label = "Fabric8 Checksum Placholder Resolver", metatype = false)
 @Service({ PlaceholderResolver.class, ChecksumPlaceholderResolver.class })
@@ -46,6 +50,11 @@ public final class ChecksumPlaceholderResolver extends AbstractComponent impleme
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumPlaceholderResolver.class);
 
+    private static final int MAX_CACHED_CHECKSUMS = 1000;
+
+    // Checksums of local files and released maven artifacts, the only URLs we can tell are unchanged
+    private final Cache<String, CachedChecksum> checksums = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_CHECKSUMS).build();
+
     @Activate
     void activate() {
         activateComponent();
@@ -54,6 +63,7 @@ public final class ChecksumPlaceholderResolver extends AbstractComponent impleme
     @Deactivate
     void deactivate() {
         deactivateComponent();
+        checksums.invalidateAll();
     }
 
     @Override
@@ -69,11 +79,25 @@ public final class ChecksumPlaceholderResolver extends AbstractComponent impleme
         	LOGGER.error("The checksum URL cannot contain mvel sub-URL");
         	throw new InvalidParameterException("The checksum URL cannot contain mvel sub-URL");
         }
-    	InputStream is = null;
+        String location = value.substring("checksum:".length());
+        CachedChecksum cached = checksums.getIfPresent(location);
+        if (cached != null && cached.isValid()) {
+            return cached.checksum;
+        }
+        File file = getFile(location);
+        long lastModified = file != null ? file.lastModified() : 0L;
+        long length = file != null ? file.length() : 0L;
+        InputStream is = null;
         try {
-            URL url = new URL(value.substring("checksum:".length()));
+            URL url = new URL(location);
             is = url.openStream();
-            return String.valueOf(ChecksumUtils.checksum(is));
+            String checksum = String.valueOf(ChecksumUtils.checksum(is));
+            if (file != null && lastModified != 0L) {
+                checksums.put(location, new CachedChecksum(checksum, file, lastModified, length));
+            } else if (isReleasedArtifact(location)) {
+                checksums.put(location, new CachedChecksum(checksum, null, 0L, 0L));
+            }
+            return checksum;
         } catch (Exception ex) {
             LOGGER.debug("Could not resolve placeholder", ex);
             return "0";
@@ -81,4 +105,55 @@ public final class ChecksumPlaceholderResolver extends AbstractComponent impleme
             Closeables.closeQuitely(is);
         }
     }
+
+    private static File getFile(String location) {
+        if (location.startsWith("file:")) {
+            try {
+                return new File(new URL(location).toURI());
+            } catch (Exception ex) {
+                // not a plain file url, it will not be cached
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True for a maven url with a fixed released version, which can never change once deployed.
+     */
+    private static boolean isReleasedArtifact(String location) {
+        if (!location.startsWith("mvn:")) {
+            return false;
+        }
+        String coordinates = location.substring("mvn:".length());
+        int repositoryEnd = coordinates.lastIndexOf('!');
+        if (repositoryEnd >= 0) {
+            coordinates = coordinates.substring(repositoryEnd + 1);
+        }
+        String[] parts = coordinates.split("/");
+        if (parts.length < 3) {
+            return false;
+        }
+        String version = parts[2].trim();
+        return !version.isEmpty() && !version.endsWith("SNAPSHOT") && !version.equals("LATEST") && !version.equals("RELEASE")
+                && version.indexOf('[') < 0 && version.indexOf('(') < 0 && version.indexOf(',') < 0;
+    }
+
+    private static final class CachedChecksum {
+
+        private final String checksum;
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        private CachedChecksum(String checksum, File file, long lastModified, long length) {
+            this.checksum = checksum;
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        boolean isValid() {
+            return file == null || (file.lastModified() == lastModified && file.length() == length);
+        }
+    }
 }
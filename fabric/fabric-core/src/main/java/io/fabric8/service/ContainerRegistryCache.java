@@ -0,0 +1,306 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.service;
+
+import io.fabric8.api.DataStore.ContainerAttribute;
+import io.fabric8.api.jcip.Immutable;
+import io.fabric8.api.jcip.ThreadSafe;
+import io.fabric8.common.util.Closeables;
+import io.fabric8.zookeeper.ZkPath;
+import io.fabric8.zookeeper.utils.InterpolationHelper;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeData;
+import org.apache.curator.utils.ZKPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A watch maintained view of the container registry in <code>/fabric/registry/containers</code>.
+ *
+ * Reads are served from a {@link TreeCache} and handed out as immutable {@link ContainerSnapshot}s
+ * with all attributes already resolved. A snapshot is only valid for the generation of the registry it
+ * was built from, any change below the registry bumps the generation. A container that has been written
+ * locally is read directly from ZooKeeper until the watch has had a chance to catch up.
+ */
+@ThreadSafe
+final class ContainerRegistryCache implements PathChildrenCacheListener {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ContainerRegistryCache.class);
+
+    static final String REGISTRY_CONTAINERS_PATH = "/fabric/registry/containers";
+    static final long WRITE_SETTLE_TIME = 5000L;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CuratorFramework curator;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ConcurrentMap<String, ContainerSnapshot> snapshots = new ConcurrentHashMap<String, ContainerSnapshot>();
+    private final ConcurrentMap<String, Long> recentWrites = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong generation = new AtomicLong();
+    private final TreeCache treeCache;
+
+    ContainerRegistryCache(CuratorFramework curator) {
+        this.curator = curator;
+        this.treeCache = new TreeCache(curator, REGISTRY_CONTAINERS_PATH, true, false, false, executor);
+    }
+
+    void start() throws Exception {
+        treeCache.getListenable().addListener(this);
+        treeCache.start(TreeCache.StartMode.NORMAL);
+    }
+
+    void close() {
+        treeCache.getListenable().removeListener(this);
+        Closeables.closeQuitely(treeCache);
+        executor.shutdownNow();
+        snapshots.clear();
+        recentWrites.clear();
+    }
+
+    @Override
+    public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+        // substituted attributes may point into other containers, so any change invalidates all snapshots
+        generation.incrementAndGet();
+        snapshots.clear();
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Registry event {} on {}", event.getType(), event.getData() != null ? event.getData().getPath() : null);
+        }
+    }
+
+    /**
+     * Marks the container as written locally, it is read from ZooKeeper until the registry watch has settled.
+     */
+    void containerWritten(String containerId) {
+        recentWrites.put(containerId, System.currentTimeMillis());
+        snapshots.remove(containerId);
+    }
+
+    /**
+     * Get the snapshot of the given container or null if the container is not (yet) in the cache.
+     */
+    ContainerSnapshot getContainer(String containerId) {
+        Long written = recentWrites.get(containerId);
+        if (written != null) {
+            if (System.currentTimeMillis() - written < WRITE_SETTLE_TIME) {
+                return null;
+            }
+            recentWrites.remove(containerId, written);
+        }
+        long currentGeneration = generation.get();
+        ContainerSnapshot snapshot = snapshots.get(containerId);
+        if (snapshot == null || snapshot.generation != currentGeneration) {
+            snapshot = createSnapshot(containerId, currentGeneration);
+            if (snapshot != null) {
+                snapshots.put(containerId, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    private ContainerSnapshot createSnapshot(String containerId, long generation) {
+        if (lookup(ZkPath.CONTAINER.getPath(containerId)) == null) {
+            return null;
+        }
+        Map<ContainerAttribute, String> attributes = new EnumMap<ContainerAttribute, String>(ContainerAttribute.class);
+        Map<ContainerAttribute, String> substituted = new EnumMap<ContainerAttribute, String>(ContainerAttribute.class);
+        Set<ContainerAttribute> unresolved = EnumSet.noneOf(ContainerAttribute.class);
+        for (ContainerAttribute attribute : ContainerAttribute.values()) {
+            if (attribute == ContainerAttribute.Domains) {
+                continue;
+            }
+            TreeData data = lookup(ZkDataStoreImpl.getAttributePath(containerId, attribute));
+            if (data != null) {
+                String value = data.getData() != null ? new String(data.getData(), UTF_8) : null;
+                attributes.put(attribute, value);
+                if (value != null && !value.isEmpty()) {
+                    SubstitutionResult result = substitute(value);
+                    if (result.resolved) {
+                        substituted.put(attribute, result.value);
+                    } else {
+                        unresolved.add(attribute);
+                    }
+                }
+            }
+        }
+
+        TreeData parentData = lookup(ZkPath.CONTAINER_PARENT.getPath(containerId));
+        String parentId = parentData != null && parentData.getData() != null ? new String(parentData.getData(), UTF_8).trim() : "";
+
+        List<String> domains = new ArrayList<String>();
+        TreeData domainsData = lookup(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
+        if (domainsData != null) {
+            domains.addAll(treeCache.getChildrenNames(domainsData.getPath()));
+            Collections.sort(domains);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String domain : domains) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(domain);
+        }
+
+        boolean alive = lookup(ZkPath.CONTAINER_ALIVE.getPath(containerId)) != null;
+        return new ContainerSnapshot(generation, containerId, parentId, alive, sb.toString(), attributes, substituted, unresolved);
+    }
+
+    /**
+     * Walks down from the registry root using the cached children, so that absent nodes never cause a round trip.
+     */
+    private TreeData lookup(String path) {
+        if (!path.startsWith(REGISTRY_CONTAINERS_PATH + "/")) {
+            return null;
+        }
+        String currentPath = REGISTRY_CONTAINERS_PATH;
+        TreeData data = treeCache.getCurrentData(currentPath);
+        for (String node : path.substring(REGISTRY_CONTAINERS_PATH.length() + 1).split("/")) {
+            if (data == null || !data.getChildren().contains(node)) {
+                return null;
+            }
+            currentPath = ZKPaths.makePath(currentPath, node);
+            data = treeCache.getCurrentData(currentPath);
+        }
+        return data;
+    }
+
+    /**
+     * Same substitution as {@link io.fabric8.zookeeper.utils.ZooKeeperUtils#getSubstitutedData(CuratorFramework, String)}
+     * for references into the registry. Anything else makes the value unresolved, it is then read directly.
+     */
+    private SubstitutionResult substitute(String value) {
+        final SubstitutionResult result = new SubstitutionResult();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("data", value);
+        InterpolationHelper.performSubstitution(props, new InterpolationHelper.SubstitutionCallback() {
+            @Override
+            public String getValue(String key) {
+                if (key.startsWith("zk:")) {
+                    try {
+                        URI uri = new URI(key);
+                        String path = uri.getSchemeSpecificPart().trim();
+                        if (!path.startsWith("/")) {
+                            path = ZkPath.CONTAINER.getPath(path);
+                        }
+                        if (uri.getFragment() != null || !path.startsWith(REGISTRY_CONTAINERS_PATH + "/")) {
+                            result.resolved = false;
+                            return null;
+                        }
+                        TreeData data = lookup(path);
+                        return data != null && data.getData() != null ? new String(data.getData(), UTF_8) : null;
+                    } catch (Exception e) {
+                        //ignore and just return null.
+                    }
+                }
+                return null;
+            }
+        });
+        result.value = props.get("data");
+        return result;
+    }
+
+    private static final class SubstitutionResult {
+        private boolean resolved = true;
+        private String value;
+    }
+
+    /**
+     * An immutable snapshot of a container's registry entries.
+     */
+    @Immutable
+    static final class ContainerSnapshot {
+
+        private final long generation;
+        private final String id;
+        private final String parentId;
+        private final boolean alive;
+        private final String domains;
+        private final Map<ContainerAttribute, String> attributes;
+        private final Map<ContainerAttribute, String> substituted;
+        private final Set<ContainerAttribute> unresolved;
+
+        private ContainerSnapshot(long generation, String id, String parentId, boolean alive, String domains, Map<ContainerAttribute, String> attributes,
+                                  Map<ContainerAttribute, String> substituted, Set<ContainerAttribute> unresolved) {
+            this.generation = generation;
+            this.id = id;
+            this.parentId = parentId;
+            this.alive = alive;
+            this.domains = domains;
+            this.attributes = Collections.unmodifiableMap(attributes);
+            this.substituted = Collections.unmodifiableMap(substituted);
+            this.unresolved = Collections.unmodifiableSet(unresolved);
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getParentId() {
+            return parentId;
+        }
+
+        boolean isAlive() {
+            return alive;
+        }
+
+        String getDomains() {
+            return domains;
+        }
+
+        boolean hasAttribute(ContainerAttribute attribute) {
+            return attributes.containsKey(attribute);
+        }
+
+        String getAttribute(ContainerAttribute attribute) {
+            return attributes.get(attribute);
+        }
+
+        /**
+         * True if the substituted value of the attribute refers to data outside of the registry.
+         */
+        boolean isUnresolved(ContainerAttribute attribute) {
+            return unresolved.contains(attribute);
+        }
+
+        String getSubstitutedAttribute(ContainerAttribute attribute) {
+            return substituted.get(attribute);
+        }
+
+        @Override
+        public String toString() {
+            return "ContainerSnapshot[id=" + id + ",parent=" + parentId + ",alive=" + alive + "]";
+        }
+    }
+}
@@ -1267,6 +1267,9 @@ public final class FabricServiceImpl extends AbstractComponent implements Fabric
             for (Map.Entry<String, String> e : props.entrySet()) {
                 final String key = e.getKey();
                 final String value = e.getValue();
+                if (isLiteral(value)) {
+                    continue;
+                }
                 props.put(key, InterpolationHelper.substVars(value, key, null, props, new InterpolationHelper.SubstitutionCallback() {
                     public String getValue(String toSubstitute) {
                         if (toSubstitute != null && toSubstitute.contains(":")) {
@@ -1282,6 +1285,13 @@ public final class FabricServiceImpl extends AbstractComponent implements Fabric
         return mutableConfigurations;
     }
 
+    /**
+     * True if substitution would return the value unchanged, as it has neither placeholders nor escapes.
+     */
+    private static boolean isLiteral(String value) {
+        return value != null && value.indexOf("${") < 0 && value.indexOf('\\') < 0;
+    }
+
     void bindConfigAdmin(ConfigurationAdmin service) {
         this.configAdmin.bind(service);
     }
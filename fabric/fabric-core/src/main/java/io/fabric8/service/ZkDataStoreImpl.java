@@ -19,6 +19,7 @@ import static io.fabric8.zookeeper.ZkPath.CONTAINER_DOMAIN;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.deleteSafe;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.exists;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getByteData;
+import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getChildren;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getChildrenSafe;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getStringData;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getSubstitutedPath;
@@ -97,6 +98,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor();
     private final ExecutorService callbacksExecutor = Executors.newSingleThreadExecutor();
     private TreeCache treeCache;
+    private ContainerRegistryCache registryCache;
 
     @Activate
     void activate() throws Exception {
@@ -114,9 +116,12 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
         treeCache = new TreeCache(curator.get(), ZkPath.CONFIGS.getPath(), true, false, true, cacheExecutor);
         treeCache.start(TreeCache.StartMode.NORMAL);
         treeCache.getListenable().addListener(this);
+        registryCache = new ContainerRegistryCache(curator.get());
+        registryCache.start();
     }
 
     private void deactivateInternal() {
+        registryCache.close();
         treeCache.getListenable().removeListener(this);
         Closeables.closeQuitely(treeCache);
         callbacksExecutor.shutdownNow();
@@ -203,6 +208,9 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     public List<String> getContainers() {
         assertValid();
         try {
+            if (treeCache.getCurrentData(ZkPath.CONFIGS_CONTAINERS.getPath()) != null) {
+                return getChildren(treeCache, ZkPath.CONFIGS_CONTAINERS.getPath());
+            }
             return getChildrenSafe(curator.get(), ZkPath.CONFIGS_CONTAINERS.getPath());
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
@@ -212,12 +220,21 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     @Override
     public boolean hasContainer(String containerId) {
         assertValid();
-        return getContainers().contains(containerId);
+        try {
+            // a container that was just created may not have reached the cache yet
+            return getContainers().contains(containerId) || exists(curator.get(), ZkPath.CONFIG_CONTAINER.getPath(containerId)) != null;
+        } catch (Exception e) {
+            throw FabricException.launderThrowable(e);
+        }
     }
 
     @Override
     public String getContainerParent(String containerId) {
         assertValid();
+        ContainerRegistryCache.ContainerSnapshot snapshot = registryCache.getContainer(containerId);
+        if (snapshot != null) {
+            return snapshot.getParentId();
+        }
         try {
             String parentName = getStringData(curator.get(), ZkPath.CONTAINER_PARENT.getPath(containerId));
             return parentName != null ? parentName.trim() : "";
@@ -236,6 +253,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
             if (curator.get() == null) {
                 throw new IllegalStateException("Zookeeper service not available");
             }
+            registryCache.containerWritten(containerId);
             // Wipe all config entries that are related to the container for all versions.
             ProfileService profileService = fabricService.adapt(ProfileService.class);
             for (String version : profileService.getVersions()) {
@@ -269,6 +287,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
                 sb.append(profileId);
             }
 
+            registryCache.containerWritten(containerId);
             setData(curator.get(), ZkPath.CONFIG_CONTAINER.getPath(containerId), versionId);
             setData(curator.get(), ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId), sb.toString());
             setData(curator.get(), ZkPath.CONTAINER_PARENT.getPath(containerId), parent);
@@ -302,6 +321,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
             //            setData(curator.get(), ZkPath.CONFIG_VERSIONS_CONTAINER.getPath(versionId, containerId), sb.toString());
             //            setData(curator.get(), ZkPath.CONTAINER_PARENT.getPath(containerId), parent);
 
+            registryCache.containerWritten(containerId);
             setContainerMetadata(metadata);
 
             Map<String, String> configuration = metadata.getContainerConfiguration();
@@ -364,6 +384,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
         assertValid();
         //We encode the metadata so that they are more friendly to import/export.
         try {
+            registryCache.containerWritten(metadata.getContainerName());
             setData(curator.get(), ZkPath.CONTAINER_METADATA.getPath(metadata.getContainerName()), Base64Encoder.encode(ObjectUtils.toBytes(metadata)));
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
@@ -435,6 +456,10 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     @Override
     public boolean isContainerAlive(String id) {
         assertValid();
+        ContainerRegistryCache.ContainerSnapshot snapshot = registryCache.getContainer(id);
+        if (snapshot != null) {
+            return snapshot.isAlive();
+        }
         try {
             return exists(curator.get(), ZkPath.CONTAINER_ALIVE.getPath(id)) != null;
         } catch (KeeperException.NoNodeException e) {
@@ -447,6 +472,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     @Override
     public void setContainerAlive(String id, boolean flag) {
         assertValid();
+        registryCache.containerWritten(id);
         try {
             if (flag) {
                 setData(curator.get(), ZkPath.CONTAINER_ALIVE.getPath(id), "alive");
@@ -463,6 +489,21 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     @Override
     public String getContainerAttribute(String containerId, ContainerAttribute attribute, String def, boolean mandatory, boolean substituted) {
         assertValid();
+        ContainerRegistryCache.ContainerSnapshot snapshot = registryCache.getContainer(containerId);
+        if (snapshot != null) {
+            if (attribute == ContainerAttribute.Domains) {
+                return snapshot.getDomains();
+            } else if (substituted && !snapshot.isUnresolved(attribute)) {
+                return snapshot.getSubstitutedAttribute(attribute);
+            } else if (!substituted) {
+                if (snapshot.hasAttribute(attribute)) {
+                    return snapshot.getAttribute(attribute);
+                } else if (mandatory) {
+                    throw FabricException.launderThrowable(new KeeperException.NoNodeException(getAttributePath(containerId, attribute)));
+                }
+                return def;
+            }
+        }
         if (attribute == ContainerAttribute.Domains) {
             try {
                 List<String> list = curator.get().getChildren().forPath(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
@@ -499,6 +540,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
     @Override
     public void setContainerAttribute(String containerId, ContainerAttribute attribute, String value) {
         assertValid();
+        registryCache.containerWritten(containerId);
         // Special case for resolver
         // TODO: we could use a double indirection on the ip so that it does not need to change
         // TODO: something like ${zk:container/${zk:container/resolver}}
@@ -544,7 +586,7 @@ public final class ZkDataStoreImpl extends AbstractComponent implements DataStor
         }
     }
 
-    private String getAttributePath(String containerId, ContainerAttribute attribute) {
+    static String getAttributePath(String containerId, ContainerAttribute attribute) {
         switch (attribute) {
         case BlueprintStatus:
             return ZkPath.CONTAINER_EXTENDER_STATUS.getPath(containerId, "blueprint");
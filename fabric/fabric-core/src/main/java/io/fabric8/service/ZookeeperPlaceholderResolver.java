@@ -22,7 +22,10 @@ import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.zookeeper.ZkPath;
 
+import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.felix.scr.annotations.Activate;
@@ -32,6 +35,8 @@ import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +50,10 @@ public final class ZookeeperPlaceholderResolver extends AbstractComponent implem
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ZookeeperPlaceholderResolver.class);
 
+    // Resolved values by path, an entry is dropped as soon as the watch on its path fires
+    private final ConcurrentMap<String, WatchedPath> watchedPaths = new ConcurrentHashMap<String, WatchedPath>();
+    private volatile CuratorFramework watchedCurator;
+
     @Activate
     void activate() {
         activateComponent();
@@ -53,6 +62,8 @@ public final class ZookeeperPlaceholderResolver extends AbstractComponent implem
     @Deactivate
     void deactivate() {
         deactivateComponent();
+        watchedPaths.clear();
+        watchedCurator = null;
     }
 
     @Override
@@ -62,13 +73,82 @@ public final class ZookeeperPlaceholderResolver extends AbstractComponent implem
 
     @Override
     public String resolve(FabricService fabricService, Map<String, Map<String, String>> configs, String pid, String key, String value) {
+        CuratorFramework curator = fabricService.adapt(CuratorFramework.class);
+        if (curator != watchedCurator) {
+            watchedPaths.clear();
+            watchedCurator = curator;
+        }
+        WatchedPath watchedPath = null;
+        try {
+            String path = getPath(value);
+            watchedPath = watchedPaths.get(path);
+            if (watchedPath != null) {
+                String result = watchedPath.values.get(value);
+                if (result != null) {
+                    return result;
+                }
+            } else {
+                watchedPath = watch(curator, path);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not watch the path of {}. Resolving without cache.", value, e);
+        }
+
+        // the watch is set before the data is read, so any later change invalidates the result
+        String result;
         try {
-            return new String(ZkPath.loadURL(fabricService.adapt(CuratorFramework.class), value), "UTF-8");
+            result = new String(ZkPath.loadURL(curator, value), "UTF-8");
         } catch (KeeperException.NoNodeException e) {
             LOGGER.warn("Could not load property value: {}. Ignoring.", value, e);
-            return "";
+            result = "";
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
+        if (watchedPath != null && watchedPaths.get(watchedPath.path) == watchedPath) {
+            watchedPath.values.put(value, result);
+        }
+        return result;
+    }
+
+    private WatchedPath watch(CuratorFramework curator, String path) throws Exception {
+        WatchedPath watchedPath = new WatchedPath(path);
+        WatchedPath existing = watchedPaths.putIfAbsent(path, watchedPath);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            curator.checkExists().usingWatcher(watchedPath).forPath(path);
+        } catch (Exception e) {
+            watchedPaths.remove(path, watchedPath);
+            throw e;
+        }
+        return watchedPath;
+    }
+
+    /**
+     * The node path as resolved by {@link ZkPath#loadURL(CuratorFramework, String)}.
+     */
+    private static String getPath(String url) throws Exception {
+        String path = new URI(url).getSchemeSpecificPart().trim();
+        if (!path.startsWith("/")) {
+            path = ZkPath.CONTAINER.getPath(path);
+        }
+        return path;
+    }
+
+    private final class WatchedPath implements Watcher {
+
+        private final String path;
+        private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+
+        private WatchedPath(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void process(WatchedEvent event) {
+            // data changes as well as connection loss invalidate the values
+            watchedPaths.remove(path, this);
+        }
     }
 }
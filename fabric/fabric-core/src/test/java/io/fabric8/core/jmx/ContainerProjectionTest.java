@@ -0,0 +1,106 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.core.jmx;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import io.fabric8.api.Container;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileService;
+import io.fabric8.api.Version;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContainerProjectionTest {
+
+    private FabricService fabricService;
+    private Container root;
+    private Container child;
+
+    @Before
+    public void setUp() {
+        Profile defaultProfile = createNiceMock(Profile.class);
+        expect(defaultProfile.getId()).andReturn("default").anyTimes();
+        Profile childProfile = createNiceMock(Profile.class);
+        expect(childProfile.getId()).andReturn("child-profile").anyTimes();
+
+        Version version = createNiceMock(Version.class);
+        expect(version.getId()).andReturn("1.0").anyTimes();
+        expect(version.getRequiredProfile("default")).andReturn(defaultProfile).anyTimes();
+        expect(version.getRequiredProfile("child-profile")).andReturn(childProfile).anyTimes();
+
+        root = createNiceMock(Container.class);
+        child = createNiceMock(Container.class);
+        expect(root.getId()).andReturn("root").anyTimes();
+        expect(root.getType()).andReturn("karaf").anyTimes();
+        expect(root.isAlive()).andReturn(true).anyTimes();
+        expect(root.getVersionId()).andReturn("1.0").anyTimes();
+        expect(root.getVersion()).andReturn(version).anyTimes();
+        expect(root.getChildren()).andReturn(new Container[]{child}).anyTimes();
+        expect(root.getProfiles()).andReturn(new Profile[]{defaultProfile}).anyTimes();
+        expect(child.getId()).andReturn("child").anyTimes();
+        expect(child.getType()).andReturn("karaf").anyTimes();
+        expect(child.isAlive()).andReturn(false).anyTimes();
+        expect(child.getVersionId()).andReturn("1.0").anyTimes();
+        expect(child.getVersion()).andReturn(version).anyTimes();
+        expect(child.getParent()).andReturn(root).anyTimes();
+        expect(child.getChildren()).andReturn(new Container[0]).anyTimes();
+        expect(child.getProfiles()).andReturn(new Profile[]{childProfile}).anyTimes();
+
+        ProfileService profileService = createNiceMock(ProfileService.class);
+        expect(profileService.getVersion("1.0")).andReturn(version).anyTimes();
+        DataStore dataStore = createNiceMock(DataStore.class);
+        expect(dataStore.getContainerProfiles("root")).andReturn(Collections.<String>emptyList()).anyTimes();
+        expect(dataStore.getContainerProfiles("child")).andReturn(Arrays.asList("child-profile")).anyTimes();
+        fabricService = createNiceMock(FabricService.class);
+        expect(fabricService.adapt(ProfileService.class)).andReturn(profileService).anyTimes();
+        expect(fabricService.adapt(DataStore.class)).andReturn(dataStore).anyTimes();
+        expect(fabricService.getContainers()).andReturn(new Container[]{root, child}).anyTimes();
+
+        replay(defaultProfile, childProfile, version, root, child, profileService, dataStore, fabricService);
+    }
+
+    @Test
+    public void testSameResultsAsBeanUtils() {
+        List<String> fields = Arrays.asList("id", "type", "alive", "parentId", "children", "profileIds", "versionId", "version.id", "profiles[0].id");
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        for (Container container : query.getContainers()) {
+            assertEquals(BeanUtils.convertContainerToMap(fabricService, container, fields), ContainerProjection.forFields(fields).toMap(query, container));
+        }
+    }
+
+    @Test
+    public void testNestedProperties() {
+        List<String> fields = Arrays.asList("id", "parent.id", "parent.children[0].id", "profiles[0].id");
+        ContainerProjection.Query query = new ContainerProjection.Query(fabricService);
+        Map<String, Object> map = ContainerProjection.forFields(fields).toMap(query, child);
+
+        assertEquals(BeanUtils.convertContainerToMap(fabricService, child, fields), map);
+        assertEquals("root", map.get("parent.id"));
+        assertEquals("child", map.get("parent.children[0].id"));
+        assertEquals("child-profile", map.get("profiles[0].id"));
+    }
+}
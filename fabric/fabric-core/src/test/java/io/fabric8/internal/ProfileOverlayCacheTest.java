@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ProfileOverlayCacheTest {
+
+    private static final String PID = "test";
+
+    private ProfileBuildersImpl profileBuilders;
+    private ProfileOverlayCache cache;
+    private Profile parent;
+
+    @Before
+    public void setUp() {
+        profileBuilders = new ProfileBuildersImpl();
+        profileBuilders.activateComponent();
+        cache = new ProfileOverlayCache(ProfileOverlayCache.DEFAULT_MAXIMUM_SIZE, profileBuilders);
+        parent = createProfile("parent", "p1", null, "a", "parent");
+    }
+
+    @After
+    public void tearDown() {
+        profileBuilders.deactivateComponent();
+    }
+
+    @Test
+    public void testChildrenShareTheParentOverlay() {
+        Profile parentOverlay = cache.getOverlayProfile(parent, null);
+        assertEquals(1, cache.getMissCount());
+
+        Profile first = cache.getOverlayProfile(createProfile("first", "f1", parent, "b", "first"), null);
+        Profile second = cache.getOverlayProfile(createProfile("second", "s1", parent, "c", "second"), null);
+
+        // each child only builds its own overlay on top of the cached one of the parent
+        assertEquals(3, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getSize());
+        assertSame(parentOverlay, cache.getOverlayProfile(parent, null));
+        assertEquals("parent", getValue(first, "a"));
+        assertEquals("first", getValue(first, "b"));
+        assertEquals("parent", getValue(second, "a"));
+        assertEquals("second", getValue(second, "c"));
+    }
+
+    @Test
+    public void testChangedParentInvalidatesTheChild() {
+        Profile child = createProfile("child", "c1", parent, "b", "child");
+        Profile overlay = cache.getOverlayProfile(child, null);
+        assertSame(overlay, cache.getOverlayProfile(child, null));
+
+        Profile changedParent = createProfile("parent", "p2", null, "a", "changed");
+        Profile changedChild = createProfile("child", "c1", changedParent, "b", "child");
+        Profile changedOverlay = cache.getOverlayProfile(changedChild, null);
+
+        assertNotSame(overlay, changedOverlay);
+        assertEquals("parent", getValue(overlay, "a"));
+        assertEquals("changed", getValue(changedOverlay, "a"));
+        assertEquals("child", getValue(changedOverlay, "b"));
+    }
+
+    @Test
+    public void testChildDoesNotChangeTheParentOverlay() {
+        cache.getOverlayProfile(parent, null);
+        Profile first = cache.getOverlayProfile(createProfile("first", "f1", parent, "a", "first"), null);
+        Profile second = cache.getOverlayProfile(createProfile("second", "s1", parent, "b", "second"), null);
+
+        assertEquals("first", getValue(first, "a"));
+        assertEquals("parent", getValue(cache.getOverlayProfile(parent, null), "a"));
+        assertEquals("parent", getValue(second, "a"));
+        assertEquals("second", getValue(second, "b"));
+    }
+
+    private Profile createProfile(String profileId, String hash, Profile parent, String key, String value) {
+        ProfileBuilder builder = profileBuilders.profileBuilder("1.0", profileId);
+        if (parent != null) {
+            builder.addParent(parent);
+        }
+        builder.addConfiguration(PID, key, value);
+        builder.setLastModified(hash);
+        return builder.getProfile();
+    }
+
+    private static String getValue(Profile profile, String key) {
+        Map<String, String> configuration = profile.getConfiguration(PID);
+        return configuration.get(key);
+    }
+}
@@ -13,34 +13,14 @@
  *  implied.  See the License for the specific language governing
  *  permissions and limitations under the License.
  */
-package io.fabric8.gateway;
-
-import java.util.Date;
+package io.fabric8.cxf;
 
 /**
- * Detailed Record of a Gateway call. This info can be used to report on gateway requests.
+ * A {@link LoadBalanceStrategy} that is told when the exchanges it balanced start and complete.
  */
-public class CallDetailRecord {
+public interface ExchangeAwareLoadBalanceStrategy extends LoadBalanceStrategy {
 
-	private final long callTimeNanos;
-	private final String error;
-	private final Date callDate;
-	public CallDetailRecord(long callTimeNanos, String error) {
-		super();
-		this.callDate = new Date();
-		this.callTimeNanos = callTimeNanos;
-		this.error = error;
-	}
+    void exchangeStarted(String address);
 
-	public long getCallTimeNanos() {
-		return callTimeNanos;
-	}
-	
-	public String getError() {
-		return error;
-	}
-	
-	public Date getCallDate() {
-		return callDate;
-	}
+    void exchangeCompleted(String address);
 }
@@ -45,17 +45,24 @@ public abstract class FabricLoadBalanceStrategySupport implements LoadBalanceStr
     }
 
     protected void onUpdate(Group<CxfNodeState> group) {
-        alternateAddressList.clear();
+        List<String> addresses = new ArrayList<String>();
         for (CxfNodeState node : group.members().values()) {
             if (node.services != null) {
                 for (String url : node.services) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Added the CXF endpoint address " + url);
                     }
-                    alternateAddressList.add(url);
+                    addresses.add(url);
                 }
             }
         }
+        // update in place so that concurrent clients never see an empty list
+        alternateAddressList.retainAll(addresses);
+        for (String address : addresses) {
+            if (!alternateAddressList.contains(address)) {
+                alternateAddressList.add(address);
+            }
+        }
     }
     
     public Group<CxfNodeState> getGroup() {
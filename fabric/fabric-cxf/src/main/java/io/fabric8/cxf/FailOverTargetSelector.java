@@ -67,7 +67,7 @@ public class FailOverTargetSelector extends LoadBalanceTargetSelector {
         return LOG;
     }
 
-    public synchronized void prepare(Message message) {
+    public void prepare(Message message) {
         Exchange exchange = message.getExchange();
         InvocationKey key = new InvocationKey(exchange);
         if (!inProgress.containsKey(key)) {
@@ -96,8 +96,8 @@ public class FailOverTargetSelector extends LoadBalanceTargetSelector {
             Endpoint failOverTarget = getFailOverTarget(exchange, invocation);
             if (failOverTarget != null) {
                 setEndpoint(failOverTarget);
-                selectedConduit.close();
-                selectedConduit = null;
+                // select again for the retry, the failed conduit stays in the pool
+                releaseConduit(exchange);
                 Exception prevExchangeFault =
                     (Exception)exchange.remove(Exception.class.getName());
                 Message outMessage = exchange.getOutMessage();
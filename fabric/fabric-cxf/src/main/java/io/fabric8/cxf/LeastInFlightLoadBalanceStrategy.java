@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cxf;
+
+import io.fabric8.groups.Group;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Returns the address with the fewest exchanges in flight, ties are broken randomly.
+ */
+public class LeastInFlightLoadBalanceStrategy extends FabricLoadBalanceStrategySupport implements ExchangeAwareLoadBalanceStrategy {
+
+    private final ConcurrentMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<String, AtomicInteger>();
+
+    public String getNextAlternateAddress() {
+        List<String> addresses = alternateAddressList;
+        int size = addresses.size();
+        if (size == 0) {
+            throw new IllegalArgumentException("The AlternateAddressList is empty, please fresh the list shortly.");
+        }
+        // start at a random position so that idle addresses are used evenly
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        String answer = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            String address;
+            try {
+                address = addresses.get((offset + i) % size);
+            } catch (IndexOutOfBoundsException e) {
+                // the list changed concurrently
+                continue;
+            }
+            int count = getInFlight(address);
+            if (count < min) {
+                min = count;
+                answer = address;
+            }
+        }
+        if (answer == null) {
+            return getNextAlternateAddress();
+        }
+        return answer;
+    }
+
+    public void exchangeStarted(String address) {
+        AtomicInteger count = inFlight.get(address);
+        if (count == null) {
+            AtomicInteger existing = inFlight.putIfAbsent(address, count = new AtomicInteger());
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void exchangeCompleted(String address) {
+        AtomicInteger count = inFlight.get(address);
+        if (count != null) {
+            while (true) {
+                int current = count.get();
+                if (current <= 0 || count.compareAndSet(current, current - 1)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of exchanges in flight to the given address.
+     */
+    public int getInFlight(String address) {
+        AtomicInteger count = inFlight.get(address);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    protected void onUpdate(Group<CxfNodeState> group) {
+        super.onUpdate(group);
+        // forget the addresses that left the group once their exchanges completed
+        for (Map.Entry<String, AtomicInteger> entry : inFlight.entrySet()) {
+            if (entry.getValue().get() <= 0 && !alternateAddressList.contains(entry.getKey())) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
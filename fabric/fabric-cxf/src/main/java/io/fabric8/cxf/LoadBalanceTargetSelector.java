@@ -29,14 +29,28 @@ import org.apache.cxf.ws.addressing.AttributedURIType;
 import org.apache.cxf.ws.addressing.EndpointReferenceType;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
+/**
+ * Selects the conduit of each exchange through the {@link LoadBalanceStrategy}.
+ *
+ * The choice is stored on the {@link Exchange}, so concurrent invocations of the same client never see each
+ * other's conduit. Conduits are pooled per target address and reused by all exchanges to that address.
+ */
 public class LoadBalanceTargetSelector extends AbstractConduitSelector {
-    protected volatile Conduit selectedConduit;
     protected LoadBalanceStrategy loadBalanceStrategy;
-    
+    protected final ConcurrentMap<String, Conduit> conduitPool = new ConcurrentHashMap<String, Conduit>();
+
     public static final String OVERRIDE_ADDRESS = LoadBalanceTargetSelector.class.getName() + ".OVERRIDE_ADDRESS";
 
+    static final String SELECTED_CONDUIT = LoadBalanceTargetSelector.class.getName() + ".SELECTED_CONDUIT";
+    static final String SELECTED_ADDRESS = LoadBalanceTargetSelector.class.getName() + ".SELECTED_ADDRESS";
+
     private static final Logger LOG =
             LogUtils.getL7dLogger(FailOverTargetSelector.class);
 
@@ -64,15 +78,31 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
 
     public void complete(Exchange exchange) {
         super.complete(exchange);
-        // here we just reset the selectConduit for next around connection
-        selectedConduit = null;
+        // the pooled conduit stays open for the next exchanges
+        releaseConduit(exchange);
+    }
+
+    protected Conduit getSelectedConduit(Message message) {
+        Exchange exchange = message.getExchange();
+        Conduit conduit = (Conduit) exchange.get(SELECTED_CONDUIT);
+        if (conduit == null) {
+            conduit = getNextConduit(message);
+            if (conduit != null) {
+                exchange.put(SELECTED_CONDUIT, conduit);
+            }
+        }
+        return conduit;
     }
 
-    protected synchronized Conduit getSelectedConduit(Message message) {
-        if (selectedConduit == null) {
-            selectedConduit = getNextConduit(message);
+    /**
+     * Forgets the conduit selected for the exchange, the next message of the exchange selects a new one.
+     */
+    protected void releaseConduit(Exchange exchange) {
+        exchange.remove(SELECTED_CONDUIT);
+        String address = (String) exchange.remove(SELECTED_ADDRESS);
+        if (address != null && loadBalanceStrategy instanceof ExchangeAwareLoadBalanceStrategy) {
+            ((ExchangeAwareLoadBalanceStrategy) loadBalanceStrategy).exchangeCompleted(address);
         }
-        return selectedConduit;
     }
     
     protected boolean overrideAddress(Message message) {
@@ -86,14 +116,38 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
     }
 
     protected Conduit getNextConduit(Message message) {
-        Conduit answer = null;
         Exchange exchange = message.getExchange();
-        EndpointInfo ei = endpoint.getEndpointInfo();
         String address = loadBalanceStrategy.getNextAlternateAddress();
         if (overrideAddress(message)) {
             // We need to override the Endpoint Address here
             message.put(Message.ENDPOINT_ADDRESS, address);
         }
+        Conduit answer = getConduit(exchange, address);
+        if (answer != null) {
+            MessageObserver observer =
+                    exchange.get(MessageObserver.class);
+            if (observer != null) {
+                answer.setMessageObserver(observer);
+            } else {
+                getLogger().warning("MessageObserver not found");
+            }
+            exchange.put(SELECTED_ADDRESS, address);
+            if (loadBalanceStrategy instanceof ExchangeAwareLoadBalanceStrategy) {
+                ((ExchangeAwareLoadBalanceStrategy) loadBalanceStrategy).exchangeStarted(address);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Get the pooled conduit of the address, it is created on first use.
+     */
+    protected Conduit getConduit(Exchange exchange, String address) {
+        Conduit answer = conduitPool.get(address);
+        if (answer != null) {
+            return answer;
+        }
+        EndpointInfo ei = endpoint.getEndpointInfo();
         try {
             ConduitInitiatorManager conduitInitiatorMgr = exchange.getBus()
                     .getExtension(ConduitInitiatorManager.class);
@@ -106,13 +160,13 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
                     ad.setValue(address);
                     epr.setAddress(ad);
                     answer = conduitInitiator.getConduit(ei, epr);
-
-                    MessageObserver observer =
-                            exchange.get(MessageObserver.class);
-                    if (observer != null) {
-                        answer.setMessageObserver(observer);
+                    Conduit existing = conduitPool.putIfAbsent(address, answer);
+                    if (existing != null) {
+                        // created concurrently
+                        answer.close();
+                        answer = existing;
                     } else {
-                        getLogger().warning("MessageObserver not found");
+                        pruneConduits();
                     }
                 } else {
                     getLogger().warning("ConduitInitiator not found: "
@@ -127,6 +181,31 @@ public class LoadBalanceTargetSelector extends AbstractConduitSelector {
         return answer;
     }
 
+    /**
+     * Closes the pooled conduits together with the selector.
+     */
+    @Override
+    public void close() {
+        super.close();
+        for (Map.Entry<String, Conduit> entry : conduitPool.entrySet()) {
+            if (conduitPool.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().close();
+            }
+        }
+    }
+
+    /**
+     * Closes the pooled conduits of addresses that are no longer in the group.
+     */
+    protected void pruneConduits() {
+        Set<String> addresses = new HashSet<String>(loadBalanceStrategy.getAlternateAddressList());
+        for (Map.Entry<String, Conduit> entry : conduitPool.entrySet()) {
+            if (!addresses.contains(entry.getKey()) && conduitPool.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().close();
+            }
+        }
+    }
+
     public LoadBalanceStrategy getLoadBalanceStrategy() {
         return loadBalanceStrategy;
     }
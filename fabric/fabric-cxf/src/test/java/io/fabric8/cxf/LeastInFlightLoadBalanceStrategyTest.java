@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cxf;
+
+import io.fabric8.groups.Group;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+public class LeastInFlightLoadBalanceStrategyTest extends Assert {
+
+    @Test
+    public void testLeastInFlightAddressIsSelected() throws Exception {
+        LeastInFlightLoadBalanceStrategy strategy = new LeastInFlightLoadBalanceStrategy();
+        strategy.alternateAddressList.add("http://a");
+        strategy.alternateAddressList.add("http://b");
+        strategy.alternateAddressList.add("http://c");
+
+        strategy.exchangeStarted("http://a");
+        strategy.exchangeStarted("http://b");
+        assertEquals("http://c", strategy.getNextAlternateAddress());
+
+        strategy.exchangeStarted("http://c");
+        strategy.exchangeStarted("http://c");
+        strategy.exchangeCompleted("http://a");
+        assertEquals("http://a", strategy.getNextAlternateAddress());
+        assertEquals(2, strategy.getInFlight("http://c"));
+    }
+
+    @Test
+    public void testInFlightCountOfRemovedAddress() throws Exception {
+        LeastInFlightLoadBalanceStrategy strategy = new LeastInFlightLoadBalanceStrategy();
+        strategy.alternateAddressList.add("http://a");
+        strategy.alternateAddressList.add("http://b");
+        strategy.exchangeStarted("http://a");
+        strategy.exchangeStarted("http://b");
+        strategy.exchangeCompleted("http://b");
+
+        // both addresses leave the group while an exchange to a is still in flight
+        @SuppressWarnings("unchecked")
+        Group<CxfNodeState> group = createMock(Group.class);
+        expect(group.members()).andReturn(Collections.<String, CxfNodeState>emptyMap());
+        replay(group);
+        strategy.onUpdate(group);
+        assertTrue(strategy.getAlternateAddressList().isEmpty());
+        assertEquals(1, strategy.getInFlight("http://a"));
+
+        strategy.exchangeCompleted("http://a");
+        strategy.exchangeCompleted("http://a");
+        strategy.exchangeCompleted("http://b");
+        assertEquals(0, strategy.getInFlight("http://a"));
+        assertEquals(0, strategy.getInFlight("http://b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoAddress() throws Exception {
+        new LeastInFlightLoadBalanceStrategy().getNextAlternateAddress();
+    }
+}
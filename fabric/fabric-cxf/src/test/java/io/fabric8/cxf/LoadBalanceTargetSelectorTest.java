@@ -0,0 +1,199 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.cxf;
+
+import org.apache.cxf.Bus;
+import org.apache.cxf.endpoint.Endpoint;
+import org.apache.cxf.message.Exchange;
+import org.apache.cxf.message.ExchangeImpl;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.service.model.EndpointInfo;
+import org.apache.cxf.transport.Conduit;
+import org.apache.cxf.transport.ConduitInitiator;
+import org.apache.cxf.transport.ConduitInitiatorManager;
+import org.apache.cxf.transport.MessageObserver;
+import org.apache.cxf.ws.addressing.EndpointReferenceType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+public class LoadBalanceTargetSelectorTest extends Assert {
+
+    private static final String ADDRESS_A = "http://a";
+    private static final String ADDRESS_B = "http://b";
+
+    private LeastInFlightLoadBalanceStrategy strategy;
+    private LoadBalanceTargetSelector selector;
+    private ConduitInitiatorManager conduitInitiatorManager;
+    private Bus bus;
+    private MessageObserver observer;
+    private Conduit conduitA;
+    private Conduit conduitB;
+
+    @Before
+    public void setUp() throws Exception {
+        strategy = new LeastInFlightLoadBalanceStrategy();
+        strategy.alternateAddressList.add(ADDRESS_A);
+        strategy.alternateAddressList.add(ADDRESS_B);
+
+        observer = createMock(MessageObserver.class);
+        conduitA = createMock(Conduit.class);
+        conduitB = createMock(Conduit.class);
+        for (Conduit conduit : new Conduit[]{conduitA, conduitB}) {
+            conduit.setMessageObserver(observer);
+            expectLastCall().anyTimes();
+        }
+
+        // each address gets its conduit exactly once, after that the pooled conduit is used
+        ConduitInitiator conduitInitiatorA = createConduitInitiator(conduitA);
+        ConduitInitiator conduitInitiatorB = createConduitInitiator(conduitB);
+        conduitInitiatorManager = createMock(ConduitInitiatorManager.class);
+        expect(conduitInitiatorManager.getConduitInitiatorForUri(ADDRESS_A)).andReturn(conduitInitiatorA);
+        expect(conduitInitiatorManager.getConduitInitiatorForUri(ADDRESS_B)).andReturn(conduitInitiatorB);
+
+        bus = createMock(Bus.class);
+        expect(bus.getExtension(ConduitInitiatorManager.class)).andReturn(conduitInitiatorManager).anyTimes();
+
+        Endpoint endpoint = createMock(Endpoint.class);
+        expect(endpoint.getEndpointInfo()).andReturn(new EndpointInfo()).anyTimes();
+
+        replay(observer, conduitInitiatorManager, bus, endpoint);
+
+        selector = new LoadBalanceTargetSelector();
+        selector.setEndpoint(endpoint);
+        selector.setLoadBalanceStrategy(strategy);
+    }
+
+    @Test
+    public void testSelectionIsStoredOnTheExchange() throws Exception {
+        replay(conduitA, conduitB);
+        Message first = createMessage();
+        Message second = createMessage();
+
+        Conduit firstConduit = selector.selectConduit(first);
+        assertSame(firstConduit, selector.selectConduit(first));
+        Conduit secondConduit = selector.selectConduit(second);
+
+        String firstAddress = (String) first.getExchange().get(LoadBalanceTargetSelector.SELECTED_ADDRESS);
+        String secondAddress = (String) second.getExchange().get(LoadBalanceTargetSelector.SELECTED_ADDRESS);
+        assertSame(firstConduit, first.getExchange().get(LoadBalanceTargetSelector.SELECTED_CONDUIT));
+        assertSame(secondConduit, second.getExchange().get(LoadBalanceTargetSelector.SELECTED_CONDUIT));
+        assertEquals(firstAddress, first.get(Message.ENDPOINT_ADDRESS));
+        assertEquals(secondAddress, second.get(Message.ENDPOINT_ADDRESS));
+        assertFalse("the second exchange should go to the idle address", firstAddress.equals(secondAddress));
+        assertNotSame(firstConduit, secondConduit);
+        assertEquals(1, strategy.getInFlight(ADDRESS_A));
+        assertEquals(1, strategy.getInFlight(ADDRESS_B));
+    }
+
+    @Test
+    public void testPooledConduitIsReused() throws Exception {
+        replay(conduitA, conduitB);
+        strategy.alternateAddressList.remove(ADDRESS_B);
+
+        for (int i = 0; i < 3; i++) {
+            Message message = createMessage();
+            assertSame(conduitA, selector.selectConduit(message));
+            selector.complete(message.getExchange());
+            assertEquals(0, strategy.getInFlight(ADDRESS_A));
+        }
+        assertEquals(1, selector.conduitPool.size());
+        verify(conduitA);
+    }
+
+    @Test
+    public void testCompleteReleasesTheConduit() throws Exception {
+        replay(conduitA, conduitB);
+        Message message = createMessage();
+        Conduit conduit = selector.selectConduit(message);
+        String address = (String) message.getExchange().get(LoadBalanceTargetSelector.SELECTED_ADDRESS);
+        assertEquals(1, strategy.getInFlight(address));
+
+        selector.complete(message.getExchange());
+        assertNull(message.getExchange().get(LoadBalanceTargetSelector.SELECTED_CONDUIT));
+        assertNull(message.getExchange().get(LoadBalanceTargetSelector.SELECTED_ADDRESS));
+        assertEquals(0, strategy.getInFlight(address));
+
+        // the conduit stays open in the pool
+        assertSame(conduit, selector.conduitPool.get(address));
+        verify(conduitA, conduitB);
+    }
+
+    @Test
+    public void testReleaseBeforeFailover() throws Exception {
+        replay(conduitA, conduitB);
+        Message message = createMessage();
+        Exchange exchange = message.getExchange();
+        selector.selectConduit(message);
+        String address = (String) exchange.get(LoadBalanceTargetSelector.SELECTED_ADDRESS);
+
+        selector.releaseConduit(exchange);
+        assertEquals(0, strategy.getInFlight(address));
+        assertNull(exchange.get(LoadBalanceTargetSelector.SELECTED_CONDUIT));
+
+        // the retry selects again, now that the failed address has nothing in flight both addresses are idle
+        Conduit retry = selector.selectConduit(message);
+        assertNotNull(retry);
+        assertSame(retry, exchange.get(LoadBalanceTargetSelector.SELECTED_CONDUIT));
+        assertEquals(1, strategy.getInFlight((String) exchange.get(LoadBalanceTargetSelector.SELECTED_ADDRESS)));
+
+        // releasing twice does not count the exchange twice
+        selector.releaseConduit(exchange);
+        selector.releaseConduit(exchange);
+        assertEquals(0, strategy.getInFlight(ADDRESS_A));
+        assertEquals(0, strategy.getInFlight(ADDRESS_B));
+        verify(conduitA, conduitB);
+    }
+
+    @Test
+    public void testCloseClosesThePooledConduits() throws Exception {
+        conduitA.close();
+        conduitB.close();
+        replay(conduitA, conduitB);
+        selector.selectConduit(createMessage());
+        selector.selectConduit(createMessage());
+        assertEquals(2, selector.conduitPool.size());
+
+        selector.close();
+        assertTrue(selector.conduitPool.isEmpty());
+        verify(conduitA, conduitB);
+    }
+
+    private Message createMessage() {
+        Exchange exchange = new ExchangeImpl();
+        exchange.put(Bus.class, bus);
+        exchange.put(MessageObserver.class, observer);
+        Message message = new MessageImpl();
+        message.setExchange(exchange);
+        exchange.setOutMessage(message);
+        return message;
+    }
+
+    private static ConduitInitiator createConduitInitiator(Conduit conduit) throws Exception {
+        ConduitInitiator conduitInitiator = createMock(ConduitInitiator.class);
+        expect(conduitInitiator.getConduit((EndpointInfo) anyObject(), (EndpointReferenceType) anyObject())).andReturn(conduit);
+        replay(conduitInitiator);
+        return conduitInitiator;
+    }
+}
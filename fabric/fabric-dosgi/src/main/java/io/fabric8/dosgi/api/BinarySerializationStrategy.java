@@ -0,0 +1,783 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.api;
+
+import io.fabric8.dosgi.util.ClassLoaderObjectInputStream;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * A compact binary serialization for remote calls that do not need protobuf messages.
+ * </p>
+ * <p>
+ * Strings, boxed primitives, arrays and the common collections and maps are written after a one byte tag.
+ * Other serializable classes are written field by field, the fields of a class are looked up once and cached.
+ * A class name is only written the first time the class is used in a message, later uses refer to it by id.
+ * Objects that appear more than once in a message are written once and then referred to by id as well.
+ * </p>
+ * <p>
+ * Objects that customize their serialization, like exceptions, or that have no no-arg constructor are written
+ * with Java serialization.
+ * </p>
+ */
+public class BinarySerializationStrategy implements SerializationStrategy {
+
+    public static final BinarySerializationStrategy INSTANCE = new BinarySerializationStrategy();
+
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int BYTE = 3;
+    private static final int SHORT = 4;
+    private static final int CHAR = 5;
+    private static final int INT = 6;
+    private static final int LONG = 7;
+    private static final int FLOAT = 8;
+    private static final int DOUBLE = 9;
+    private static final int STRING = 10;
+    private static final int BYTES = 11;
+    private static final int PRIMITIVE_ARRAY = 12;
+    private static final int OBJECT_ARRAY = 13;
+    private static final int ARRAY_LIST = 14;
+    private static final int LINKED_LIST = 15;
+    private static final int HASH_SET = 16;
+    private static final int LINKED_HASH_SET = 17;
+    private static final int TREE_SET = 18;
+    private static final int HASH_MAP = 19;
+    private static final int TREE_MAP = 20;
+    private static final int CONCURRENT_HASH_MAP = 21;
+    private static final int ENUM = 22;
+    private static final int DATE = 23;
+    private static final int BIG_INTEGER = 24;
+    private static final int BIG_DECIMAL = 25;
+    private static final int OBJECT = 26;
+    private static final int REFERENCE = 27;
+    private static final int SERIALIZED = 28;
+
+    private static final Class<?>[] PRIMITIVES = {
+            boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class
+    };
+
+    private static final ClassValue<ClassDescriptor> DESCRIPTORS = new ClassValue<ClassDescriptor>() {
+        @Override
+        protected ClassDescriptor computeValue(Class<?> type) {
+            return new ClassDescriptor(type);
+        }
+    };
+
+    public String name() {
+        return "binary";
+    }
+
+    public void encodeRequest(ClassLoader loader, Class<?>[] types, Object[] args, DataByteArrayOutputStream target) throws IOException {
+        Encoder encoder = new Encoder(target);
+        int length = args != null ? args.length : 0;
+        target.writeVarInt(length);
+        for (int i = 0; i < length; i++) {
+            encoder.writeValue(args[i]);
+        }
+    }
+
+    public void decodeRequest(ClassLoader loader, Class<?>[] types, DataByteArrayInputStream source, Object[] target) throws IOException, ClassNotFoundException {
+        Decoder decoder = new Decoder(source, loader);
+        int length = source.readVarInt();
+        if (length > target.length) {
+            throw new StreamCorruptedException("Expected at most " + target.length + " arguments but got " + length);
+        }
+        for (int i = 0; i < length; i++) {
+            target[i] = decoder.readValue();
+        }
+    }
+
+    public void encodeResponse(ClassLoader loader, Class<?> type, Object value, Throwable error, DataByteArrayOutputStream target) throws IOException {
+        Encoder encoder = new Encoder(target);
+        if (error != null) {
+            target.writeBoolean(true);
+            encoder.writeValue(error);
+        } else {
+            target.writeBoolean(false);
+            encoder.writeValue(value);
+        }
+    }
+
+    public void decodeResponse(ClassLoader loader, Class<?> type, DataByteArrayInputStream source, AsyncCallback result) throws IOException, ClassNotFoundException {
+        Decoder decoder = new Decoder(source, loader);
+        if (source.readBoolean()) {
+            result.onFailure((Throwable) decoder.readValue());
+        } else {
+            result.onSuccess(decoder.readValue());
+        }
+    }
+
+    /**
+     * Writes the values of a single message.
+     */
+    private static final class Encoder {
+
+        private final DataByteArrayOutputStream out;
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+        private Encoder(DataByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (type == String.class) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (type == Integer.class) {
+                out.writeByte(INT);
+                writeInt((Integer) value);
+            } else if (type == Long.class) {
+                out.writeByte(LONG);
+                writeLong((Long) value);
+            } else if (type == Boolean.class) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == Double.class) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (type == Float.class) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (type == Byte.class) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (type == Short.class) {
+                out.writeByte(SHORT);
+                writeInt((Short) value);
+            } else if (type == Character.class) {
+                out.writeByte(CHAR);
+                out.writeVarInt((Character) value);
+            } else if (type == byte[].class) {
+                byte[] bytes = (byte[]) value;
+                out.writeByte(BYTES);
+                out.writeVarInt(bytes.length);
+                out.write(bytes);
+            } else if (type == Date.class) {
+                out.writeByte(DATE);
+                writeLong(((Date) value).getTime());
+            } else if (type == BigInteger.class) {
+                out.writeByte(BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (type == BigDecimal.class) {
+                out.writeByte(BIG_DECIMAL);
+                writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+                writeInt(((BigDecimal) value).scale());
+            } else if (value instanceof Enum) {
+                out.writeByte(ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass());
+                writeString(((Enum<?>) value).name());
+            } else if (writeReference(value)) {
+                return;
+            } else if (type.isArray()) {
+                writeArray(type, value);
+            } else if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class) {
+                out.writeByte(type == ArrayList.class ? ARRAY_LIST : type == LinkedList.class ? LINKED_LIST : type == HashSet.class ? HASH_SET : LINKED_HASH_SET);
+                writeElements((Collection<?>) value);
+            } else if (type == TreeSet.class && ((TreeSet<?>) value).comparator() == null) {
+                out.writeByte(TREE_SET);
+                writeElements((Collection<?>) value);
+            } else if (type == HashMap.class || type == ConcurrentHashMap.class) {
+                out.writeByte(type == HashMap.class ? HASH_MAP : CONCURRENT_HASH_MAP);
+                writeEntries((Map<?, ?>) value);
+            } else if (type == TreeMap.class && ((TreeMap<?, ?>) value).comparator() == null) {
+                out.writeByte(TREE_MAP);
+                writeEntries((Map<?, ?>) value);
+            } else {
+                ClassDescriptor descriptor = DESCRIPTORS.get(type);
+                if (descriptor.constructor != null) {
+                    writeObject(descriptor, value);
+                } else {
+                    writeSerialized(value);
+                }
+            }
+        }
+
+        /**
+         * Writes a reference if the value has been written before, otherwise remembers it for later.
+         */
+        private boolean writeReference(Object value) throws IOException {
+            Integer id = references.get(value);
+            if (id != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(id);
+                return true;
+            }
+            references.put(value, references.size());
+            return false;
+        }
+
+        private void writeArray(Class<?> type, Object value) throws IOException {
+            Class<?> componentType = type.getComponentType();
+            int length = Array.getLength(value);
+            if (componentType.isPrimitive()) {
+                out.writeByte(PRIMITIVE_ARRAY);
+                out.writeByte(primitiveIndex(componentType));
+                out.writeVarInt(length);
+                if (componentType == int.class) {
+                    for (int v : (int[]) value) {
+                        writeInt(v);
+                    }
+                } else if (componentType == long.class) {
+                    for (long v : (long[]) value) {
+                        writeLong(v);
+                    }
+                } else if (componentType == double.class) {
+                    for (double v : (double[]) value) {
+                        out.writeDouble(v);
+                    }
+                } else if (componentType == char.class) {
+                    for (char v : (char[]) value) {
+                        out.writeVarInt(v);
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        writePrimitive(componentType, Array.get(value, i));
+                    }
+                }
+            } else {
+                out.writeByte(OBJECT_ARRAY);
+                writeClass(componentType);
+                out.writeVarInt(length);
+                for (Object element : (Object[]) value) {
+                    writeValue(element);
+                }
+            }
+        }
+
+        private void writeElements(Collection<?> collection) throws IOException {
+            out.writeVarInt(collection.size());
+            for (Object element : collection) {
+                writeValue(element);
+            }
+        }
+
+        private void writeEntries(Map<?, ?> map) throws IOException {
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeObject(ClassDescriptor descriptor, Object value) throws IOException {
+            out.writeByte(OBJECT);
+            if (writeClass(descriptor.type)) {
+                out.writeInt(descriptor.fingerprint);
+            }
+            try {
+                for (Field field : descriptor.fields) {
+                    Class<?> fieldType = field.getType();
+                    if (fieldType.isPrimitive()) {
+                        writePrimitive(fieldType, field.get(value));
+                    } else {
+                        writeValue(field.get(value));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IOException("Unable to write " + descriptor.type.getName(), e);
+            }
+        }
+
+        private void writeSerialized(Object value) throws IOException {
+            out.writeByte(SERIALIZED);
+            DataByteArrayOutputStream bytes = new DataByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bytes);
+            oos.writeObject(value);
+            oos.flush();
+            out.writeVarInt(bytes.size());
+            out.write(bytes.getData(), 0, bytes.size());
+        }
+
+        /**
+         * Writes the id of the class or its name the first time the class is written.
+         *
+         * @return true if this is the first time the class is written
+         */
+        private boolean writeClass(Class<?> type) throws IOException {
+            Integer id = classes.get(type);
+            if (id != null) {
+                out.writeVarInt(id + 1);
+                return false;
+            }
+            classes.put(type, classes.size());
+            out.writeVarInt(0);
+            writeString(type.getName());
+            return true;
+        }
+
+        private void writePrimitive(Class<?> type, Object value) throws IOException {
+            if (type == int.class) {
+                writeInt((Integer) value);
+            } else if (type == long.class) {
+                writeLong((Long) value);
+            } else if (type == boolean.class) {
+                out.writeBoolean((Boolean) value);
+            } else if (type == double.class) {
+                out.writeDouble((Double) value);
+            } else if (type == float.class) {
+                out.writeFloat((Float) value);
+            } else if (type == byte.class) {
+                out.writeByte((Byte) value);
+            } else if (type == short.class) {
+                writeInt((Short) value);
+            } else {
+                out.writeVarInt((Character) value);
+            }
+        }
+
+        /**
+         * Writes the chars of the string, ASCII characters take a single byte.
+         */
+        private void writeString(String value) throws IOException {
+            int length = value.length();
+            out.writeVarInt(length);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    out.writeByte(c);
+                } else {
+                    out.writeVarInt(c);
+                }
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            out.writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        private void writeLong(long value) throws IOException {
+            out.writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+
+    /**
+     * Reads the values of a single message.
+     */
+    private static final class Decoder {
+
+        private final DataByteArrayInputStream in;
+        private final ClassLoader loader;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final List<Object> references = new ArrayList<Object>();
+
+        private Decoder(DataByteArrayInputStream in, ClassLoader loader) {
+            this.in = in;
+            this.loader = loader;
+        }
+
+        @SuppressWarnings("unchecked")
+        Object readValue() throws IOException, ClassNotFoundException {
+            int tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case BYTE:
+                    return in.readByte();
+                case SHORT:
+                    return (short) readInt();
+                case CHAR:
+                    return (char) in.readVarInt();
+                case INT:
+                    return readInt();
+                case LONG:
+                    return readLong();
+                case FLOAT:
+                    return in.readFloat();
+                case DOUBLE:
+                    return in.readDouble();
+                case STRING:
+                    return readString();
+                case BYTES:
+                    return readBytes();
+                case DATE:
+                    return new Date(readLong());
+                case BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case BIG_DECIMAL:
+                    return new BigDecimal(new BigInteger(readBytes()), readInt());
+                case ENUM:
+                    return Enum.valueOf((Class<Enum>) readClass(), readString());
+                case REFERENCE:
+                    return readReference();
+                case PRIMITIVE_ARRAY:
+                    return readPrimitiveArray();
+                case OBJECT_ARRAY: {
+                    Class<?> componentType = readClass();
+                    Object[] array = (Object[]) Array.newInstance(componentType, readSize());
+                    references.add(array);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readValue();
+                    }
+                    return array;
+                }
+                case ARRAY_LIST: {
+                    int size = readSize();
+                    return readElements(new ArrayList<Object>(size), size);
+                }
+                case LINKED_LIST:
+                    return readElements(new LinkedList<Object>(), readSize());
+                case HASH_SET: {
+                    int size = readSize();
+                    return readElements(new HashSet<Object>(capacity(size)), size);
+                }
+                case LINKED_HASH_SET: {
+                    int size = readSize();
+                    return readElements(new LinkedHashSet<Object>(capacity(size)), size);
+                }
+                case TREE_SET:
+                    return readElements(new TreeSet<Object>(), readSize());
+                case HASH_MAP: {
+                    int size = readSize();
+                    return readEntries(new HashMap<Object, Object>(capacity(size)), size);
+                }
+                case TREE_MAP:
+                    return readEntries(new TreeMap<Object, Object>(), readSize());
+                case CONCURRENT_HASH_MAP: {
+                    int size = readSize();
+                    return readEntries(new ConcurrentHashMap<Object, Object>(capacity(size)), size);
+                }
+                case OBJECT:
+                    return readObject();
+                case SERIALIZED:
+                    return readSerialized();
+                default:
+                    throw new StreamCorruptedException("Unknown tag: " + tag);
+            }
+        }
+
+        private Object readPrimitiveArray() throws IOException {
+            int index = in.readByte();
+            if (index < 0 || index >= PRIMITIVES.length) {
+                throw new StreamCorruptedException("Unknown primitive type: " + index);
+            }
+            Class<?> componentType = PRIMITIVES[index];
+            int length = readSize();
+            Object array = Array.newInstance(componentType, length);
+            references.add(array);
+            if (componentType == int.class) {
+                int[] ints = (int[]) array;
+                for (int i = 0; i < length; i++) {
+                    ints[i] = readInt();
+                }
+            } else if (componentType == long.class) {
+                long[] longs = (long[]) array;
+                for (int i = 0; i < length; i++) {
+                    longs[i] = readLong();
+                }
+            } else if (componentType == double.class) {
+                double[] doubles = (double[]) array;
+                for (int i = 0; i < length; i++) {
+                    doubles[i] = in.readDouble();
+                }
+            } else if (componentType == char.class) {
+                char[] chars = (char[]) array;
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) in.readVarInt();
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, readPrimitive(componentType));
+                }
+            }
+            return array;
+        }
+
+        private Collection<Object> readElements(Collection<Object> collection, int size) throws IOException, ClassNotFoundException {
+            references.add(collection);
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private Map<Object, Object> readEntries(Map<Object, Object> map, int size) throws IOException, ClassNotFoundException {
+            references.add(map);
+            for (int i = 0; i < size; i++) {
+                map.put(readValue(), readValue());
+            }
+            return map;
+        }
+
+        private Object readObject() throws IOException, ClassNotFoundException {
+            int id = in.readVarInt();
+            ClassDescriptor descriptor = DESCRIPTORS.get(readClass(id));
+            if (id == 0 && in.readInt() != descriptor.fingerprint) {
+                throw new InvalidClassException(descriptor.type.getName(), "Incompatible class, the fields do not match");
+            } else if (descriptor.constructor == null) {
+                throw new InvalidClassException(descriptor.type.getName(), "No valid constructor");
+            }
+            try {
+                Object value = descriptor.constructor.newInstance();
+                references.add(value);
+                for (Field field : descriptor.fields) {
+                    Class<?> fieldType = field.getType();
+                    field.set(value, fieldType.isPrimitive() ? readPrimitive(fieldType) : readValue());
+                }
+                return value;
+            } catch (IOException e) {
+                throw e;
+            } catch (ClassNotFoundException e) {
+                throw e;
+            } catch (Exception e) {
+                throw (IOException) new InvalidClassException(descriptor.type.getName(), "Unable to read object").initCause(e);
+            }
+        }
+
+        private Object readSerialized() throws IOException, ClassNotFoundException {
+            byte[] bytes = readBytes();
+            ClassLoaderObjectInputStream ois = new ClassLoaderObjectInputStream(new DataByteArrayInputStream(bytes));
+            ois.setClassLoader(loader);
+            Object value = ois.readObject();
+            references.add(value);
+            return value;
+        }
+
+        private Object readReference() throws IOException {
+            int id = in.readVarInt();
+            if (id < 0 || id >= references.size()) {
+                throw new StreamCorruptedException("Invalid reference: " + id);
+            }
+            return references.get(id);
+        }
+
+        /**
+         * Reads the length of an array or a string or the size of a collection.
+         */
+        private int readSize() throws IOException {
+            int size = in.readVarInt();
+            if (size < 0) {
+                throw new StreamCorruptedException("Invalid size: " + size);
+            }
+            return size;
+        }
+
+        private Class<?> readClass() throws IOException, ClassNotFoundException {
+            return readClass(in.readVarInt());
+        }
+
+        private Class<?> readClass(int id) throws IOException, ClassNotFoundException {
+            if (id < 0 || id > classes.size()) {
+                throw new StreamCorruptedException("Invalid class reference: " + id);
+            } else if (id > 0) {
+                return classes.get(id - 1);
+            }
+            Class<?> type = Class.forName(readString(), false, loader);
+            classes.add(type);
+            return type;
+        }
+
+        private Object readPrimitive(Class<?> type) throws IOException {
+            if (type == int.class) {
+                return readInt();
+            } else if (type == long.class) {
+                return readLong();
+            } else if (type == boolean.class) {
+                return in.readBoolean();
+            } else if (type == double.class) {
+                return in.readDouble();
+            } else if (type == float.class) {
+                return in.readFloat();
+            } else if (type == byte.class) {
+                return in.readByte();
+            } else if (type == short.class) {
+                return (short) readInt();
+            } else {
+                return (char) in.readVarInt();
+            }
+        }
+
+        private String readString() throws IOException {
+            int length = readSize();
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) in.readVarInt();
+            }
+            return new String(chars);
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[readSize()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        private int readInt() throws IOException {
+            int value = in.readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readLong() throws IOException {
+            long value = in.readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static int capacity(int size) {
+            return Math.max((int) (size / .75f) + 1, 16);
+        }
+    }
+
+    private static int primitiveIndex(Class<?> type) {
+        for (int i = 0; i < PRIMITIVES.length; i++) {
+            if (PRIMITIVES[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a primitive type: " + type);
+    }
+
+    /**
+     * How the instances of a class are written. Classes that can not be written field by field have no constructor.
+     */
+    private static final class ClassDescriptor {
+
+        private final Class<?> type;
+        private final Field[] fields;
+        private final Constructor<?> constructor;
+        private final int fingerprint;
+
+        ClassDescriptor(Class<?> type) {
+            this.type = type;
+            List<Field> fields = new ArrayList<Field>();
+            Constructor<?> constructor = null;
+            if (isWrittenByFields(type)) {
+                try {
+                    constructor = type.getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                        List<Field> declared = new ArrayList<Field>();
+                        for (Field field : c.getDeclaredFields()) {
+                            if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+                                field.setAccessible(true);
+                                declared.add(field);
+                            }
+                        }
+                        sortByName(declared);
+                        fields.addAll(0, declared);
+                    }
+                } catch (Exception e) {
+                    // not accessible or no no-arg constructor, use java serialization instead
+                    constructor = null;
+                    fields.clear();
+                }
+            }
+            this.fields = fields.toArray(new Field[fields.size()]);
+            this.constructor = constructor;
+            this.fingerprint = fingerprint(type, this.fields);
+        }
+
+        private static boolean isWrittenByFields(Class<?> type) {
+            if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+                    || Throwable.class.isAssignableFrom(type) || Proxy.isProxyClass(type)
+                    || Modifier.isAbstract(type.getModifiers())) {
+                return false;
+            }
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                if (hasMethod(c, "writeObject", ObjectOutputStream.class) || hasMethod(c, "readObject", ObjectInputStream.class)
+                        || hasMethod(c, "readObjectNoData") || hasMethod(c, "writeReplace") || hasMethod(c, "readResolve")) {
+                    return false;
+                }
+                try {
+                    c.getDeclaredField("serialPersistentFields");
+                    return false;
+                } catch (NoSuchFieldException e) {
+                    // the default serialized fields
+                }
+            }
+            return true;
+        }
+
+        private static boolean hasMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+            try {
+                Method method = type.getDeclaredMethod(name, parameterTypes);
+                return !Modifier.isStatic(method.getModifiers());
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private static void sortByName(List<Field> fields) {
+            Field[] array = fields.toArray(new Field[fields.size()]);
+            Arrays.sort(array, new Comparator<Field>() {
+                @Override
+                public int compare(Field f1, Field f2) {
+                    return f1.getName().compareTo(f2.getName());
+                }
+            });
+            fields.clear();
+            fields.addAll(Arrays.asList(array));
+        }
+
+        /**
+         * A hash of the names and types of the fields, so that different versions of a class are detected.
+         */
+        private static int fingerprint(Class<?> type, Field[] fields) {
+            int hash = type.getName().hashCode();
+            for (Field field : fields) {
+                hash = 31 * hash + field.getName().hashCode();
+                hash = 31 * hash + field.getType().getName().hashCode();
+            }
+            return hash;
+        }
+    }
+}
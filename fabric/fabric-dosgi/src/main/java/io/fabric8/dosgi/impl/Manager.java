@@ -22,6 +22,7 @@ import org.apache.curator.framework.recipes.cache.TreeCache;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import io.fabric8.dosgi.api.Dispatched;
+import io.fabric8.dosgi.api.BinarySerializationStrategy;
 import io.fabric8.dosgi.api.SerializationStrategy;
 import io.fabric8.dosgi.capset.CapabilitySet;
 import io.fabric8.dosgi.capset.SimpleFilter;
@@ -135,6 +136,7 @@ public class Manager implements ServiceListener, ListenerHook, EventHook, FindHo
         this.exportedServices = new ConcurrentHashMap<ServiceReference, ExportRegistration>();
         this.listeners = new ConcurrentHashMap<ListenerInfo, SimpleFilter>();
         this.serializationStrategies = new ConcurrentHashMap<String, SerializationStrategy>();
+        this.serializationStrategies.put(BinarySerializationStrategy.INSTANCE.name(), BinarySerializationStrategy.INSTANCE);
         this.remoteEndpoints = new CapabilitySet<EndpointDescription>(
                 Arrays.asList(Constants.OBJECTCLASS, ENDPOINT_FRAMEWORK_UUID), false);
         this.bundleContext = context;
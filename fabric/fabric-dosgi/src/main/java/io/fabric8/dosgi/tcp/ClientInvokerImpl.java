@@ -20,7 +20,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -150,7 +151,15 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
         }
     }
 
-    static final WeakHashMap<Method, MethodData> method_cache = new WeakHashMap<Method, MethodData>();
+    /**
+     * The method data by declaring class, so that it goes away with the class. Lookups never lock.
+     */
+    private final ClassValue<ConcurrentMap<Method, MethodData>> method_cache = new ClassValue<ConcurrentMap<Method, MethodData>>() {
+        @Override
+        protected ConcurrentMap<Method, MethodData> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<Method, MethodData>();
+        }
+    };
 
     static class MethodData {
         private final SerializationStrategy serializationStrategy;
@@ -165,10 +174,8 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
     }
 
     private MethodData getMethodData(Method method) throws IOException {
-        MethodData rc = null;
-        synchronized (method_cache) {
-            rc = method_cache.get(method);
-        }
+        ConcurrentMap<Method, MethodData> cache = method_cache.get(method.getDeclaringClass());
+        MethodData rc = cache.get(method);
         if( rc==null ) {
             StringBuilder sb = new StringBuilder();
             sb.append(method.getName());
@@ -201,9 +208,7 @@ public class ClientInvokerImpl implements ClientInvoker, Dispatched {
             }
 
             rc = new MethodData(strategy, serializationStrategy, signature);
-            synchronized (method_cache) {
-                method_cache.put(method, rc);
-            }
+            cache.put(method, rc);
         }
         return rc;
     }
@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.api;
+
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinarySerializationStrategyTest {
+
+    final int BENCHMARK_INVOCATIONS = 100000;
+
+    private final ClassLoader loader = getClass().getClassLoader();
+
+    @Test
+    public void testValues() throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("list", new ArrayList<Object>(Arrays.asList(1, "two", 3L)));
+        map.put("set", new HashSet<Object>(Arrays.asList('a', (short) -2, (byte) 3)));
+        map.put("tree", new TreeMap<String, Object>(Collections.singletonMap("key", 1.5d)));
+        map.put("linked", new LinkedHashMap<String, Object>(Collections.singletonMap("key", 2.5f)));
+        map.put("unmodifiable", Collections.unmodifiableList(Arrays.asList("a", "b")));
+
+        Object[] args = {
+                null, true, Integer.MIN_VALUE, Long.MAX_VALUE, "h\u00e9llo \ud83d\ude00", new byte[]{1, 2, 3},
+                new int[]{-1, 0, 1}, new Integer[][]{{1}, {2, null}}, new Date(1234L), new BigInteger("-123456789012345678901234567890"),
+                new BigDecimal("3.14159"), TimeUnit.SECONDS, map
+        };
+        Object[] result = roundTrip(args);
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Object[]) {
+                assertArrayEquals((Object[]) args[i], (Object[]) result[i]);
+            } else if (args[i] instanceof byte[]) {
+                assertArrayEquals((byte[]) args[i], (byte[]) result[i]);
+            } else if (args[i] instanceof int[]) {
+                assertArrayEquals((int[]) args[i], (int[]) result[i]);
+            } else {
+                assertEquals(args[i], result[i]);
+            }
+        }
+        Map<?, ?> resultMap = (Map<?, ?>) result[12];
+        assertEquals(TreeMap.class, resultMap.get("tree").getClass());
+        assertEquals(LinkedHashMap.class, resultMap.get("linked").getClass());
+    }
+
+    @Test
+    public void testObjects() throws Exception {
+        Person parent = new Person("parent", 60, null);
+        Person child = new Person("child", 30, parent);
+        parent.children.add(child);
+        Person other = new Person("other", 10, parent);
+
+        Object[] result = roundTrip(new Object[]{child, other});
+
+        Person c = (Person) result[0];
+        Person o = (Person) result[1];
+        assertEquals("child", c.name);
+        assertEquals(30, c.age);
+        assertEquals("parent", c.parent.name);
+        assertSame(c.parent, o.parent);
+        assertSame(c, c.parent.children.get(0));
+        assertEquals(7, c.id);
+    }
+
+    @Test
+    public void testResponses() throws Exception {
+        BinarySerializationStrategy strategy = new BinarySerializationStrategy();
+
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeResponse(loader, String.class, "value", null, out);
+        AsyncCallbackFuture<Object> future = new AsyncCallbackFuture<Object>();
+        strategy.decodeResponse(loader, String.class, new DataByteArrayInputStream(out.toBuffer()), future);
+        assertEquals("value", future.get(1, TimeUnit.SECONDS));
+
+        out = new DataByteArrayOutputStream();
+        strategy.encodeResponse(loader, String.class, null, new IllegalArgumentException("failed"), out);
+        future = new AsyncCallbackFuture<Object>();
+        strategy.decodeResponse(loader, String.class, new DataByteArrayInputStream(out.toBuffer()), future);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected an exception");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testSmallerThanObjectSerialization() throws Exception {
+        Object[] args = createRequest();
+        Class<?>[] types = {String.class, int.class, List.class};
+
+        int objectSize = encode(new ObjectSerializationStrategy(), types, args).size();
+        int binarySize = encode(new BinarySerializationStrategy(), types, args).size();
+        assertTrue("binary request has " + binarySize + " bytes, serialized request has " + objectSize, binarySize < objectSize);
+    }
+
+    @Test
+    public void testCorruptedInput() throws Exception {
+        // a reference to a value which was not read yet
+        assertCorrupted(27, 5);
+        // a reference to a class which was not read yet
+        assertCorrupted(22, 3);
+        // an array of an unknown primitive type
+        assertCorrupted(12, 42);
+        // a list with a negative size
+        assertCorrupted(14, -1);
+        // a string with a negative length
+        assertCorrupted(10, -1);
+        // bytes with a negative length
+        assertCorrupted(11, -1);
+    }
+
+    @Test
+    @Ignore("Benchmark, run on demand")
+    public void testCompareWithObjectSerialization() throws Exception {
+        Object[] args = createRequest();
+        Class<?>[] types = {String.class, int.class, List.class};
+
+        for (SerializationStrategy strategy : new SerializationStrategy[]{new ObjectSerializationStrategy(), new BinarySerializationStrategy()}) {
+            int size = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_INVOCATIONS; i++) {
+                DataByteArrayOutputStream out = encode(strategy, types, args);
+                Object[] target = new Object[types.length];
+                strategy.decodeRequest(loader, types, new DataByteArrayInputStream(out.toBuffer()), target);
+                size = out.size();
+            }
+            long end = System.nanoTime();
+            System.err.println(String.format("%s: %,.2f requests/second, %d bytes per request", strategy.name(),
+                    (BENCHMARK_INVOCATIONS * 1.0d) / (end - start) * TimeUnit.SECONDS.toNanos(1), size));
+        }
+    }
+
+    private static Object[] createRequest() {
+        List<Person> persons = new ArrayList<Person>();
+        for (int i = 0; i < 10; i++) {
+            persons.add(new Person("person-" + i, i, null));
+        }
+        return new Object[]{"service", 42, persons};
+    }
+
+    private DataByteArrayOutputStream encode(SerializationStrategy strategy, Class<?>[] types, Object[] args) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeRequest(loader, types, args, out);
+        return out;
+    }
+
+    /**
+     * Decodes a request with a single argument made of the given tag and value.
+     */
+    private void assertCorrupted(int tag, int value) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        out.writeVarInt(1);
+        out.writeByte(tag);
+        out.writeVarInt(value);
+        try {
+            new BinarySerializationStrategy().decodeRequest(loader, new Class<?>[]{Object.class}, new DataByteArrayInputStream(out.toBuffer()), new Object[1]);
+            fail("Expected a StreamCorruptedException for tag " + tag);
+        } catch (StreamCorruptedException e) {
+            // expected
+        }
+    }
+
+    private Object[] roundTrip(Object[] args) throws Exception {
+        BinarySerializationStrategy strategy = new BinarySerializationStrategy();
+        Class<?>[] types = new Class<?>[args.length];
+        Arrays.fill(types, Object.class);
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeRequest(loader, types, args, out);
+        Object[] target = new Object[args.length];
+        strategy.decodeRequest(loader, types, new DataByteArrayInputStream(out.toBuffer()), target);
+        return target;
+    }
+
+    static class Base implements Serializable {
+        int id = 7;
+    }
+
+    static class Person extends Base {
+        String name;
+        int age;
+        Person parent;
+        List<Person> children = new ArrayList<Person>();
+        transient Object cached;
+
+        Person() {
+        }
+
+        Person(String name, int age, Person parent) {
+            this.name = name;
+            this.age = age;
+            this.parent = parent;
+        }
+    }
+}
@@ -28,7 +28,6 @@ import io.fabric8.api.ProfileRegistry;
 import io.fabric8.api.Profiles;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.Version;
-import io.fabric8.api.VersionBuilder;
 import io.fabric8.api.VersionSequence;
 import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
@@ -44,6 +43,7 @@ import io.fabric8.git.GitService;
 import io.fabric8.git.PullPushPolicy;
 import io.fabric8.git.PullPushPolicy.PullPolicyResult;
 import io.fabric8.git.PullPushPolicy.PushPolicyResult;
+import io.fabric8.git.internal.GitVersionReader.VersionSnapshot;
 import io.fabric8.service.EnvPlaceholderResolver;
 import io.fabric8.utils.DataStoreUtils;
 import io.fabric8.zookeeper.ZkPath;
@@ -66,7 +66,6 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -76,6 +75,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -99,11 +100,11 @@ import org.apache.felix.scr.annotations.Service;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.PullResult;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
@@ -113,9 +114,6 @@ import org.jboss.gravia.utils.IllegalStateAssertion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 /**
  * A git based implementation of {@link DataStore} which stores the profile
@@ -133,7 +131,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     
     private static final String GIT_REMOTE_USER = "gitRemoteUser";
     private static final String GIT_REMOTE_PASSWORD = "gitRemotePassword";
-    private static final int GIT_COMMIT_SHORT_LENGTH = 7;
     private static final int MAX_COMMITS_WITHOUT_GC = 40;
     private static final long AQUIRE_LOCK_TIMEOUT = 25 * 1000L;
 
@@ -175,7 +172,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     @Property(name = "importDir", label = "Import Directory", description = "Directory to import additional profiles", value = "fabric")
     private String importDir = "fabric";
 
-    private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(new VersionCacheLoader());
+    private final ConcurrentMap<String, VersionSnapshot> versionCache = new ConcurrentHashMap<String, VersionSnapshot>();
     private final Set<String> versions = new HashSet<String>();
 
     @Activate
@@ -402,20 +399,36 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return Collections.unmodifiableMap(dataStoreProperties);
     }
 
+    /**
+     * Returns the version as read from the current commits of its branch and the master branch.
+     * This needs neither the data store lock nor a checkout; the cached snapshot is used for as
+     * long as neither branch has moved and otherwise the profiles which changed since the cached
+     * snapshot are read from the git object trees.
+     */
     private Version getVersionFromCache(String versionId, String profileId) {
-        LockHandle writeLock = aquireWriteLock();
+        assertValid();
+        // [FABRIC-887] jgit loads resources using the TCCL
+        ClassLoader tccl = Thread.currentThread().getContextClassLoader();
         try {
-            assertValid();
+            Thread.currentThread().setContextClassLoader(GitDataStoreImpl.class.getClassLoader());
+            GitVersionReader reader = new GitVersionReader(getGit().getRepository());
             String branch = GitHelpers.getProfileBranch(versionId, profileId);
-            if (GitHelpers.localBranchExists(getGit(), branch)) {
-                return versionCache.get(versionId);
-            } else {
+            ObjectId masterCommit = reader.resolveBranch(GitHelpers.MASTER_BRANCH);
+            ObjectId versionCommit = reader.resolveBranch(versionId);
+            if (versionCommit == null || reader.resolveBranch(branch) == null) {
                 return null;
             }
+            VersionSnapshot snapshot = versionCache.get(versionId);
+            if (snapshot == null || !snapshot.isCurrent(masterCommit, versionCommit)) {
+                LOGGER.debug("Reading version {} from commit {}", versionId, versionCommit.name());
+                snapshot = reader.readVersion(versionId, masterCommit, versionCommit, snapshot);
+                versionCache.put(versionId, snapshot);
+            }
+            return snapshot.getVersion();
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         } finally {
-            writeLock.unlock();
+            Thread.currentThread().setContextClassLoader(tccl);
         }
     }
 
@@ -884,7 +897,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
             if (context.isRequireCommit()) {
                 doCommit(git, context);
-                versionCache.invalidateAll();
                 notificationRequired = true;
             }
 
@@ -955,14 +967,13 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         PullPolicyResult pullResult = pullPushPolicy.doPull(context, getCredentialsProvider(), allowVersionDelete);
         if (pullResult.getLastException() == null) {
             if (pullResult.localUpdateRequired()) {
-                versionCache.invalidateAll();
                 notificationRequired = true;
             }
             Set<String> pullVersions = pullResult.getVersions();
             if (!pullVersions.isEmpty() && !pullVersions.equals(versions)) {
                 versions.clear();
                 versions.addAll(pullVersions);
-                versionCache.invalidateAll();
+                versionCache.keySet().retainAll(pullVersions);
                 notificationRequired = true;
             }
             if (pullResult.remoteUpdateRequired()) {
@@ -1019,15 +1030,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return relativePath.replace(File.separatorChar, '/');
     }
     
-    private Map<String, String> getVersionAttributes(Git git, GitContext context, String versionId) throws IOException {
-        File rootDirectory = GitHelpers.getRootGitDirectory(git);
-        File file = new File(rootDirectory, GitHelpers.VERSION_ATTRIBUTES);
-        if (!file.exists()) {
-            return Collections.emptyMap();
-        }
-        return DataStoreUtils.toMap(Files.readBytes(file));
-    }
-
     private void setVersionAttributes(Git git, GitContext context, String versionId, Map<String, String> attributes) throws IOException, GitAPIException {
         File rootDirectory = GitHelpers.getRootGitDirectory(git);
         File file = new File(rootDirectory, GitHelpers.VERSION_ATTRIBUTES);
@@ -1099,7 +1101,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     }
 
     private void removeVersionFromCaches(String versionId) {
-        versionCache.invalidate(versionId);
+        versionCache.remove(versionId);
         versions.remove(versionId);
     }
     
@@ -1173,7 +1175,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         @Override
         public void onReceivePack() {
             assertValid();
-            versionCache.invalidateAll();
+            // the cached versions are checked against the branch commits when read
         }
         
         private void runRemoteUrlChanged(final String updateUrl) {
@@ -1577,149 +1579,4 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
             return pattern.replace(File.separatorChar, '/');
         }
     }
-    
-    class VersionCacheLoader extends CacheLoader<String, Version> {
-        
-        @Override
-        public Version load(final String versionId) {
-            assertWriteLock();
-            GitOperation<Version> gitop = new GitOperation<Version>() {
-                public Version call(Git git, GitContext context) throws Exception {
-                    return loadVersion(git, context, versionId);
-                }
-            };
-            GitContext context = new GitContext();
-            return executeInternal(context, null, gitop);
-        }
-        
-        private Version loadVersion(Git git, GitContext context, String versionId) throws Exception {
-            
-            // Collect the profiles with parent hierarchy unresolved
-            VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId);
-            populateVersionBuilder(git, context, vbuilder, "master", versionId);
-            populateVersionBuilder(git, context, vbuilder, versionId, versionId);
-            Version auxVersion = vbuilder.getVersion();
-            
-            // Use a new version builder for resolved profiles
-            vbuilder = VersionBuilder.Factory.create(versionId);
-            vbuilder.setAttributes(getVersionAttributes(git, context, versionId));
-            
-            // Resolve the profile hierarchies
-            for (Profile profile : auxVersion.getProfiles()) {
-                resolveVersionProfiles(vbuilder, auxVersion, profile.getId(), new HashMap<String, Profile>());
-            }
-            
-            return vbuilder.getVersion();
-        }
-
-        private void populateVersionBuilder(Git git, GitContext context, VersionBuilder builder, String branch, String versionId) throws GitAPIException, IOException {
-            checkoutRequiredProfileBranch(git, context, branch, null);
-            File profilesDir = GitHelpers.getProfilesDirectory(git);
-            if (profilesDir.exists()) {
-                String[] files = profilesDir.list();
-                if (files != null) {
-                    for (String childName : files) {
-                        Path childPath = profilesDir.toPath().resolve(childName);
-                        if (childPath.toFile().isDirectory()) {
-                            RevCommit lastCommit = GitHelpers.getProfileLastCommit(git, branch, childName);
-                            if (lastCommit != null) {
-                                populateProfile(git, builder, branch, versionId, childPath.toFile(), "");
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        private void populateProfile(Git git, VersionBuilder versionBuilder, String branch, String versionId, File profileFile, String prefix) throws IOException {
-            String profileName = profileFile.getName();
-            String profileId = profileName;
-            if (profileId.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
-                profileId = prefix + profileId.substring(0, profileId.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
-            } else {
-                // lets recurse all children
-                File[] files = profileFile.listFiles();
-                if (files != null) {
-                    for (File childFile : files) {
-                        if (childFile.isDirectory()) {
-                            populateProfile(git, versionBuilder, branch, versionId, childFile, prefix + profileFile.getName() + "-");
-                        }
-                    }
-                }
-                return;
-            }
-
-            RevCommit lastCommit = GitHelpers.getProfileLastCommit(git, branch, profileName);
-            String lastModified = lastCommit != null ? lastCommit.getId().abbreviate(GIT_COMMIT_SHORT_LENGTH).name() : "";
-            Map<String, byte[]> fileConfigurations = doGetFileConfigurations(git, profileId);
-            
-            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-            profileBuilder.setFileConfigurations(fileConfigurations).setLastModified(lastModified);
-            versionBuilder.addProfile(profileBuilder.getProfile());
-        }
-
-        private void resolveVersionProfiles(VersionBuilder versionBuilder, Version auxVersion, String profileId, Map<String, Profile> profiles) {
-            Profile resolved = profiles.get(profileId);
-            if (resolved == null) {
-                String versionId = auxVersion.getId();
-                Profile auxProfile = auxVersion.getProfile(profileId);
-                IllegalStateAssertion.assertNotNull(auxProfile, "Cannot obtain profile '" + profileId + "' from: " + auxVersion);
-                String pspec = auxProfile.getAttributes().get(Profile.PARENTS);
-                List<String> parents = pspec != null ? Arrays.asList(pspec.split(" ")) : Collections.<String>emptyList();
-                for (String parentId : parents) {
-                    resolveVersionProfiles(versionBuilder, auxVersion, parentId, profiles);
-                }
-                ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-                profileBuilder.setFileConfigurations(auxProfile.getFileConfigurations());
-                profileBuilder.setConfigurations(auxProfile.getConfigurations());
-                profileBuilder.setLastModified(auxProfile.getProfileHash());
-                for (String parentId : parents) {
-                    Profile parent = profiles.get(parentId);
-                    profileBuilder.addParent(parent);
-                }
-                Profile profile = profileBuilder.getProfile();
-                versionBuilder.addProfile(profile);
-                profiles.put(profileId, profile);
-            }
-        }
-
-        private Map<String, byte[]> doGetFileConfigurations(Git git, String profileId) throws IOException {
-            Map<String, byte[]> configurations = new HashMap<String, byte[]>();
-            File profileDirectory = GitHelpers.getProfileDirectory(git, profileId);
-            populateFileConfigurations(configurations, profileDirectory, profileDirectory);
-            return configurations;
-        }
-
-        private void populateFileConfigurations(Map<String, byte[]> configurations, File profileDirectory, File directory) throws IOException {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        String relativePath = getFilePattern(profileDirectory, file);
-                        configurations.put(relativePath, loadFileConfiguration(file));
-                    } else if (file.isDirectory()) {
-                        populateFileConfigurations(configurations, profileDirectory, file);
-                    }
-                }
-            }
-        }
-
-        private byte[] loadFileConfiguration(File file) throws IOException {
-            if (file.isDirectory()) {
-                // Not sure why we do this, but for directory pids, lets recurse...
-                StringBuilder buf = new StringBuilder();
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        String value = Files.toString(child);
-                        buf.append(String.format("%s = %s\n", child.getName(), value));
-                    }
-                }
-                return buf.toString().getBytes();
-            } else if (file.exists() && file.isFile()) {
-                return Files.readBytes(file);
-            }
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,416 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileBuilders;
+import io.fabric8.api.Profiles;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.utils.DataStoreUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.CommitUtils;
+import org.jboss.gravia.utils.IllegalStateAssertion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a version and its profiles straight from the git object database using the commits
+ * the version and master branches point to; rather than checking out the branches and reading
+ * the working tree.
+ * <p/>
+ * Commits and trees are immutable, so reads need no lock and never see a half written version
+ * even while the working tree is being modified by a write operation.
+ * <p/>
+ * Given the snapshot of an earlier commit of the same branches only the profile directories which
+ * differ between the old and new trees are read again, and only those profiles and the profiles
+ * inheriting from them are resolved again; all other profiles are taken from the earlier snapshot.
+ */
+public final class GitVersionReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitVersionReader.class);
+
+    private static final int GIT_COMMIT_SHORT_LENGTH = 7;
+    private static final String PROFILES_PATH = GitHelpers.CONFIGS + "/profiles";
+
+    private final Repository repository;
+    private final ProfileBuilders profileBuilders;
+
+    public GitVersionReader(Repository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * @param profileBuilders the builders to create the profiles and versions with or null to look them up as a service
+     */
+    GitVersionReader(Repository repository, ProfileBuilders profileBuilders) {
+        this.repository = repository;
+        this.profileBuilders = profileBuilders;
+    }
+
+    /**
+     * Returns the commit the given local branch points to or null if there is no such branch
+     */
+    public ObjectId resolveBranch(String branch) throws IOException {
+        Ref ref = repository.getRef(Constants.R_HEADS + branch);
+        return ref != null ? ref.getObjectId() : null;
+    }
+
+    /**
+     * Reads the version with the profiles of the master branch commit overlaid by the profiles
+     * of the version branch commit
+     *
+     * @param masterCommit the commit of the master branch or null if there is none
+     * @param versionCommit the commit of the version branch
+     * @param previous an earlier snapshot of the version to update or null to read the whole version
+     */
+    public VersionSnapshot readVersion(String versionId, ObjectId masterCommit, ObjectId versionCommit, VersionSnapshot previous) throws IOException {
+        IllegalStateAssertion.assertNotNull(versionCommit, "versionCommit");
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk revWalk = new RevWalk(reader);
+        try {
+            // Collect the profiles with parent hierarchy unresolved
+            Set<String> changed = new HashSet<String>();
+            Map<String, Profile> masterProfiles = readProfiles(reader, revWalk, versionId, masterCommit,
+                    previous != null ? previous.masterCommit : null, previous != null ? previous.masterProfiles : null, changed);
+            Map<String, Profile> versionProfiles = readProfiles(reader, revWalk, versionId, versionCommit,
+                    previous != null ? previous.versionCommit : null, previous != null ? previous.versionProfiles : null, changed);
+            Map<String, Profile> auxProfiles = new LinkedHashMap<String, Profile>(masterProfiles);
+            auxProfiles.putAll(versionProfiles);
+
+            // Resolve the profile hierarchies reusing the unchanged profiles
+            VersionBuilder vbuilder = profileBuilders != null ? profileBuilders.profileVersionBuilder(versionId) : VersionBuilder.Factory.create(versionId);
+            vbuilder.setAttributes(getVersionAttributes(reader, revWalk.parseCommit(versionCommit)));
+            Version previousVersion = previous != null ? previous.version : null;
+            Map<String, Boolean> dirty = new HashMap<String, Boolean>();
+            Map<String, Profile> profiles = new HashMap<String, Profile>();
+            for (String profileId : auxProfiles.keySet()) {
+                resolveVersionProfiles(vbuilder, versionId, auxProfiles, previousVersion, changed, dirty, profileId, profiles);
+            }
+            if (previousVersion != null) {
+                LOGGER.debug("Updated version {} with {} changed profiles and {} re-resolved profiles", versionId, changed.size(), countDirty(dirty));
+            }
+            return new VersionSnapshot(masterCommit, versionCommit, masterProfiles, versionProfiles, vbuilder.getVersion());
+        } finally {
+            revWalk.release();
+            reader.release();
+        }
+    }
+
+    /**
+     * Returns the unresolved profiles of the given branch commit indexed by profile id; adding the
+     * ids of the profiles which differ from the previous profiles to the changed set
+     */
+    private Map<String, Profile> readProfiles(ObjectReader reader, RevWalk revWalk, String versionId, ObjectId commitId,
+                                              ObjectId previousCommitId, Map<String, Profile> previousProfiles, Set<String> changed) throws IOException {
+        if (previousProfiles != null && GitHelpers.equals(commitId, previousCommitId)) {
+            return previousProfiles;
+        }
+        Map<String, Profile> profiles = new LinkedHashMap<String, Profile>();
+        if (commitId == null) {
+            if (previousProfiles != null) {
+                changed.addAll(previousProfiles.keySet());
+            }
+            return profiles;
+        }
+        RevCommit commit = revWalk.parseCommit(commitId);
+        if (previousProfiles != null && previousCommitId != null && isAncestor(reader, previousCommitId, commit)) {
+            // only read the profile directories which differ from the previous commit
+            profiles.putAll(previousProfiles);
+            RevCommit previousCommit = revWalk.parseCommit(previousCommitId);
+            for (Map.Entry<String, String> entry : getChangedProfilePaths(reader, previousCommit, commit).entrySet()) {
+                String profileId = entry.getKey();
+                String path = entry.getValue();
+                TreeWalk walk = TreeWalk.forPath(reader, path, commit.getTree());
+                if (walk != null && walk.isSubtree()) {
+                    profiles.put(profileId, readProfile(reader, commit, versionId, profileId, walk.getObjectId(0), path));
+                } else {
+                    profiles.remove(profileId);
+                }
+                if (walk != null) {
+                    walk.release();
+                }
+                changed.add(profileId);
+            }
+        } else {
+            TreeWalk walk = TreeWalk.forPath(reader, PROFILES_PATH, commit.getTree());
+            if (walk != null) {
+                try {
+                    if (walk.isSubtree()) {
+                        populateProfiles(reader, commit, profiles, versionId, walk.getObjectId(0), PROFILES_PATH, "");
+                    }
+                } finally {
+                    walk.release();
+                }
+            }
+            if (previousProfiles != null) {
+                changed.addAll(previousProfiles.keySet());
+                changed.addAll(profiles.keySet());
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Returns true if the given commit is reachable from the other commit; so that the history of
+     * the unchanged profiles (and hence their last modified commit) is the same in both
+     */
+    private boolean isAncestor(ObjectReader reader, ObjectId ancestorId, RevCommit commit) throws IOException {
+        RevWalk walk = new RevWalk(reader);
+        try {
+            return walk.isMergedInto(walk.parseCommit(ancestorId), walk.parseCommit(commit));
+        } catch (MissingObjectException e) {
+            return false;
+        } finally {
+            walk.release();
+        }
+    }
+
+    /**
+     * Returns the paths of the profile directories with any file which differs between the two commits
+     * indexed by profile id
+     */
+    private Map<String, String> getChangedProfilePaths(ObjectReader reader, RevCommit oldCommit, RevCommit newCommit) throws IOException {
+        Map<String, String> answer = new LinkedHashMap<String, String>();
+        TreeWalk walk = new TreeWalk(reader);
+        try {
+            walk.addTree(oldCommit.getTree());
+            walk.addTree(newCommit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(AndTreeFilter.create(PathFilter.create(PROFILES_PATH), TreeFilter.ANY_DIFF));
+            while (walk.next()) {
+                String[] segments = walk.getPathString().substring(PROFILES_PATH.length() + 1).split("/");
+                StringBuilder profileId = new StringBuilder();
+                StringBuilder path = new StringBuilder(PROFILES_PATH);
+                for (int i = 0; i < segments.length - 1; i++) {
+                    String name = segments[i];
+                    path.append('/').append(name);
+                    if (name.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
+                        profileId.append(name.substring(0, name.length() - Profiles.PROFILE_FOLDER_SUFFIX.length()));
+                        answer.put(profileId.toString(), path.toString());
+                        break;
+                    }
+                    profileId.append(name).append('-');
+                }
+            }
+        } finally {
+            walk.release();
+        }
+        return answer;
+    }
+
+    /**
+     * Adds the profiles of the given directory tree; where the "foo/bar.profile" directory holds
+     * the "foo-bar" profile
+     */
+    private void populateProfiles(ObjectReader reader, RevCommit commit, Map<String, Profile> profiles, String versionId, AnyObjectId tree, String path, String prefix) throws IOException {
+        TreeWalk walk = new TreeWalk(reader);
+        try {
+            walk.addTree(tree);
+            walk.setRecursive(false);
+            while (walk.next()) {
+                if (!walk.isSubtree()) {
+                    continue;
+                }
+                String name = walk.getNameString();
+                String childPath = path + "/" + name;
+                if (name.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
+                    String profileId = prefix + name.substring(0, name.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
+                    profiles.put(profileId, readProfile(reader, commit, versionId, profileId, walk.getObjectId(0), childPath));
+                } else {
+                    populateProfiles(reader, commit, profiles, versionId, walk.getObjectId(0), childPath, prefix + name + "-");
+                }
+            }
+        } finally {
+            walk.release();
+        }
+    }
+
+    private Profile readProfile(ObjectReader reader, RevCommit commit, String versionId, String profileId, AnyObjectId tree, String path) throws IOException {
+        RevCommit lastCommit = CommitUtils.getLastCommit(repository, commit.name(), path);
+        String lastModified = lastCommit != null ? lastCommit.getId().abbreviate(GIT_COMMIT_SHORT_LENGTH).name() : "";
+        Map<String, byte[]> fileConfigurations = getFileConfigurations(reader, tree);
+
+        ProfileBuilder profileBuilder = createProfileBuilder(versionId, profileId);
+        profileBuilder.setFileConfigurations(fileConfigurations).setLastModified(lastModified);
+        return profileBuilder.getProfile();
+    }
+
+    /**
+     * Returns the content of every file in the profile tree indexed by its path relative to the profile directory
+     */
+    private Map<String, byte[]> getFileConfigurations(ObjectReader reader, AnyObjectId tree) throws IOException {
+        Map<String, byte[]> configurations = new HashMap<String, byte[]>();
+        TreeWalk walk = new TreeWalk(reader);
+        try {
+            walk.addTree(tree);
+            walk.setRecursive(true);
+            while (walk.next()) {
+                if (walk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+                    configurations.put(walk.getPathString(), reader.open(walk.getObjectId(0), Constants.OBJ_BLOB).getBytes());
+                }
+            }
+        } finally {
+            walk.release();
+        }
+        return configurations;
+    }
+
+    private ProfileBuilder createProfileBuilder(String versionId, String profileId) {
+        return profileBuilders != null ? profileBuilders.profileBuilder(versionId, profileId) : ProfileBuilder.Factory.create(versionId, profileId);
+    }
+
+    private Map<String, String> getVersionAttributes(ObjectReader reader, RevCommit commit) throws IOException {
+        TreeWalk walk = TreeWalk.forPath(reader, GitHelpers.VERSION_ATTRIBUTES, commit.getTree());
+        if (walk == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            return DataStoreUtils.toMap(reader.open(walk.getObjectId(0), Constants.OBJ_BLOB).getBytes());
+        } finally {
+            walk.release();
+        }
+    }
+
+    private void resolveVersionProfiles(VersionBuilder versionBuilder, String versionId, Map<String, Profile> auxProfiles, Version previousVersion,
+                                        Set<String> changed, Map<String, Boolean> dirty, String profileId, Map<String, Profile> profiles) {
+        Profile resolved = profiles.get(profileId);
+        if (resolved == null) {
+            Profile auxProfile = auxProfiles.get(profileId);
+            IllegalStateAssertion.assertNotNull(auxProfile, "Cannot obtain profile '" + profileId + "' from version: " + versionId);
+            List<String> parents = getParentIds(auxProfile);
+            for (String parentId : parents) {
+                resolveVersionProfiles(versionBuilder, versionId, auxProfiles, previousVersion, changed, dirty, parentId, profiles);
+            }
+            Profile profile;
+            if (isDirty(auxProfiles, previousVersion, changed, dirty, profileId)) {
+                ProfileBuilder profileBuilder = createProfileBuilder(versionId, profileId);
+                profileBuilder.setFileConfigurations(auxProfile.getFileConfigurations());
+                profileBuilder.setConfigurations(auxProfile.getConfigurations());
+                profileBuilder.setLastModified(auxProfile.getProfileHash());
+                for (String parentId : parents) {
+                    Profile parent = profiles.get(parentId);
+                    profileBuilder.addParent(parent);
+                }
+                profile = profileBuilder.getProfile();
+            } else {
+                profile = previousVersion.getProfile(profileId);
+            }
+            versionBuilder.addProfile(profile);
+            profiles.put(profileId, profile);
+        }
+    }
+
+    /**
+     * Returns true if the resolved profile cannot be taken from the previous version because
+     * the profile or one of its ancestors changed
+     */
+    private boolean isDirty(Map<String, Profile> auxProfiles, Version previousVersion, Set<String> changed, Map<String, Boolean> dirty, String profileId) {
+        Boolean answer = dirty.get(profileId);
+        if (answer == null) {
+            answer = previousVersion == null || changed.contains(profileId) || previousVersion.getProfile(profileId) == null;
+            if (!answer) {
+                for (String parentId : getParentIds(auxProfiles.get(profileId))) {
+                    if (isDirty(auxProfiles, previousVersion, changed, dirty, parentId)) {
+                        answer = true;
+                        break;
+                    }
+                }
+            }
+            dirty.put(profileId, answer);
+        }
+        return answer;
+    }
+
+    private static int countDirty(Map<String, Boolean> dirty) {
+        int answer = 0;
+        for (Boolean value : dirty.values()) {
+            if (value) {
+                answer++;
+            }
+        }
+        return answer;
+    }
+
+    private static List<String> getParentIds(Profile auxProfile) {
+        String pspec = auxProfile.getAttributes().get(Profile.PARENTS);
+        return pspec != null ? Arrays.asList(pspec.split(" ")) : Collections.<String>emptyList();
+    }
+
+    /**
+     * A version read from the given master and version branch commits together with the unresolved
+     * profiles of each branch; which are the basis for reading a later commit of the branches
+     */
+    public static final class VersionSnapshot {
+
+        private final ObjectId masterCommit;
+        private final ObjectId versionCommit;
+        private final Map<String, Profile> masterProfiles;
+        private final Map<String, Profile> versionProfiles;
+        private final Version version;
+
+        VersionSnapshot(ObjectId masterCommit, ObjectId versionCommit, Map<String, Profile> masterProfiles, Map<String, Profile> versionProfiles, Version version) {
+            this.masterCommit = masterCommit;
+            this.versionCommit = versionCommit;
+            this.masterProfiles = masterProfiles;
+            this.versionProfiles = versionProfiles;
+            this.version = version;
+        }
+
+        /**
+         * Returns true if this snapshot was read from the given branch commits
+         */
+        public boolean isCurrent(ObjectId masterCommit, ObjectId versionCommit) {
+            return GitHelpers.equals(this.masterCommit, masterCommit) && GitHelpers.equals(this.versionCommit, versionCommit);
+        }
+
+        public ObjectId getMasterCommit() {
+            return masterCommit;
+        }
+
+        public ObjectId getVersionCommit() {
+            return versionCommit;
+        }
+
+        public Version getVersion() {
+            return version;
+        }
+    }
+}
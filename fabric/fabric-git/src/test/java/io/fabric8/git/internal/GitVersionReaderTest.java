@@ -0,0 +1,183 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import io.fabric8.api.Constants;
+import io.fabric8.api.Profile;
+import io.fabric8.api.Version;
+import io.fabric8.git.internal.GitVersionReader.VersionSnapshot;
+import io.fabric8.internal.ProfileBuildersImpl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GitVersionReaderTest {
+
+    private static final String VERSION = "1.0";
+
+    private File root;
+    private Git git;
+    private GitVersionReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        root = new File(System.getProperty("basedir", "."), "target/git-version-reader").getCanonicalFile();
+        FileUtils.deleteDirectory(root);
+        root.mkdirs();
+        git = Git.init().setDirectory(root).call();
+
+        ProfileBuildersImpl profileBuilders = new ProfileBuildersImpl();
+        profileBuilders.activateComponent();
+        reader = new GitVersionReader(git.getRepository(), profileBuilders);
+
+        // the profiles of a version live on its branch; master only has the fabric ensemble data
+        FileUtils.writeStringToFile(new File(root, GitHelpers.CONFIGS + "/ensemble.properties"), "");
+        commit("Initial commit");
+        git.branchCreate().setName(VERSION).call();
+        git.checkout().setName(VERSION).call();
+        writeProfile("default", null, "a");
+        writeProfile("parent", "default", "b");
+        writeProfile("child", "parent", "c");
+        writeProfile("other", "default", "d");
+        commit("Create version");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        git.getRepository().close();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testReadVersion() throws Exception {
+        Version version = readVersion(null).getVersion();
+
+        assertEquals(VERSION, version.getId());
+        assertEquals(4, version.getProfiles().size());
+        Profile child = version.getProfile("child");
+        assertEquals("c", getValue(child));
+        assertEquals("parent", child.getParents().get(0).getId());
+        assertEquals("default", child.getParents().get(0).getParents().get(0).getId());
+        assertFalse("should have a last modified id", child.getProfileHash().isEmpty());
+    }
+
+    @Test
+    public void testSnapshotIsCurrent() throws Exception {
+        VersionSnapshot snapshot = readVersion(null);
+        assertTrue("should be current", snapshot.isCurrent(reader.resolveBranch(GitHelpers.MASTER_BRANCH), reader.resolveBranch(VERSION)));
+
+        writeProfile("other", "default", "e");
+        commit("Edit other");
+        assertTrue("master did not move", GitHelpers.equals(snapshot.getMasterCommit(), reader.resolveBranch(GitHelpers.MASTER_BRANCH)));
+        assertFalse("the version branch moved", snapshot.isCurrent(reader.resolveBranch(GitHelpers.MASTER_BRANCH), reader.resolveBranch(VERSION)));
+        assertNull("no such branch", reader.resolveBranch("2.0"));
+    }
+
+    @Test
+    public void testParentEditInvalidatesChildren() throws Exception {
+        VersionSnapshot previous = readVersion(null);
+
+        writeProfile("parent", "default", "b2");
+        commit("Edit parent");
+        Version version = readVersion(previous).getVersion();
+        Version previousVersion = previous.getVersion();
+
+        assertEquals("b2", getValue(version.getProfile("parent")));
+        assertNotSame(previousVersion.getProfile("parent"), version.getProfile("parent"));
+        Profile child = version.getProfile("child");
+        assertNotSame("child should be resolved again", previousVersion.getProfile("child"), child);
+        assertSame("child should inherit the new parent", version.getProfile("parent"), child.getParents().get(0));
+        assertSame("default did not change", previousVersion.getProfile("default"), version.getProfile("default"));
+        assertSame("other did not change", previousVersion.getProfile("other"), version.getProfile("other"));
+    }
+
+    @Test
+    public void testNonFastForwardReadsTheWholeVersion() throws Exception {
+        writeProfile("child", "parent", "c2");
+        commit("Edit child");
+        VersionSnapshot previous = readVersion(null);
+        assertEquals("c2", getValue(previous.getVersion().getProfile("child")));
+
+        // rewrite the history of the branch as a forced pull would
+        git.reset().setMode(ResetCommand.ResetType.HARD).setRef("HEAD~1").call();
+        writeProfile("other", "default", "d2");
+        commit("Edit other");
+        Version version = readVersion(previous).getVersion();
+        Version previousVersion = previous.getVersion();
+
+        assertEquals("c", getValue(version.getProfile("child")));
+        assertEquals("d2", getValue(version.getProfile("other")));
+        for (Profile profile : previousVersion.getProfiles()) {
+            assertNotSame(profile.getId() + " should be read again", profile, version.getProfile(profile.getId()));
+        }
+    }
+
+    @Test
+    public void testProfileDeletion() throws Exception {
+        VersionSnapshot previous = readVersion(null);
+
+        git.rm().addFilepattern(GitHelpers.CONFIGS + "/profiles/other.profile").call();
+        commit("Delete other");
+        Version version = readVersion(previous).getVersion();
+        Version previousVersion = previous.getVersion();
+
+        assertNull("other should be deleted", version.getProfile("other"));
+        assertEquals(3, version.getProfiles().size());
+        assertSame("child did not change", previousVersion.getProfile("child"), version.getProfile("child"));
+        assertNotNull(version.getProfile("default"));
+    }
+
+    private VersionSnapshot readVersion(VersionSnapshot previous) throws IOException {
+        ObjectId masterCommit = reader.resolveBranch(GitHelpers.MASTER_BRANCH);
+        ObjectId versionCommit = reader.resolveBranch(VERSION);
+        return reader.readVersion(VERSION, masterCommit, versionCommit, previous);
+    }
+
+    private void writeProfile(String profileId, String parents, String value) throws IOException {
+        File dir = new File(root, GitHelpers.CONFIGS + "/profiles/" + profileId + ".profile");
+        dir.mkdirs();
+        StringBuilder content = new StringBuilder("value = " + value + "\n");
+        if (parents != null) {
+            content.append(Profile.ATTRIBUTE_PREFIX).append(Profile.PARENTS).append(" = ").append(parents).append("\n");
+        }
+        FileUtils.writeStringToFile(new File(dir, Constants.AGENT_PID + Profile.PROPERTIES_SUFFIX), content.toString());
+    }
+
+    private void commit(String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage(message).setCommitter("fabric", "user@fabric").call();
+    }
+
+    private static String getValue(Profile profile) {
+        return profile.getConfiguration(Constants.AGENT_PID).get("value");
+    }
+}
@@ -35,15 +35,24 @@ public class DelegateZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     private final String path;
     private final Class<T> clazz;
+    private final GroupEventLoop eventLoop;
     private final List<GroupListener<T>> listeners;
     protected Group<T> group;
     private T state;
     private AtomicBoolean started = new AtomicBoolean();
 
     public DelegateZooKeeperGroup(String path, Class<T> clazz) {
+        this(path, clazz, null);
+    }
+
+    /**
+     * @param eventLoop the event loop shared by the groups created for this delegate or null for a thread per group
+     */
+    public DelegateZooKeeperGroup(String path, Class<T> clazz, GroupEventLoop eventLoop) {
         this.listeners = new ArrayList<GroupListener<T>>();
         this.path = path;
         this.clazz = clazz;
+        this.eventLoop = eventLoop;
     }
 
     public void useCurator(CuratorFramework curator) {
@@ -65,9 +74,16 @@ public class DelegateZooKeeperGroup<T extends NodeState> implements Group<T> {
     }
 
     protected Group<T> createGroup(CuratorFramework client, String path, Class<T> clazz) {
+        if (eventLoop != null) {
+            return new ZooKeeperGroup<T>(client, path, clazz, eventLoop);
+        }
         return new ZooKeeperGroup<T>(client, path, clazz);
     }
 
+    protected GroupEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
     @Override
     public void add(GroupListener<T> listener) {
         listeners.add(listener);
@@ -26,7 +26,14 @@ public class DelegateZooKeeperMultiGroup<T extends NodeState> extends DelegateZo
         super(path, clazz);
     }
 
+    public DelegateZooKeeperMultiGroup(String path, Class<T> clazz, GroupEventLoop eventLoop) {
+        super(path, clazz, eventLoop);
+    }
+
     protected Group<T> createGroup(CuratorFramework client, String path, Class<T> clazz) {
+        if (getEventLoop() != null) {
+            return new ZooKeeperMultiGroup<T>(client, path, clazz, getEventLoop());
+        }
         return new ZooKeeperMultiGroup<T>(client, path, clazz);
     }
 
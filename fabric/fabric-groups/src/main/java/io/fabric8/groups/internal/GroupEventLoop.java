@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.groups.internal;
+
+import org.apache.curator.utils.ThreadUtils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of threads shared by many {@link ZooKeeperGroup}s.
+ *
+ * Instead of blocking a thread of its own, a group using an event loop submits a task that drains its
+ * operations whenever there is work to do. Operations of a single group are still processed one at a time
+ * and in order. Idle threads are released, so an unused event loop does not need to be closed.
+ */
+public final class GroupEventLoop {
+
+    private static final int DEFAULT_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private static final GroupEventLoop SHARED = new GroupEventLoop(DEFAULT_THREADS);
+
+    private final ThreadPoolExecutor executor;
+
+    public GroupEventLoop(int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), ThreadUtils.newThreadFactory("ZooKeeperGroup"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The event loop shared by all groups of this class loader.
+     */
+    public static GroupEventLoop shared() {
+        return SHARED;
+    }
+
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Stops the threads, groups still using this event loop stop processing their operations.
+     */
+    public void close() {
+        if (this != SHARED) {
+            executor.shutdownNow();
+        }
+    }
+}
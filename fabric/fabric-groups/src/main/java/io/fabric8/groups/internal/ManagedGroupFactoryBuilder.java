@@ -27,17 +27,28 @@ public class ManagedGroupFactoryBuilder {
     public static ManagedGroupFactory create(CuratorFramework curator,
                                       ClassLoader loader,
                                       Callable<CuratorFramework> factory) throws Exception {
+        return create(curator, loader, factory, null);
+    }
+
+    /**
+     * Creates a factory whose groups run on the given event loop instead of a thread per group.
+     * Listeners of such groups must not block for long, as they hold up the other groups of the event loop.
+     */
+    public static ManagedGroupFactory create(CuratorFramework curator,
+                                      ClassLoader loader,
+                                      Callable<CuratorFramework> factory,
+                                      GroupEventLoop eventLoop) throws Exception {
         if (curator != null) {
-            return new StaticManagedGroupFactory(curator, false);
+            return new StaticManagedGroupFactory(curator, false, eventLoop);
         }
         try {
-            return new OsgiManagedGroupFactory(loader);
+            return new OsgiManagedGroupFactory(loader, eventLoop);
         } catch (NoClassDefFoundError e) {
             // Ignore if we'e not in OSGi
         } catch (IllegalStateException e) {
             // Ignore if we'e not in OSGi
         }
-        return new StaticManagedGroupFactory(factory.call(), true);
+        return new StaticManagedGroupFactory(factory.call(), true, eventLoop);
     }
 
 }
@@ -35,7 +35,11 @@ public class OsgiManagedGroupFactory implements ManagedGroupFactory {
     private final ManagedGroupFactory delegate;
 
     public OsgiManagedGroupFactory(ClassLoader loader) {
-        this.delegate = new OsgiTrackingManagedGroupFactory(loader);
+        this(loader, null);
+    }
+
+    public OsgiManagedGroupFactory(ClassLoader loader, GroupEventLoop eventLoop) {
+        this.delegate = new OsgiTrackingManagedGroupFactory(loader, eventLoop);
     }
 
     @Override
@@ -62,11 +66,12 @@ public class OsgiManagedGroupFactory implements ManagedGroupFactory {
 
         private final BundleContext bundleContext;
         private final ServiceTracker<CuratorFramework, CuratorFramework> tracker;
+        private final GroupEventLoop eventLoop;
         private CuratorFramework curator;
         private final List<DelegateZooKeeperGroup<?>> groups = new ArrayList<DelegateZooKeeperGroup<?>>();
 
-        OsgiTrackingManagedGroupFactory(ClassLoader loader) {
-            this(getBundleContext(loader));
+        OsgiTrackingManagedGroupFactory(ClassLoader loader, GroupEventLoop eventLoop) {
+            this(getBundleContext(loader), eventLoop);
         }
 
         static BundleContext getBundleContext(ClassLoader loader) {
@@ -76,8 +81,9 @@ public class OsgiManagedGroupFactory implements ManagedGroupFactory {
             return ((BundleReference) loader).getBundle().getBundleContext();
         }
 
-        OsgiTrackingManagedGroupFactory(BundleContext bundleContext) {
+        OsgiTrackingManagedGroupFactory(BundleContext bundleContext, GroupEventLoop eventLoop) {
             this.bundleContext = bundleContext;
+            this.eventLoop = eventLoop;
             this.tracker = new ServiceTracker<CuratorFramework, CuratorFramework>(
                     bundleContext, CuratorFramework.class, this);
             this.tracker.open();
@@ -114,7 +120,7 @@ public class OsgiManagedGroupFactory implements ManagedGroupFactory {
 
         @Override
         public <T extends NodeState> Group<T> createGroup(String path, Class<T> clazz) {
-            return new DelegateZooKeeperGroup<T>(path, clazz) {
+            return new DelegateZooKeeperGroup<T>(path, clazz, eventLoop) {
                 @Override
                 public void start() {
                     useCurator(curator);
@@ -132,7 +138,7 @@ public class OsgiManagedGroupFactory implements ManagedGroupFactory {
 
         @Override
         public <T extends NodeState> Group<T> createMultiGroup(String path, Class<T> clazz) {
-            return new DelegateZooKeeperMultiGroup<T>(path, clazz) {
+            return new DelegateZooKeeperMultiGroup<T>(path, clazz, eventLoop) {
                 @Override
                 public void start() {
                     useCurator(curator);
@@ -26,10 +26,16 @@ public class StaticManagedGroupFactory implements ManagedGroupFactory {
 
     private final CuratorFramework curator;
     private final boolean shouldClose;
+    private final GroupEventLoop eventLoop;
 
     StaticManagedGroupFactory(CuratorFramework curator, boolean shouldClose) {
+        this(curator, shouldClose, null);
+    }
+
+    StaticManagedGroupFactory(CuratorFramework curator, boolean shouldClose, GroupEventLoop eventLoop) {
         this.curator = curator;
         this.shouldClose = shouldClose;
+        this.eventLoop = eventLoop;
     }
 
     @Override
@@ -39,11 +45,17 @@ public class StaticManagedGroupFactory implements ManagedGroupFactory {
 
     @Override
     public <T extends NodeState> Group<T> createGroup(String path, Class<T> clazz) {
+        if (eventLoop != null) {
+            return new ZooKeeperGroup<T>(curator, path, clazz, eventLoop);
+        }
         return new ZooKeeperGroup<T>(curator, path, clazz);
     }
 
     @Override
     public <T extends NodeState> Group<T> createMultiGroup(String path, Class<T> clazz) {
+        if (eventLoop != null) {
+            return new ZooKeeperMultiGroup<T>(curator, path, clazz, eventLoop);
+        }
         return new ZooKeeperMultiGroup<T>(curator, path, clazz);
     }
 
@@ -49,6 +49,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -68,10 +69,13 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     static private final Logger LOG = LoggerFactory.getLogger(ZooKeeperGroup.class);
 
+    static private final int MAX_OPERATIONS_PER_DRAIN = 64;
+
     private final Class<T> clazz;
     private final CuratorFramework client;
     private final String path;
     private final ExecutorService executorService;
+    private final GroupEventLoop eventLoop;
     private final EnsurePath ensurePath;
     private final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
     private final ListenerContainer<GroupListener<T>> listeners = new ListenerContainer<GroupListener<T>>();
@@ -80,8 +84,12 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private final AtomicBoolean connected = new AtomicBoolean();
     protected final SequenceComparator sequenceComparator = new SequenceComparator();
 
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Thread drainingThread;
+
     private volatile String id;
     private volatile T state;
+    private volatile byte[] encodedState;
 
     private final Watcher childrenWatcher = new Watcher() {
         @Override
@@ -112,6 +120,13 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     };
 
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainOperations();
+        }
+    };
+
     /**
      * @param client the client
      * @param path   path to watch
@@ -136,10 +151,24 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
      * @param executorService ExecutorService to use for the ZooKeeperGroup's background thread
      */
     public ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, final ExecutorService executorService) {
+        this(client, path, clazz, executorService, null);
+    }
+
+    /**
+     * @param client    the client
+     * @param path      path to watch
+     * @param eventLoop the event loop this group shares with other groups
+     */
+    public ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, GroupEventLoop eventLoop) {
+        this(client, path, clazz, null, eventLoop);
+    }
+
+    private ZooKeeperGroup(CuratorFramework client, String path, Class<T> clazz, ExecutorService executorService, GroupEventLoop eventLoop) {
         this.client = client;
         this.path = path;
         this.clazz = clazz;
         this.executorService = executorService;
+        this.eventLoop = eventLoop;
         ensurePath = client.newNamespaceAwareEnsurePath(path);
     }
 
@@ -150,12 +179,16 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         if (started.compareAndSet(false, true)) {
             connected.set(client.getZookeeperClient().isConnected());
             client.getConnectionStateListenable().addListener(connectionStateListener);
-            executorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    mainLoop();
-                }
-            });
+            if (eventLoop != null) {
+                scheduleDrain();
+            } else {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mainLoop();
+                    }
+                });
+            }
 
             if (isConnected()) {
                 handleStateChange(ConnectionState.CONNECTED);
@@ -172,9 +205,14 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     public void close() throws IOException {
         if (started.compareAndSet(true, false)) {
             client.getConnectionStateListenable().removeListener(connectionStateListener);
-            executorService.shutdownNow();
             try {
-                executorService.awaitTermination(5, TimeUnit.SECONDS);
+                if (eventLoop != null) {
+                    awaitDrained(5, TimeUnit.SECONDS);
+                    operations.clear();
+                } else {
+                    executorService.shutdownNow();
+                    executorService.awaitTermination(5, TimeUnit.SECONDS);
+                }
             } catch (InterruptedException e) {
                 throw (IOException) new InterruptedIOException().initCause(e);
             }
@@ -207,14 +245,14 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
 
     @Override
     public void update(T state) {
-        T oldState = this.state;
+        // the previous state was encoded when it was set, so only the new state needs encoding
+        byte[] oldEncoded = this.encodedState;
+        byte[] newEncoded = state != null ? encode(state) : null;
         this.state = state;
+        this.encodedState = newEncoded;
 
         if (started.get()) {
-            boolean update = state == null && oldState != null
-                        ||   state != null && oldState == null
-                        || !Arrays.equals(encode(state), encode(oldState));
-            if (update) {
+            if (!Arrays.equals(newEncoded, oldEncoded)) {
                 offerOperation(new RefreshOperation(this, RefreshMode.FORCE_GET_DATA_AND_STAT));
                 offerOperation(new UpdateOperation<T>(this, state));
             }
@@ -249,17 +287,19 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
                     }
                 }
 
+                // encode when the operation runs, so that the node gets the state as it is now
+                byte[] data = encode(state);
                 if (id == null) {
                     id = client.create().creatingParentsIfNeeded()
                         .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
-                        .forPath(path + "/0", encode(state));
+                        .forPath(path + "/0", data);
                 } else {
                     try {
-                        client.setData().forPath(id, encode(state));
+                        client.setData().forPath(id, data);
                     } catch (KeeperException.NoNodeException e) {
                         id = client.create().creatingParentsIfNeeded()
                                 .withMode(CreateMode.EPHEMERAL_SEQUENTIAL)
-                                .forPath(path + "/0", encode(state));
+                                .forPath(path + "/0", data);
                     }
                 }
             }
@@ -436,7 +476,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         try {
             Stat stat = new Stat();
             byte[] bytes = client.getData().storingStatIn(stat).forPath(fullPath);
-            currentData.put(fullPath, new ChildData<T>(fullPath, stat, bytes, decode(bytes)));
+            currentData.put(fullPath, new ChildData<T>(fullPath, stat, bytes, decode(fullPath, stat, bytes)));
         } catch (KeeperException.NoNodeException ignore) {
             // node no longer exists - remove it
             currentData.remove(fullPath);
@@ -496,7 +536,7 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private void applyNewData(String fullPath, int resultCode, Stat stat, byte[] bytes) {
         if (resultCode == KeeperException.Code.OK.intValue()) {
             // otherwise - node must have dropped or something - we should be getting another event
-            ChildData<T> data = new ChildData<T>(fullPath, stat, bytes, decode(bytes));
+            ChildData<T> data = new ChildData<T>(fullPath, stat, bytes, decode(fullPath, stat, bytes));
             ChildData<T> previousData = currentData.put(fullPath, data);
             if (previousData == null || previousData.getStat().getVersion() != stat.getVersion()) {
                 offerOperation(new EventOperation(this, GroupListener.GroupEvent.CHANGED));
@@ -517,6 +557,66 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     }
 
+    /**
+     * Drains the pending operations on a thread of the event loop, at most {@link #MAX_OPERATIONS_PER_DRAIN}
+     * at a time so that a busy group does not hold on to a shared thread.
+     */
+    private void drainOperations() {
+        drainingThread = Thread.currentThread();
+        try {
+            for (int i = 0; i < MAX_OPERATIONS_PER_DRAIN && started.get(); i++) {
+                Operation operation = operations.poll();
+                if (operation == null) {
+                    break;
+                }
+                try {
+                    operation.invoke();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    handleException(e);
+                }
+            }
+        } finally {
+            drainingThread = null;
+            synchronized (draining) {
+                draining.set(false);
+                draining.notifyAll();
+            }
+        }
+        // operations offered while we were finishing up could not schedule a drain of their own
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (started.get() && !operations.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                eventLoop.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                handleException(e);
+            }
+        }
+    }
+
+    private void awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        if (drainingThread == Thread.currentThread()) {
+            // closed by one of our own operations, e.g. a listener
+            return;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (draining) {
+            while (draining.get()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                TimeUnit.NANOSECONDS.timedWait(draining, remaining);
+            }
+        }
+    }
+
     private byte[] encode(T state) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -527,6 +627,17 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     }
 
+    /**
+     * Reuses the node of the current data if the child has not been modified since it was decoded.
+     */
+    private T decode(String fullPath, Stat stat, byte[] data) {
+        ChildData<T> current = currentData.get(fullPath);
+        if (current != null && current.getStat().getMzxid() == stat.getMzxid()) {
+            return current.getNode();
+        }
+        return decode(data);
+    }
+
     private T decode(byte[] data) {
         try {
             return MAPPER.readValue(data, clazz);
@@ -538,15 +649,17 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private void offerOperation(Operation operation) {
         operations.remove(operation);   // avoids herding for refresh operations
         operations.offer(operation);
+        if (eventLoop != null) {
+            scheduleDrain();
+        }
     }
 
     public static <T> Map<String, T> members(CuratorFramework curator, String path, Class<T> clazz) throws Exception {
         Map<String, T> map = new TreeMap<String, T>();
         List<String> nodes = curator.getChildren().forPath(path);
-        ObjectMapper mapper = new ObjectMapper();
         for (String node : nodes) {
             byte[] data = curator.getData().forPath(path + "/" + node);
-            T val = mapper.readValue(data, clazz);
+            T val = MAPPER.readValue(data, clazz);
             map.put(node, val);
         }
         return map;
@@ -24,19 +24,31 @@ import io.fabric8.groups.NodeState;
  */
 public class ZooKeeperGroupFactory implements GroupFactory {
 
-    private CuratorFramework curator;
+    private final CuratorFramework curator;
+    private final GroupEventLoop eventLoop;
 
     public ZooKeeperGroupFactory(CuratorFramework curator) {
+        this(curator, null);
+    }
+
+    public ZooKeeperGroupFactory(CuratorFramework curator, GroupEventLoop eventLoop) {
         this.curator = curator;
+        this.eventLoop = eventLoop;
     }
 
     @Override
     public <T extends NodeState> Group<T> createGroup(String path, Class<T> clazz) {
+        if (eventLoop != null) {
+            return new ZooKeeperGroup<T>(curator, path, clazz, eventLoop);
+        }
         return new ZooKeeperGroup<T>(curator, path, clazz);
     }
 
     @Override
     public <T extends NodeState> Group<T> createMultiGroup(String path, Class<T> clazz) {
+        if (eventLoop != null) {
+            return new ZooKeeperMultiGroup<T>(curator, path, clazz, eventLoop);
+        }
         return new ZooKeeperMultiGroup<T>(curator, path, clazz);
     }
 }
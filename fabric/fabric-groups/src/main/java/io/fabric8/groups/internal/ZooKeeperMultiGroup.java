@@ -42,6 +42,10 @@ public class ZooKeeperMultiGroup<T extends NodeState> extends ZooKeeperGroup<T>
         super(client, path, clazz, threadFactory);
     }
 
+    public ZooKeeperMultiGroup(CuratorFramework client, String path, Class<T> clazz, GroupEventLoop eventLoop) {
+        super(client, path, clazz, eventLoop);
+    }
+
     @Override
     public boolean isMaster(String name) {
         List<ChildData<T>> children = new ArrayList<ChildData<T>>(currentData.values());
@@ -22,6 +22,7 @@ import org.apache.zookeeper.server.NIOServerCnxnFactory;
 import org.apache.zookeeper.server.ServerConfig;
 import org.apache.zookeeper.server.ZooKeeperServer;
 import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import io.fabric8.groups.internal.GroupEventLoop;
 import io.fabric8.groups.internal.ZooKeeperGroup;
 import org.junit.Test;
 
@@ -32,6 +33,7 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -226,6 +228,48 @@ public class GroupTest {
         cnxnFactory.join();
     }
 
+    @Test
+    public void testGroupsSharingEventLoop() throws Exception {
+        int port = findFreePort();
+        NIOServerCnxnFactory cnxnFactory = startZooKeeper(port);
+
+        CuratorFramework curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryNTimes(10, 100))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+        String groupNode =  "/singletons/test" + System.currentTimeMillis();
+
+        GroupEventLoop eventLoop = new GroupEventLoop(1);
+        Group<NodeState> group1 = new ZooKeeperGroup<NodeState>(curator, groupNode, NodeState.class, eventLoop);
+        Group<NodeState> group2 = new ZooKeeperGroup<NodeState>(curator, groupNode, NodeState.class, eventLoop);
+        GroupCondition groupCondition1 = new GroupCondition();
+        GroupCondition groupCondition2 = new GroupCondition();
+        group1.add(groupCondition1);
+        group2.add(groupCondition2);
+        group1.update(new NodeState("foo", "container1"));
+        group1.start();
+        assertTrue(groupCondition1.waitForMaster(5, TimeUnit.SECONDS));
+
+        group2.update(new NodeState("foo", "container2"));
+        group2.start();
+        assertTrue(groupCondition2.waitForConnected(5, TimeUnit.SECONDS));
+        assertFalse(group2.isMaster());
+
+        group1.close();
+        assertTrue(groupCondition2.waitForMaster(5, TimeUnit.SECONDS));
+        assertEquals(1, curator.getChildren().forPath(groupNode).size());
+
+        group2.close();
+        assertTrue(curator.getChildren().forPath(groupNode).isEmpty());
+
+        eventLoop.close();
+        curator.close();
+        cnxnFactory.shutdown();
+        cnxnFactory.join();
+    }
+
     private class GroupCondition implements GroupListener<NodeState> {
         private CountDownLatch connected = new CountDownLatch(1);
         private CountDownLatch master = new CountDownLatch(1);
@@ -15,11 +15,13 @@
  */
 package io.fabric8.maven.impl;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,7 +30,6 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -37,20 +38,19 @@ import javax.servlet.http.HttpServletResponse;
 import io.fabric8.api.FabricConstants;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.common.util.Closeables;
-import io.fabric8.common.util.Files;
 import io.fabric8.deployer.ProjectDeployer;
 
 
 public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
 
-    private final RuntimeProperties runtimeProperties;
+    static final long[] UNSATISFIABLE_RANGE = new long[0];
+
     private final ConcurrentMap<String, ArtifactDownloadFuture> requestMap = new ConcurrentHashMap<String, ArtifactDownloadFuture>();
     private final ExecutorService executorService = Executors.newCachedThreadPool();
 
 
     public MavenDownloadProxyServlet(RuntimeProperties runtimeProperties, String localRepository, List<String> remoteRepositories, boolean appendSystemRepos, String updatePolicy, String checksumPolicy, String proxyProtocol, String proxyHost, int proxyPort, String proxyUsername, String proxyPassword, String proxyNonProxyHosts, ProjectDeployer projectDeployer) {
         super(localRepository, remoteRepositories, appendSystemRepos, updatePolicy, checksumPolicy, proxyProtocol, proxyHost, proxyPort, proxyUsername, proxyPassword, proxyNonProxyHosts, projectDeployer);
-        this.runtimeProperties = runtimeProperties;
     }
 
     @Override
@@ -65,11 +65,6 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        InputStream is = null;
-        BufferedInputStream bis = null;
-        File artifactFile = null;
-        ArtifactDownloadFuture masterFuture = null;
-
         try {
             String path = req.getPathInfo();
             if (path != null && path.startsWith("/")) {
@@ -77,67 +72,193 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
             }
 
             try {
-                ArtifactDownloadFuture future = new ArtifactDownloadFuture(path);
-                masterFuture = requestMap.putIfAbsent(path, future);
-                if (masterFuture == null) {
-                    masterFuture = future;
-                    executorService.submit(future);
-                    artifactFile = masterFuture.get();
-                } else {
-                    artifactFile = masterFuture.get();
+                File artifactFile = path != null ? artifactCache.get(path) : null;
+                if (artifactFile == null) {
+                    artifactFile = resolve(path);
                 }
-
-                requestMap.remove(path);
                 if (artifactFile == null) {
                     resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
                     return;
                 }
-
-                is = new FileInputStream(artifactFile);
                 LOGGER.log(Level.INFO, String.format("Writing response for file : %s", path));
-                resp.setStatus(HttpServletResponse.SC_OK);
-                resp.setContentType("application/octet-stream");
-                resp.setDateHeader("Date", System.currentTimeMillis());
-                resp.setHeader("Connection", "close");
-                resp.setContentLength(is.available());
-                resp.setHeader("Server", "MavenProxy Proxy/" + FabricConstants.FABRIC_VERSION);
-                byte buffer[] = new byte[8192];
-                int length;
-                while ((length = is.read(buffer)) != -1) {
-                    resp.getOutputStream().write(buffer, 0, length);
-                }
-                resp.getOutputStream().flush();
+                writeArtifact(req, resp, artifactFile);
             } catch (Exception ex) {
                 LOGGER.warning("Error while downloading artifact:" + ex.getMessage());
-            } finally {
-                Closeables.closeQuitely(is);
-                if (masterFuture != null && artifactFile != null) {
-                    masterFuture.release(artifactFile);
-                }
             }
         } catch (Exception ex) {
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
 
-    private class ArtifactDownloadFuture extends FutureTask<File> {
+    /**
+     * Resolves the artifact, concurrent requests for the same path share the same resolution.
+     */
+    private File resolve(String path) throws InterruptedException, ExecutionException {
+        ArtifactDownloadFuture future = new ArtifactDownloadFuture(path);
+        ArtifactDownloadFuture masterFuture = requestMap.putIfAbsent(path, future);
+        if (masterFuture == null) {
+            masterFuture = future;
+            executorService.submit(future);
+        }
+        try {
+            return masterFuture.get();
+        } finally {
+            requestMap.remove(path, masterFuture);
+        }
+    }
+
+    /**
+     * Writes the artifact straight from the local repository. The file is opened before anything else, so the
+     * content stays consistent even if the artifact is replaced in the meantime.
+     */
+    private void writeArtifact(HttpServletRequest req, HttpServletResponse resp, File artifactFile) throws IOException {
+        FileInputStream is = new FileInputStream(artifactFile);
+        try {
+            FileChannel channel = is.getChannel();
+            long length = channel.size();
+            long lastModified = artifactFile.lastModified();
+            String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
 
-        private final AtomicInteger paritcipans = new AtomicInteger();
+            resp.setDateHeader("Date", System.currentTimeMillis());
+            resp.setHeader("Server", "MavenProxy Proxy/" + FabricConstants.FABRIC_VERSION);
+            resp.setHeader("Accept-Ranges", "bytes");
+            resp.setHeader("ETag", etag);
+            resp.setDateHeader("Last-Modified", lastModified);
+            if (isNotModified(req, etag, lastModified)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
 
-        public ArtifactDownloadFuture(String path) {
-            super(new ArtifactDownloadTask(path));
+            long start = 0;
+            long end = length - 1;
+            String range = req.getHeader("Range");
+            if (range != null && isRangeValid(req, etag, lastModified)) {
+                long[] bytes = parseRange(range, length);
+                if (bytes == UNSATISFIABLE_RANGE) {
+                    resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    resp.setHeader("Content-Range", "bytes */" + length);
+                    return;
+                } else if (bytes != null) {
+                    start = bytes[0];
+                    end = bytes[1];
+                    resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    resp.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+                } else {
+                    resp.setStatus(HttpServletResponse.SC_OK);
+                }
+            } else {
+                resp.setStatus(HttpServletResponse.SC_OK);
+            }
+            long count = end - start + 1;
+            resp.setContentType("application/octet-stream");
+            if (count <= Integer.MAX_VALUE) {
+                resp.setContentLength((int) count);
+            } else {
+                resp.setHeader("Content-Length", Long.toString(count));
+            }
+            if ("HEAD".equals(req.getMethod())) {
+                return;
+            }
+            OutputStream os = resp.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(os);
+            long position = start;
+            while (count > 0) {
+                long written = channel.transferTo(position, count, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                count -= written;
+            }
+            os.flush();
+        } finally {
+            Closeables.closeQuitely(is);
         }
+    }
 
-        @Override
-        public File get() throws InterruptedException, ExecutionException {
-            paritcipans.incrementAndGet();
-            return super.get();
+    private static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
         }
+        long ifModifiedSince = getDateHeader(req, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Checks the <code>If-Range</code> header, the full content is sent if the client's copy is outdated.
+     */
+    private static boolean isRangeValid(HttpServletRequest req, String etag, long lastModified) {
+        String ifRange = req.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        } else if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        } else {
+            return getDateHeader(req, "If-Range") / 1000 == lastModified / 1000;
+        }
+    }
 
-        public synchronized void release(File f) {
-            if (paritcipans.decrementAndGet() == 0) {
-                f.delete();
+    private static long getDateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a single byte range of a <code>Range</code> header.
+     *
+     * @return the first and last byte, {@link #UNSATISFIABLE_RANGE} or null if the header is not supported
+     * and the full content should be sent.
+     */
+    static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1).trim());
+                if (suffix <= 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                String last = spec.substring(dash + 1).trim();
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (end < start) {
+                    return last.isEmpty() || start >= length ? UNSATISFIABLE_RANGE : null;
+                }
+            }
+            if (start >= length) {
+                return UNSATISFIABLE_RANGE;
             }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private class ArtifactDownloadFuture extends FutureTask<File> {
+
+        public ArtifactDownloadFuture(String path) {
+            super(new ArtifactDownloadTask(path));
         }
     }
 
@@ -151,15 +272,7 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
 
         @Override
         public File call() throws Exception {
-            File download = download(path);
-            if (download != null)  {
-            File tmpFile = io.fabric8.utils.Files.createTempFile(runtimeProperties.getDataPath());
-            Files.copy(download, tmpFile);
-            return tmpFile;
-            } else {
-                return null;
-            }
+            return download(path);
         }
     }
 }
-
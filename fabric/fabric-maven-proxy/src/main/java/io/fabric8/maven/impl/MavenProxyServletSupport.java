@@ -126,6 +126,8 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
 
     final ProjectDeployer projectDeployer;
 
+    ResolvedArtifactCache artifactCache = new ResolvedArtifactCache();
+
     public MavenProxyServletSupport(String localRepository, List<String> remoteRepositories, boolean appendSystemRepos, String updatePolicy, String checksumPolicy, String proxyProtocol, String proxyHost, int proxyPort, String proxyUsername, String proxyPassword, String proxyNonProxyHosts, ProjectDeployer projectDeployer) {
         this.localRepository = localRepository;
         this.remoteRepositories = remoteRepositories;
@@ -187,8 +189,35 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
     public synchronized void stop() {
     }
 
+    /**
+     * Shares the resolved paths with another servlet of the same proxy, so that uploads are seen by downloads.
+     */
+    void setArtifactCache(ResolvedArtifactCache artifactCache) {
+        this.artifactCache = artifactCache;
+    }
+
     @Override
     public File download(String path) throws InvalidMavenArtifactRequest {
+        if (path != null) {
+            File cached = artifactCache.get(path);
+            if (cached != null) {
+                return cached;
+            } else if (artifactCache.isMissing(path)) {
+                return null;
+            }
+        }
+        File file = resolvePath(path);
+        if (file != null) {
+            // released artifacts never change, snapshots and metadata are subject to the update policy
+            boolean permanent = !ARTIFACT_METADATA_URL_REGEX.matcher(path).matches() && !path.contains("SNAPSHOT");
+            artifactCache.put(path, file, permanent);
+        } else if (path != null) {
+            artifactCache.addMissing(path);
+        }
+        return file;
+    }
+
+    private File resolvePath(String path) throws InvalidMavenArtifactRequest {
         Matcher artifactMatcher = ARTIFACT_REQUEST_URL_REGEX.matcher(path);
         Matcher metdataMatcher = ARTIFACT_METADATA_URL_REGEX.matcher(path);
 
@@ -320,6 +349,9 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
                 LOGGER.log(Level.WARNING, String.format("Failed to upload artifact : %s due to %s", artifact, e), e);
             }
         }
+        if (result.status()) {
+            artifactCache.invalidate(path);
+        }
         return result;
 
     }
@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.impl;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The paths resolved by the maven proxy, shared by the download and upload servlets.
+ *
+ * Released artifacts are kept until an upload touches them, snapshots and metadata only for a short time so that
+ * the update policy of the remote repositories still applies. Paths that could not be resolved are remembered
+ * for a short time as well.
+ */
+class ResolvedArtifactCache {
+
+    static final long DEFAULT_TTL = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int MAX_RESOLVED = 10000;
+    private static final int MAX_MISSING = 1024;
+
+    private final long ttl;
+    private final Cache<String, Resolved> resolved;
+    private final Cache<String, Boolean> missing;
+
+    ResolvedArtifactCache() {
+        this(DEFAULT_TTL);
+    }
+
+    ResolvedArtifactCache(long ttl) {
+        this.ttl = ttl;
+        this.resolved = CacheBuilder.newBuilder().maximumSize(MAX_RESOLVED).build();
+        this.missing = CacheBuilder.newBuilder().maximumSize(MAX_MISSING).expireAfterWrite(ttl, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * Get the file the path has been resolved to or null if the path has to be resolved.
+     */
+    File get(String path) {
+        Resolved entry = resolved.getIfPresent(path);
+        if (entry == null) {
+            return null;
+        } else if (entry.expires <= System.currentTimeMillis() || !entry.file.isFile()) {
+            resolved.asMap().remove(path, entry);
+            return null;
+        }
+        return entry.file;
+    }
+
+    /**
+     * Remembers the resolved file of a path.
+     *
+     * @param permanent true for released artifacts, which only change when they are uploaded again
+     */
+    void put(String path, File file, boolean permanent) {
+        resolved.put(path, new Resolved(file, permanent ? Long.MAX_VALUE : System.currentTimeMillis() + ttl));
+        missing.invalidate(path);
+    }
+
+    boolean isMissing(String path) {
+        return missing.getIfPresent(path) != null;
+    }
+
+    void addMissing(String path) {
+        missing.put(path, Boolean.TRUE);
+    }
+
+    /**
+     * Forgets everything known about the artifact of the uploaded path, including its versions and metadata.
+     */
+    void invalidate(String path) {
+        String prefix = getArtifactPrefix(path);
+        for (String key : resolved.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                resolved.invalidate(key);
+            }
+        }
+        for (String key : missing.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                missing.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * The directory two levels above the path, i.e. <code>groupId/artifactId/</code> for artifacts and version
+     * metadata. The metadata of all versions of an artifact invalidates the whole group, which is rare enough.
+     */
+    static String getArtifactPrefix(String path) {
+        int idx = path.lastIndexOf('/');
+        idx = idx > 0 ? path.lastIndexOf('/', idx - 1) : -1;
+        return idx > 0 ? path.substring(0, idx + 1) : path;
+    }
+
+    private static final class Resolved {
+        private final File file;
+        private final long expires;
+
+        private Resolved(File file, long expires) {
+            this.file = file;
+            this.expires = expires;
+        }
+    }
+}
@@ -251,6 +251,9 @@ public class MavenProxyServletSupportTest {
 
             HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
             EasyMock.expect(request.getPathInfo()).andReturn("org.apache.camel/camel-core/2.13.0/camel-core-2.13.0-sources.jar");
+            EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
+            EasyMock.expect(request.getHeader((String) EasyMock.anyObject())).andReturn(null).anyTimes();
+            EasyMock.expect(request.getDateHeader((String) EasyMock.anyObject())).andReturn(-1L).anyTimes();
 
             HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -291,6 +294,42 @@ public class MavenProxyServletSupportTest {
         }
     }
 
+    @Test
+    public void testParseRange() throws Exception {
+        assertArrayEquals(new long[] { 0, 99 }, MavenDownloadProxyServlet.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 10, 999 }, MavenDownloadProxyServlet.parseRange("bytes=10-", 1000));
+        assertArrayEquals(new long[] { 995, 999 }, MavenDownloadProxyServlet.parseRange("bytes=-5", 1000));
+        assertArrayEquals(new long[] { 0, 999 }, MavenDownloadProxyServlet.parseRange("bytes=0-5000", 1000));
+        assertSame(MavenDownloadProxyServlet.UNSATISFIABLE_RANGE, MavenDownloadProxyServlet.parseRange("bytes=1000-", 1000));
+        assertNull(MavenDownloadProxyServlet.parseRange("bytes=5-3", 1000));
+        assertNull(MavenDownloadProxyServlet.parseRange("bytes=0-1,3-4", 1000));
+    }
+
+    @Test
+    public void testResolvedArtifactCache() throws Exception {
+        File file = File.createTempFile("artifact", ".jar", new File("target"));
+        try {
+            ResolvedArtifactCache cache = new ResolvedArtifactCache();
+            cache.put("org/acme/foo/1.0/foo-1.0.jar", file, true);
+            cache.addMissing("org/acme/foo/1.1/foo-1.1.jar");
+            cache.put("org/acme/bar/1.0/bar-1.0.jar", file, true);
+            assertSame(file, cache.get("org/acme/foo/1.0/foo-1.0.jar"));
+            assertTrue(cache.isMissing("org/acme/foo/1.1/foo-1.1.jar"));
+
+            // an upload of another version of foo invalidates all of foo
+            cache.invalidate("org/acme/foo/1.2/foo-1.2.jar");
+            assertNull(cache.get("org/acme/foo/1.0/foo-1.0.jar"));
+            assertFalse(cache.isMissing("org/acme/foo/1.1/foo-1.1.jar"));
+            assertSame(file, cache.get("org/acme/bar/1.0/bar-1.0.jar"));
+
+            cache = new ResolvedArtifactCache(0);
+            cache.put("org/acme/foo/maven-metadata.xml", file, false);
+            assertNull(cache.get("org/acme/foo/maven-metadata.xml"));
+        } finally {
+            file.delete();
+        }
+    }
+
     @Test
     public void testJarUploadFullMvnPath() throws Exception {
         String jarPath = "org.acme/acme-core/1.0/acme-core-1.0.jar";
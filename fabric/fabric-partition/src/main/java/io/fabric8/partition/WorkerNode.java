@@ -15,6 +15,7 @@
  */
 package io.fabric8.partition;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.fabric8.groups.NodeState;
 
@@ -26,6 +27,10 @@ public class WorkerNode extends NodeState {
     @JsonProperty
     String[] services;
 
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer weight;
+
     public WorkerNode() {
     }
 
@@ -49,6 +54,17 @@ public class WorkerNode extends NodeState {
         this.services = services;
     }
 
+    /**
+     * The relative share of work items this worker should get, null for the default share.
+     */
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
     @Override
     public String toString() {
         return "WorkerNode{" +
@@ -0,0 +1,239 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.partition.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import io.fabric8.partition.TaskContext;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.Service;
+import io.fabric8.api.jcip.ThreadSafe;
+import io.fabric8.api.scr.AbstractComponent;
+import io.fabric8.api.scr.ValidatingReference;
+import io.fabric8.partition.BalancingPolicy;
+import io.fabric8.partition.WorkerNode;
+import io.fabric8.zookeeper.ZkPath;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A {@link BalancingPolicy} that places members and work items on a hash ring.
+ *
+ * Each member is placed on the ring with a number of virtual nodes proportional to its {@link WorkerNode#getWeight()}, if set.
+ * Members are placed by container name, so that a member keeps its items when it rejoins the group. When a member
+ * joins or leaves only the items of the ring segments it takes over or gives up move, roughly 1/N of all items.
+ * Only the assignments that changed are written, in a single transaction.
+ */
+@ThreadSafe
+@Component(name = "io.fabric8.partition.balancing.consistent", label = "Fabric8 Partition Consistent Hash Balancing Policy", immediate = true, metatype = false)
+@Service(BalancingPolicy.class)
+@org.apache.felix.scr.annotations.Properties(
+        @Property(name = "type", value = ConsistentHashBalancingPolicy.TYPE)
+)
+public final class ConsistentHashBalancingPolicy extends AbstractComponent implements BalancingPolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsistentHashBalancingPolicy.class);
+    public static final String TYPE = "consistent-hash";
+
+    static final int VIRTUAL_NODES_PER_WEIGHT = 100;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    @Reference(referenceInterface = CuratorFramework.class)
+    private final ValidatingReference<CuratorFramework> curator = new ValidatingReference<CuratorFramework>();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public ConsistentHashBalancingPolicy() {
+        mapper.registerSubtypes(WorkerNode.class);
+    }
+
+    @Activate
+    void activate() {
+        activateComponent();
+    }
+
+    @Deactivate
+    void deactivate() {
+        deactivateComponent();
+    }
+
+    @Override
+    public String getType() {
+        assertValid();
+        return TYPE;
+    }
+
+    /*
+     * Rebalancing of a task is serialized by its coordinator, different tasks may rebalance concurrently.
+     */
+    @Override
+    public void rebalance(TaskContext context, Collection<String> workItems, Collection<String> members) {
+        assertValid();
+        if (members == null || members.isEmpty()) {
+            return;
+        }
+        CuratorFramework curator = this.curator.get();
+        Map<String, WorkerNode> nodes = new TreeMap<String, WorkerNode>();
+        for (String member : members) {
+            try {
+                WorkerNode node = mapper.readValue(curator.getData().forPath(member), WorkerNode.class);
+                nodes.put(node.getContainer(), node);
+            } catch (Exception ex) {
+                LOGGER.error("Error while reading member " + member, ex);
+            }
+        }
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        Multimap<String, String> distribution = distribute(nodes, workItems);
+
+        List<Assignment> assignments = new ArrayList<Assignment>();
+        for (Map.Entry<String, WorkerNode> entry : nodes.entrySet()) {
+            String container = entry.getKey();
+            WorkerNode node = entry.getValue();
+            Collection<String> assignedItems = distribution.get(container);
+            node.setItems(assignedItems.toArray(new String[assignedItems.size()]));
+            String targetPath = ZkPath.TASK_MEMBER_PARTITIONS.getPath(container, context.getId());
+            try {
+                Stat stat = new Stat();
+                byte[] current = curator.getData().storingStatIn(stat).forPath(targetPath);
+                if (!isAssigned(current, node.getItems())) {
+                    assignments.add(new Assignment(targetPath, mapper.writeValueAsBytes(node), stat.getVersion()));
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Error while assigning work", ex);
+            }
+        }
+        commit(curator, context, assignments);
+    }
+
+    /**
+     * Maps each item to the first virtual node following its hash on the ring.
+     */
+    static Multimap<String, String> distribute(Map<String, WorkerNode> nodes, Collection<String> workItems) {
+        NavigableMap<Long, String> ring = new TreeMap<Long, String>();
+        for (Map.Entry<String, WorkerNode> entry : nodes.entrySet()) {
+            String container = entry.getKey();
+            Integer weight = entry.getValue().getWeight();
+            int virtualNodes = VIRTUAL_NODES_PER_WEIGHT * (weight != null ? Math.max(1, weight) : 1);
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(container + "#" + i), container);
+            }
+        }
+        Multimap<String, String> distribution = LinkedHashMultimap.create();
+        for (String item : workItems) {
+            Map.Entry<Long, String> entry = ring.ceilingEntry(hash(item));
+            if (entry == null) {
+                entry = ring.firstEntry();
+            }
+            distribution.put(entry.getValue(), item);
+        }
+        return distribution;
+    }
+
+    private static long hash(String key) {
+        return HASH_FUNCTION.hashString(key, Charsets.UTF_8).asLong();
+    }
+
+    private boolean isAssigned(byte[] current, String[] items) {
+        if (current == null || current.length == 0) {
+            return false;
+        }
+        try {
+            WorkerNode node = mapper.readValue(current, WorkerNode.class);
+            return node.getItems() != null && Sets.newHashSet(node.getItems()).equals(Sets.newHashSet(items));
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes all assignments in one transaction. The versions guard against concurrent writers, if the transaction
+     * fails the assignments are written one at a time with the same versions, so that only the assignments which
+     * were changed by somebody else in the meantime are skipped. Those are fixed by the next rebalance.
+     */
+    private void commit(CuratorFramework curator, TaskContext context, List<Assignment> assignments) {
+        if (assignments.isEmpty()) {
+            LOGGER.debug("Assignments of {} are unchanged.", context.getId());
+            return;
+        }
+        try {
+            CuratorTransaction transaction = curator.inTransaction();
+            CuratorTransactionFinal transactionFinal = null;
+            for (Assignment assignment : assignments) {
+                transactionFinal = transaction.setData().withVersion(assignment.version).forPath(assignment.path, assignment.data).and();
+                transaction = transactionFinal;
+            }
+            transactionFinal.commit();
+            LOGGER.info("Reassigned work of {} to {} members.", context.getId(), assignments.size());
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to commit assignments of {} in one transaction, assigning one by one.", context.getId(), ex);
+            for (Assignment assignment : assignments) {
+                try {
+                    curator.setData().withVersion(assignment.version).forPath(assignment.path, assignment.data);
+                } catch (KeeperException.BadVersionException e) {
+                    LOGGER.info("Assignment {} was changed concurrently, skipping it.", assignment.path);
+                } catch (Exception e) {
+                    LOGGER.error("Error while assigning work", e);
+                }
+            }
+        }
+    }
+
+    void bindCurator(CuratorFramework curator) {
+        this.curator.bind(curator);
+    }
+
+    void unbindCurator(CuratorFramework curator) {
+        this.curator.unbind(curator);
+    }
+
+    private static final class Assignment {
+        private final String path;
+        private final byte[] data;
+        private final int version;
+
+        private Assignment(String path, byte[] data, int version) {
+            this.path = path;
+            this.data = data;
+            this.version = version;
+        }
+    }
+}
@@ -32,13 +32,21 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TaskCoordinator implements GroupListener<WorkerNode>, WorkItemListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskCoordinator.class);
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+    public static final String WEIGHT = "weight";
+    public static final String REBALANCE_DELAY = "rebalanceDelay";
+    static final long DEFAULT_REBALANCE_DELAY = 500L;
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean rebalancePending = new AtomicBoolean();
 
     private final TaskContext context;
     private final WorkItemRepository repository;
@@ -67,11 +75,17 @@ public class TaskCoordinator implements GroupListener<WorkerNode>, WorkItemListe
             group.close();
         } catch (IOException e) {
             throw FabricException.launderThrowable(e);
+        } finally {
+            executorService.shutdownNow();
         }
     }
 
     WorkerNode createNode() {
         WorkerNode state = new WorkerNode(context.getId());
+        Object weight = context.getConfiguration().get(WEIGHT);
+        if (weight != null) {
+            state.setWeight(Integer.parseInt(String.valueOf(weight)));
+        }
         return state;
     }
 
@@ -96,10 +110,21 @@ public class TaskCoordinator implements GroupListener<WorkerNode>, WorkItemListe
         }
     }
 
+    /**
+     * Schedules a rebalance, unless one is already pending. Bursts of membership and partition changes
+     * are coalesced into a single rebalance after {@link #REBALANCE_DELAY} milliseconds.
+     */
     @Override
     public void partitionUpdated() {
-        LOGGER.info("Rebalancing work for {}.", context.getId());
-         executorService.submit(new RebalanceTask());
+        if (rebalancePending.compareAndSet(false, true)) {
+            LOGGER.info("Rebalancing work for {}.", context.getId());
+            executorService.schedule(new RebalanceTask(), getRebalanceDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long getRebalanceDelay() {
+        Object delay = context.getConfiguration().get(REBALANCE_DELAY);
+        return delay != null ? Long.parseLong(String.valueOf(delay)) : DEFAULT_REBALANCE_DELAY;
     }
 
 
@@ -115,7 +140,13 @@ public class TaskCoordinator implements GroupListener<WorkerNode>, WorkItemListe
     private class RebalanceTask implements Runnable {
         @Override
         public void run() {
-            rebalance();
+            // changes from here on need another rebalance
+            rebalancePending.set(false);
+            try {
+                rebalance();
+            } catch (Exception e) {
+                LOGGER.error("Error while rebalancing work for " + context.getId(), e);
+            }
         }
     }
 }
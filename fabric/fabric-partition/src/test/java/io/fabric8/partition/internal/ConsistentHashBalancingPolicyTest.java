@@ -0,0 +1,137 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.partition.internal;
+
+import com.google.common.collect.Multimap;
+import io.fabric8.partition.WorkerNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashBalancingPolicyTest {
+
+    private static final int ITEMS = 10000;
+
+    @Test
+    public void testEveryItemIsAssignedOnce() {
+        Multimap<String, String> distribution = ConsistentHashBalancingPolicy.distribute(createNodes(10), createItems(ITEMS));
+
+        assertEquals(ITEMS, distribution.size());
+        assertEquals(ITEMS, assignments(distribution).size());
+        assertEquals(10, distribution.keySet().size());
+    }
+
+    @Test
+    public void testStableAssignment() {
+        Map<String, WorkerNode> nodes = createNodes(10);
+        Map<String, WorkerNode> reversed = new LinkedHashMap<String, WorkerNode>();
+        List<String> containers = new ArrayList<String>(nodes.keySet());
+        for (int i = containers.size() - 1; i >= 0; i--) {
+            reversed.put(containers.get(i), nodes.get(containers.get(i)));
+        }
+
+        Map<String, String> first = assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS)));
+        assertEquals(first, assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS))));
+        assertEquals(first, assignments(ConsistentHashBalancingPolicy.distribute(reversed, createItems(ITEMS))));
+    }
+
+    @Test
+    public void testMinimalMovementWhenMemberJoins() {
+        Map<String, WorkerNode> nodes = createNodes(10);
+        Map<String, String> before = assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS)));
+        nodes.put("container11", new WorkerNode("container11"));
+        Map<String, String> after = assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS)));
+
+        int moved = 0;
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String container = after.get(entry.getKey());
+            if (!container.equals(entry.getValue())) {
+                assertEquals("items only move to the new member", "container11", container);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved + " items", moved > 0 && moved < 2 * ITEMS / 11);
+    }
+
+    @Test
+    public void testMinimalMovementWhenMemberLeaves() {
+        Map<String, WorkerNode> nodes = createNodes(10);
+        Map<String, String> before = assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS)));
+        nodes.remove("container5");
+        Map<String, String> after = assignments(ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS)));
+
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            if (!entry.getValue().equals("container5")) {
+                assertEquals("only the items of the leaving member move", entry.getValue(), after.get(entry.getKey()));
+            }
+        }
+        assertEquals(ITEMS, after.size());
+        assertFalse(after.containsValue("container5"));
+    }
+
+    @Test
+    public void testWeights() {
+        Map<String, WorkerNode> nodes = createNodes(4);
+        nodes.get("container1").setWeight(3);
+        nodes.get("container2").setWeight(0);
+        Multimap<String, String> distribution = ConsistentHashBalancingPolicy.distribute(nodes, createItems(ITEMS));
+
+        // container1 has three of six shares, a weight below one counts as one share
+        assertShare(distribution, "container1", 3.0 / 6);
+        assertShare(distribution, "container2", 1.0 / 6);
+        assertShare(distribution, "container3", 1.0 / 6);
+        assertShare(distribution, "container4", 1.0 / 6);
+    }
+
+    private static void assertShare(Multimap<String, String> distribution, String container, double share) {
+        double actual = (double) distribution.get(container).size() / ITEMS;
+        assertTrue(container + " got " + actual + " instead of " + share, Math.abs(actual - share) < share * 0.25);
+    }
+
+    private static Map<String, WorkerNode> createNodes(int count) {
+        Map<String, WorkerNode> nodes = new TreeMap<String, WorkerNode>();
+        for (int i = 1; i <= count; i++) {
+            nodes.put("container" + i, new WorkerNode("container" + i));
+        }
+        return nodes;
+    }
+
+    private static List<String> createItems(int count) {
+        List<String> items = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            items.add("item-" + i);
+        }
+        return items;
+    }
+
+    private static Map<String, String> assignments(Multimap<String, String> distribution) {
+        Map<String, String> answer = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : distribution.entries()) {
+            answer.put(entry.getValue(), entry.getKey());
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+/**
+ * A reusable batch of call detail records drained from a {@link CallDetailRecordBuffer}, kept as
+ * columns of primitives. The route and backend of each record are interned ids which can be turned
+ * back into names via {@link #getRoute(int)} and {@link #getBackend(int)}.
+ * <p/>
+ * The contents are only valid until the next drain, so {@link CallDetailRecordExporter}s must copy
+ * anything they want to keep.
+ */
+public class CallDetailRecordBatch {
+    private final CallDetailRecordKeys keys;
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final long[] bytes;
+    private final int[] statuses;
+    private final int[] routeIds;
+    private final int[] backendIds;
+    private int size;
+
+    public CallDetailRecordBatch(CallDetailRecordKeys keys, int capacity) {
+        this.keys = keys;
+        this.timestamps = new long[capacity];
+        this.latencies = new long[capacity];
+        this.bytes = new long[capacity];
+        this.statuses = new int[capacity];
+        this.routeIds = new int[capacity];
+        this.backendIds = new int[capacity];
+    }
+
+    void set(int index, long timestamp, long latencyNanos, int status, long byteCount, int routeId, int backendId) {
+        timestamps[index] = timestamp;
+        latencies[index] = latencyNanos;
+        statuses[index] = status;
+        bytes[index] = byteCount;
+        routeIds[index] = routeId;
+        backendIds[index] = backendId;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * Returns the time in millis the call completed
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public long getLatencyNanos(int index) {
+        return latencies[index];
+    }
+
+    /**
+     * Returns the HTTP status code returned to the client
+     */
+    public int getStatus(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * Returns the number of response bytes returned to the client
+     */
+    public long getBytes(int index) {
+        return bytes[index];
+    }
+
+    public int getRouteId(int index) {
+        return routeIds[index];
+    }
+
+    public int getBackendId(int index) {
+        return backendIds[index];
+    }
+
+    /**
+     * Returns the URI prefix the call was routed by or null if it was not routed
+     */
+    public String getRoute(int index) {
+        return keys.getName(routeIds[index]);
+    }
+
+    /**
+     * Returns the backend service URL the call was proxied to or null if it was not proxied
+     */
+    public String getBackend(int index) {
+        return keys.getName(backendIds[index]);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free ring buffer of call detail records which many gateway threads can
+ * {@link #offer} to and a single thread {@link #drain}s.
+ * <p/>
+ * The records are kept as columns of primitives so that recording a call never allocates; if the
+ * drainer falls behind and the buffer is full then records are dropped and counted rather than
+ * blocking the event loop.
+ */
+public class CallDetailRecordBuffer {
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final long[] bytes;
+    private final int[] statuses;
+    private final int[] routeIds;
+    private final int[] backendIds;
+    /**
+     * Holds the sequence + 1 of the record written to each slot once it is visible to the drainer
+     */
+    private final AtomicLongArray published;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long tail;
+
+    public CallDetailRecordBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive but was " + capacity);
+        }
+        // round up to a power of two so the slot is just a mask of the sequence
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = this.capacity - 1;
+        this.timestamps = new long[this.capacity];
+        this.latencies = new long[this.capacity];
+        this.bytes = new long[this.capacity];
+        this.statuses = new int[this.capacity];
+        this.routeIds = new int[this.capacity];
+        this.backendIds = new int[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "CallDetailRecordBuffer{" +
+                "capacity=" + capacity +
+                ", size=" + size() +
+                ", dropped=" + dropped.get() +
+                '}';
+    }
+
+    /**
+     * Adds a record to the buffer returning false if the buffer was full and the record was dropped
+     */
+    public boolean offer(long timestamp, long latencyNanos, int status, long byteCount, int routeId, int backendId) {
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        timestamps[index] = timestamp;
+        latencies[index] = latencyNanos;
+        bytes[index] = byteCount;
+        statuses[index] = status;
+        routeIds[index] = routeId;
+        backendIds[index] = backendId;
+        published.lazySet(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Moves as many published records as fit into the given batch, returning how many were moved.
+     * Only one thread may drain the buffer at a time.
+     */
+    public int drain(CallDetailRecordBatch batch) {
+        long sequence = tail;
+        int count = 0;
+        int max = batch.getCapacity();
+        while (count < max) {
+            int index = (int) (sequence & mask);
+            if (published.get(index) != sequence + 1) {
+                break;
+            }
+            batch.set(count, timestamps[index], latencies[index], statuses[index], bytes[index], routeIds[index], backendIds[index]);
+            sequence++;
+            count++;
+        }
+        batch.setSize(count);
+        tail = sequence;
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of records claimed but not yet drained
+     */
+    public int size() {
+        return (int) Math.max(0, head.get() - tail);
+    }
+
+    /**
+     * Returns the number of records dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the names of routes and backends as small int ids so that call detail records can be
+ * kept as primitives; looking up an existing name does not allocate.
+ * <p/>
+ * Id 0 is reserved for no name and is also used for any names beyond the maximum, so a churn of
+ * backend URLs cannot grow the table forever.
+ */
+public class CallDetailRecordKeys {
+    public static final int NONE = 0;
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private final int maxKeys;
+    private volatile String[] names = new String[16];
+    private int nextId = 1;
+
+    public CallDetailRecordKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Returns the id for the given name, creating one if required
+     */
+    public int getId(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (ids) {
+            id = ids.get(name);
+            if (id == null) {
+                if (nextId > maxKeys) {
+                    return NONE;
+                }
+                id = nextId++;
+                String[] array = names;
+                if (id >= array.length) {
+                    array = Arrays.copyOf(array, array.length * 2);
+                }
+                array[id] = name;
+                names = array;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the name for the given id or null if there is none
+     */
+    public String getName(int id) {
+        String[] array = names;
+        return id > NONE && id < array.length ? array[id] : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
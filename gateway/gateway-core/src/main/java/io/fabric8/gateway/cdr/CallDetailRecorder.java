@@ -0,0 +1,300 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a call detail record for each call through a gateway and aggregates them into latency
+ * histograms and throughput per route, per backend and in total.
+ * <p/>
+ * {@link #record} is called on the request path and only writes primitives into a lock-free
+ * {@link CallDetailRecordBuffer}; a background thread drains the buffer every drain interval,
+ * updates the aggregates, passes the batches on to any {@link CallDetailRecordExporter} and then
+ * publishes copies of the aggregates for the getters to return.
+ */
+public class CallDetailRecorder {
+    private static final transient Logger LOG = LoggerFactory.getLogger(CallDetailRecorder.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final long DEFAULT_DRAIN_INTERVAL = 1000;
+    private static final int BATCH_SIZE = 512;
+    private static final int MAX_KEYS = 4096;
+
+    private final CallDetailRecordKeys keys = new CallDetailRecordKeys(MAX_KEYS);
+    private final CallDetailRecordBuffer buffer;
+    private final CallDetailRecordBatch batch;
+    private CallStatistics total = new CallStatistics();
+    private CallStatistics[] routes = new CallStatistics[16];
+    private CallStatistics[] backends = new CallStatistics[16];
+    private CallStatistics[] routeCopies = new CallStatistics[16];
+    private CallStatistics[] backendCopies = new CallStatistics[16];
+    private long lastDrainTime = System.currentTimeMillis();
+    private ScheduledExecutorService executor;
+    private volatile CallDetailRecordExporter exporter;
+    private volatile CallStatistics totalSnapshot = new CallStatistics();
+    private volatile Map<String, CallStatistics> routeSnapshots = Collections.emptyMap();
+    private volatile Map<String, CallStatistics> backendSnapshots = Collections.emptyMap();
+    private volatile String lastError;
+
+    public CallDetailRecorder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public CallDetailRecorder(int bufferSize) {
+        this.buffer = new CallDetailRecordBuffer(bufferSize);
+        this.batch = new CallDetailRecordBatch(keys, BATCH_SIZE);
+    }
+
+    @Override
+    public String toString() {
+        return "CallDetailRecorder{" +
+                "buffer=" + buffer +
+                '}';
+    }
+
+    /**
+     * Starts the background thread draining the records every given number of millis
+     */
+    public synchronized void start(long drainInterval) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "gateway-call-detail-recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        drain();
+                    } catch (Throwable e) {
+                        LOG.warn("Failed to drain call detail records: " + e, e);
+                    }
+                }
+            }, drainInterval, drainInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the background thread, draining any remaining records
+     */
+    public void stop() {
+        ScheduledExecutorService executorToStop;
+        synchronized (this) {
+            executorToStop = executor;
+            executor = null;
+        }
+        if (executorToStop != null) {
+            executorToStop.shutdown();
+            try {
+                executorToStop.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Returns the id to record calls for the given route URI prefix with
+     */
+    public int getRouteId(String route) {
+        return keys.getId(route);
+    }
+
+    /**
+     * Returns the id to record calls to the given backend service URL with
+     */
+    public int getBackendId(String backend) {
+        return keys.getId(backend);
+    }
+
+    /**
+     * Records a completed call without allocating; returning false if the record was dropped as
+     * the buffer was full.
+     *
+     * @param routeId the id of the route from {@link #getRouteId(String)} or {@link CallDetailRecordKeys#NONE}
+     * @param backendId the id of the backend from {@link #getBackendId(String)} or {@link CallDetailRecordKeys#NONE}
+     * @param status the HTTP status code returned to the client
+     * @param bytes the number of response bytes returned to the client
+     * @param latencyNanos the time taken by the call
+     */
+    public boolean record(int routeId, int backendId, int status, long bytes, long latencyNanos) {
+        return buffer.offer(System.currentTimeMillis(), latencyNanos, status, bytes, routeId, backendId);
+    }
+
+    /**
+     * Drains the buffered records into the aggregates; which is done by the background thread
+     * once started
+     */
+    public synchronized void drain() {
+        CallDetailRecordExporter currentExporter = exporter;
+        while (buffer.drain(batch) > 0) {
+            for (int i = 0, size = batch.size(); i < size; i++) {
+                long timestamp = batch.getTimestamp(i);
+                long latency = batch.getLatencyNanos(i);
+                int status = batch.getStatus(i);
+                long bytes = batch.getBytes(i);
+                total.record(timestamp, latency, status, bytes);
+                int routeId = batch.getRouteId(i);
+                if (routeId != CallDetailRecordKeys.NONE) {
+                    routes = statistics(routes, routeId);
+                    routes[routeId].record(timestamp, latency, status, bytes);
+                }
+                int backendId = batch.getBackendId(i);
+                if (backendId != CallDetailRecordKeys.NONE) {
+                    backends = statistics(backends, backendId);
+                    backends[backendId].record(timestamp, latency, status, bytes);
+                }
+            }
+            if (currentExporter != null) {
+                try {
+                    currentExporter.export(batch);
+                } catch (Exception e) {
+                    LOG.warn("Failed to export " + batch.size() + " call detail records to " + currentExporter + ": " + e, e);
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastDrainTime;
+        lastDrainTime = now;
+        if (total.isChanged()) {
+            total.tick(elapsed);
+            totalSnapshot = total.copy();
+        }
+        if (routeCopies.length < routes.length) {
+            routeCopies = Arrays.copyOf(routeCopies, routes.length);
+        }
+        if (backendCopies.length < backends.length) {
+            backendCopies = Arrays.copyOf(backendCopies, backends.length);
+        }
+        routeSnapshots = snapshot(routes, routeCopies, elapsed, routeSnapshots);
+        backendSnapshots = snapshot(backends, backendCopies, elapsed, backendSnapshots);
+    }
+
+    private static CallStatistics[] statistics(CallStatistics[] array, int id) {
+        if (id >= array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, id + 1));
+        }
+        if (array[id] == null) {
+            array[id] = new CallStatistics();
+        }
+        return array;
+    }
+
+    /**
+     * Only copies the statistics which changed since the last drain, reusing the previous copies of the
+     * others; and the previous map if nothing changed at all
+     */
+    private Map<String, CallStatistics> snapshot(CallStatistics[] array, CallStatistics[] copies, long elapsed, Map<String, CallStatistics> previous) {
+        boolean changed = false;
+        for (int id = 0; id < array.length; id++) {
+            CallStatistics statistics = array[id];
+            if (statistics != null && (copies[id] == null || statistics.isChanged())) {
+                statistics.tick(elapsed);
+                copies[id] = statistics.copy();
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return previous;
+        }
+        Map<String, CallStatistics> answer = new TreeMap<String, CallStatistics>();
+        for (int id = 0; id < array.length; id++) {
+            if (copies[id] != null) {
+                answer.put(keys.getName(id), copies[id]);
+            }
+        }
+        return Collections.unmodifiableMap(answer);
+    }
+
+    /**
+     * Clears all the aggregated statistics
+     */
+    public synchronized void reset() {
+        total = new CallStatistics();
+        routes = new CallStatistics[routes.length];
+        backends = new CallStatistics[backends.length];
+        routeCopies = new CallStatistics[routeCopies.length];
+        backendCopies = new CallStatistics[backendCopies.length];
+        totalSnapshot = new CallStatistics();
+        routeSnapshots = Collections.emptyMap();
+        backendSnapshots = Collections.emptyMap();
+        lastError = null;
+    }
+
+    /**
+     * Returns the statistics of all the calls as of the last drain
+     */
+    public CallStatistics getTotalStatistics() {
+        return totalSnapshot;
+    }
+
+    /**
+     * Returns the statistics of the calls indexed by route URI prefix as of the last drain
+     */
+    public Map<String, CallStatistics> getRouteStatistics() {
+        return routeSnapshots;
+    }
+
+    /**
+     * Returns the statistics of the calls indexed by backend service URL as of the last drain
+     */
+    public Map<String, CallStatistics> getBackendStatistics() {
+        return backendSnapshots;
+    }
+
+    /**
+     * Returns the number of records dropped because the drainer could not keep up
+     */
+    public long getDroppedRecords() {
+        return buffer.getDropped();
+    }
+
+    public CallDetailRecordExporter getExporter() {
+        return exporter;
+    }
+
+    public void setExporter(CallDetailRecordExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Records the description of a failed call; which is expected to be rare so may allocate
+     */
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
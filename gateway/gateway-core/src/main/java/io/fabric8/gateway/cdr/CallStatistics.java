@@ -0,0 +1,130 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aggregated statistics of the calls of a route, a backend or the whole gateway.
+ * <p/>
+ * Like {@link LatencyHistogram} it is only updated by the thread draining the call detail records;
+ * readers are given {@link #copy() copies}.
+ */
+public class CallStatistics {
+    private final LatencyHistogram latency;
+    private long errors;
+    private long bytes;
+    private long lastTimestamp;
+    private long intervalCount;
+    private double rate;
+
+    public CallStatistics() {
+        this.latency = new LatencyHistogram();
+    }
+
+    private CallStatistics(CallStatistics statistics) {
+        this.latency = statistics.latency.copy();
+        this.errors = statistics.errors;
+        this.bytes = statistics.bytes;
+        this.lastTimestamp = statistics.lastTimestamp;
+        this.intervalCount = statistics.intervalCount;
+        this.rate = statistics.rate;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() +
+                ", errors=" + errors +
+                ", bytes=" + bytes +
+                ", rate=" + String.format("%.2f", rate) + "/s" +
+                ", mean=" + toMillis(latency.getMean()) + "ms" +
+                ", p50=" + toMillis(latency.getValue(0.5)) + "ms" +
+                ", p99=" + toMillis(latency.getValue(0.99)) + "ms" +
+                ", p999=" + toMillis(latency.getValue(0.999)) + "ms" +
+                ", max=" + toMillis(latency.getMax()) + "ms";
+    }
+
+    private static String toMillis(double nanos) {
+        return String.format("%.3f", nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Adds a call; responses with a status of 500 or more count as errors
+     */
+    public void record(long timestamp, long latencyNanos, int status, long byteCount) {
+        latency.record(latencyNanos);
+        if (status >= 500) {
+            errors++;
+        }
+        bytes += byteCount;
+        intervalCount++;
+        if (timestamp > lastTimestamp) {
+            lastTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Updates the throughput from the calls recorded since the last tick
+     */
+    public void tick(long elapsedMillis) {
+        if (elapsedMillis > 0) {
+            rate = intervalCount * 1000.0 / elapsedMillis;
+        }
+        intervalCount = 0;
+    }
+
+    /**
+     * Returns true if anything was recorded since the last tick, or if the rate still has to drop to zero;
+     * otherwise a copy taken at the last tick is still up to date
+     */
+    boolean isChanged() {
+        return intervalCount > 0 || rate != 0;
+    }
+
+    public CallStatistics copy() {
+        return new CallStatistics(this);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the time in millis of the most recent call or 0 if there has been none
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the number of calls per second over the last drain interval
+     */
+    public double getRate() {
+        return rate;
+    }
+}
@@ -20,12 +20,14 @@ import io.fabric8.common.util.Strings;
 import io.fabric8.gateway.ServiceDetails;
 import io.fabric8.gateway.ServiceMap;
 import io.fabric8.gateway.SocketWrapper;
+import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslConfig;
 import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslSocketWrapper;
 import io.fabric8.gateway.handlers.loadbalancer.ClientRequestFacadeFactory;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadTrackingLoadBalancer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
@@ -61,6 +63,11 @@ public class DetectingGateway implements DetectingGatewayMBean {
     String defaultVirtualHost;
     ArrayList<Protocol> protocols;
     int maxProtocolIdentificationLength;
+    /**
+     * The index of the protocol last detected on this port which is tried first, as most ports
+     * only ever see one protocol
+     */
+    volatile int lastDetectedProtocol = -1;
     ClientRequestFacadeFactory clientRequestFacadeFactory = new ClientRequestFacadeFactory("PROTOCOL_SESSION_ID, PROTOCOL_CLIENT_ID, REMOTE_ADDRESS");
     final AtomicReference<InetSocketAddress> httpGateway = new AtomicReference<InetSocketAddress>();
     SslConfig sslConfig;
@@ -69,13 +76,17 @@ public class DetectingGateway implements DetectingGatewayMBean {
     final AtomicLong receivedConnectionAttempts = new AtomicLong();
     final AtomicLong successfulConnectionAttempts = new AtomicLong();
     final AtomicLong failedConnectionAttempts = new AtomicLong();
-    HashSet<SocketWrapper> socketsConnecting = new HashSet<SocketWrapper>();
+    /**
+     * The sockets still being detected or connected along with the id of their timeout timer
+     */
+    HashMap<SocketWrapper, Long> socketsConnecting = new HashMap<SocketWrapper, Long>();
     HashSet<ConnectedSocketInfo> socketsConnected = new HashSet<ConnectedSocketInfo>();
     private ShutdownTracker shutdownTacker = new ShutdownTracker();
 
     private int port;
     private String host;
     private NetServer server;
+    private NetClient netClient;
 
     private FutureHandler<AsyncResult<NetServer>> listenFuture = new FutureHandler<AsyncResult<NetServer>>() {
         @Override
@@ -108,12 +119,16 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     public void destroy() {
         server.close();
-        for (SocketWrapper socket : new ArrayList<>(socketsConnecting)) {
+        for (SocketWrapper socket : new ArrayList<>(socketsConnecting.keySet())) {
             handleConnectFailure(socket, null);
         }
         for (ConnectedSocketInfo socket : new ArrayList<>(socketsConnected)) {
             handleShutdown(socket);
         }
+        if (netClient != null) {
+            netClient.close();
+            netClient = null;
+        }
     }
 
     public String getHost() {
@@ -161,7 +176,11 @@ public class DetectingGateway implements DetectingGatewayMBean {
     }
 
     public void setProtocols(ArrayList<Protocol> protocols) {
+        if (protocols.size() > Integer.SIZE) {
+            throw new IllegalArgumentException("At most " + Integer.SIZE + " protocols can be detected but there were " + protocols.size());
+        }
         this.protocols = new ArrayList<Protocol>(protocols);
+        this.lastDetectedProtocol = -1;
         int max = 0;
         for (Protocol protocol : protocols) {
             if( protocol.getMaxIdentificationLength() > max ) {
@@ -193,29 +212,34 @@ public class DetectingGateway implements DetectingGatewayMBean {
         private final URI url;
         private final SocketWrapper from;
         private final NetSocket to;
+        private final ServiceDetails serviceDetails;
+        private final long connectLatency;
 
-        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to) {
+        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetSocket to, ServiceDetails serviceDetails, long connectLatency) {
             this.params = params;
             this.url = url;
             this.from = from;
             this.to = to;
+            this.serviceDetails = serviceDetails;
+            this.connectLatency = connectLatency;
         }
     }
 
     public void handle(final SocketWrapper socket) {
         shutdownTacker.retain();
         receivedConnectionAttempts.incrementAndGet();
-        socketsConnecting.add(socket);
 
+        long timerId = -1;
         if( connectionTimeout > 0 ) {
-            vertx.setTimer(connectionTimeout, new Handler<Long>() {
+            timerId = vertx.setTimer(connectionTimeout, new Handler<Long>() {
                 public void handle(Long timerID) {
-                    if( socketsConnecting.contains(socket) ) {
+                    if( socketsConnecting.containsKey(socket) ) {
                         handleConnectFailure(socket, String.format("Gateway client '%s' protocol detection timeout.", socket.remoteAddress()));
                     }
                 }
             });
         }
+        socketsConnecting.put(socket, timerId);
 
         ReadStream<ReadStream> readStream = socket.readStream();
         readStream.exceptionHandler(new Handler<Throwable>() {
@@ -231,87 +255,140 @@ public class DetectingGateway implements DetectingGatewayMBean {
             }
         });
         readStream.dataHandler(new Handler<Buffer>() {
-            Buffer received = new Buffer();
+            Buffer received;
+            int rejectedProtocols;
 
             @Override
             public void handle(Buffer event) {
-                received.appendBuffer(event);
-                for (final Protocol protocol : protocols) {
-                    if (protocol.matches(received)) {
-                        if ("ssl".equals(protocol.getProtocolName())) {
-
-                            LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
-                            String disabledCypherSuites=null;
-                            String enabledCipherSuites=null;
-                            if (sslConfig != null) {
-                                disabledCypherSuites = sslConfig.getDisabledCypherSuites();
-                                enabledCipherSuites = sslConfig.getEnabledCipherSuites();
-                            }
-                            if (sslContext == null) {
-                                try {
-                                    if (sslConfig != null) {
-                                        sslContext = SSLContext.getInstance(sslConfig.getProtocol());
-                                        sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
-                                    } else {
-                                        sslContext = SSLContext.getDefault();
-                                    }
-                                } catch (Exception e) {
-                                    handleConnectFailure(socket, "Could initialize SSL: " + e);
-                                    return;
+                // compose rather than copy the chunks of the header; usually it all arrives in the first one
+                received = received == null ? event : BufferSupport.composite(received, event);
+                Buffer window = received.length() > maxProtocolIdentificationLength
+                        ? BufferSupport.slice(received, 0, maxProtocolIdentificationLength) : received;
+                int index = detectProtocol(window);
+                if (index >= 0) {
+                    lastDetectedProtocol = index;
+                    final Protocol protocol = protocols.get(index);
+                    final Buffer received = this.received;
+                    if ("ssl".equals(protocol.getProtocolName())) {
+
+                        LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
+                        String disabledCypherSuites=null;
+                        String enabledCipherSuites=null;
+                        if (sslConfig != null) {
+                            disabledCypherSuites = sslConfig.getDisabledCypherSuites();
+                            enabledCipherSuites = sslConfig.getEnabledCipherSuites();
+                        }
+                        if (sslContext == null) {
+                            try {
+                                if (sslConfig != null) {
+                                    sslContext = SSLContext.getInstance(sslConfig.getProtocol());
+                                    sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
+                                } else {
+                                    sslContext = SSLContext.getDefault();
                                 }
+                            } catch (Exception e) {
+                                handleConnectFailure(socket, "Could initialize SSL: " + e);
+                                return;
                             }
+                        }
 
-                            // lets wrap it up in a SslSocketWrapper.
-                            SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
-                            sslSocketWrapper.putBackHeader(received);
-                            sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
-                            DetectingGateway.this.handle(sslSocketWrapper);
-                            return;
+                        // lets wrap it up in a SslSocketWrapper.
+                        SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
+                        sslSocketWrapper.putBackHeader(received);
+                        sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
+                        DetectingGateway.this.handle(sslSocketWrapper);
+                        return;
 
-                        } else if ("http".equals(protocol.getProtocolName())) {
-                            InetSocketAddress target = getHttpGateway();
-                            if (target != null) {
-                                try {
-                                    URI url = new URI("http://" + target.getHostString() + ":" + target.getPort());
-                                    LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
-                                            socket.remoteAddress(), url.getHost(), url.getPort()));
-                                    ConnectionParameters params = new ConnectionParameters();
-                                    params.protocol = "http";
-                                    createClient(params, socket, url, received);
-                                    return;
-                                } catch (URISyntaxException e) {
-                                    handleConnectFailure(socket, "Could not build valid connect URI: "+e);
-                                    return;
-                                }
-                            } else {
-                                handleConnectFailure(socket, "No http gateway available for the http protocol");
+                    } else if ("http".equals(protocol.getProtocolName())) {
+                        InetSocketAddress target = getHttpGateway();
+                        if (target != null) {
+                            try {
+                                URI url = new URI("http://" + target.getHostString() + ":" + target.getPort());
+                                LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
+                                        socket.remoteAddress(), url.getHost(), url.getPort()));
+                                ConnectionParameters params = new ConnectionParameters();
+                                params.protocol = "http";
+                                createClient(params, socket, url, received, null);
+                                return;
+                            } catch (URISyntaxException e) {
+                                handleConnectFailure(socket, "Could not build valid connect URI: "+e);
                                 return;
                             }
                         } else {
-                            protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
-                                @Override
-                                public void handle(ConnectionParameters connectionParameters) {
-                                    // this will install a new dataHandler on the socket.
-                                    if (connectionParameters.protocol == null)
-                                        connectionParameters.protocol = protocol.getProtocolName();
-                                    if (connectionParameters.protocolSchemes == null)
-                                        connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
-                                    route(socket, connectionParameters, received);
-                                }
-                            });
+                            handleConnectFailure(socket, "No http gateway available for the http protocol");
                             return;
                         }
+                    } else {
+                        protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
+                            @Override
+                            public void handle(ConnectionParameters connectionParameters) {
+                                // this will install a new dataHandler on the socket.
+                                if (connectionParameters.protocol == null)
+                                    connectionParameters.protocol = protocol.getProtocolName();
+                                if (connectionParameters.protocolSchemes == null)
+                                    connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
+                                route(socket, connectionParameters, received);
+                            }
+                        });
+                        return;
                     }
                 }
-                if (received.length() >= maxProtocolIdentificationLength) {
+                if (window.length() >= maxProtocolIdentificationLength || Integer.bitCount(rejectedProtocols) == protocols.size()) {
                     handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
                 }
             }
+
+            /**
+             * Runs the protocols which could still match over the window, trying the protocol last
+             * detected on this port first, returning the index of the matching protocol or -1
+             */
+            private int detectProtocol(Buffer window) {
+                int preferred = lastDetectedProtocol;
+                if (preferred >= 0 && preferred < protocols.size() && matches(preferred, window)) {
+                    return preferred;
+                }
+                for (int i = 0; i < protocols.size(); i++) {
+                    if (i != preferred && matches(i, window)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            private boolean matches(int index, Buffer window) {
+                int bit = 1 << index;
+                if ((rejectedProtocols & bit) != 0) {
+                    return false;
+                }
+                Protocol protocol = protocols.get(index);
+                if (protocol.matches(window)) {
+                    return true;
+                }
+                // it has seen all the bytes it needs so will never match this connection
+                if (window.length() >= protocol.getMaxIdentificationLength()) {
+                    rejectedProtocols |= bit;
+                }
+                return false;
+            }
         });
     }
 
+    /**
+     * Removes the socket from those connecting, cancelling its timeout, returning false if it had already been removed
+     */
+    private boolean removeConnecting(SocketWrapper socket) {
+        Long timerId = socketsConnecting.remove(socket);
+        if (timerId == null) {
+            return false;
+        }
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        return true;
+    }
+
     private void handleConnectFailure(SocketWrapper socket, String reason) {
-        if( socketsConnecting.remove(socket) ) {
+        if( removeConnecting(socket) ) {
             if( reason!=null ) {
                 LOG.info(reason);
             }
@@ -362,7 +439,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                           ));
                                     }
 
-                                    client = createClient(params, socket, uri, received);
+                                    client = createClient(params, socket, uri, received, serviceDetails);
                                     break;
                                 }
                             } catch (URISyntaxException e) {
@@ -383,20 +460,23 @@ public class DetectingGateway implements DetectingGatewayMBean {
     /**
      * Creates a new client for the given URL and handler
      */
-    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received) {
-        NetClient netClient = vertx.createNetClient();
-        return netClient.connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
+    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received, final ServiceDetails serviceDetails) {
+        final long connectStart = System.nanoTime();
+        return getNetClient().connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
             public void handle(final AsyncResult<NetSocket> asyncSocket) {
 
                 if( !asyncSocket.succeeded() ) {
+                    serviceStarted(serviceDetails);
+                    serviceCompleted(serviceDetails, System.nanoTime() - connectStart, true);
                     handleConnectFailure(socketFromClient, String.format("Could not connect to '%s'", url));
                 } else {
                     final NetSocket socketToServer = asyncSocket.result();
 
                     successfulConnectionAttempts.incrementAndGet();
-                    socketsConnecting.remove(socketFromClient);
-                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer);
+                    removeConnecting(socketFromClient);
+                    final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, socketToServer, serviceDetails, System.nanoTime() - connectStart);
                     socketsConnected.add(connectedInfo);
+                    serviceStarted(serviceDetails);
 
                     Handler<Void> endHandler = new Handler<Void>() {
                         @Override
@@ -415,6 +495,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                     socketToServer.endHandler(endHandler);
                     socketToServer.exceptionHandler(exceptionHandler);
 
+                    // the pumps hand the received buffers straight to the other socket without copying them
                     socketToServer.write(received);
                     Pump.createPump(socketToServer, socketFromClient.writeStream()).start();
                     Pump.createPump(socketFromClient.readStream(), socketToServer).start();
@@ -423,11 +504,42 @@ public class DetectingGateway implements DetectingGatewayMBean {
         });
     }
 
+    /**
+     * Returns the client used to connect to the backends; which is shared by all the connections
+     * rather than creating a client per connection
+     */
+    private NetClient getNetClient() {
+        if (netClient == null) {
+            netClient = vertx.createNetClient();
+            if (connectionTimeout > 0) {
+                netClient.setConnectTimeout((int) Math.min(connectionTimeout, Integer.MAX_VALUE));
+            }
+        }
+        return netClient;
+    }
+
     private void handleShutdown(ConnectedSocketInfo connectedInfo) {
         if( socketsConnected.remove(connectedInfo) ) {
             connectedInfo.from.close();
             connectedInfo.to.close();
             shutdownTacker.release();
+            serviceCompleted(connectedInfo.serviceDetails, connectedInfo.connectLatency, false);
+        }
+    }
+
+    /**
+     * Lets a load tracking load balancer know about a new connection to a service; for connections
+     * the load is the number of open connections and the latency is the time taken to connect
+     */
+    private void serviceStarted(ServiceDetails serviceDetails) {
+        if (serviceDetails != null && serviceLoadBalancer instanceof LoadTrackingLoadBalancer) {
+            ((LoadTrackingLoadBalancer) serviceLoadBalancer).requestStarted(serviceDetails);
+        }
+    }
+
+    private void serviceCompleted(ServiceDetails serviceDetails, long connectLatency, boolean failed) {
+        if (serviceDetails != null && serviceLoadBalancer instanceof LoadTrackingLoadBalancer) {
+            ((LoadTrackingLoadBalancer) serviceLoadBalancer).requestCompleted(serviceDetails, connectLatency, failed);
         }
     }
 
@@ -463,7 +575,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
     public String[] getConnectingClients() {
         ArrayList<String> rc = new ArrayList<>();
-        for (SocketWrapper socket : socketsConnecting) {
+        for (SocketWrapper socket : socketsConnecting.keySet()) {
             rc.add(socket.remoteAddress().toString());
         }
         return rc.toArray(new String[rc.size()]);
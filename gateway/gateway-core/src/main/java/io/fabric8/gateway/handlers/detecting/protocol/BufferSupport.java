@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.vertx.java.core.buffer.Buffer;
 
 import java.lang.reflect.Field;
@@ -130,6 +131,22 @@ public class BufferSupport {
         getNettyByteBuf(self).capacity(length);
     }
 
+    /**
+     * Returns a buffer holding the bytes of the first buffer followed by the second
+     * which shares rather than copies their contents.
+     */
+    static public Buffer composite(Buffer first, Buffer second) {
+        return new Buffer(Unpooled.wrappedBuffer(getNettyByteBuf(first), getNettyByteBuf(second)));
+    }
+
+    /**
+     * Returns a view of a region of the buffer which shares rather than copies
+     * its contents, unlike {@link Buffer#getBuffer(int, int)}.
+     */
+    static public Buffer slice(Buffer self, int start, int end) {
+        return new Buffer(getNettyByteBuf(self).slice(start, end - start));
+    }
+
     static final public Buffer[] split(Buffer self, byte separator) {
         ArrayList<Buffer> rc = new ArrayList<Buffer>();
         int pos = 0;
@@ -0,0 +1,253 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one keep-alive {@link HttpClient} (and so one pool of connections) per backend host:port,
+ * rather than creating and closing a client for every proxied request.
+ * <p/>
+ * The clients are only ever used from the event loop of the gateway server - so idle clients are
+ * evicted lazily when new requests are acquired rather than from a timer on another event loop.
+ */
+public class HttpClientPool {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpClientPool.class);
+
+    private final Vertx vertx;
+    private final Map<String, PooledClient> clients = new ConcurrentHashMap<String, PooledClient>();
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientsEvicted = new AtomicLong();
+    private int maxConnections = 32;
+    private boolean keepAlive = true;
+    private boolean pipelining = false;
+    private long idleTimeout = 60000;
+    private long lastEvictionCheck = System.currentTimeMillis();
+
+    public HttpClientPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientPool{" +
+                "backends=" + clients.keySet() +
+                '}';
+    }
+
+    /**
+     * Returns the pooled client for the backend of the given URL; which must be
+     * {@link PooledClient#release() released} once the request has completed
+     */
+    public PooledClient acquire(URL url) {
+        long now = System.currentTimeMillis();
+        evictIdleClients(now);
+        String key = url.getHost() + ":" + url.getPort();
+        PooledClient answer = clients.get(key);
+        if (answer == null) {
+            HttpClient client = vertx.createHttpClient();
+            client.setHost(url.getHost());
+            client.setPort(url.getPort());
+            client.setKeepAlive(keepAlive);
+            client.setPipelining(pipelining);
+            client.setMaxPoolSize(maxConnections);
+            answer = new PooledClient(key, client);
+            clients.put(key, answer);
+            clientsCreated.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Created client for backend " + key);
+            }
+        }
+        answer.acquired(now);
+        return answer;
+    }
+
+    /**
+     * Closes all the clients
+     */
+    public void close() {
+        for (PooledClient pooledClient : clients.values()) {
+            pooledClient.close();
+        }
+        clients.clear();
+    }
+
+    protected void evictIdleClients(long now) {
+        if (idleTimeout > 0 && now - lastEvictionCheck > idleTimeout / 2) {
+            lastEvictionCheck = now;
+            Iterator<PooledClient> iterator = clients.values().iterator();
+            while (iterator.hasNext()) {
+                PooledClient pooledClient = iterator.next();
+                if (pooledClient.getInFlight() == 0 && now - pooledClient.getLastUsed() > idleTimeout) {
+                    iterator.remove();
+                    pooledClient.close();
+                    clientsEvicted.incrementAndGet();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Evicted idle client for backend " + pooledClient.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of each backend client indexed by host:port
+     */
+    public Map<String, String> getClientStatistics() {
+        Map<String, String> answer = new TreeMap<String, String>();
+        for (PooledClient pooledClient : clients.values()) {
+            answer.put(pooledClient.getKey(), pooledClient.toString());
+        }
+        return answer;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public long getClientsCreated() {
+        return clientsCreated.get();
+    }
+
+    public long getClientsEvicted() {
+        return clientsEvicted.get();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the maximum number of connections kept open to each backend
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public boolean isPipelining() {
+        return pipelining;
+    }
+
+    /**
+     * Enables HTTP pipelining of requests on the keep-alive connections; only enable this
+     * if all the backends support it
+     */
+    public void setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds after which the client (and so the connections) to a backend that
+     * has not been used is closed; or 0 to never close them
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * A client for a single backend
+     */
+    public static class PooledClient {
+        private final String key;
+        private final HttpClient client;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastUsed;
+
+        PooledClient(String key, HttpClient client) {
+            this.key = key;
+            this.client = client;
+        }
+
+        @Override
+        public String toString() {
+            return "PooledClient{" +
+                    "requests=" + requests +
+                    ", inFlight=" + inFlight +
+                    ", lastUsed=" + lastUsed +
+                    '}';
+        }
+
+        public HttpClient getClient() {
+            return client;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        void acquired(long now) {
+            requests.incrementAndGet();
+            inFlight.incrementAndGet();
+            lastUsed = now;
+        }
+
+        /**
+         * Marks the request as completed, so the client can be evicted once it is idle.
+         * Must be called exactly once for every {@link HttpClientPool#acquire(URL)}
+         */
+        public void release() {
+            inFlight.decrementAndGet();
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void close() {
+            try {
+                client.close();
+            } catch (Exception e) {
+                LOG.debug("Failed to close client for backend " + key + ". " + e, e);
+            }
+        }
+    }
+}
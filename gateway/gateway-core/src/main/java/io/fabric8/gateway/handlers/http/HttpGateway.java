@@ -15,7 +15,7 @@
  */
 package io.fabric8.gateway.handlers.http;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.cdr.CallDetailRecorder;
 
 import java.net.InetSocketAddress;
 import java.util.Map;
@@ -43,6 +43,12 @@ public interface HttpGateway {
      */
     Map<String, MappedServices> getMappedServices();
 
+    /**
+     * Returns the current routing table which indexes the mapped services by URI prefix
+     * for longest prefix matching of request URIs
+     */
+    HttpRoutingTable getRoutingTable();
+
     /**
      * Returns true if the mapping index is enabled which by default
      * returns a JSON document describing the mapping of URI prefixes to services
@@ -55,7 +61,7 @@ public interface HttpGateway {
     public InetSocketAddress getLocalAddress();
     
     /**
-     * Adds a CallDetailRecord for reporting purposes
+     * Returns the recorder of the call detail records of this gateway for reporting purposes
      */
-    public void addCallDetailRecord(CallDetailRecord cdr);
+    public CallDetailRecorder getCallDetailRecorder();
 }
@@ -29,7 +29,8 @@ import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
 import org.vertx.java.core.http.HttpServerResponse;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.cdr.CallDetailRecordKeys;
+import io.fabric8.gateway.cdr.CallDetailRecorder;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -49,79 +50,75 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
 
     private final Vertx vertx;
     private final HttpGateway httpGateway;
+    private final HttpClientPool clientPool;
     private final ObjectMapper mapper = new ObjectMapper();
 
     public HttpGatewayHandler(Vertx vertx, HttpGateway httpGateway) {
+        this(vertx, httpGateway, new HttpClientPool(vertx));
+    }
+
+    public HttpGatewayHandler(Vertx vertx, HttpGateway httpGateway, HttpClientPool clientPool) {
         this.vertx = vertx;
         this.httpGateway = httpGateway;
+        this.clientPool = clientPool;
     }
 
     @Override
     public void handle(final HttpServerRequest request) {
-    	long callStart = System.nanoTime();
-        String uri = request.uri();
-        String uri2 = null;
-        if (!uri.endsWith("/")) {
-            uri2 = uri + "/";
-        }
+        final long callStart = System.nanoTime();
+        final CallDetailRecorder recorder = httpGateway.getCallDetailRecorder();
+        final String uri = request.uri();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Proxying request: " + uri);
         }
 
         // lets map the request URI to map to the service URI and then the renaming URI
         // using mapping rules...
-        HttpClient client = null;
+        ProxiedCall call = null;
+        URL clientURL = null;
         String remaining = null;
         String prefix = null;
         String proxyServiceUrl = null;
         String reverseServiceUrl = null;
-        Map<String, MappedServices> mappingRules = httpGateway.getMappedServices();
+        String routePrefix = null;
+        HttpRoutingTable routingTable = httpGateway.getRoutingTable();
         try {
             if (isMappingIndexRequest(request)) {
                 // lets return the JSON of all the results
-                String json = mappingRulesToJson(mappingRules);
+                String json = mappingRulesToJson(routingTable.getMappedServices());
                 HttpServerResponse response = request.response();
                 response.headers().set("ContentType", "application/json");
                 response.end(json);
                 response.setStatusCode(200);
+                recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 200, json.length(), System.nanoTime() - callStart);
             } else {
                 MappedServices mappedServices = null;
-                URL clientURL = null;
-                Set<Map.Entry<String, MappedServices>> entries = mappingRules.entrySet();
-                for (Map.Entry<String, MappedServices> entry : entries) {
-                    String path = entry.getKey();
-                    mappedServices = entry.getValue();
-
-                    String pathPrefix = path;
-                    if (uri.startsWith(pathPrefix) || (uri2 != null && uri2.startsWith(pathPrefix))) {
-                        int pathPrefixLength = pathPrefix.length();
-                        if (pathPrefixLength < uri.length()) {
-                            remaining = uri.substring(pathPrefixLength);
-                        } else {
-                            remaining = null;
-                        }
+                // walk from the longest matching URI prefix to the shorter ones until a service is available
+                for (HttpRoutingTable.Route route = routingTable.route(uri); route != null; route = route.getParent()) {
+                    String pathPrefix = route.getPrefix();
+                    mappedServices = route.getMappedServices();
+                    remaining = route.getRemaining(uri);
 
-                        // now lets pick a service for this path
-                        proxyServiceUrl = mappedServices.chooseService(request);
-                        if (proxyServiceUrl != null) {
-                            // lets create a client for this request...
-                            try {
-                                clientURL = new URL(proxyServiceUrl);
-                                client = createClient(clientURL);
-                                prefix = clientURL.getPath();
-                                reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
-                                if (reverseServiceUrl.endsWith("/")) {
-                                    reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
-                                }
-                                break;
-                            } catch (MalformedURLException e) {
-                                LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
+                    // now lets pick a service for this path
+                    proxyServiceUrl = mappedServices.chooseService(request);
+                    if (proxyServiceUrl != null) {
+                        try {
+                            clientURL = new URL(proxyServiceUrl);
+                            prefix = clientURL.getPath();
+                            reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
+                            if (reverseServiceUrl.endsWith("/")) {
+                                reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
                             }
+                            routePrefix = pathPrefix;
+                            break;
+                        } catch (MalformedURLException e) {
+                            LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
+                            clientURL = null;
                         }
                     }
                 }
 
-                if (client != null) {
+                if (clientURL != null) {
                     String servicePath = prefix != null ? prefix : "";
                     // we should usually end the prefix path with a slash for web apps at least
                     if (servicePath.length() > 0 && !servicePath.endsWith("/")) {
@@ -132,9 +129,15 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     }
 
                     LOG.info("Proxying request " + uri + " to service path: " + servicePath + " on service: " + proxyServiceUrl + " reverseServiceUrl: " + reverseServiceUrl);
-                    final HttpClient finalClient = client;
+                    // only take a client from the pool once the request is actually going to be sent
+                    call = new ProxiedCall(clientPool.acquire(clientURL), mappedServices, proxyServiceUrl, callStart);
+                    final ProxiedCall finalCall = call;
+                    final int routeId = recorder.getRouteId(routePrefix);
+                    final int backendId = recorder.getBackendId(proxyServiceUrl);
                     Handler<HttpClientResponse> responseHandler = new Handler<HttpClientResponse>() {
-                        public void handle(HttpClientResponse clientResponse) {
+                        private long responseBytes;
+
+                        public void handle(final HttpClientResponse clientResponse) {
                             if (LOG.isDebugEnabled()) {
                                 LOG.debug("Proxying response: " + clientResponse.statusCode());
                             }
@@ -146,13 +149,27 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                                     if (LOG.isDebugEnabled()) {
                                         LOG.debug("Proxying response body:" + data);
                                     }
+                                    responseBytes += data.length();
                                     request.response().write(data);
                                 }
                             });
                             clientResponse.endHandler(new VoidHandler() {
                                 public void handle() {
                                     request.response().end();
-                                    finalClient.close();
+                                    if (finalCall.complete(clientResponse.statusCode() >= 500)) {
+                                        recorder.record(routeId, backendId, clientResponse.statusCode(), responseBytes, finalCall.getLatency());
+                                    }
+                                }
+                            });
+                            clientResponse.exceptionHandler(new Handler<Throwable>() {
+                                public void handle(Throwable e) {
+                                    // the backend went away half way through the response, the status has already been sent
+                                    LOG.warn("Failed to proxy response " + uri + ". " + e, e);
+                                    request.response().close();
+                                    if (finalCall.complete(true)) {
+                                        recorder.setLastError(new Date() + ":" + e.getMessage());
+                                        recorder.record(routeId, backendId, 502, responseBytes, finalCall.getLatency());
+                                    }
                                 }
                             });
                         }
@@ -161,9 +178,28 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                         ProxyMappingDetails proxyMappingDetails = new ProxyMappingDetails(proxyServiceUrl, reverseServiceUrl, servicePath);
                         responseHandler = mappedServices.wrapResponseHandlerInPolicies(request, responseHandler, proxyMappingDetails);
                     }
-                    final HttpClientRequest clientRequest = client.request(request.method(), servicePath, responseHandler);
+                    final HttpClientRequest clientRequest = call.getClient().request(request.method(), servicePath, responseHandler);
                     clientRequest.headers().set(request.headers());
                     clientRequest.setChunked(true);
+                    clientRequest.exceptionHandler(new Handler<Throwable>() {
+                        public void handle(Throwable e) {
+                            LOG.warn("Failed to proxy request " + uri + ". " + e, e);
+                            if (finalCall.complete(true)) {
+                                request.response().setStatusCode(502);
+                                request.response().end();
+                                recorder.setLastError(new Date() + ":" + e.getMessage());
+                                recorder.record(routeId, backendId, 502, 0, finalCall.getLatency());
+                            }
+                        }
+                    });
+                    request.response().closeHandler(new VoidHandler() {
+                        public void handle() {
+                            // the client went away before we could answer; there is nobody to send the response to
+                            if (finalCall.complete(true) && LOG.isDebugEnabled()) {
+                                LOG.debug("Client closed the connection before the response to " + uri + " was complete");
+                            }
+                        }
+                    });
                     request.dataHandler(new Handler<Buffer>() {
                         public void handle(Buffer data) {
                             if (LOG.isDebugEnabled()) {
@@ -183,17 +219,19 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
 
                 } else {
                     //  lets return a 404
-                    LOG.info("Could not find matching proxy path for " + uri + " from paths: " + mappingRules.keySet());
+                    LOG.info("Could not find matching proxy path for " + uri + " from paths: " + routingTable.getMappedServices().keySet());
                     request.response().setStatusCode(404);
                     request.response().close();
+                    recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 404, 0, System.nanoTime() - callStart);
                 }
             }
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, null);
-            httpGateway.addCallDetailRecord(cdr);
         } catch (Throwable e) {
             LOG.error("Caught: " + e, e);
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, new Date() + ":" + e.getMessage());
-            httpGateway.addCallDetailRecord(cdr);
+            if (call != null) {
+                call.complete(true);
+            }
+            recorder.setLastError(new Date() + ":" + e.getMessage());
+            recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 404, 0, System.nanoTime() - callStart);
             request.response().setStatusCode(404);
             StringWriter buffer = new StringWriter();
             e.printStackTrace(new PrintWriter(buffer));
@@ -223,13 +261,61 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return uri == null || uri.length() == 0 || uri.equals("/");
     }
 
-    protected HttpClient createClient(URL url) throws MalformedURLException {
-        // lets create a client
-        HttpClient client = vertx.createHttpClient();
-        client.setHost(url.getHost());
-        client.setPort(url.getPort());
-        return client;
+    public HttpClientPool getClientPool() {
+        return clientPool;
+    }
 
+    /**
+     * Closes the pooled clients to the backends
+     */
+    public void close() {
+        clientPool.close();
     }
 
+    /**
+     * A request proxied to a backend; however the exchange ends the pooled client is released and the
+     * load balancer is told the request completed exactly once. Only ever used from the event loop of the request.
+     */
+    private static final class ProxiedCall {
+        private final HttpClientPool.PooledClient pooledClient;
+        private final MappedServices mappedServices;
+        private final String service;
+        private final long start;
+        private boolean completed;
+        private long latency;
+
+        ProxiedCall(HttpClientPool.PooledClient pooledClient, MappedServices mappedServices, String service, long start) {
+            this.pooledClient = pooledClient;
+            this.mappedServices = mappedServices;
+            this.service = service;
+            this.start = start;
+            mappedServices.serviceStarted(service);
+        }
+
+        HttpClient getClient() {
+            return pooledClient.getClient();
+        }
+
+        /**
+         * Returns the time taken by the call once it has completed
+         */
+        long getLatency() {
+            return latency;
+        }
+
+        /**
+         * Releases the pooled client and completes the request for the load balancer,
+         * returns false if the call had already completed.
+         */
+        boolean complete(boolean failed) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            latency = System.nanoTime() - start;
+            pooledClient.release();
+            mappedServices.serviceCompleted(service, latency, failed);
+            return true;
+        }
+    }
 }
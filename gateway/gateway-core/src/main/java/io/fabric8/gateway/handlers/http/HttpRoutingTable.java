@@ -0,0 +1,291 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the mapped services of a {@link HttpGateway} indexed by URI prefix in a
+ * trie of path segments, so that finding the service for a request is a longest prefix match which
+ * does not allocate rather than a scan over all the mapping rules.
+ * <p/>
+ * A new table is built whenever the mapping rules change and then swapped in atomically.
+ */
+public final class HttpRoutingTable {
+    public static final HttpRoutingTable EMPTY = create(Collections.<String, MappedServices>emptyMap(), 0);
+
+    private final Node root;
+    private final Map<String, MappedServices> mappedServices;
+    private final long version;
+
+    private HttpRoutingTable(Node root, Map<String, MappedServices> mappedServices, long version) {
+        this.root = root;
+        this.mappedServices = mappedServices;
+        this.version = version;
+    }
+
+    /**
+     * Creates a routing table for the given mapped services indexed by URI prefix
+     */
+    public static HttpRoutingTable create(Map<String, MappedServices> mappedServices, long version) {
+        BuildNode root = new BuildNode();
+        for (Map.Entry<String, MappedServices> entry : mappedServices.entrySet()) {
+            String prefix = entry.getKey();
+            BuildNode node = root;
+            int depth = 0;
+            int start = 0;
+            int end = prefix.length();
+            while (true) {
+                while (start < end && prefix.charAt(start) == '/') {
+                    start++;
+                }
+                if (start >= end) {
+                    break;
+                }
+                int segmentEnd = start;
+                while (segmentEnd < end && prefix.charAt(segmentEnd) != '/') {
+                    segmentEnd++;
+                }
+                String segment = prefix.substring(start, segmentEnd);
+                BuildNode child = node.children.get(segment);
+                if (child == null) {
+                    child = new BuildNode();
+                    node.children.put(segment, child);
+                }
+                node = child;
+                depth++;
+                start = segmentEnd;
+            }
+            node.routes.add(new Route(prefix, depth, entry.getValue()));
+        }
+        Map<String, MappedServices> copy = Collections.unmodifiableMap(new HashMap<String, MappedServices>(mappedServices));
+        return new HttpRoutingTable(root.build(null), copy, version);
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRoutingTable{" +
+                "version=" + version +
+                ", prefixes=" + mappedServices.keySet() +
+                '}';
+    }
+
+    /**
+     * Returns the route with the longest URI prefix matching the given URI or null if there is none.
+     * If the chosen route has no service available then {@link Route#getParent()} returns the next shorter match.
+     */
+    public Route route(String uri) {
+        Node node = root;
+        Route answer = root.route;
+        if (uri == null) {
+            return answer;
+        }
+        int end = pathEnd(uri);
+        int start = 0;
+        while (true) {
+            while (start < end && uri.charAt(start) == '/') {
+                start++;
+            }
+            if (start >= end) {
+                break;
+            }
+            int segmentEnd = start;
+            while (segmentEnd < end && uri.charAt(segmentEnd) != '/') {
+                segmentEnd++;
+            }
+            Node child = node.findChild(uri, start, segmentEnd - start);
+            if (child == null) {
+                break;
+            }
+            node = child;
+            if (child.route != null) {
+                answer = child.route;
+            }
+            start = segmentEnd;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the index of the end of the path of the URI, before any query or fragment
+     */
+    static int pathEnd(String uri) {
+        int end = uri.length();
+        for (int i = 0; i < end; i++) {
+            char ch = uri.charAt(i);
+            if (ch == '?' || ch == '#') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the mapped services indexed by URI prefix
+     */
+    public Map<String, MappedServices> getMappedServices() {
+        return mappedServices;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * A URI prefix and the services mapped to it
+     */
+    public static final class Route {
+        private final String prefix;
+        private final int depth;
+        private final MappedServices mappedServices;
+        private Route parent;
+
+        Route(String prefix, int depth, MappedServices mappedServices) {
+            this.prefix = prefix;
+            this.depth = depth;
+            this.mappedServices = mappedServices;
+        }
+
+        @Override
+        public String toString() {
+            return "Route{" +
+                    "prefix='" + prefix + '\'' +
+                    ", mappedServices=" + mappedServices +
+                    '}';
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public MappedServices getMappedServices() {
+            return mappedServices;
+        }
+
+        /**
+         * Returns the part of the given URI after the path segments matched by this route; including any query,
+         * or null if there is nothing left. The segments are skipped the same way {@link HttpRoutingTable#route(String)}
+         * matched them, so repeated slashes in the URI are ignored rather than compared with the prefix.
+         */
+        public String getRemaining(String uri) {
+            int end = pathEnd(uri);
+            int position = 0;
+            for (int i = 0; i < depth; i++) {
+                while (position < end && uri.charAt(position) == '/') {
+                    position++;
+                }
+                while (position < end && uri.charAt(position) != '/') {
+                    position++;
+                }
+            }
+            if (prefix.endsWith("/")) {
+                // the slashes after the prefix are part of the prefix
+                while (position < end && uri.charAt(position) == '/') {
+                    position++;
+                }
+            }
+            return position < uri.length() ? uri.substring(position) : null;
+        }
+
+        /**
+         * Returns the route with the next longest prefix which also matches or null if there is none
+         */
+        public Route getParent() {
+            return parent;
+        }
+    }
+
+    private static final class Node {
+        private final String[] segments;
+        private final Node[] children;
+        private final Route route;
+
+        Node(String[] segments, Node[] children, Route route) {
+            this.segments = segments;
+            this.children = children;
+            this.route = route;
+        }
+
+        /**
+         * Binary searches the sorted segments for the given region of the URI
+         */
+        Node findChild(String uri, int offset, int length) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], uri, offset, length);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String segment, String uri, int offset, int length) {
+            int n = Math.min(segment.length(), length);
+            for (int i = 0; i < n; i++) {
+                char c1 = segment.charAt(i);
+                char c2 = uri.charAt(offset + i);
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+            }
+            return segment.length() - length;
+        }
+    }
+
+    private static final class BuildNode {
+        private final TreeMap<String, BuildNode> children = new TreeMap<String, BuildNode>();
+        private final List<Route> routes = new ArrayList<Route>();
+
+        Node build(Route parentRoute) {
+            Route route = parentRoute;
+            if (!routes.isEmpty()) {
+                // prefixes such as "/foo" and "/foo/" end on the same node; prefer the longest
+                Collections.sort(routes, new Comparator<Route>() {
+                    @Override
+                    public int compare(Route route1, Route route2) {
+                        return route1.getPrefix().length() - route2.getPrefix().length();
+                    }
+                });
+                for (Route r : routes) {
+                    r.parent = route;
+                    route = r;
+                }
+            }
+            String[] segments = new String[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<String, BuildNode> entry : children.entrySet()) {
+                segments[i] = entry.getKey();
+                nodes[i] = entry.getValue().build(route);
+                i++;
+            }
+            return new Node(segments, nodes, route != parentRoute ? route : null);
+        }
+    }
+}
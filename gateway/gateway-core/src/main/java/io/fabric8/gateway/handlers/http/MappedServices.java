@@ -18,6 +18,7 @@ package io.fabric8.gateway.handlers.http;
 import io.fabric8.gateway.ServiceDetails;
 import io.fabric8.gateway.handlers.http.policy.ReverseUriPolicy;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadTrackingLoadBalancer;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
@@ -56,6 +57,24 @@ public class MappedServices {
         return loadBalancer.choose(serviceUrls, new HttpClientRequestFacade(request));
     }
 
+    /**
+     * Lets the load balancer know a request has been sent to the chosen service
+     */
+    public void serviceStarted(String service) {
+        if (loadBalancer instanceof LoadTrackingLoadBalancer) {
+            ((LoadTrackingLoadBalancer) loadBalancer).requestStarted(service);
+        }
+    }
+
+    /**
+     * Lets the load balancer know how long a request to the chosen service took
+     */
+    public void serviceCompleted(String service, long latencyNanos, boolean failed) {
+        if (loadBalancer instanceof LoadTrackingLoadBalancer) {
+            ((LoadTrackingLoadBalancer) loadBalancer).requestCompleted(service, latencyNanos, failed);
+        }
+    }
+
     /**
      * Provides a hook so we can wrap a client response handler in a policy such
      * as to reverse the URIs {@link io.fabric8.gateway.handlers.http.policy.ReverseUriPolicy} or
@@ -17,6 +17,7 @@ package io.fabric8.gateway;
 
 
 import io.fabric8.common.util.ShutdownTracker;
+import io.fabric8.gateway.cdr.CallDetailRecorder;
 import io.fabric8.gateway.handlers.detecting.DetectingGateway;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
 import io.fabric8.gateway.handlers.detecting.FutureHandler;
@@ -215,6 +216,8 @@ public class ExtendedBurnIn {
 
         DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
         HttpGatewayHandler handler = new HttpGatewayHandler(vertx, new HttpGateway(){
+            private final CallDetailRecorder callDetailRecorder = new CallDetailRecorder();
+
             @Override
             public void addMappingRuleConfiguration(HttpMappingRule mappingRule) {
             }
@@ -228,6 +231,11 @@ public class ExtendedBurnIn {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return HttpRoutingTable.create(mappedServices, 0);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -238,9 +246,10 @@ public class ExtendedBurnIn {
                 return new InetSocketAddress("0.0.0.0", 8080);
             }
 
-			@Override
-			public void addCallDetailRecord(CallDetailRecord cdr) {
-			}
+            @Override
+            public CallDetailRecorder getCallDetailRecorder() {
+                return callDetailRecorder;
+            }
         });
         websocketHandler.setPathPrefix("");
         httpGatewayServer = new HttpGatewayServer(vertx, handler, websocketHandler, 8080);
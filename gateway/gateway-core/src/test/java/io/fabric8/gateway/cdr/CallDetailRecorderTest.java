@@ -0,0 +1,203 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.cdr;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class CallDetailRecorderTest {
+
+    @Test
+    public void testAggregatesPerRouteAndBackend() throws Exception {
+        CallDetailRecorder recorder = new CallDetailRecorder(1024);
+        int crm = recorder.getRouteId("/cxf/crm/");
+        int hello = recorder.getRouteId("/cxf/HelloWorld/");
+        int backend1 = recorder.getBackendId("http://localhost:8182/cxf/crm");
+        int backend2 = recorder.getBackendId("http://localhost:8183/cxf/HelloWorld");
+        assertEquals("route id should be stable", crm, recorder.getRouteId("/cxf/crm/"));
+
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(recorder.record(crm, backend1, 200, 10, TimeUnit.MILLISECONDS.toNanos(i)));
+        }
+        recorder.record(hello, backend2, 502, 0, TimeUnit.MILLISECONDS.toNanos(5));
+        recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 404, 0, 1000);
+        recorder.drain();
+
+        CallStatistics total = recorder.getTotalStatistics();
+        assertEquals("total count", 102, total.getCount());
+        assertEquals("total errors", 1, total.getErrors());
+        assertEquals("total bytes", 1000, total.getBytes());
+        assertTrue("should have a last timestamp", total.getLastTimestamp() > 0);
+
+        Map<String, CallStatistics> routes = recorder.getRouteStatistics();
+        assertEquals("routes " + routes, 2, routes.size());
+        CallStatistics crmStatistics = routes.get("/cxf/crm/");
+        assertNotNull("crm statistics", crmStatistics);
+        assertEquals("crm count", 100, crmStatistics.getCount());
+        assertEquals("crm errors", 0, crmStatistics.getErrors());
+        assertPercentile(crmStatistics.getLatency(), 0.5, TimeUnit.MILLISECONDS.toNanos(50));
+        assertPercentile(crmStatistics.getLatency(), 0.99, TimeUnit.MILLISECONDS.toNanos(99));
+        assertEquals("crm max", TimeUnit.MILLISECONDS.toNanos(100), crmStatistics.getLatency().getMax());
+
+        Map<String, CallStatistics> backends = recorder.getBackendStatistics();
+        assertEquals("backends " + backends, 2, backends.size());
+        assertEquals("backend errors", 1, backends.get("http://localhost:8183/cxf/HelloWorld").getErrors());
+
+        recorder.reset();
+        assertEquals("count after reset", 0, recorder.getTotalStatistics().getCount());
+        assertTrue("routes after reset", recorder.getRouteStatistics().isEmpty());
+    }
+
+    @Test
+    public void testOnlyCopiesChangedStatistics() throws Exception {
+        CallDetailRecorder recorder = new CallDetailRecorder(1024);
+        int foo = recorder.getRouteId("/foo/");
+        int bar = recorder.getRouteId("/bar/");
+        recorder.record(foo, CallDetailRecordKeys.NONE, 200, 1, 1000);
+        recorder.record(bar, CallDetailRecordKeys.NONE, 200, 1, 1000);
+        drainLater(recorder);
+        Map<String, CallStatistics> routes = recorder.getRouteStatistics();
+        assertTrue("should have a rate", routes.get("/bar/").getRate() > 0);
+
+        // the rate of both routes drops to zero
+        recorder.record(foo, CallDetailRecordKeys.NONE, 200, 1, 1000);
+        drainLater(recorder);
+        Map<String, CallStatistics> idleRoutes = recorder.getRouteStatistics();
+        assertNotSame("bar should be copied", routes.get("/bar/"), idleRoutes.get("/bar/"));
+        assertEquals("bar rate", 0.0, idleRoutes.get("/bar/").getRate(), 0.0);
+
+        recorder.record(foo, CallDetailRecordKeys.NONE, 200, 1, 1000);
+        drainLater(recorder);
+        routes = recorder.getRouteStatistics();
+        assertSame("bar should not be copied again", idleRoutes.get("/bar/"), routes.get("/bar/"));
+        assertNotSame("foo should be copied", idleRoutes.get("/foo/"), routes.get("/foo/"));
+        assertEquals("foo count", 3, routes.get("/foo/").getCount());
+
+        drainLater(recorder);
+        drainLater(recorder);
+        idleRoutes = recorder.getRouteStatistics();
+        CallStatistics total = recorder.getTotalStatistics();
+        drainLater(recorder);
+        assertSame("nothing changed", idleRoutes, recorder.getRouteStatistics());
+        assertSame("total did not change", total, recorder.getTotalStatistics());
+    }
+
+    @Test
+    public void testDropsWhenFull() throws Exception {
+        CallDetailRecorder recorder = new CallDetailRecorder(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 200, 0, 1));
+        }
+        assertFalse("should drop when full", recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 200, 0, 1));
+        assertEquals("dropped", 1, recorder.getDroppedRecords());
+
+        recorder.drain();
+        assertEquals("count", 4, recorder.getTotalStatistics().getCount());
+        assertTrue("should record after draining", recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 200, 0, 1));
+    }
+
+    @Test
+    public void testExportsBatches() throws Exception {
+        CallDetailRecorder recorder = new CallDetailRecorder(2048);
+        final List<String> exported = new ArrayList<String>();
+        recorder.setExporter(new CallDetailRecordExporter() {
+            @Override
+            public void export(CallDetailRecordBatch batch) throws Exception {
+                for (int i = 0; i < batch.size(); i++) {
+                    exported.add(batch.getRoute(i) + " " + batch.getBackend(i) + " " + batch.getStatus(i));
+                }
+            }
+        });
+        int route = recorder.getRouteId("/foo/");
+        int backend = recorder.getBackendId("http://localhost:8080/foo");
+        for (int i = 0; i < 1500; i++) {
+            recorder.record(route, backend, 200, 1, 1);
+        }
+        recorder.record(CallDetailRecordKeys.NONE, CallDetailRecordKeys.NONE, 404, 0, 1);
+        recorder.drain();
+
+        assertEquals("exported", 1501, exported.size());
+        assertEquals("/foo/ http://localhost:8080/foo 200", exported.get(0));
+        assertEquals("null null 404", exported.get(1500));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final CallDetailRecorder recorder = new CallDetailRecorder(1 << 16);
+        final int route = recorder.getRouteId("/foo/");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        recorder.record(route, CallDetailRecordKeys.NONE, 200, 1, j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        recorder.start(10);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recorder.stop();
+
+        assertEquals("dropped", 0, recorder.getDroppedRecords());
+        assertEquals("count", 40000, recorder.getTotalStatistics().getCount());
+        assertEquals("route count", 40000, recorder.getRouteStatistics().get("/foo/").getCount());
+    }
+
+    @Test
+    public void testHistogramBuckets() throws Exception {
+        int lastIndex = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue("index should not decrease at " + value, index >= lastIndex);
+            assertTrue("value " + value + " should be within bucket " + index, value <= LatencyHistogram.bucketUpperBound(index));
+            lastIndex = index;
+        }
+        assertEquals("last bucket", LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+        assertNull("no name for none", new CallDetailRecordKeys(10).getName(CallDetailRecordKeys.NONE));
+    }
+
+    /**
+     * Drains once some time has passed, as the rates are only updated when it has
+     */
+    protected void drainLater(CallDetailRecorder recorder) throws InterruptedException {
+        Thread.sleep(2);
+        recorder.drain();
+    }
+
+    protected void assertPercentile(LatencyHistogram histogram, double quantile, long expected) {
+        long actual = histogram.getValue(quantile);
+        assertTrue("p" + quantile + " was " + actual + " expected about " + expected, Math.abs(actual - expected) <= expected * 0.04);
+    }
+}
@@ -176,6 +176,36 @@ public class DetectingGatewayTest {
         connection.close();
     }
 
+    /**
+     * The protocol header may arrive split over many reads.
+     */
+    @Test
+    public void canDetectFragmentedProtocolHeaders() throws Exception {
+        DetectingGateway gateway = createGateway();
+
+        for (int i = 0; i < 2; i++) {
+            Socket socket = new Socket("localhost", gateway.getBoundPort());
+            socket.setTcpNoDelay(true);
+            OutputStream outputStream = socket.getOutputStream();
+            byte[] frame = "CONNECT\naccept-version:1.1\nhost:broker0\n\n\0".getBytes("UTF-8");
+            for (byte b : frame) {
+                outputStream.write(b);
+                outputStream.flush();
+                Thread.sleep(5);
+            }
+
+            InputStream inputStream = socket.getInputStream();
+            byte[] expected = "CONNECTED".getBytes("UTF-8");
+            for (byte b : expected) {
+                assertEquals(b, inputStream.read());
+            }
+            socket.close();
+        }
+
+        assertEquals(2, gateway.getSuccessfulConnectionAttempts());
+        assertEquals(0, gateway.getFailedConnectionAttempts());
+    }
+
     @Test// (timeout=60 * 1000)
     public void canDetectTheMQTTProtocol() throws Exception {
 
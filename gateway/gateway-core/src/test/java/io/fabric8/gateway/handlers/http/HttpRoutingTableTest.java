@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ */
+public class HttpRoutingTableTest {
+
+    protected Map<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
+
+    @Test
+    public void testLongestPrefixMatch() throws Exception {
+        MappedServices root = addMapping("/");
+        MappedServices cxf = addMapping("/cxf/");
+        MappedServices crm = addMapping("/cxf/crm/");
+        HttpRoutingTable table = HttpRoutingTable.create(mappedServices, 1);
+
+        assertRoute(table, "/cxf/crm/customers/123", "/cxf/crm/", crm);
+        assertRoute(table, "/cxf/crm", "/cxf/crm/", crm);
+        assertRoute(table, "/cxf/crm?_wadl", "/cxf/crm/", crm);
+        assertRoute(table, "/cxf/HelloWorld", "/cxf/", cxf);
+        assertRoute(table, "/cxf", "/cxf/", cxf);
+        assertRoute(table, "/other", "/", root);
+        assertRoute(table, "/", "/", root);
+        assertEquals("version", 1, table.getVersion());
+    }
+
+    @Test
+    public void testMatchesWholeSegmentsOnly() throws Exception {
+        MappedServices foo = addMapping("/foo");
+        HttpRoutingTable table = HttpRoutingTable.create(mappedServices, 1);
+
+        assertRoute(table, "/foo/bar", "/foo", foo);
+        assertNull("Should not match a partial segment", table.route("/foobar"));
+        assertNull("Should not match an unmapped path", table.route("/bar"));
+        assertNull("Should not match an empty table", HttpRoutingTable.EMPTY.route("/foo"));
+    }
+
+    @Test
+    public void testParentRoutes() throws Exception {
+        addMapping("/");
+        addMapping("/a");
+        addMapping("/a/");
+        addMapping("/a/b/c/");
+        HttpRoutingTable table = HttpRoutingTable.create(mappedServices, 1);
+
+        HttpRoutingTable.Route route = table.route("/a/b/c/d");
+        assertEquals("/a/b/c/", route.getPrefix());
+        route = route.getParent();
+        assertEquals("/a/", route.getPrefix());
+        route = route.getParent();
+        assertEquals("/a", route.getPrefix());
+        route = route.getParent();
+        assertEquals("/", route.getPrefix());
+        assertNull("Should have no more routes", route.getParent());
+
+        assertEquals("/a/", table.route("/a/b/x").getPrefix());
+    }
+
+    @Test
+    public void testRemaining() throws Exception {
+        addMapping("/");
+        addMapping("/foo");
+        addMapping("/cxf/crm/");
+        HttpRoutingTable table = HttpRoutingTable.create(mappedServices, 1);
+
+        assertEquals("customers/123", table.route("/cxf/crm/customers/123").getRemaining("/cxf/crm/customers/123"));
+        assertEquals("?_wadl", table.route("/cxf/crm?_wadl").getRemaining("/cxf/crm?_wadl"));
+        assertNull(table.route("/cxf/crm").getRemaining("/cxf/crm"));
+        assertNull(table.route("/cxf/crm/").getRemaining("/cxf/crm/"));
+        assertEquals("/bar", table.route("/foo/bar").getRemaining("/foo/bar"));
+        assertNull(table.route("/foo").getRemaining("/foo"));
+        assertEquals("other", table.route("/other").getRemaining("/other"));
+        assertNull(table.route("/").getRemaining("/"));
+    }
+
+    @Test
+    public void testRepeatedSlashes() throws Exception {
+        MappedServices crm = addMapping("/cxf/crm/");
+        HttpRoutingTable table = HttpRoutingTable.create(mappedServices, 1);
+
+        String uri = "/cxf//crm/x";
+        assertRoute(table, uri, "/cxf/crm/", crm);
+        assertEquals("x", table.route(uri).getRemaining(uri));
+        uri = "//cxf/crm//x/y?z=1";
+        assertEquals("x/y?z=1", table.route(uri).getRemaining(uri));
+    }
+
+    protected MappedServices addMapping(String prefix) {
+        MappedServices answer = new MappedServices("http://localhost:8181" + prefix, null, new RoundRobinLoadBalancer(), false);
+        mappedServices.put(prefix, answer);
+        return answer;
+    }
+
+    protected void assertRoute(HttpRoutingTable table, String uri, String expectedPrefix, MappedServices expectedServices) {
+        HttpRoutingTable.Route route = table.route(uri);
+        assertEquals("prefix for " + uri, expectedPrefix, route.getPrefix());
+        assertSame("mapped services for " + uri, expectedServices, route.getMappedServices());
+    }
+}
@@ -25,9 +25,13 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -103,6 +107,100 @@ public class LoadBalancerTest {
 
     }
 
+    @Test
+    public void testStickyLoadBalancerEvictsClients() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(100);
+        for (int i = 0; i < 1000; i++) {
+            clientRequestKey = "newClient:" + i;
+            assertNotNull(loadBalancer.choose(services, clientRequestFacade));
+            assertTrue("Cache size should be bounded but was: " + loadBalancer.getCacheSize(), loadBalancer.getCacheSize() <= 100);
+        }
+        loadBalancer.flush();
+        assertEquals("cache size", 0, loadBalancer.getCacheSize());
+    }
+
+    @Test
+    public void testStickyLoadBalancerWithoutClientKey() throws Exception {
+        clientRequestKey = null;
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+
+        List<String> results = performRequests(loadBalancer);
+        assertEquals("Should use the round robin load balancer for every request", services.size(), asSet(results).size());
+        assertEquals("cache size", 0, loadBalancer.getCacheSize());
+    }
+
+    @Test
+    public void testStickyLoadBalancerExpiresClients() throws Exception {
+        final AtomicLong clock = new AtomicLong();
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(100, 1, new RoundRobinLoadBalancer()) {
+            @Override
+            protected long nanoTime() {
+                return clock.get();
+            }
+        };
+        String first = loadBalancer.choose(services, clientRequestFacade);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals("Should stick to the same service", first, loadBalancer.choose(services, clientRequestFacade));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1) + 1);
+        assertTrue("Should choose another service once expired", !first.equals(loadBalancer.choose(services, clientRequestFacade)));
+    }
+
+    @Test
+    public void testLeastOutstandingRequestsLoadBalancer() throws Exception {
+        LeastOutstandingRequestsLoadBalancer loadBalancer = new LeastOutstandingRequestsLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+        Set<String> set = asSet(performRequests(loadBalancer));
+        assertEquals("Idle services should share the load: " + set, services.size(), set.size());
+
+        // keep requests outstanding on all but the last service
+        for (int i = 0; i < services.size() - 1; i++) {
+            loadBalancer.requestStarted(services.get(i));
+        }
+        String last = services.get(services.size() - 1);
+        assertEquals("Should choose the service without outstanding requests", last, loadBalancer.choose(services, clientRequestFacade));
+
+        loadBalancer.requestStarted(last);
+        loadBalancer.requestStarted(last);
+        loadBalancer.requestCompleted(services.get(0), 1000, false);
+        assertEquals("Should choose the service which completed its request", services.get(0), loadBalancer.choose(services, clientRequestFacade));
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesLoadBalancer() throws Exception {
+        PowerOfTwoChoicesLoadBalancer loadBalancer = new PowerOfTwoChoicesLoadBalancer();
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(loadBalancer);
+        assertTrue("Should use more than one service", asSet(performRequests(loadBalancer)).size() > 1);
+
+        // make every service but the first slow
+        String fast = services.get(0);
+        for (String service : services) {
+            loadBalancer.requestStarted(service);
+            loadBalancer.requestCompleted(service, service.equals(fast) ? 1000000 : 100000000, false);
+        }
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            String service = loadBalancer.choose(services, clientRequestFacade);
+            Integer count = counts.get(service);
+            counts.put(service, count == null ? 1 : count + 1);
+        }
+        // the fast service is always chosen when it is one of the two picks
+        Integer fastCount = counts.get(fast);
+        assertTrue("Should mostly choose the fast service but got: " + counts, fastCount != null && fastCount > 400);
+
+        ServiceLoad load = loadBalancer.getLoads().get(fast);
+        assertEquals("outstanding", 0, load.getOutstanding());
+        assertEquals("completed", 1, load.getCompleted());
+        assertEquals("latency", 1000000, load.getLatencyNanos(), 1);
+    }
+
+    @Test
+    public void testCreateLoadBalancers() throws Exception {
+        assertTrue(LoadBalancers.createLoadBalancer(LoadBalancers.LEAST_OUTSTANDING_REQUESTS_LOAD_BALANCER, 10) instanceof LeastOutstandingRequestsLoadBalancer);
+        assertTrue(LoadBalancers.createLoadBalancer(LoadBalancers.POWER_OF_TWO_CHOICES_LOAD_BALANCER, 10) instanceof PowerOfTwoChoicesLoadBalancer);
+        assertTrue(LoadBalancers.createLoadBalancer(LoadBalancers.STICKY_LOAD_BALANCER, 10, 1000) instanceof StickyLoadBalancer);
+    }
+
     protected List<String> performRequests(LoadBalancer loadBalancer) {
         List<String> answer = new ArrayList<String>();
         for (int i = 0; i < requestCount; i++) {
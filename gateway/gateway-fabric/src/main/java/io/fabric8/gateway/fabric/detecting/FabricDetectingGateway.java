@@ -117,7 +117,9 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.LEAST_OUTSTANDING_REQUESTS_LOAD_BALANCER, value = "Least Outstanding Requests"),
+                    @PropertyOption(name = LoadBalancers.POWER_OF_TWO_CHOICES_LOAD_BALANCER, value = "Power of Two Choices")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy to use when multiple endpoints can service the client conneciton")
     private String loadBalancerType;
@@ -126,6 +128,10 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds a client key is cached by the sticky load balancer after its last request; 0 keeps it until evicted by the cache size")
+    private long stickyLoadBalancerTimeToLive = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
+
     @Property(name = "sslProtocol", value="TLS",
             label = "SSL Protocol", description = "Example: SSL, TLS, TLSv1, TLSv2 etc.")
     private String sslProtocol;
@@ -262,7 +268,7 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         }
 
         VertxService vertxService = getVertxService();
-        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
         gateway.setVertx(vertxService.getVertx());
         gateway.setPort(port);
         gateway.setServiceMap(serviceMap);
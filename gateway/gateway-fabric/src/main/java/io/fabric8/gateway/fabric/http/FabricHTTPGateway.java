@@ -31,7 +31,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 import javax.management.MBeanServer;
 
-import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.cdr.CallDetailRecorder;
 import io.fabric8.gateway.fabric.detecting.FabricDetectingGatewayService;
 
 import org.apache.curator.framework.CuratorFramework;
@@ -48,11 +48,14 @@ import org.apache.felix.scr.annotations.Service;
 
 import io.fabric8.gateway.fabric.support.vertx.VertxService;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
 import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.handlers.http.HttpRoutingTable;
 import io.fabric8.gateway.handlers.http.MappedServices;
+import io.fabric8.insight.storage.StorageService;
 
 import org.vertx.java.core.Vertx;
 
@@ -81,6 +84,27 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     @Property(name = "websocketGatewayPrefix", label = "Web Socket Path Prefix", description = "The prefix a websocket requests must have")
     private String websocketGatewayPrefix = "";
 
+    @Property(name = "maxConnectionsPerBackend", intValue = 32, label = "Max connections per backend", description = "The maximum number of keep-alive connections kept open to each backend host and port")
+    private int maxConnectionsPerBackend = 32;
+
+    @Property(name = "keepAlive", boolValue = true, label = "Keep alive", description = "If enabled then the connections to the backends are kept open and reused between requests")
+    private boolean keepAlive = true;
+
+    @Property(name = "pipelining", boolValue = false, label = "Pipelining", description = "If enabled then requests are pipelined on the connections to the backends; only enable this if all the backends support HTTP pipelining")
+    private boolean pipelining = false;
+
+    @Property(name = "idleTimeout", longValue = 60000, label = "Backend idle timeout", description = "The number of milliseconds after which the connections to a backend which has not been used are closed")
+    private long idleTimeout = 60000;
+
+    @Property(name = "callDetailRecordBufferSize", intValue = CallDetailRecorder.DEFAULT_BUFFER_SIZE, label = "Call detail record buffer size", description = "The number of call detail records buffered between being drained; records are dropped if the buffer fills up")
+    private int callDetailRecordBufferSize = CallDetailRecorder.DEFAULT_BUFFER_SIZE;
+
+    @Property(name = "callDetailRecordDrainInterval", longValue = CallDetailRecorder.DEFAULT_DRAIN_INTERVAL, label = "Call detail record drain interval", description = "The number of milliseconds between aggregating the buffered call detail records into the statistics")
+    private long callDetailRecordDrainInterval = CallDetailRecorder.DEFAULT_DRAIN_INTERVAL;
+
+    @Property(name = "exportCallDetailRecords", boolValue = false, label = "Export call detail records", description = "If enabled then a record of every call is stored in the insight storage service when it is available")
+    private boolean exportCallDetailRecords = false;
+
     @Reference
     private Configurer configurer;
 
@@ -94,12 +118,24 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     private final ValidatingReference<FabricDetectingGatewayService> fabricDetectingGatewayService = new ValidatingReference<FabricDetectingGatewayService>();
     @Reference(referenceInterface = MBeanServer.class, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
     private final ValidatingReference<MBeanServer> mbeanServer = new ValidatingReference<MBeanServer>();
+    @Reference(referenceInterface = StorageService.class, cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private final ValidatingReference<StorageService> storageService = new ValidatingReference<StorageService>();
     
     private HttpGatewayServer server;
     private HttpGatewayHandler handler;
     private DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
+    private volatile CallDetailRecorder callDetailRecorder = new CallDetailRecorder();
+    private int callDetailRecorderBufferSize = CallDetailRecorder.DEFAULT_BUFFER_SIZE;
 
     private Set<HttpMappingRule> mappingRuleConfigurations = new CopyOnWriteArraySet<HttpMappingRule>();
+    private volatile HttpRoutingTable routingTable = HttpRoutingTable.EMPTY;
+
+    private Runnable changeListener = new Runnable() {
+        @Override
+        public void run() {
+            rebuildRoutingTable();
+        }
+    };
 
     ShutdownTracker shutdownTracker = new ShutdownTracker();
     private FabricHTTPGatewayInfo fabricHTTPGatewayInfoMBean;
@@ -127,8 +163,21 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     private void updateConfiguration(Map<String, ?> configuration) throws Exception {
         configurer.configure(configuration, this);
 
+        if (callDetailRecordBufferSize != callDetailRecorderBufferSize) {
+            callDetailRecorder = new CallDetailRecorder(callDetailRecordBufferSize);
+            callDetailRecorderBufferSize = callDetailRecordBufferSize;
+        }
+        callDetailRecorder.setExporter(exportCallDetailRecords
+                ? new StorageCallDetailRecordExporter(storageService, "gateway", System.getProperty("runtime.id")) : null);
+        callDetailRecorder.start(callDetailRecordDrainInterval);
+
         Vertx vertx = getVertx();
-        handler = new HttpGatewayHandler(vertx, this);
+        HttpClientPool clientPool = new HttpClientPool(vertx);
+        clientPool.setMaxConnections(maxConnectionsPerBackend);
+        clientPool.setKeepAlive(keepAlive);
+        clientPool.setPipelining(pipelining);
+        clientPool.setIdleTimeout(idleTimeout);
+        handler = new HttpGatewayHandler(vertx, this, clientPool);
         websocketHandler.setPathPrefix(websocketGatewayPrefix);
         server = new HttpGatewayServer(vertx, handler, enableWebSocketGateway ? websocketHandler : null, port);
         server.init();
@@ -138,37 +187,54 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         if (server != null) {
             server.destroy();
         }
+        if (handler != null) {
+            handler.close();
+        }
+        callDetailRecorder.stop();
     }
-    
+
     @Override
-    public void addCallDetailRecord(CallDetailRecord cdr) {
-    	fabricHTTPGatewayInfoMBean.setLastCallDate(cdr.getCallDate().toString());
-    	fabricHTTPGatewayInfoMBean.registerCall(cdr.getCallTimeNanos());
-    	if (cdr.getError()!=null) {
-    		fabricHTTPGatewayInfoMBean.setLastError(cdr.getError());
-    	}
+    public CallDetailRecorder getCallDetailRecorder() {
+        return callDetailRecorder;
     }
 
     @Override
     public void addMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
+        mappingRuleConfiguration.addChangeListener(changeListener);
         mappingRuleConfigurations.add(mappingRuleConfiguration);
+        rebuildRoutingTable();
     }
 
     @Override
     public void removeMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
+        mappingRuleConfiguration.removeChangeListener(changeListener);
         mappingRuleConfigurations.remove(mappingRuleConfiguration);
+        rebuildRoutingTable();
     }
 
     @Override
     public Map<String, MappedServices> getMappedServices() {
         assertValid();
-        Map<String, MappedServices> answer = new HashMap<String, MappedServices>();
+        return routingTable.getMappedServices();
+    }
+
+    @Override
+    public HttpRoutingTable getRoutingTable() {
+        return routingTable;
+    }
+
+    /**
+     * Rebuilds the routing table from the mapping rules and swaps it in so that requests
+     * in flight keep using the table they started with
+     */
+    private synchronized void rebuildRoutingTable() {
+        Map<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
         for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
-            mappingRuleConfiguration.appendMappedServices(answer);
+            mappingRuleConfiguration.appendMappedServices(mappedServices);
         }
-        return answer;
+        routingTable = HttpRoutingTable.create(mappedServices, routingTable.getVersion() + 1);
     }
 
     @Override
@@ -203,6 +269,10 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         return null;
     }
 
+    HttpClientPool getClientPool() {
+        return handler != null ? handler.getClientPool() : null;
+    }
+
     int getPort() {
         return port;
     }
@@ -245,6 +315,14 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         websocketHandler.setGateway(null);
     }
     
+    void bindStorageService(StorageService storageService) {
+        this.storageService.bind(storageService);
+    }
+
+    void unbindStorageService(StorageService storageService) {
+        this.storageService.unbind(storageService);
+    }
+
     void bindMBeanServer(MBeanServer mbeanServer) {
         this.mbeanServer.bind(mbeanServer);
     }
@@ -16,7 +16,15 @@
 package io.fabric8.gateway.fabric.http;
 
 import io.fabric8.common.util.ShutdownTracker;
+import io.fabric8.gateway.cdr.CallDetailRecorder;
+import io.fabric8.gateway.cdr.CallStatistics;
 import io.fabric8.gateway.fabric.jmx.FabricGatewayInfoMBean;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
@@ -34,10 +42,6 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     private final FabricHTTPGateway fabricHTTPGateway;
     private ObjectName objectName;
-    private long numberOfInvocations = 0l;
-    private long averageCallTimeNanos = 0l;
-    private String lastError;
-    private String lastCallDate;
     
     public FabricHTTPGatewayInfo(FabricHTTPGateway fabricHTTPGateway) {
 		super();
@@ -86,45 +90,79 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     @Override
 	public long getNumberOfInvocations() {
-		return numberOfInvocations;
+		return getCallDetailRecorder().getTotalStatistics().getCount();
 	}
-    
-    public void registerCall(long callTimeNanos) {
-    	averageCallTimeNanos = (averageCallTimeNanos * numberOfInvocations + callTimeNanos)/++numberOfInvocations;
-    }
-    
-    public void setLastError(String error) {
-    	lastError = error;
-    }
-    
+
     @Override
     public String getLastError() {
-    	return lastError;
+    	return getCallDetailRecorder().getLastError();
     }
-    
-    public void setLastCallDate(String callDate) {
-    	lastCallDate = callDate;
-    }
-    
+
     @Override
     public String getLastCallDate() {
-    	if (lastCallDate!=null)
-    		return lastCallDate.toString();
-    	else
-    		return null;
+        long lastTimestamp = getCallDetailRecorder().getTotalStatistics().getLastTimestamp();
+        return lastTimestamp > 0 ? new Date(lastTimestamp).toString() : null;
     }
-    
+
     @Override 
     public long getAvarageCallTimeNanos() {
-    	return averageCallTimeNanos;
+    	return (long) getCallDetailRecorder().getTotalStatistics().getLatency().getMean();
+    }
+
+    @Override
+    public Map<String, String> getRouteStatistics() {
+        return toStringMap(getCallDetailRecorder().getRouteStatistics());
+    }
+
+    @Override
+    public Map<String, String> getBackendStatistics() {
+        return toStringMap(getCallDetailRecorder().getBackendStatistics());
+    }
+
+    @Override
+    public long getDroppedCallDetailRecords() {
+        return getCallDetailRecorder().getDroppedRecords();
+    }
+
+    private CallDetailRecorder getCallDetailRecorder() {
+        return getFabricHTTPGateway().getCallDetailRecorder();
+    }
+
+    private static Map<String, String> toStringMap(Map<String, CallStatistics> statistics) {
+        Map<String, String> answer = new TreeMap<String, String>();
+        for (Map.Entry<String, CallStatistics> entry : statistics.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().toString());
+        }
+        return answer;
     }
     
+    @Override
+    public int getBackendClientCount() {
+        HttpClientPool clientPool = getFabricHTTPGateway().getClientPool();
+        return clientPool != null ? clientPool.getClientCount() : 0;
+    }
+
+    @Override
+    public long getBackendClientsCreated() {
+        HttpClientPool clientPool = getFabricHTTPGateway().getClientPool();
+        return clientPool != null ? clientPool.getClientsCreated() : 0;
+    }
+
+    @Override
+    public long getBackendClientsEvicted() {
+        HttpClientPool clientPool = getFabricHTTPGateway().getClientPool();
+        return clientPool != null ? clientPool.getClientsEvicted() : 0;
+    }
+
+    @Override
+    public Map<String, String> getBackendClientStatistics() {
+        HttpClientPool clientPool = getFabricHTTPGateway().getClientPool();
+        return clientPool != null ? clientPool.getClientStatistics() : Collections.<String, String>emptyMap();
+    }
+
     @Override
     public void resetStatistics() {
-    	averageCallTimeNanos = 0l;
-    	numberOfInvocations = 0l;
-    	lastCallDate = null;
-    	lastError = null;
+        getCallDetailRecorder().reset();
     }
    
     public ObjectName getObjectName() throws MalformedObjectNameException {
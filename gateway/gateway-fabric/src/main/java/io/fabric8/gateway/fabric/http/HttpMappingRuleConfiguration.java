@@ -77,7 +77,9 @@ public final class HttpMappingRuleConfiguration extends AbstractComponent {
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.LEAST_OUTSTANDING_REQUESTS_LOAD_BALANCER, value = "Least Outstanding Requests"),
+                    @PropertyOption(name = LoadBalancers.POWER_OF_TWO_CHOICES_LOAD_BALANCER, value = "Power of Two Choices")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy used")
     private String loadBalancerType;
@@ -86,6 +88,10 @@ public final class HttpMappingRuleConfiguration extends AbstractComponent {
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds a client key is cached by the sticky load balancer after its last request; 0 keeps it until evicted by the cache size")
+    private long stickyLoadBalancerTimeToLive = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
+
     private HttpMappingRuleBase httpMappingRuleBase;
 
     private HttpMappingZooKeeperTreeCache mappingTree;
@@ -152,7 +158,7 @@ public final class HttpMappingRuleConfiguration extends AbstractComponent {
         Objects.notNull(zkPath, "zooKeeperPath");
         Objects.notNull(getUriTemplate(), "uriTemplate");
 
-        LoadBalancer loadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer loadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
 
         LOG.info("activating http mapping ZooKeeper path: " + zkPath + " with URI template: " + uriTemplate
                 + " enabledVersion: " + enabledVersion + " with load balancer: " + loadBalancer);
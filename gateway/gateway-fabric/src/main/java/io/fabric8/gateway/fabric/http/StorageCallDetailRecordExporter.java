@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.fabric.http;
+
+import io.fabric8.api.scr.ValidatingReference;
+import io.fabric8.gateway.cdr.CallDetailRecordBatch;
+import io.fabric8.gateway.cdr.CallDetailRecordExporter;
+import io.fabric8.insight.storage.StorageService;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Streams the call detail records of the HTTP gateway to the insight {@link StorageService}
+ * when one is available, one document per call.
+ * <p/>
+ * This is only invoked from the thread draining the call detail records so the date format
+ * does not need to be shared.
+ */
+public class StorageCallDetailRecordExporter implements CallDetailRecordExporter {
+    private final ValidatingReference<StorageService> storageService;
+    private final String type;
+    private final String host;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX");
+    private final StringBuilder buffer = new StringBuilder();
+
+    public StorageCallDetailRecordExporter(ValidatingReference<StorageService> storageService, String type, String host) {
+        this.storageService = storageService;
+        this.type = type;
+        this.host = host;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageCallDetailRecordExporter{" +
+                "type='" + type + '\'' +
+                '}';
+    }
+
+    @Override
+    public void export(CallDetailRecordBatch batch) throws Exception {
+        StorageService storage = storageService.getOptional();
+        if (storage == null) {
+            return;
+        }
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            long timestamp = batch.getTimestamp(i);
+            buffer.setLength(0);
+            buffer.append("{ \"host\": ");
+            quote(host, buffer);
+            buffer.append(", \"timestamp\": ");
+            quote(dateFormat.format(new Date(timestamp)), buffer);
+            buffer.append(", \"route\": ");
+            quote(batch.getRoute(i), buffer);
+            buffer.append(", \"backend\": ");
+            quote(batch.getBackend(i), buffer);
+            buffer.append(", \"status\": ").append(batch.getStatus(i));
+            buffer.append(", \"responseLength\": ").append(batch.getBytes(i));
+            buffer.append(", \"latencyNanos\": ").append(batch.getLatencyNanos(i));
+            buffer.append(" }");
+            storage.store(type, timestamp, buffer.toString());
+        }
+    }
+
+    private static void quote(String value, StringBuilder buffer) {
+        if (value == null) {
+            buffer.append("null");
+            return;
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                case '\\':
+                    buffer.append('\\').append(ch);
+                    break;
+                default:
+                    if (ch < ' ') {
+                        buffer.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        buffer.append(ch);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+}
@@ -15,6 +15,8 @@
  */
 package io.fabric8.gateway.fabric.jmx;
 
+import java.util.Map;
+
 /**
  * An MBean to retrieve usage for the http gateway
  */
@@ -30,5 +32,12 @@ public interface FabricGatewayInfoMBean {
     String getLastError();
     String getLastCallDate();
     long getAvarageCallTimeNanos();
+    Map<String, String> getRouteStatistics();
+    Map<String, String> getBackendStatistics();
+    long getDroppedCallDetailRecords();
+    int getBackendClientCount();
+    long getBackendClientsCreated();
+    long getBackendClientsEvicted();
+    Map<String, String> getBackendClientStatistics();
     void resetStatistics();
 }
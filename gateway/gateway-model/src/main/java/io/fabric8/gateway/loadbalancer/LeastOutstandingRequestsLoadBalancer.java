@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the service with the fewest outstanding requests; ties are broken round robin
+ * so that idle services share the load evenly.
+ */
+public class LeastOutstandingRequestsLoadBalancer extends LoadTrackingLoadBalancerSupport {
+    private final AtomicInteger counter = new AtomicInteger(-1);
+
+    @Override
+    public String toString() {
+        return "LeastOutstandingRequestsLoadBalancer{" +
+                "loads=" + getLoads() +
+                '}';
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        int start = (counter.incrementAndGet() & Integer.MAX_VALUE) % size;
+        T answer = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            T service = services.get((start + i) % size);
+            int outstanding = getLoad(service).getOutstanding();
+            if (outstanding < min) {
+                min = outstanding;
+                answer = service;
+                if (outstanding == 0) {
+                    break;
+                }
+            }
+        }
+        return answer;
+    }
+}
@@ -28,16 +28,27 @@ public class LoadBalancers {
     public static final String RANDOM_LOAD_BALANCER = "random";
     public static final String ROUND_ROBIN_LOAD_BALANCER = "roundrobin";
     public static final String STICKY_LOAD_BALANCER = "sticky";
+    public static final String LEAST_OUTSTANDING_REQUESTS_LOAD_BALANCER = "leastoutstanding";
+    public static final String POWER_OF_TWO_CHOICES_LOAD_BALANCER = "poweroftwochoices";
 
     public static final int STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE = 10000;
+    public static final long STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE = 0;
 
     public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize) {
+        return createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE);
+    }
+
+    public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize, long stickyLoadBalancerTimeToLive) {
         if (RANDOM_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RandomLoadBalancer();
         } else if (ROUND_ROBIN_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RoundRobinLoadBalancer();
         } else if (STICKY_LOAD_BALANCER.equals(loadBalancerType)) {
-            return new StickyLoadBalancer(stickyLoadBalancerCacheSize);
+            return new StickyLoadBalancer(stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive, new RoundRobinLoadBalancer());
+        } else if (LEAST_OUTSTANDING_REQUESTS_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new LeastOutstandingRequestsLoadBalancer();
+        } else if (POWER_OF_TWO_CHOICES_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new PowerOfTwoChoicesLoadBalancer();
         } else {
             if (Strings.isNotBlank(loadBalancerType)) {
                 LOG.warn("Ignored invalid load balancer type: " + loadBalancerType);
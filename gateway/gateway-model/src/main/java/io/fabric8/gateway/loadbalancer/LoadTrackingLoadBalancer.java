@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A {@link LoadBalancer} which takes the current load or latency of the services into account
+ * and so needs to be told when the requests (or connections) it balanced start and complete.
+ *
+ * Example implementations are: {@link LeastOutstandingRequestsLoadBalancer} or
+ * {@link PowerOfTwoChoicesLoadBalancer}
+ */
+public interface LoadTrackingLoadBalancer extends LoadBalancer {
+
+    /**
+     * Called once a request has been sent to the chosen service
+     */
+    void requestStarted(Object service);
+
+    /**
+     * Called when a request sent to the service has completed
+     *
+     * @param service the service the request was sent to
+     * @param latencyNanos how long the request took
+     * @param failed whether the service failed to handle the request
+     */
+    void requestCompleted(Object service, long latencyNanos, boolean failed);
+}
@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A base class for {@link LoadTrackingLoadBalancer} implementations which keeps the {@link ServiceLoad}
+ * of each service in a concurrent map, removing services which have been idle for a while so that
+ * services which go away are eventually forgotten.
+ */
+public abstract class LoadTrackingLoadBalancerSupport implements LoadTrackingLoadBalancer {
+    public static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ConcurrentHashMap<Object, ServiceLoad> loads = new ConcurrentHashMap<Object, ServiceLoad>();
+    private final AtomicLong lastPruned = new AtomicLong(System.nanoTime());
+    private long decayNanos = DEFAULT_DECAY_NANOS;
+    private long failurePenaltyNanos = TimeUnit.SECONDS.toNanos(1);
+
+    @Override
+    public void requestStarted(Object service) {
+        getLoad(service).started();
+    }
+
+    @Override
+    public void requestCompleted(Object service, long latencyNanos, boolean failed) {
+        // count failures as slow so they steer requests away from failing services
+        long latency = failed ? Math.max(latencyNanos, failurePenaltyNanos) : latencyNanos;
+        getLoad(service).completed(latency, failed, decayNanos);
+    }
+
+    /**
+     * Returns the load of the given service, creating it if required
+     */
+    protected ServiceLoad getLoad(Object service) {
+        ServiceLoad answer = loads.get(service);
+        if (answer == null) {
+            answer = new ServiceLoad();
+            ServiceLoad old = loads.putIfAbsent(service, answer);
+            if (old != null) {
+                answer = old;
+            }
+            pruneIdleServices();
+        }
+        return answer;
+    }
+
+    /**
+     * Removes the services without outstanding requests which have not been used for a while;
+     * which only one thread does at a time and at most once per prune interval
+     */
+    protected void pruneIdleServices() {
+        long now = System.nanoTime();
+        long last = lastPruned.get();
+        if (now - last < PRUNE_INTERVAL_NANOS || !lastPruned.compareAndSet(last, now)) {
+            return;
+        }
+        Iterator<ServiceLoad> iterator = loads.values().iterator();
+        while (iterator.hasNext()) {
+            ServiceLoad load = iterator.next();
+            if (load.getOutstanding() == 0 && now - load.getLastUpdated() > IDLE_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the current load of the services indexed by service
+     */
+    public Map<Object, ServiceLoad> getLoads() {
+        return Collections.unmodifiableMap(loads);
+    }
+
+    public long getDecayNanos() {
+        return decayNanos;
+    }
+
+    /**
+     * Sets the time over which the weight of a latency measurement decays by a factor of e
+     */
+    public void setDecayNanos(long decayNanos) {
+        this.decayNanos = decayNanos;
+    }
+
+    public long getFailurePenaltyNanos() {
+        return failurePenaltyNanos;
+    }
+
+    /**
+     * Sets the minimum latency recorded for a failed request
+     */
+    public void setFailurePenaltyNanos(long failurePenaltyNanos) {
+        this.failurePenaltyNanos = failurePenaltyNanos;
+    }
+}
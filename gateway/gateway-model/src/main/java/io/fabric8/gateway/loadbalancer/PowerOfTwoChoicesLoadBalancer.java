@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two services at random and chooses the one with the lower cost; where the cost is the moving
+ * average of its latency multiplied by the number of requests it will have outstanding.
+ * <p/>
+ * Comparing just two random services avoids every gateway herding onto the single least loaded service
+ * while still steering most requests away from slow or overloaded ones. Services which have not
+ * completed a request yet have no cost and so get tried.
+ */
+public class PowerOfTwoChoicesLoadBalancer extends LoadTrackingLoadBalancerSupport {
+
+    @Override
+    public String toString() {
+        return "PowerOfTwoChoicesLoadBalancer{" +
+                "loads=" + getLoads() +
+                '}';
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        T service1 = services.get(first);
+        T service2 = services.get(second);
+        ServiceLoad load1 = getLoad(service1);
+        ServiceLoad load2 = getLoad(service2);
+        double cost1 = cost(load1);
+        double cost2 = cost(load2);
+        if (cost1 == cost2) {
+            return load1.getOutstanding() <= load2.getOutstanding() ? service1 : service2;
+        }
+        return cost1 < cost2 ? service1 : service2;
+    }
+
+    private static double cost(ServiceLoad load) {
+        return load.getLatencyNanos() * (load.getOutstanding() + 1);
+    }
+}
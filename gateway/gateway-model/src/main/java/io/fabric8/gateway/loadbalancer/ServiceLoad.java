@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2014 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The live load of a service as seen by a {@link LoadTrackingLoadBalancer}; the number of outstanding
+ * requests and an exponentially weighted moving average of its response latency which decays over time,
+ * so old measurements count for less the longer ago they were taken.
+ */
+public class ServiceLoad {
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile double latencyNanos;
+    private volatile long lastUpdated = System.nanoTime();
+    private long lastCompleted;
+
+    @Override
+    public String toString() {
+        return "ServiceLoad{" +
+                "outstanding=" + outstanding.get() +
+                ", latency=" + String.format("%.3f", latencyNanos / TimeUnit.MILLISECONDS.toNanos(1)) + "ms" +
+                ", completed=" + completed.get() +
+                ", failures=" + failures.get() +
+                '}';
+    }
+
+    public void started() {
+        outstanding.incrementAndGet();
+        lastUpdated = System.nanoTime();
+    }
+
+    /**
+     * Records a completed request updating the moving average of the latency
+     *
+     * @param latencyNanos the latency to record
+     * @param decayNanos the time over which the weight of a measurement decays by a factor of e
+     */
+    public void completed(long latencyNanos, boolean failed, long decayNanos) {
+        // don't go negative if the service was started before this load was created
+        int value;
+        do {
+            value = outstanding.get();
+        } while (value > 0 && !outstanding.compareAndSet(value, value - 1));
+        if (failed) {
+            failures.incrementAndGet();
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (completed.getAndIncrement() == 0) {
+                this.latencyNanos = latencyNanos;
+            } else {
+                long elapsed = Math.max(0, now - lastCompleted);
+                double weight = 1 - Math.exp(-(double) elapsed / decayNanos);
+                this.latencyNanos += (latencyNanos - this.latencyNanos) * weight;
+            }
+            lastCompleted = now;
+        }
+        lastUpdated = now;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Returns the moving average of the latency or 0 if no request has completed yet
+     */
+    public double getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} when a request was last started or completed
+     */
+    public long getLastUpdated() {
+        return lastUpdated;
+    }
+}
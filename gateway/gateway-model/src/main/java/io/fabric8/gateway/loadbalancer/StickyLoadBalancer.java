@@ -15,19 +15,31 @@
  */
 package io.fabric8.gateway.loadbalancer;
 
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implements a sticky load balancer where a unique client ID String is requested from the
  * {@link ClientRequestFacade} and used to keep track of which
  * service was used last time and to use that if its possible and keep a cache of requests to
+ * <p/>
+ * Requests without a client ID are not cached and always go to the first request load balancer.
+ * <p/>
+ * The cache is a concurrent map so that lookups from different event loops do not contend on a lock.
+ * When the cache grows beyond its maximum size one thread removes the expired entries and then the
+ * least recently used ones until the cache is back below 90% of its maximum size; so the size bound and
+ * the LRU order are approximate while other threads keep adding entries.
  */
 public class StickyLoadBalancer implements LoadBalancer {
     private final LoadBalancer firstRequestLoadBalancer;
     private final int maximumCacheSize;
-    private final Map<String, Object> requestCache;
+    private final long timeToLiveNanos;
+    private final ConcurrentHashMap<String, CacheEntry> requestCache;
+    private final AtomicBoolean evicting = new AtomicBoolean();
 
     public StickyLoadBalancer() {
         this(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE);
@@ -38,34 +50,57 @@ public class StickyLoadBalancer implements LoadBalancer {
     }
 
     public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer) {
+        this(maximumCacheSize, 0, firstRequestLoadBalancer);
+    }
+
+    /**
+     * @param maximumCacheSize the maximum number of client IDs to remember
+     * @param timeToLiveMillis how long a client ID is remembered after its last request or 0 to keep it until evicted
+     * @param firstRequestLoadBalancer the load balancer used to pick the service for new client IDs
+     */
+    public StickyLoadBalancer(int maximumCacheSize, long timeToLiveMillis, LoadBalancer firstRequestLoadBalancer) {
         this.firstRequestLoadBalancer = firstRequestLoadBalancer;
         this.maximumCacheSize = maximumCacheSize;
-        this.requestCache = new LinkedHashMap(maximumCacheSize + 1, .75F, true) {
-            // This method is called just after a new entry has been added
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > StickyLoadBalancer.this.maximumCacheSize;
-            }
-        };
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+        this.requestCache = new ConcurrentHashMap<String, CacheEntry>(Math.min(maximumCacheSize, 1024));
     }
 
     @Override
     public String toString() {
         return "StickyLoadBalancer{" +
                 "maximumCacheSize=" + maximumCacheSize +
+                ", timeToLiveMillis=" + TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos) +
                 '}';
     }
 
     @Override
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
         String clientKey = requestFacade.getClientRequestKey();
-        T answer;
-        synchronized (requestCache) {
-            answer = (T) requestCache.get(clientKey);
-            if (answer == null) {
-                answer = firstRequestLoadBalancer.choose(services, requestFacade);
-                if (answer != null) {
-                    requestCache.put(clientKey, answer);
-                }
+        if (clientKey == null) {
+            // the client cannot be identified so there is nothing to stick to
+            return firstRequestLoadBalancer.choose(services, requestFacade);
+        }
+        long now = nanoTime();
+        CacheEntry entry = requestCache.get(clientKey);
+        if (entry != null) {
+            if (!isExpired(entry, now)) {
+                entry.lastAccess = now;
+                return (T) entry.service;
+            }
+            requestCache.remove(clientKey, entry);
+        }
+        T answer = firstRequestLoadBalancer.choose(services, requestFacade);
+        if (answer != null) {
+            CacheEntry old = requestCache.putIfAbsent(clientKey, new CacheEntry(answer, now));
+            if (old != null && !isExpired(old, now)) {
+                // another request from the same client got there first so lets stick with its choice
+                old.lastAccess = now;
+                answer = (T) old.service;
+            } else if (old != null) {
+                requestCache.put(clientKey, new CacheEntry(answer, now));
+            }
+            if (requestCache.size() > maximumCacheSize) {
+                evict(now);
             }
         }
         return answer;
@@ -75,8 +110,75 @@ public class StickyLoadBalancer implements LoadBalancer {
      * Clears the cache of request client IDs to the bound service
      */
     public void flush() {
-        synchronized (requestCache) {
-            requestCache.clear();
+        requestCache.clear();
+    }
+
+    /**
+     * Returns the number of client IDs currently bound to a service
+     */
+    public int getCacheSize() {
+        return requestCache.size();
+    }
+
+    /**
+     * Returns the current time the cache entries expire by, overridden in tests
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    private boolean isExpired(CacheEntry entry, long now) {
+        return timeToLiveNanos > 0 && now - entry.lastAccess > timeToLiveNanos;
+    }
+
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (timeToLiveNanos > 0) {
+                Iterator<CacheEntry> iterator = requestCache.values().iterator();
+                while (iterator.hasNext()) {
+                    if (isExpired(iterator.next(), now)) {
+                        iterator.remove();
+                    }
+                }
+            }
+            int target = maximumCacheSize - maximumCacheSize / 10;
+            int excess = requestCache.size() - target;
+            if (excess <= 0 || requestCache.size() <= maximumCacheSize) {
+                return;
+            }
+            // find the access time below which the excess entries were last used
+            long[] accessTimes = new long[requestCache.size()];
+            int count = 0;
+            for (CacheEntry entry : requestCache.values()) {
+                if (count == accessTimes.length) {
+                    break;
+                }
+                accessTimes[count++] = entry.lastAccess - now;
+            }
+            Arrays.sort(accessTimes, 0, count);
+            long threshold = accessTimes[Math.min(excess, count) - 1];
+            Iterator<CacheEntry> iterator = requestCache.values().iterator();
+            while (iterator.hasNext() && excess > 0) {
+                if (iterator.next().lastAccess - now <= threshold) {
+                    iterator.remove();
+                    excess--;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class CacheEntry {
+        private final Object service;
+        private volatile long lastAccess;
+
+        private CacheEntry(Object service, long lastAccess) {
+            this.service = service;
+            this.lastAccess = lastAccess;
         }
     }
 }
@@ -29,6 +29,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.fabric8.groups.internal.ManagedGroupFactory;
+import io.fabric8.groups.internal.GroupEventLoop;
 import io.fabric8.groups.internal.ManagedGroupFactoryBuilder;
 import org.apache.activemq.command.DiscoveryEvent;
 import org.apache.activemq.transport.discovery.DiscoveryAgent;
@@ -313,7 +314,7 @@ public class FabricDiscoveryAgent implements DiscoveryAgent, Callable {
 
     public MultiGroup<ActiveMQNode> getGroup() throws Exception {
         if (group == null) {
-            factory = ManagedGroupFactoryBuilder.create(curator, getClass().getClassLoader(), this);
+            factory = ManagedGroupFactoryBuilder.create(curator, getClass().getClassLoader(), this, GroupEventLoop.shared());
             group = (MultiGroup)factory.createMultiGroup("/fabric/registry/clusters/amq/" + groupName, ActiveMQNode.class);
             curator = factory.getCurator();
         }